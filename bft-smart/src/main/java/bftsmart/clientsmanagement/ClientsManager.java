@@ -169,6 +169,26 @@ public class ClientsManager {
 		return havePending;
 	}
 
+	/**
+	 * Marks every pending request as not yet proposed, so that requests in
+	 * proposals which were dropped by a regency change are proposed again.
+	 */
+	public void clearProposed() {
+		clientsLock.lock();
+		/******* BEGIN CLIENTS CRITICAL SECTION ******/
+
+		for (ClientData clientData : clientsData.values()) {
+			clientData.clientLock.lock();
+			for (TOMMessage request : clientData.getPendingRequests()) {
+				request.alreadyProposed = false;
+			}
+			clientData.clientLock.unlock();
+		}
+
+		/******* END CLIENTS CRITICAL SECTION ******/
+		clientsLock.unlock();
+	}
+
 	/**
 	 * Verifies if some reqId is pending.
 	 *
@@ -275,7 +295,8 @@ public class ClientsManager {
 				((request.getSequence() > clientData.getLastMessageReceived()) && !fromClient)) {
 
 			// it is a new message and I have to verify it's signature
-			if (!request.signed
+			// (unless the signature verification stage has already done so)
+			if (!request.signed || request.signatureVerified
 					|| clientData.verifySignature(request.serializedMessage, request.serializedMessageSignature)) {
 
 				// I don't have the message but it is valid, I will
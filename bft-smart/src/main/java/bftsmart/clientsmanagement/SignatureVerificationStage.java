@@ -0,0 +1,172 @@
+/**
+Copyright (c) 2007-2013 Alysson Bessani, Eduardo Alchieri, Paulo Sousa, and the authors indicated in the @author tags
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package bftsmart.clientsmanagement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.ibm.pross.common.util.concurrent.NamedThreadFactory;
+
+import bftsmart.tom.core.messages.TOMMessage;
+import bftsmart.tom.util.Logger;
+
+/**
+ * Verifies client request signatures on a dedicated pool of threads, before the
+ * requests are accounted by the ClientsManager. Requests which pass are marked
+ * as verified so that the ClientsManager does not check them again while
+ * holding the client lock.
+ * 
+ * Requests from the same client are always verified on the same thread so they
+ * are passed on in the order they were received.
+ */
+public class SignatureVerificationStage {
+
+	public static int NUM_VERIFICATION_THREADS = Runtime.getRuntime().availableProcessors();
+
+	private final ClientsManager clientsManager;
+
+	// Each executor has a single thread, requests are assigned by client id
+	private final ExecutorService[] lanes;
+
+	// Used to verify all requests of a proposed batch concurrently
+	private final ExecutorService batchPool;
+
+	public SignatureVerificationStage(final ClientsManager clientsManager) {
+		this.clientsManager = clientsManager;
+		this.lanes = new ExecutorService[NUM_VERIFICATION_THREADS];
+		for (int i = 0; i < this.lanes.length; i++) {
+			this.lanes[i] = Executors.newSingleThreadExecutor(new NamedThreadFactory("Signature-Verifier-" + i));
+		}
+		this.batchPool = Executors.newFixedThreadPool(NUM_VERIFICATION_THREADS,
+				new NamedThreadFactory("Batch-Signature-Verifier"));
+	}
+
+	/**
+	 * Verifies the signature of the request in the background, then runs the given
+	 * task if it is valid. Requests with invalid signatures are dropped.
+	 * 
+	 * @param request
+	 *            The request received from a client
+	 * @param onVerified
+	 *            Invoked with the request after its signature is verified
+	 */
+	public void submit(final TOMMessage request, final Runnable onVerified) {
+		final int lane = Math.floorMod(request.getSender(), this.lanes.length);
+		this.lanes[lane].execute(new Runnable() {
+			@Override
+			public void run() {
+				if (verify(request)) {
+					onVerified.run();
+				} else {
+					Logger.println("(SignatureVerificationStage.submit) discarding request " + request
+							+ " with an invalid signature");
+				}
+			}
+		});
+	}
+
+	/**
+	 * Verifies the signatures of all requests of a batch concurrently
+	 * 
+	 * @param requests
+	 *            The requests of a proposed batch
+	 * @return true only if every signed request has a valid signature
+	 */
+	public boolean verifyAll(final TOMMessage[] requests) {
+		final List<Callable<Boolean>> tasks = new ArrayList<>(requests.length);
+		for (final TOMMessage request : requests) {
+			if (request.signed && !request.signatureVerified && !isAlreadyReceived(request)) {
+				tasks.add(new Callable<Boolean>() {
+					@Override
+					public Boolean call() {
+						return verify(request);
+					}
+				});
+			}
+		}
+
+		if (tasks.size() <= 1) {
+			// Not worth handing off to the pool
+			for (final Callable<Boolean> task : tasks) {
+				try {
+					if (!task.call()) {
+						return false;
+					}
+				} catch (Exception e) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		try {
+			for (final Future<Boolean> result : this.batchPool.invokeAll(tasks)) {
+				if (!result.get()) {
+					return false;
+				}
+			}
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException e) {
+			e.printStackTrace(System.out);
+			return false;
+		}
+	}
+
+	/**
+	 * Verifies the signature of a single request, recording the result on the
+	 * request when it is valid
+	 * 
+	 * @param request
+	 * @return true if the request is not signed or its signature is valid
+	 */
+	public boolean verify(final TOMMessage request) {
+		if (!request.signed || request.signatureVerified) {
+			return true;
+		}
+
+		final ClientData clientData = this.clientsManager.getClientData(request.getSender());
+		final boolean isValid = clientData.verifySignature(request.serializedMessage,
+				request.serializedMessageSignature);
+		request.signatureVerified = isValid;
+		return isValid;
+	}
+
+	/**
+	 * Returns true if the request was already accounted, in which case the clients
+	 * manager will not check its signature again. This is read without the client
+	 * lock, so it is only a hint: a stale answer causes an extra verification.
+	 */
+	private boolean isAlreadyReceived(final TOMMessage request) {
+		final ClientData clientData = this.clientsManager.getClientData(request.getSender());
+		return (clientData.getSession() == request.getSession())
+				&& (clientData.getLastMessageReceived() >= request.getSequence());
+	}
+
+	public void shutdown() {
+		for (final ExecutorService lane : this.lanes) {
+			lane.shutdownNow();
+		}
+		this.batchPool.shutdownNow();
+	}
+}
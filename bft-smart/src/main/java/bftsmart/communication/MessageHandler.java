@@ -15,9 +15,7 @@ limitations under the License.
 */
 package bftsmart.communication;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
@@ -26,6 +24,7 @@ import java.util.HashMap;
 import javax.crypto.Mac;
 import javax.crypto.SecretKey;
 
+import bftsmart.communication.codec.SystemMessageCodec;
 import bftsmart.consensus.messages.ConsensusMessage;
 import bftsmart.consensus.messages.MessageFactory.PaxosMessageType;
 import bftsmart.consensus.roles.Acceptor;
@@ -86,15 +85,13 @@ public class MessageHandler {
 				ConsensusMessage cm = new ConsensusMessage(PaxosMessageType.ACCEPT, consMsg.getNumber(),
 						consMsg.getEpoch(), consMsg.getSender(), consMsg.getValue());
 
-				ByteArrayOutputStream bOut = new ByteArrayOutputStream(248);
+				byte[] data = null;
 				try {
-					new ObjectOutputStream(bOut).writeObject(cm);
+					data = SystemMessageCodec.encode(cm);
 				} catch (IOException ex) {
 					ex.printStackTrace();
 				}
 
-				byte[] data = bOut.toByteArray();
-
 				// byte[] hash = tomLayer.computeHash(data);
 
 				byte[] myMAC = null;
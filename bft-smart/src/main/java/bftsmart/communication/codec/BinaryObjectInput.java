@@ -0,0 +1,269 @@
+/**
+Copyright (c) 2007-2013 Alysson Bessani, Eduardo Alchieri, Paulo Sousa, and the authors indicated in the @author tags
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package bftsmart.communication.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An ObjectInput which reads the encoding written by a BinaryObjectOutput
+ * directly from a byte array, without copying it
+ */
+public class BinaryObjectInput implements ObjectInput {
+
+	private final byte[] buffer;
+	private final int limit;
+	private int position;
+
+	public BinaryObjectInput(final byte[] buffer) {
+		this(buffer, 0, buffer.length);
+	}
+
+	public BinaryObjectInput(final byte[] buffer, final int offset, final int length) {
+		this.buffer = buffer;
+		this.position = offset;
+		this.limit = offset + length;
+	}
+
+	private void require(final int length) throws EOFException {
+		if (length < 0 || length > this.limit - this.position) {
+			throw new EOFException("Attempted to read " + length + " bytes with " + available() + " remaining");
+		}
+	}
+
+	@Override
+	public int read() {
+		if (this.position >= this.limit) {
+			return -1;
+		}
+		return this.buffer[this.position++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b) {
+		return read(b, 0, b.length);
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) {
+		if (len == 0) {
+			return 0;
+		}
+		final int count = Math.min(len, available());
+		if (count == 0) {
+			return -1;
+		}
+		System.arraycopy(this.buffer, this.position, b, off, count);
+		this.position += count;
+		return count;
+	}
+
+	@Override
+	public void readFully(byte[] b) throws IOException {
+		readFully(b, 0, b.length);
+	}
+
+	@Override
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		require(len);
+		System.arraycopy(this.buffer, this.position, b, off, len);
+		this.position += len;
+	}
+
+	@Override
+	public long skip(long n) {
+		final int count = (int) Math.max(0, Math.min(n, available()));
+		this.position += count;
+		return count;
+	}
+
+	@Override
+	public int skipBytes(int n) {
+		return (int) skip(n);
+	}
+
+	@Override
+	public int available() {
+		return this.limit - this.position;
+	}
+
+	@Override
+	public boolean readBoolean() throws IOException {
+		return readByte() != 0;
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		require(1);
+		return this.buffer[this.position++];
+	}
+
+	@Override
+	public int readUnsignedByte() throws IOException {
+		return readByte() & 0xFF;
+	}
+
+	@Override
+	public short readShort() throws IOException {
+		require(2);
+		final int value = ((this.buffer[this.position] & 0xFF) << 8) | (this.buffer[this.position + 1] & 0xFF);
+		this.position += 2;
+		return (short) value;
+	}
+
+	@Override
+	public int readUnsignedShort() throws IOException {
+		return readShort() & 0xFFFF;
+	}
+
+	@Override
+	public char readChar() throws IOException {
+		return (char) readShort();
+	}
+
+	@Override
+	public int readInt() throws IOException {
+		require(4);
+		final int value = ((this.buffer[this.position] & 0xFF) << 24)
+				| ((this.buffer[this.position + 1] & 0xFF) << 16) | ((this.buffer[this.position + 2] & 0xFF) << 8)
+				| (this.buffer[this.position + 3] & 0xFF);
+		this.position += 4;
+		return value;
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+	}
+
+	@Override
+	public float readFloat() throws IOException {
+		return Float.intBitsToFloat(readInt());
+	}
+
+	@Override
+	public double readDouble() throws IOException {
+		return Double.longBitsToDouble(readLong());
+	}
+
+	/**
+	 * Reads bytes up to the next line terminator as characters, as
+	 * DataInputStream does, returning null at the end of the input
+	 */
+	@Override
+	public String readLine() throws IOException {
+		if (this.position >= this.limit) {
+			return null;
+		}
+		final StringBuilder line = new StringBuilder();
+		while (this.position < this.limit) {
+			final int c = this.buffer[this.position++] & 0xFF;
+			if (c == '\n') {
+				break;
+			} else if (c == '\r') {
+				if (this.position < this.limit && this.buffer[this.position] == '\n') {
+					this.position++;
+				}
+				break;
+			}
+			line.append((char) c);
+		}
+		return line.toString();
+	}
+
+	@Override
+	public String readUTF() throws IOException {
+		final int length = readInt();
+		require(length);
+		final String s = new String(this.buffer, this.position, length, StandardCharsets.UTF_8);
+		this.position += length;
+		return s;
+	}
+
+	/**
+	 * Reads the length of an array or collection, -1 when it is null. The
+	 * length is checked against the remaining input before anything is
+	 * allocated for it.
+	 * 
+	 * @param elementSize
+	 *            The fewest bytes taken by each element
+	 */
+	int readLength(final int elementSize) throws IOException {
+		final int length = readInt();
+		if (length < -1) {
+			throw new IOException("Invalid length: " + length);
+		}
+		if ((long) length * elementSize > available()) {
+			throw new EOFException("Length " + length + " exceeds the " + available() + " bytes remaining");
+		}
+		return length;
+	}
+
+	/**
+	 * Reads a byte array which may be null, prefixed by its length
+	 */
+	public byte[] readByteArray() throws IOException {
+		final int length = readLength(1);
+		if (length == -1) {
+			return null;
+		}
+		final byte[] b = new byte[length];
+		readFully(b);
+		return b;
+	}
+
+	/**
+	 * Allocates the array for a field of the given length read from an input,
+	 * rejecting a length which is negative or, when reading from a
+	 * BinaryObjectInput, longer than the remaining input
+	 */
+	public static byte[] newByteArray(final DataInput in, final int length) throws IOException {
+		if (length < 0) {
+			throw new IOException("Invalid length: " + length);
+		}
+		if ((in instanceof BinaryObjectInput) && (length > ((BinaryObjectInput) in).available())) {
+			throw new EOFException("Length " + length + " exceeds the remaining input");
+		}
+		return new byte[length];
+	}
+
+	@Override
+	public Object readObject() throws ClassNotFoundException, IOException {
+		return SystemMessageCodec.readValue(this);
+	}
+
+	/**
+	 * Reads an object written with Java serialization, prefixed by its length
+	 */
+	Object readSerializedObject() throws ClassNotFoundException, IOException {
+		final int length = readInt();
+		require(length);
+		try (final ObjectInputStream in = new ObjectInputStream(
+				new ByteArrayInputStream(this.buffer, this.position, length))) {
+			this.position += length;
+			return in.readObject();
+		}
+	}
+
+	@Override
+	public void close() {
+	}
+}
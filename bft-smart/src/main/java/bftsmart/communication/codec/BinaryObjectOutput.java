@@ -0,0 +1,192 @@
+/**
+Copyright (c) 2007-2013 Alysson Bessani, Eduardo Alchieri, Paulo Sousa, and the authors indicated in the @author tags
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package bftsmart.communication.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * An ObjectOutput which writes primitives directly into a growable byte array,
+ * without the stream header, class descriptors and block framing written by an
+ * ObjectOutputStream. Objects are written through the SystemMessageCodec, which
+ * encodes the types exchanged between replicas compactly and falls back to Java
+ * serialization for anything else.
+ *
+ * Instances are reused through {@link SystemMessageCodec} and are not thread
+ * safe.
+ */
+public class BinaryObjectOutput implements ObjectOutput {
+
+	private byte[] buffer;
+	private int count;
+
+	public BinaryObjectOutput(final int initialCapacity) {
+		this.buffer = new byte[initialCapacity];
+		this.count = 0;
+	}
+
+	private void ensureCapacity(final int additional) {
+		final int required = this.count + additional;
+		if (required > this.buffer.length) {
+			this.buffer = Arrays.copyOf(this.buffer, Math.max(required, this.buffer.length * 2));
+		}
+	}
+
+	public void reset() {
+		this.count = 0;
+	}
+
+	public int size() {
+		return this.count;
+	}
+
+	public int capacity() {
+		return this.buffer.length;
+	}
+
+	public byte[] toByteArray() {
+		return Arrays.copyOf(this.buffer, this.count);
+	}
+
+	@Override
+	public void write(int b) {
+		ensureCapacity(1);
+		this.buffer[this.count++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b) {
+		write(b, 0, b.length);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) {
+		ensureCapacity(len);
+		System.arraycopy(b, off, this.buffer, this.count, len);
+		this.count += len;
+	}
+
+	@Override
+	public void writeBoolean(boolean v) {
+		write(v ? 1 : 0);
+	}
+
+	@Override
+	public void writeByte(int v) {
+		write(v);
+	}
+
+	@Override
+	public void writeShort(int v) {
+		ensureCapacity(2);
+		this.buffer[this.count++] = (byte) (v >>> 8);
+		this.buffer[this.count++] = (byte) v;
+	}
+
+	@Override
+	public void writeChar(int v) {
+		writeShort(v);
+	}
+
+	@Override
+	public void writeInt(int v) {
+		ensureCapacity(4);
+		this.buffer[this.count++] = (byte) (v >>> 24);
+		this.buffer[this.count++] = (byte) (v >>> 16);
+		this.buffer[this.count++] = (byte) (v >>> 8);
+		this.buffer[this.count++] = (byte) v;
+	}
+
+	@Override
+	public void writeLong(long v) {
+		writeInt((int) (v >>> 32));
+		writeInt((int) v);
+	}
+
+	@Override
+	public void writeFloat(float v) {
+		writeInt(Float.floatToIntBits(v));
+	}
+
+	@Override
+	public void writeDouble(double v) {
+		writeLong(Double.doubleToLongBits(v));
+	}
+
+	@Override
+	public void writeBytes(String s) {
+		final int length = s.length();
+		ensureCapacity(length);
+		for (int i = 0; i < length; i++) {
+			this.buffer[this.count++] = (byte) s.charAt(i);
+		}
+	}
+
+	@Override
+	public void writeChars(String s) {
+		final int length = s.length();
+		for (int i = 0; i < length; i++) {
+			writeChar(s.charAt(i));
+		}
+	}
+
+	@Override
+	public void writeUTF(String s) {
+		final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		writeInt(bytes.length);
+		write(bytes);
+	}
+
+	/**
+	 * Writes a byte array which may be null, prefixed by its length
+	 */
+	public void writeByteArray(byte[] b) {
+		if (b == null) {
+			writeInt(-1);
+		} else {
+			writeInt(b.length);
+			write(b);
+		}
+	}
+
+	@Override
+	public void writeObject(Object obj) throws IOException {
+		SystemMessageCodec.writeValue(this, obj);
+	}
+
+	/**
+	 * Writes an object using Java serialization, prefixed by its length
+	 */
+	void writeSerializedObject(Object obj) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(obj);
+		}
+		writeByteArray(bytes.toByteArray());
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public void close() {
+	}
+}
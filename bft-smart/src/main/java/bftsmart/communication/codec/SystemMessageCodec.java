@@ -0,0 +1,405 @@
+/**
+Copyright (c) 2007-2013 Alysson Bessani, Eduardo Alchieri, Paulo Sousa, and the authors indicated in the @author tags
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package bftsmart.communication.codec;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import bftsmart.communication.SystemMessage;
+import bftsmart.consensus.messages.ConsensusMessage;
+import bftsmart.reconfiguration.VMMessage;
+import bftsmart.statemanagement.strategy.StandardSMMessage;
+import bftsmart.statemanagement.strategy.durability.CSTSMMessage;
+import bftsmart.tom.MessageContext;
+import bftsmart.tom.core.messages.ForwardedMessage;
+import bftsmart.tom.core.messages.TOMMessage;
+import bftsmart.tom.core.messages.TOMMessageType;
+import bftsmart.tom.leaderchange.LCMessage;
+import bftsmart.tom.server.defaultservices.CommandsInfo;
+
+/**
+ * Compact binary encoding of the messages exchanged between replicas and of the
+ * batches written to the durable log.
+ *
+ * A message is encoded as a one byte type tag followed by the fields written by
+ * its writeExternal method, with no class descriptors. Nested values written
+ * through writeObject are tagged as well: byte arrays, MAC vectors, sets and
+ * nested messages have their own encoding, while any other object (such as the
+ * application state or a view carried by state transfer messages) falls back to
+ * Java serialization.
+ *
+ * Output buffers are pooled per thread, so encoding a message allocates only
+ * the returned array.
+ */
+public class SystemMessageCodec {
+
+	// Initial size of the pooled per-thread output buffer
+	public static int INITIAL_BUFFER_SIZE = 1024;
+
+	// Pooled buffers which grew beyond this size are not kept
+	public static int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+	// Message type tags
+	private static final byte CONSENSUS_MESSAGE = 1;
+	private static final byte LC_MESSAGE = 2;
+	private static final byte STANDARD_SM_MESSAGE = 3;
+	private static final byte CST_SM_MESSAGE = 4;
+	private static final byte FORWARDED_MESSAGE = 5;
+	private static final byte VM_MESSAGE = 6;
+	private static final byte TOM_MESSAGE = 7;
+
+	// Value tags, distinct from the message type tags
+	private static final byte NULL_VALUE = 0;
+	private static final byte BYTE_ARRAY_VALUE = 16;
+	private static final byte MAC_VECTOR_VALUE = 17;
+	private static final byte SET_VALUE = 18;
+	private static final byte MESSAGE_CONTEXT_VALUE = 19;
+	private static final byte SERIALIZED_VALUE = 20;
+
+	// Format version of encoded batches, Java serialization streams start 0xAC
+	private static final byte COMMANDS_INFO_VERSION = 1;
+
+	private static final ThreadLocal<BinaryObjectOutput> pooledOutput = new ThreadLocal<BinaryObjectOutput>() {
+		@Override
+		protected BinaryObjectOutput initialValue() {
+			return new BinaryObjectOutput(INITIAL_BUFFER_SIZE);
+		}
+	};
+
+	private static BinaryObjectOutput acquireOutput() {
+		final BinaryObjectOutput out = pooledOutput.get();
+		out.reset();
+		return out;
+	}
+
+	private static byte[] releaseOutput(final BinaryObjectOutput out) {
+		final byte[] bytes = out.toByteArray();
+		if (out.capacity() > MAX_POOLED_BUFFER_SIZE) {
+			pooledOutput.remove();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Encodes a message sent between replicas
+	 * 
+	 * @param message
+	 * @return the encoded message
+	 * @throws IOException
+	 *             if the message is of an unknown type
+	 */
+	public static byte[] encode(final SystemMessage message) throws IOException {
+		final BinaryObjectOutput out = acquireOutput();
+		writeMessage(out, message);
+		return releaseOutput(out);
+	}
+
+	/**
+	 * Decodes a message sent between replicas
+	 * 
+	 * @param data
+	 * @param offset
+	 * @param length
+	 * @return the decoded message
+	 * @throws IOException
+	 *             if the data is not a well formed message
+	 */
+	public static SystemMessage decode(final byte[] data, final int offset, final int length)
+			throws IOException, ClassNotFoundException {
+		final BinaryObjectInput in = new BinaryObjectInput(data, offset, length);
+		return readMessage(in, in.readByte());
+	}
+
+	public static SystemMessage decode(final byte[] data) throws IOException, ClassNotFoundException {
+		return decode(data, 0, data.length);
+	}
+
+	/**
+	 * Encodes a batch of commands for the durable log
+	 */
+	public static byte[] encodeCommandsInfo(final CommandsInfo commandsInfo) throws IOException {
+		final BinaryObjectOutput out = acquireOutput();
+		out.writeByte(COMMANDS_INFO_VERSION);
+
+		if (commandsInfo.commands == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(commandsInfo.commands.length);
+			for (final byte[] command : commandsInfo.commands) {
+				out.writeByteArray(command);
+			}
+		}
+
+		if (commandsInfo.msgCtx == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(commandsInfo.msgCtx.length);
+			for (final MessageContext msgCtx : commandsInfo.msgCtx) {
+				writeValue(out, msgCtx);
+			}
+		}
+
+		return releaseOutput(out);
+	}
+
+	/**
+	 * Returns true if the data was written by {@link #encodeCommandsInfo}, rather
+	 * than with Java serialization by earlier versions
+	 */
+	public static boolean isEncodedCommandsInfo(final byte[] data) {
+		return data.length > 0 && data[0] == COMMANDS_INFO_VERSION;
+	}
+
+	public static CommandsInfo decodeCommandsInfo(final byte[] data) throws IOException, ClassNotFoundException {
+		final BinaryObjectInput in = new BinaryObjectInput(data);
+		final byte version = in.readByte();
+		if (version != COMMANDS_INFO_VERSION) {
+			throw new IOException("Unsupported batch format: " + version);
+		}
+
+		final CommandsInfo commandsInfo = new CommandsInfo();
+
+		final int commandCount = in.readLength(4);
+		if (commandCount >= 0) {
+			commandsInfo.commands = new byte[commandCount][];
+			for (int i = 0; i < commandCount; i++) {
+				commandsInfo.commands[i] = in.readByteArray();
+			}
+		}
+
+		final int contextCount = in.readLength(1);
+		if (contextCount >= 0) {
+			commandsInfo.msgCtx = new MessageContext[contextCount];
+			for (int i = 0; i < contextCount; i++) {
+				commandsInfo.msgCtx[i] = (MessageContext) readValue(in);
+			}
+		}
+
+		return commandsInfo;
+	}
+
+	private static void writeMessage(final BinaryObjectOutput out, final SystemMessage message) throws IOException {
+		if (message instanceof TOMMessage) {
+			// Requests carry their own compact format, used to forward them
+			out.writeByte(TOM_MESSAGE);
+			final TOMMessage request = (TOMMessage) message;
+			request.wExternal(out);
+			out.writeByteArray(request.serializedMessageSignature);
+			return;
+		}
+
+		out.writeByte(getMessageType(message));
+		message.writeExternal(out);
+	}
+
+	private static byte getMessageType(final SystemMessage message) throws IOException {
+		if (message instanceof ConsensusMessage) {
+			return CONSENSUS_MESSAGE;
+		} else if (message instanceof LCMessage) {
+			return LC_MESSAGE;
+		} else if (message instanceof StandardSMMessage) {
+			return STANDARD_SM_MESSAGE;
+		} else if (message instanceof CSTSMMessage) {
+			return CST_SM_MESSAGE;
+		} else if (message instanceof ForwardedMessage) {
+			return FORWARDED_MESSAGE;
+		} else if (message instanceof VMMessage) {
+			return VM_MESSAGE;
+		} else {
+			throw new IOException("No encoding for message of type " + message.getClass().getName());
+		}
+	}
+
+	private static SystemMessage readMessage(final BinaryObjectInput in, final byte type)
+			throws IOException, ClassNotFoundException {
+		final SystemMessage message;
+		switch (type) {
+		case CONSENSUS_MESSAGE:
+			message = new ConsensusMessage();
+			break;
+		case LC_MESSAGE:
+			message = new LCMessage();
+			break;
+		case STANDARD_SM_MESSAGE:
+			message = new StandardSMMessage();
+			break;
+		case CST_SM_MESSAGE:
+			message = new CSTSMMessage();
+			break;
+		case FORWARDED_MESSAGE:
+			message = new ForwardedMessage();
+			break;
+		case VM_MESSAGE:
+			message = new VMMessage();
+			break;
+		case TOM_MESSAGE:
+			final TOMMessage request = new TOMMessage();
+			request.rExternal(in);
+			request.serializedMessageSignature = in.readByteArray();
+			request.signed = (request.serializedMessageSignature != null);
+			return request;
+		default:
+			throw new IOException("Unknown message type: " + type);
+		}
+		message.readExternal(in);
+		return message;
+	}
+
+	/**
+	 * Writes a value passed to writeObject by a message
+	 */
+	static void writeValue(final BinaryObjectOutput out, final Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(NULL_VALUE);
+		} else if (value instanceof byte[]) {
+			out.writeByte(BYTE_ARRAY_VALUE);
+			out.writeByteArray((byte[]) value);
+		} else if (value instanceof SystemMessage) {
+			writeMessage(out, (SystemMessage) value);
+		} else if (isMacVector(value)) {
+			@SuppressWarnings("unchecked")
+			final Map<Integer, byte[]> macVector = (Map<Integer, byte[]>) value;
+			out.writeByte(MAC_VECTOR_VALUE);
+			out.writeInt(macVector.size());
+			for (final Entry<Integer, byte[]> entry : macVector.entrySet()) {
+				out.writeInt(entry.getKey());
+				out.writeByteArray(entry.getValue());
+			}
+		} else if (value.getClass() == HashSet.class) {
+			final Set<?> set = (Set<?>) value;
+			out.writeByte(SET_VALUE);
+			out.writeInt(set.size());
+			for (final Object element : set) {
+				writeValue(out, element);
+			}
+		} else if (value.getClass() == MessageContext.class) {
+			out.writeByte(MESSAGE_CONTEXT_VALUE);
+			writeMessageContext(out, (MessageContext) value);
+		} else {
+			out.writeByte(SERIALIZED_VALUE);
+			out.writeSerializedObject(value);
+		}
+	}
+
+	/**
+	 * Reads a value written by {@link #writeValue}
+	 */
+	static Object readValue(final BinaryObjectInput in) throws IOException, ClassNotFoundException {
+		final byte tag = in.readByte();
+		switch (tag) {
+		case NULL_VALUE:
+			return null;
+		case BYTE_ARRAY_VALUE:
+			return in.readByteArray();
+		case MAC_VECTOR_VALUE:
+			// Each entry holds an id and the length of its MAC
+			final int macCount = in.readLength(8);
+			if (macCount < 0) {
+				throw new IOException("Invalid MAC vector size: " + macCount);
+			}
+			final HashMap<Integer, byte[]> macVector = new HashMap<>();
+			for (int i = 0; i < macCount; i++) {
+				final int id = in.readInt();
+				macVector.put(id, in.readByteArray());
+			}
+			return macVector;
+		case SET_VALUE:
+			// Each element holds at least its tag
+			final int elementCount = in.readLength(1);
+			if (elementCount < 0) {
+				throw new IOException("Invalid set size: " + elementCount);
+			}
+			final HashSet<Object> set = new HashSet<>();
+			for (int i = 0; i < elementCount; i++) {
+				set.add(readValue(in));
+			}
+			return set;
+		case MESSAGE_CONTEXT_VALUE:
+			return readMessageContext(in);
+		case SERIALIZED_VALUE:
+			return in.readSerializedObject();
+		default:
+			return readMessage(in, tag);
+		}
+	}
+
+	private static boolean isMacVector(final Object value) {
+		if (value.getClass() != HashMap.class) {
+			return false;
+		}
+		for (final Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+			if (!(entry.getKey() instanceof Integer) || !(entry.getValue() instanceof byte[])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the fields of a message context which are kept by CommandsInfo
+	 */
+	private static void writeMessageContext(final BinaryObjectOutput out, final MessageContext msgCtx)
+			throws IOException {
+		out.writeInt(msgCtx.getSender());
+		out.writeInt(msgCtx.getViewID());
+		out.writeInt(msgCtx.getType() == null ? -1 : msgCtx.getType().toInt());
+		out.writeInt(msgCtx.getSession());
+		out.writeInt(msgCtx.getSequence());
+		out.writeInt(msgCtx.getOperationId());
+		out.writeInt(msgCtx.getReplyServer());
+		out.writeByteArray(msgCtx.getSignature());
+		out.writeLong(msgCtx.getTimestamp());
+		out.writeInt(msgCtx.getNumOfNonces());
+		out.writeLong(msgCtx.getSeed());
+		out.writeInt(msgCtx.getRegency());
+		out.writeInt(msgCtx.getLeader());
+		out.writeInt(msgCtx.getConsensusId());
+		writeValue(out, msgCtx.getProof());
+		writeValue(out, msgCtx.getFirstInBatch());
+		out.writeBoolean(msgCtx.isNoOp());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static MessageContext readMessageContext(final BinaryObjectInput in)
+			throws IOException, ClassNotFoundException {
+		final int sender = in.readInt();
+		final int viewID = in.readInt();
+		final int type = in.readInt();
+		final int session = in.readInt();
+		final int sequence = in.readInt();
+		final int operationId = in.readInt();
+		final int replyServer = in.readInt();
+		final byte[] signature = in.readByteArray();
+		final long timestamp = in.readLong();
+		final int numOfNonces = in.readInt();
+		final long seed = in.readLong();
+		final int regency = in.readInt();
+		final int leader = in.readInt();
+		final int consensusId = in.readInt();
+		final Set<ConsensusMessage> proof = (Set<ConsensusMessage>) readValue(in);
+		final TOMMessage firstInBatch = (TOMMessage) readValue(in);
+		final boolean noOp = in.readBoolean();
+
+		return new MessageContext(sender, viewID, (type == -1) ? null : TOMMessageType.fromInt(type), session,
+				sequence, operationId, replyServer, signature, timestamp, numOfNonces, seed, regency, leader,
+				consensusId, proof, firstInBatch, noOp);
+	}
+
+}
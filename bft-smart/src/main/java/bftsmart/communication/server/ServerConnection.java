@@ -15,19 +15,21 @@ limitations under the License.
 */
 package bftsmart.communication.server;
 
-import java.io.ByteArrayInputStream;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.math.BigInteger;
 import java.net.Socket;
 import java.net.UnknownHostException;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
@@ -39,6 +41,7 @@ import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
 
 import bftsmart.communication.SystemMessage;
+import bftsmart.communication.codec.SystemMessageCodec;
 import bftsmart.reconfiguration.ServerViewController;
 import bftsmart.reconfiguration.VMMessage;
 import bftsmart.tom.ServiceReplica;
@@ -55,6 +58,24 @@ import bftsmart.tom.util.TOMUtil;
 public class ServerConnection {
 
 	private static final long POOL_TIME = 5000;
+
+	// Messages queued for the same replica are written to the socket together
+	public static int MAX_COALESCED_MESSAGES = 64;
+	public static int MAX_COALESCED_BYTES = 256 * 1024;
+
+	// How long a sender that is not a protocol thread waits for space in a full
+	// out queue before discarding
+	public static long OUT_QUEUE_WAIT_MILLIS = 50;
+
+	// Size of the buffer in front of the socket input stream
+	public static int RECEIVE_BUFFER_SIZE = 64 * 1024;
+
+	// Flag following the data of a frame: no MAC, a MAC over the frame and any
+	// preceding frames flagged MAC_FOLLOWS, or a MAC in a later frame
+	private static final byte NO_MAC = 0;
+	private static final byte MAC = 1;
+	private static final byte MAC_FOLLOWS = 2;
+
 	// private static final int SEND_QUEUE_SIZE = 50;
 	private ServerViewController controller;
 	private Socket socket;
@@ -74,6 +95,8 @@ public class ServerConnection {
 	/** Only used when there is no sender Thread */
 	private Lock sendLock;
 	private boolean doWork = true;
+	/** Frames to be written with a single socket write, guarded by the sender */
+	private ByteArrayOutputStream frameBuffer = new ByteArrayOutputStream(8192);
 
 	public ServerConnection(ServerViewController controller, Socket socket, int remoteId,
 			LinkedBlockingQueue<SystemMessage> inQueue, ServiceReplica replica) {
@@ -109,7 +132,8 @@ public class ServerConnection {
 		if (this.socket != null) {
 			try {
 				socketOutStream = new DataOutputStream(this.socket.getOutputStream());
-				socketInStream = new DataInputStream(this.socket.getInputStream());
+				socketInStream = new DataInputStream(
+						new BufferedInputStream(this.socket.getInputStream(), RECEIVE_BUFFER_SIZE));
 			} catch (IOException ex) {
 				Logger.println("Error creating connection to " + remoteId);
 				ex.printStackTrace();
@@ -152,9 +176,20 @@ public class ServerConnection {
 	}
 
 	/**
-	 * Used to send packets to the remote server.
+	 * Used to send packets to the remote server. Never waits for a full out queue,
+	 * so it is safe to call from protocol threads.
 	 */
 	public final void send(byte[] data, boolean useMAC) throws InterruptedException {
+		send(data, useMAC, false);
+	}
+
+	/**
+	 * Used to send packets to the remote server. If mayWait is set the caller
+	 * waits up to OUT_QUEUE_WAIT_MILLIS for space in a full out queue while the
+	 * remote server is connected, which must only be used by threads that do not
+	 * run the protocol.
+	 */
+	public final void send(byte[] data, boolean useMAC, boolean mayWait) throws InterruptedException {
 		if (useSenderThread) {
 			// only enqueue messages if there queue is not full
 			if (!useMAC) {
@@ -162,47 +197,46 @@ public class ServerConnection {
 				noMACs.add(System.identityHashCode(data));
 			}
 
-			if (!outQueue.offer(data)) {
+			// Never block a protocol thread, nor any thread on a replica which is down
+			final long wait = (mayWait && socket != null) ? OUT_QUEUE_WAIT_MILLIS : 0;
+			if (!outQueue.offer(data, wait, TimeUnit.MILLISECONDS)) {
+				noMACs.remove(System.identityHashCode(data));
 				Logger.println("(ServerConnection.send) out queue for " + remoteId + " full (message discarded).");
 			}
 		} else {
 			sendLock.lock();
-			sendBytes(data, useMAC);
-			sendLock.unlock();
+			try {
+				sendBytes(new byte[][] { data }, new boolean[] { useMAC }, 1);
+			} finally {
+				sendLock.unlock();
+			}
 		}
 	}
 
 	/**
-	 * try to send a message through the socket if some problem is detected, a
+	 * try to send messages through the socket if some problem is detected, a
 	 * reconnection is done
+	 * 
+	 * The frames of all messages are written with a single out stream write, and
+	 * consecutive messages sent with a MAC share a single MAC
 	 */
-	private final void sendBytes(byte[] messageData, boolean useMAC) {
+	private final void sendBytes(byte[][] messages, boolean[] useMACs, int count) {
 		boolean abort = false;
 		do {
 			if (abort)
 				return; // if there is a need to reconnect, abort this method
 			if (socket != null && socketOutStream != null) {
 				try {
-					// do an extra copy of the data to be sent, but on a single out stream write
-					byte[] mac = (useMAC && this.controller.getStaticConf().getUseMACs() == 1)
-							? macSend.doFinal(messageData)
-							: null;
-					byte[] data = new byte[5 + messageData.length + ((mac != null) ? mac.length : 0)];
-					int value = messageData.length;
-
-					System.arraycopy(new byte[] { (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8),
-							(byte) value }, 0, data, 0, 4);
-					System.arraycopy(messageData, 0, data, 4, messageData.length);
-					if (mac != null) {
-						// System.arraycopy(mac,0,data,4+messageData.length,mac.length);
-						System.arraycopy(new byte[] { (byte) 1 }, 0, data, 4 + messageData.length, 1);
-						System.arraycopy(mac, 0, data, 5 + messageData.length, mac.length);
-					} else {
-						System.arraycopy(new byte[] { (byte) 0 }, 0, data, 4 + messageData.length, 1);
+					frameBuffer.reset();
+					appendFrames(messages, useMACs, count);
+					frameBuffer.writeTo(socketOutStream);
+
+					// Do not hold on to the space of an unusually large batch, reset()
+					// would keep the grown array
+					if (frameBuffer.size() > MAX_COALESCED_BYTES) {
+						frameBuffer = new ByteArrayOutputStream(8192);
 					}
 
-					socketOutStream.write(data);
-
 					return;
 				} catch (IOException ex) {
 					closeSocket();
@@ -216,6 +250,48 @@ public class ServerConnection {
 		} while (doWork);
 	}
 
+	/**
+	 * Appends the frames of the messages to the frame buffer. A run of messages
+	 * sent with a MAC is authenticated by one MAC over all of them, carried by the
+	 * last frame of the run. The TTP keeps one MAC per message, as its messages
+	 * are received by a TTPReceiverThread.
+	 */
+	private void appendFrames(byte[][] messages, boolean[] useMACs, int count) {
+		final boolean macs = (this.controller.getStaticConf().getUseMACs() == 1);
+		final boolean shareMACs = !this.controller.getStaticConf().isTheTTP();
+
+		for (int i = 0; i < count; i++) {
+			if (macs && useMACs[i]) {
+				macSend.update(messages[i]);
+				if (shareMACs && (i + 1 < count) && useMACs[i + 1]) {
+					appendFrame(messages[i], MAC_FOLLOWS, null);
+				} else {
+					appendFrame(messages[i], MAC, macSend.doFinal());
+				}
+			} else {
+				appendFrame(messages[i], NO_MAC, null);
+			}
+		}
+	}
+
+	/**
+	 * Appends the frame of a message to the frame buffer: its length, the message,
+	 * and a flag followed by the MAC if the frame carries one
+	 */
+	private void appendFrame(byte[] messageData, byte flag, byte[] mac) {
+		int value = messageData.length;
+
+		frameBuffer.write(value >>> 24);
+		frameBuffer.write(value >>> 16);
+		frameBuffer.write(value >>> 8);
+		frameBuffer.write(value);
+		frameBuffer.write(messageData, 0, messageData.length);
+		frameBuffer.write(flag);
+		if (mac != null) {
+			frameBuffer.write(mac, 0, mac.length);
+		}
+	}
+
 	// ******* EDUARDO BEGIN **************//
 	// return true of a process shall connect to the remote process, false otherwise
 	private boolean isToConnect() {
@@ -304,7 +380,8 @@ public class ServerConnection {
 			if (socket != null) {
 				try {
 					socketOutStream = new DataOutputStream(socket.getOutputStream());
-					socketInStream = new DataInputStream(socket.getInputStream());
+					socketInStream = new DataInputStream(
+							new BufferedInputStream(socket.getInputStream(), RECEIVE_BUFFER_SIZE));
 
 					authKey = null;
 					authenticateAndEstablishAuthKey();
@@ -454,6 +531,8 @@ public class ServerConnection {
 		@Override
 		public void run() {
 			byte[] data = null;
+			final byte[][] messages = new byte[MAX_COALESCED_MESSAGES][];
+			final boolean[] sendMACs = new boolean[MAX_COALESCED_MESSAGES];
 
 			while (doWork) {
 				// get a message to be sent
@@ -462,13 +541,26 @@ public class ServerConnection {
 				} catch (InterruptedException ex) {
 				}
 
-				if (data != null) {
+				// coalesce it with the messages queued behind it
+				int count = 0;
+				int bytes = 0;
+				while (data != null) {
 					// sendBytes(data, noMACs.contains(System.identityHashCode(data)));
 					int ref = System.identityHashCode(data);
 					boolean sendMAC = !noMACs.remove(ref);
 					Logger.println(
 							"(ServerConnection.run) " + (sendMAC ? "Sending" : "Not sending") + " MAC for data " + ref);
-					sendBytes(data, sendMAC);
+					messages[count] = data;
+					sendMACs[count] = sendMAC;
+					count++;
+					bytes += data.length;
+
+					data = (count < messages.length && bytes < MAX_COALESCED_BYTES) ? outQueue.poll() : null;
+				}
+
+				if (count > 0) {
+					sendBytes(messages, sendMACs, count);
+					Arrays.fill(messages, 0, count, null);
 				}
 			}
 
@@ -494,6 +586,9 @@ public class ServerConnection {
 				ex.printStackTrace();
 			}
 
+			// Messages whose MAC is carried by a later frame
+			final List<byte[]> awaitingMAC = new ArrayList<byte[]>();
+
 			while (doWork) {
 				if (socket != null && socketInStream != null) {
 					try {
@@ -509,37 +604,41 @@ public class ServerConnection {
 
 						// read mac
 						boolean result = true;
+						boolean authenticated = false;
 
 						byte hasMAC = socketInStream.readByte();
-						if (controller.getStaticConf().getUseMACs() == 1 && hasMAC == 1) {
+						if (controller.getStaticConf().getUseMACs() == 1 && hasMAC == MAC_FOLLOWS) {
+							macReceive.update(data);
+							awaitingMAC.add(data);
+							continue;
+						} else if (controller.getStaticConf().getUseMACs() == 1 && hasMAC == MAC) {
 							read = 0;
 							do {
 								read += socketInStream.read(receivedMac, read, macSize - read);
 							} while (read < macSize);
 
-							result = Arrays.equals(macReceive.doFinal(data), receivedMac);
+							// The MAC covers this message and those awaiting it
+							macReceive.update(data);
+							result = Arrays.equals(macReceive.doFinal(), receivedMac);
+							authenticated = true;
+						} else if (!awaitingMAC.isEmpty()) {
+							// The run of messages sharing a MAC ended without one
+							macReceive.reset();
+							result = false;
 						}
 
 						if (result) {
-							SystemMessage sm = (SystemMessage) (new ObjectInputStream(new ByteArrayInputStream(data))
-									.readObject());
-							sm.authenticated = (controller.getStaticConf().getUseMACs() == 1 && hasMAC == 1);
-
-							if (sm.getSender() == remoteId) {
-								if (!inQueue.offer(sm)) {
-									Logger.println("(ReceiverThread.run) in queue full (message from " + remoteId
-											+ " discarded).");
-									System.out.println("(ReceiverThread.run) in queue full (message from " + remoteId
-											+ " discarded).");
-								}
+							for (final byte[] awaiting : awaitingMAC) {
+								deliver(awaiting, authenticated);
 							}
+							deliver(data, authenticated);
 						} else {
 							// TODO: violation of authentication... we should do something
 							Logger.println("WARNING: Violation of authentication in message received from " + remoteId);
 						}
-					} catch (ClassNotFoundException ex) {
-						// invalid message sent, just ignore;
+						awaitingMAC.clear();
 					} catch (IOException ex) {
+						awaitingMAC.clear();
 						if (doWork) {
 							Logger.println("Closing socket and reconnecting");
 							closeSocket();
@@ -551,6 +650,23 @@ public class ServerConnection {
 				}
 			}
 		}
+
+		private void deliver(byte[] data, boolean authenticated) throws IOException {
+			try {
+				SystemMessage sm = SystemMessageCodec.decode(data);
+				sm.authenticated = authenticated;
+
+				if (sm.getSender() == remoteId) {
+					if (!inQueue.offer(sm)) {
+						Logger.println("(ReceiverThread.run) in queue full (message from " + remoteId + " discarded).");
+						System.out.println(
+								"(ReceiverThread.run) in queue full (message from " + remoteId + " discarded).");
+					}
+				}
+			} catch (ClassNotFoundException ex) {
+				// invalid message sent, just ignore;
+			}
+		}
 	}
 
 	// ******* EDUARDO BEGIN: special thread for receiving messages indicating the
@@ -609,8 +725,7 @@ public class ServerConnection {
 						}
 
 						if (result) {
-							SystemMessage sm = (SystemMessage) (new ObjectInputStream(new ByteArrayInputStream(data))
-									.readObject());
+							SystemMessage sm = SystemMessageCodec.decode(data);
 
 							if (sm.getSender() == remoteId) {
 								// System.out.println("Mensagem recebia de: "+remoteId);
@@ -15,10 +15,8 @@ limitations under the License.
 */
 package bftsmart.communication.server;
 
-import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
@@ -38,8 +36,10 @@ import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
 
 import bftsmart.communication.SystemMessage;
+import bftsmart.communication.codec.SystemMessageCodec;
 import bftsmart.reconfiguration.ServerViewController;
 import bftsmart.tom.ServiceReplica;
+import bftsmart.tom.core.messages.ForwardedMessage;
 
 /**
  *
@@ -148,14 +148,17 @@ public class ServersCommunicationLayer extends Thread {
 	// ******* EDUARDO END **************//
 
 	public final void send(int[] targets, SystemMessage sm, boolean useMAC) {
-		ByteArrayOutputStream bOut = new ByteArrayOutputStream(248);
+		byte[] data = null;
 		try {
-			new ObjectOutputStream(bOut).writeObject(sm);
+			data = SystemMessageCodec.encode(sm);
 		} catch (IOException ex) {
 			Logger.getLogger(ServerConnection.class.getName()).log(Level.SEVERE, null, ex);
+			return;
 		}
 
-		byte[] data = bOut.toByteArray();
+		// Forwarded requests are sent by the request timer rather than a protocol
+		// thread, so they may wait for a slow replica to drain its out queue
+		final boolean mayWait = (sm instanceof ForwardedMessage);
 
 		for (int i : targets) {
 			try {
@@ -166,7 +169,7 @@ public class ServersCommunicationLayer extends Thread {
 					// System.out.println("Going to send message to: "+i);
 					// ******* EDUARDO BEGIN **************//
 					// connections[i].send(data);
-					getConnection(i).send(data, useMAC);
+					getConnection(i).send(data, useMAC, mayWait);
 					// ******* EDUARDO END **************//
 				}
 			} catch (InterruptedException ex) {
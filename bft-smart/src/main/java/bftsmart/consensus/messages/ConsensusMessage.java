@@ -20,6 +20,7 @@ import java.io.ObjectInput;
 import java.io.ObjectOutput;
 
 import bftsmart.communication.SystemMessage;
+import bftsmart.communication.codec.BinaryObjectInput;
 import bftsmart.consensus.messages.MessageFactory.PaxosMessageType;
 
 /**
@@ -137,13 +138,8 @@ public class ConsensusMessage extends SystemMessage {
 
 		if (toRead != -1) {
 
-			value = new byte[toRead];
-
-			do {
-
-				toRead -= in.read(value, value.length - toRead, toRead);
-
-			} while (toRead > 0);
+			value = BinaryObjectInput.newByteArray(in, toRead);
+			in.readFully(value);
 
 		}
 
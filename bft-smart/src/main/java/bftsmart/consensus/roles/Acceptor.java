@@ -15,9 +15,7 @@ limitations under the License.
 */
 package bftsmart.consensus.roles;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
@@ -29,6 +27,7 @@ import javax.crypto.Mac;
 import javax.crypto.SecretKey;
 
 import bftsmart.communication.ServerCommunicationSystem;
+import bftsmart.communication.codec.SystemMessageCodec;
 import bftsmart.consensus.Consensus;
 import bftsmart.consensus.Epoch;
 import bftsmart.consensus.messages.ConsensusMessage;
@@ -118,6 +117,11 @@ public final class Acceptor {
 		if (executionManager.checkLimits(msg)) {
 			Logger.println("processing paxos msg with id " + msg.getNumber());
 			processMessage(msg);
+
+			// If this decided a consensus, the leader may have already proposed the next
+			if (controller.getStaticConf().getPipelineDepth() > 1) {
+				tomLayer.processOutOfContext();
+			}
 		} else {
 			Logger.println("out of context msg with id " + msg.getNumber());
 			tomLayer.processOutOfContext();
@@ -338,15 +342,13 @@ public final class Acceptor {
 	 *            The epoch during in which the consensus message was created
 	 */
 	private void insertProof(ConsensusMessage cm, Epoch epoch) {
-		ByteArrayOutputStream bOut = new ByteArrayOutputStream(248);
+		byte[] data = null;
 		try {
-			new ObjectOutputStream(bOut).writeObject(cm);
+			data = SystemMessageCodec.encode(cm);
 		} catch (IOException ex) {
 			ex.printStackTrace();
 		}
 
-		byte[] data = bOut.toByteArray();
-
 		// check if consensus contains reconfiguration request
 		TOMMessage[] msgs = epoch.deserializedPropValue;
 		boolean hasReconf = false;
@@ -16,10 +16,8 @@ limitations under the License.
 package bftsmart.reconfiguration;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Scanner;
@@ -27,6 +25,7 @@ import java.util.StringTokenizer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import bftsmart.communication.codec.SystemMessageCodec;
 import bftsmart.communication.server.ServerConnection;
 import bftsmart.reconfiguration.views.View;
 
@@ -124,22 +123,21 @@ public class ViewManager {
 	}
 
 	public void sendResponse(Integer[] targets, VMMessage sm) {
-		ByteArrayOutputStream bOut = new ByteArrayOutputStream();
-
+		byte[] data = null;
 		try {
-			new ObjectOutputStream(bOut).writeObject(sm);
+			data = SystemMessageCodec.encode(sm);
 		} catch (IOException ex) {
 			Logger.getLogger(ServerConnection.class.getName()).log(Level.SEVERE, null, ex);
+			return;
 		}
 
-		byte[] data = bOut.toByteArray();
-
 		for (Integer i : targets) {
 			// br.ufsc.das.tom.util.Logger.println("(ServersCommunicationLayer.send) Sending
 			// msg to replica "+i);
 			try {
 				if (i.intValue() != id) {
-					getConnection(i.intValue()).send(data, true);
+					// The view manager runs no protocol, so it may wait for a full queue
+					getConnection(i.intValue()).send(data, true, true);
 				}
 			} catch (InterruptedException ex) {
 				// ex.printStackTrace();
@@ -31,6 +31,7 @@ public class TOMConfiguration extends Configuration {
 	protected int requestTimeout;
 	protected int tomPeriod;
 	protected int paxosHighMark;
+	protected int pipelineDepth;
 	protected int revivalHighMark;
 	protected int timeoutHighMark;
 	protected int replyVerificationTime;
@@ -114,6 +115,20 @@ public class TOMConfiguration extends Configuration {
 				}
 			}
 
+			s = (String) configs.remove("system.totalordermulticast.pipeline_depth");
+			if (s == null) {
+				pipelineDepth = 1;
+			} else {
+				pipelineDepth = Integer.parseInt(s);
+				if (pipelineDepth < 1) {
+					pipelineDepth = 1;
+				}
+				// Replicas discard messages beyond the high mark
+				if (pipelineDepth >= paxosHighMark) {
+					pipelineDepth = paxosHighMark - 1;
+				}
+			}
+
 			s = (String) configs.remove("system.totalordermulticast.revival_highMark");
 			if (s == null) {
 				revivalHighMark = 10;
@@ -385,6 +400,10 @@ public class TOMConfiguration extends Configuration {
 		return paxosHighMark;
 	}
 
+	public int getPipelineDepth() {
+		return pipelineDepth;
+	}
+
 	public int getRevivalHighMark() {
 		return revivalHighMark;
 	}
@@ -2,7 +2,8 @@ package bftsmart.tom;
 
 import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import bftsmart.communication.client.ReplyListener;
 import bftsmart.reconfiguration.views.View;
@@ -22,11 +23,12 @@ import bftsmart.tom.util.TOMUtil;
 public class AsynchServiceProxy extends ServiceProxy {
 
 	/**
-	 *
+	 * Accessed from both the sending threads (under canSendLock) and the reply
+	 * thread (under canReceiveLock), so these must be thread-safe
 	 */
-	private HashMap<Integer, RequestContext> requestsContext;
-	private HashMap<Integer, TOMMessage[]> requestsReplies;
-	private HashMap<Integer, Integer> requestsAlias;
+	private Map<Integer, RequestContext> requestsContext;
+	private Map<Integer, TOMMessage[]> requestsReplies;
+	private Map<Integer, Integer> requestsAlias;
 
 	/**
 	 *
@@ -57,9 +59,9 @@ public class AsynchServiceProxy extends ServiceProxy {
 	}
 
 	private void init() {
-		requestsContext = new HashMap<>();
-		requestsReplies = new HashMap<>();
-		requestsAlias = new HashMap<>();
+		requestsContext = new ConcurrentHashMap<>();
+		requestsReplies = new ConcurrentHashMap<>();
+		requestsAlias = new ConcurrentHashMap<>();
 	}
 
 	private View newView(byte[] bytes) {
@@ -16,6 +16,7 @@
  */
 package bftsmart.tom;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.locks.Condition;
@@ -43,7 +44,9 @@ import bftsmart.tom.server.Recoverable;
 import bftsmart.tom.server.Replier;
 import bftsmart.tom.server.RequestVerifier;
 import bftsmart.tom.server.SingleExecutable;
+import bftsmart.tom.server.defaultservices.DefaultRecoverable;
 import bftsmart.tom.server.defaultservices.DefaultReplier;
+import bftsmart.tom.server.defaultservices.DefaultSingleRecoverable;
 import bftsmart.tom.util.ShutdownHookThread;
 import bftsmart.tom.util.TOMUtil;
 
@@ -298,6 +301,9 @@ public class ServiceReplica {
 		int consensusCount = 0;
 		List<TOMMessage> toBatch = new ArrayList<>();
 		List<MessageContext> msgCtxts = new ArrayList<>();
+		// Replies are held until the log covers every instance delivered here
+		List<TOMMessage> toReply = new ArrayList<>();
+		List<MessageContext> replyCtxts = new ArrayList<>();
 		boolean noop = true;
 
 		for (TOMMessage[] requestsFromConsensus : requests) {
@@ -376,9 +382,8 @@ public class ServiceReplica {
 								request.reply = new TOMMessage(id, request.getSession(), request.getSequence(),
 										request.getOperationId(), response, SVController.getCurrentViewId(),
 										request.getReqType());
-								bftsmart.tom.util.Logger.println(
-										"(ServiceReplica.receiveMessages) sending reply to " + request.getSender());
-								replier.manageReply(request, msgCtx);
+								toReply.add(request);
+								replyCtxts.add(msgCtx);
 							} else if (executor instanceof SingleExecutable) {
 
 								bftsmart.tom.util.Logger
@@ -405,9 +410,8 @@ public class ServiceReplica {
 								request.reply = new TOMMessage(id, request.getSession(), request.getSequence(),
 										request.getOperationId(), response, SVController.getCurrentViewId(),
 										request.getReqType());
-								bftsmart.tom.util.Logger.println(
-										"(ServiceReplica.receiveMessages) sending reply to " + request.getSender());
-								replier.manageReply(request, msgCtx);
+								toReply.add(request);
+								replyCtxts.add(msgCtx);
 							} else { // this code should never be executed
 								throw new UnsupportedOperationException("Non-existent interface");
 							}
@@ -486,6 +490,14 @@ public class ServiceReplica {
 			consensusCount++;
 		}
 
+		if (!toReply.isEmpty() && syncLog()) {
+			for (int index = 0; index < toReply.size(); index++) {
+				bftsmart.tom.util.Logger.println(
+						"(ServiceReplica.receiveMessages) sending reply to " + toReply.get(index).getSender());
+				replier.manageReply(toReply.get(index), replyCtxts.get(index));
+			}
+		}
+
 		if (executor instanceof BatchExecutable && numRequests > 0) {
 			// Make new batch to deliver
 			byte[][] batch = new byte[numRequests][];
@@ -502,6 +514,9 @@ public class ServiceReplica {
 
 			// Deliver the batch and wait for replies
 			byte[][] replies = ((BatchExecutable) executor).executeBatch(batch, msgContexts);
+			if (!syncLog()) {
+				return;
+			}
 
 			// Send the replies back to the client
 			for (int index = 0; index < toBatch.size(); index++) {
@@ -528,6 +543,28 @@ public class ServiceReplica {
 		}
 	}
 
+	/**
+	 * Waits until the recoverer's log covers the consensus instances delivered so
+	 * far, so a single force is shared by all of them
+	 * 
+	 * @return false if they could not be logged, their replies must then not be
+	 *         sent
+	 */
+	private boolean syncLog() {
+		try {
+			if (recoverer instanceof DefaultSingleRecoverable) {
+				((DefaultSingleRecoverable) recoverer).syncLog();
+			} else if (recoverer instanceof DefaultRecoverable) {
+				((DefaultRecoverable) recoverer).syncLog();
+			}
+			return true;
+		} catch (IOException e) {
+			System.err.println("(ServiceReplica.receiveMessages) not replying to requests which could not be logged: "
+					+ e.getMessage());
+			return false;
+		}
+	}
+
 	/**
 	 * This method initializes the object
 	 *
@@ -587,6 +624,10 @@ public class ServiceReplica {
 		return replicaCtx;
 	}
 
+	public TOMLayer getTOMLayer() {
+		return tomLayer;
+	}
+
 	public ServerCommunicationSystem getServerCommunicationSystem() {
 
 		return cs;
@@ -82,6 +82,15 @@ public final class DeliveryThread extends Thread {
 	 *            Decision established from the consensus
 	 */
 	public void delivery(Decision dec) {
+		try {
+			// clean the ordered messages from the pending buffer before the next
+			// consensus can be proposed, or they could be proposed again
+			TOMMessage[] requests = extractMessagesFromDecision(dec);
+			tomLayer.clientsManager.requestsOrdered(requests);
+		} catch (Exception e) {
+			e.printStackTrace(System.out);
+		}
+
 		if (!containsGoodReconfig(dec)) {
 
 			Logger.println("(DeliveryThread.delivery) Decision from consensus " + dec.getConsensusId()
@@ -96,10 +105,6 @@ public final class DeliveryThread extends Thread {
 			decidedLock.lock();
 			decided.put(dec);
 
-			// clean the ordered messages from the pending buffer
-			TOMMessage[] requests = extractMessagesFromDecision(dec);
-			tomLayer.clientsManager.requestsOrdered(requests);
-
 			notEmptyQueue.signalAll();
 			decidedLock.unlock();
 			Logger.println("(DeliveryThread.delivery) Consensus " + dec.getConsensusId() + " finished. Decided size="
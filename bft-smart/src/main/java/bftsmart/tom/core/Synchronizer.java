@@ -584,6 +584,7 @@ public class Synchronizer {
 			Logger.println("(Synchronizer.startSynchronization) installing regency " + lcManager.getNextReg());
 			lcManager.setLastReg(lcManager.getNextReg()); // define last
 															// timestamp
+			tom.regencyChanged();
 
 			int regency = lcManager.getLastReg();
 
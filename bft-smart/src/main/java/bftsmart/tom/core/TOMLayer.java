@@ -19,12 +19,14 @@ package bftsmart.tom.core;
 import java.io.Serializable;
 import java.security.MessageDigest;
 import java.security.PrivateKey;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 
 import bftsmart.clientsmanagement.ClientsManager;
 import bftsmart.clientsmanagement.RequestList;
+import bftsmart.clientsmanagement.SignatureVerificationStage;
 import bftsmart.communication.ServerCommunicationSystem;
 import bftsmart.communication.client.RequestReceiver;
 import bftsmart.consensus.Consensus;
@@ -73,12 +75,20 @@ public final class TOMLayer extends Thread implements RequestReceiver {
 	 * Store requests received but still not ordered
 	 */
 	public ClientsManager clientsManager;
+	private final SignatureVerificationStage signatureVerifier;
 	/**
 	 * The id of the consensus being executed (or -1 if there is none)
 	 */
 	private int inExecution = -1;
 	private int lastExecuted = -1;
 
+	// Highest consensus proposed by this replica as leader, and in which regency
+	private int lastProposed = -1;
+	private int lastProposedRegency = -1;
+
+	// Number of consensus instances proposed while an earlier one was running
+	private final AtomicLong proposedAhead = new AtomicLong(0);
+
 	public MessageDigest md;
 
 	private ReentrantLock hashLock = new ReentrantLock();
@@ -153,6 +163,13 @@ public final class TOMLayer extends Thread implements RequestReceiver {
 		// I have a verifier, now create clients manager
 		this.clientsManager = new ClientsManager(this.controller, requestsTimer, this.verifier);
 
+		// Verify client request signatures before they reach the clients manager
+		if (this.controller.getStaticConf().getUseSignatures() == 1) {
+			this.signatureVerifier = new SignatureVerificationStage(this.clientsManager);
+		} else {
+			this.signatureVerifier = null;
+		}
+
 		this.syncher = new Synchronizer(this); // create synchronizer
 	}
 
@@ -294,14 +311,31 @@ public final class TOMLayer extends Thread implements RequestReceiver {
 			Logger.println("(TOMLayer.requestReceived) Received TOMMessage from client " + msg.getSender()
 					+ " with sequence number " + msg.getSequence() + " for session " + msg.getSession());
 
-			if (clientsManager.requestReceived(msg, true, communication)) {
-				haveMessages();
+			if (signatureVerifier != null && msg.signed && !msg.signatureVerified) {
+				// Verify the signature off this thread, then account the request
+				signatureVerifier.submit(msg, new Runnable() {
+					@Override
+					public void run() {
+						accountRequest(msg);
+					}
+				});
 			} else {
-				Logger.println("(TOMLayer.requestReceived) the received TOMMessage " + msg + " was discarded.");
+				accountRequest(msg);
 			}
 		}
 	}
 
+	private void accountRequest(TOMMessage msg) {
+		if (!doWork)
+			return;
+
+		if (clientsManager.requestReceived(msg, true, communication)) {
+			haveMessages();
+		} else {
+			Logger.println("(TOMLayer.requestReceived) the received TOMMessage " + msg + " was discarded.");
+		}
+	}
+
 	/**
 	 * Creates a value to be proposed to the acceptors. Invoked if this replica is
 	 * the leader
@@ -357,7 +391,7 @@ public final class TOMLayer extends Thread implements RequestReceiver {
 			// blocks until the current consensus finishes
 			proposeLock.lock();
 
-			if (getInExec() != -1) { // there is some consensus running
+			if (getInExec() != -1 && !canProposeAhead()) { // there is some consensus running
 				Logger.println("(TOMLayer.run) Waiting for consensus " + getInExec() + " termination.");
 				canPropose.awaitUninterruptibly();
 			}
@@ -384,11 +418,20 @@ public final class TOMLayer extends Thread implements RequestReceiver {
 
 			if ((execManager.getCurrentLeader() == this.controller.getStaticConf().getProcessId()) && // I'm the leader
 					(clientsManager.havePendingRequests()) && // there are messages to be ordered
-					(getInExec() == -1)) { // there is no consensus in execution
-
-				// Sets the current consensus
-				int execId = getLastExec() + 1;
-				setInExec(execId);
+					(getInExec() == -1 || canProposeAhead())) { // there is no consensus in execution, or the
+																// pipeline has room for another
+
+				// Sets the current consensus, unless proposing ahead of it
+				int execId = getNextProposal();
+				if (execId == getLastExec() + 1 && getInExec() == -1) {
+					setInExec(execId);
+				} else {
+					Logger.println("(TOMLayer.run) Proposing consensus " + execId + " while " + getInExec()
+							+ " is running.");
+					proposedAhead.incrementAndGet();
+				}
+				lastProposed = execId;
+				lastProposedRegency = syncher.getLCManager().getLastReg();
 
 				Decision dec = execManager.getConsensus(execId).getDecision();
 
@@ -419,6 +462,72 @@ public final class TOMLayer extends Thread implements RequestReceiver {
 		java.util.logging.Logger.getLogger(TOMLayer.class.getName()).log(Level.INFO, "TOMLayer stopped.");
 	}
 
+	/**
+	 * Returns the id of the next consensus this replica should propose as leader.
+	 * With a pipeline depth above one this follows the last consensus it proposed
+	 * in the current regency, which may still be running.
+	 */
+	private int getNextProposal() {
+		return getNextProposal(getLastExec(), lastProposed, isSameRegency(),
+				controller.getStaticConf().getPipelineDepth());
+	}
+
+	static int getNextProposal(final int lastExec, final int lastProposed, final boolean sameRegency,
+			final int depth) {
+		int next = lastExec + 1;
+		if (depth > 1 && sameRegency && lastProposed >= next) {
+			next = lastProposed + 1;
+		}
+		return next;
+	}
+
+	/**
+	 * Returns true if the leader may propose another consensus before those
+	 * already proposed are decided. Replicas keep the early proposals as out of
+	 * context messages and start each as soon as the previous one is decided, so
+	 * the PROPOSE round-trip overlaps with the running consensus.
+	 */
+	private boolean canProposeAhead() {
+		return !isRetrievingState() && canProposeAhead(getLastExec(), lastProposed, isSameRegency(),
+				controller.getStaticConf().getPipelineDepth());
+	}
+
+	/**
+	 * Only consensus instances this replica proposed in the current regency are
+	 * followed by early proposals. After a regency change the running instance
+	 * is decided by the synchronization phase, so the new leader waits for it.
+	 */
+	static boolean canProposeAhead(final int lastExec, final int lastProposed, final boolean sameRegency,
+			final int depth) {
+		return (depth > 1) && sameRegency
+				&& (getNextProposal(lastExec, lastProposed, sameRegency, depth) <= lastExec + depth);
+	}
+
+	private boolean isSameRegency() {
+		return lastProposedRegency == syncher.getLCManager().getLastReg();
+	}
+
+	/**
+	 * Called once a new regency is installed. The other replicas drop proposals
+	 * made ahead by the previous leader, so the requests in them are marked to be
+	 * proposed again. Without a pipeline nothing is proposed ahead, and requests
+	 * of the running consensus are left to the synchronization phase as before.
+	 */
+	public void regencyChanged() {
+		if (controller.getStaticConf().getPipelineDepth() > 1) {
+			clientsManager.clearProposed();
+			haveMessages();
+		}
+	}
+
+	/**
+	 * Returns the number of consensus instances this replica proposed as leader
+	 * while an earlier instance was still running
+	 */
+	public long getProposedAheadCount() {
+		return proposedAhead.get();
+	}
+
 	/**
 	 * Called by the current consensus instance, to notify the TOM layer that a
 	 * value was decided
@@ -468,6 +577,13 @@ public final class TOMLayer extends Thread implements RequestReceiver {
 			}
 
 			if (addToClientManager) {
+				// Check the signatures of the whole batch concurrently, so the clients
+				// manager does not check them one at a time
+				if (signatureVerifier != null && !signatureVerifier.verifyAll(requests)) {
+					Logger.println("(TOMLayer.isProposedValueValid) invalid request signature, return=false");
+					return null;
+				}
+
 				for (int i = 0; i < requests.length; i++) {
 					// notifies the client manager that this request was received and get
 					// the result of its validation
@@ -560,6 +676,8 @@ public final class TOMLayer extends Thread implements RequestReceiver {
 
 		if (this.requestsTimer != null)
 			this.requestsTimer.shutdown();
+		if (this.signatureVerifier != null)
+			this.signatureVerifier.shutdown();
 		if (this.clientsManager != null) {
 			this.clientsManager.clear();
 			this.clientsManager.getPendingRequests().clear();
@@ -20,6 +20,7 @@ import java.io.ObjectInput;
 import java.io.ObjectOutput;
 
 import bftsmart.communication.SystemMessage;
+import bftsmart.communication.codec.BinaryObjectInput;
 
 /**
  * Message used to forward a client request to the current leader when the first
@@ -60,7 +61,7 @@ public final class ForwardedMessage extends SystemMessage {
 	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
 		super.readExternal(in);
 
-		byte[] serReq = new byte[in.readInt()];
+		byte[] serReq = BinaryObjectInput.newByteArray(in, in.readInt());
 		in.readFully(serReq);
 
 		request = TOMMessage.bytesToMessage(serReq);
@@ -70,7 +71,7 @@ public final class ForwardedMessage extends SystemMessage {
 
 		if (signed) {
 
-			byte[] serReqSign = new byte[in.readInt()];
+			byte[] serReqSign = BinaryObjectInput.newByteArray(in, in.readInt());
 			in.readFully(serReqSign);
 			request.serializedMessageSignature = serReqSign;
 
@@ -25,6 +25,7 @@ import java.io.Externalizable;
 import java.io.IOException;
 
 import bftsmart.communication.SystemMessage;
+import bftsmart.communication.codec.BinaryObjectInput;
 import bftsmart.tom.util.DebugInfo;
 
 /**
@@ -55,6 +56,7 @@ public class TOMMessage extends SystemMessage implements Externalizable, Compara
 
 	public transient int destination = -1; // message destination
 	public transient boolean signed = false; // is this message signed?
+	public transient volatile boolean signatureVerified = false; // was the signature already verified?
 
 	public transient long receptionTime;// the reception time of this message
 	public transient boolean timeout = false;// this message was timed out?
@@ -269,7 +271,7 @@ public class TOMMessage extends SystemMessage implements Externalizable, Compara
 
 		int toRead = in.readInt();
 		if (toRead != -1) {
-			content = new byte[toRead];
+			content = BinaryObjectInput.newByteArray(in, toRead);
 			in.readFully(content);
 		}
 
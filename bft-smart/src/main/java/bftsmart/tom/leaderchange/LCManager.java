@@ -15,9 +15,7 @@ limitations under the License.
 */
 package bftsmart.tom.leaderchange;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -34,6 +32,7 @@ import java.util.logging.Logger;
 import javax.crypto.Mac;
 import javax.crypto.SecretKey;
 
+import bftsmart.communication.codec.SystemMessageCodec;
 import bftsmart.consensus.TimestampValuePair;
 import bftsmart.consensus.messages.ConsensusMessage;
 import bftsmart.reconfiguration.ServerViewController;
@@ -946,15 +945,13 @@ public class LCManager {
 			ConsensusMessage cm = new ConsensusMessage(consMsg.getType(), consMsg.getNumber(), consMsg.getEpoch(),
 					consMsg.getSender(), consMsg.getValue());
 
-			ByteArrayOutputStream bOut = new ByteArrayOutputStream(248);
+			byte[] data = null;
 			try {
-				new ObjectOutputStream(bOut).writeObject(cm);
+				data = SystemMessageCodec.encode(cm);
 			} catch (IOException ex) {
 				ex.printStackTrace();
 			}
 
-			byte[] data = bOut.toByteArray();
-
 			if (consMsg.getProof() instanceof HashMap) { // Certificate is made of MAC vector
 
 				bftsmart.tom.util.Logger.println("(LCManager.hasValidProof) Proof made of MAC vector");
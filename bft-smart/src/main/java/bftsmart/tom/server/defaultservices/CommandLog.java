@@ -0,0 +1,360 @@
+/**
+Copyright (c) 2007-2013 Alysson Bessani, Eduardo Alchieri, Paulo Sousa, and the authors indicated in the @author tags
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package bftsmart.tom.server.defaultservices;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the batches decided by each consensus instance.
+ *
+ * Records are written through a FileChannel as soon as they are added, so they
+ * can be read back at once. When the log is synchronous, the writes are forced
+ * to the device by a background thread while the caller goes on, and a batch
+ * is durable once a later call to sync() returns. Every batch added while a
+ * force runs is covered by the next one, so a replica which appends the
+ * batches of several decided instances and then syncs once pays for one or two
+ * forces rather than one per instance.
+ *
+ * The file is extended a segment at a time, so forcing a write does not need
+ * to update the file length. Each record carries a CRC, and reading stops at
+ * the first record which is incomplete or corrupt:
+ *
+ * <pre>
+ * file   = magic (int) || version (int) || record* || zeros
+ * record = length (int) || crc32 (int) || consensus id (int) || batch
+ * </pre>
+ */
+public class CommandLog implements Closeable {
+
+	public static final int MAGIC = 0x42534C47; // "BSLG"
+	public static final int FORMAT_VERSION = 1;
+
+	public static final int HEADER_SIZE = 8;
+	private static final int RECORD_HEADER_SIZE = 12;
+
+	// Size by which the file is extended when full
+	public static int SEGMENT_SIZE = 16 * 1024 * 1024;
+
+	// Whether logs are read through a memory mapping rather than copied
+	public static boolean MAPPED_READS = true;
+
+	private final FileChannel channel;
+	private final boolean sync;
+	private final Thread syncer;
+
+	private long position = HEADER_SIZE;
+	private long allocated;
+
+	// Guarded by this
+	private long addedBatches = 0;
+	private long syncedBatches = 0;
+	private boolean closed = false;
+	private IOException syncFailure = null;
+
+	/**
+	 * Creates a new, empty log
+	 * 
+	 * @param file
+	 * @param sync
+	 *            Whether records are forced to the device
+	 * @throws IOException
+	 */
+	@SuppressWarnings("resource")
+	public CommandLog(final File file, final boolean sync) throws IOException {
+		this.channel = new RandomAccessFile(file, "rw").getChannel();
+		this.sync = sync;
+
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC).putInt(FORMAT_VERSION).flip();
+		this.channel.truncate(0);
+		this.allocated = 0;
+		ensureCapacity(HEADER_SIZE);
+		writeFully(header, 0);
+
+		if (sync) {
+			this.syncer = new Thread("Log syncer for " + file.getName()) {
+				@Override
+				public void run() {
+					syncLoop();
+				}
+			};
+			this.syncer.setDaemon(true);
+			this.syncer.start();
+		} else {
+			this.syncer = null;
+		}
+	}
+
+	/**
+	 * Appends the batch decided by a consensus instance without waiting for it to
+	 * be forced to the device, see sync()
+	 * 
+	 * @param consensusId
+	 * @param batch
+	 * @throws IOException
+	 *             If the batch could not be written, or an earlier force failed
+	 */
+	public void append(final int consensusId, final byte[] batch) throws IOException {
+		final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + batch.length);
+		record.putInt(batch.length);
+		record.putInt(checksum(consensusId, batch));
+		record.putInt(consensusId);
+		record.put(batch);
+		record.flip();
+
+		synchronized (this) {
+			if (this.syncFailure != null) {
+				throw this.syncFailure;
+			}
+			ensureCapacity(this.position + record.remaining());
+			writeFully(record, this.position);
+			this.position += RECORD_HEADER_SIZE + batch.length;
+			this.addedBatches++;
+
+			if (this.sync) {
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Waits until every record added so far is durable
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized void sync() throws IOException {
+		if (!this.sync) {
+			return;
+		}
+		final long target = this.addedBatches;
+		while (this.syncedBatches < target && this.syncFailure == null) {
+			waitUninterruptibly();
+		}
+		if (this.syncFailure != null) {
+			throw this.syncFailure;
+		}
+	}
+
+	/**
+	 * Returns the offset at which the next record is written
+	 */
+	public synchronized long getPosition() {
+		return this.position;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			sync();
+		} finally {
+			synchronized (this) {
+				this.closed = true;
+				notifyAll();
+			}
+			if (this.syncer != null) {
+				try {
+					this.syncer.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			this.channel.close();
+		}
+	}
+
+	private void syncLoop() {
+		while (true) {
+			final long target;
+			synchronized (this) {
+				while (this.syncedBatches == this.addedBatches && !this.closed) {
+					waitUninterruptibly();
+				}
+				if (this.closed) {
+					return;
+				}
+				target = this.addedBatches;
+			}
+
+			try {
+				this.channel.force(false);
+			} catch (IOException e) {
+				synchronized (this) {
+					this.syncFailure = e;
+					notifyAll();
+				}
+				return;
+			}
+
+			synchronized (this) {
+				this.syncedBatches = target;
+				notifyAll();
+			}
+		}
+	}
+
+	private void ensureCapacity(final long required) throws IOException {
+		if (required <= this.allocated) {
+			return;
+		}
+		while (this.allocated < required) {
+			this.allocated += SEGMENT_SIZE;
+		}
+		// Writing the last byte extends the file, the new length is forced once
+		writeFully(ByteBuffer.allocate(1), this.allocated - 1);
+		if (this.sync) {
+			this.channel.force(true);
+		}
+	}
+
+	private void writeFully(final ByteBuffer buffer, long offset) throws IOException {
+		while (buffer.hasRemaining()) {
+			offset += this.channel.write(buffer, offset);
+		}
+	}
+
+	private void waitUninterruptibly() {
+		try {
+			wait();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// Computed before taking the lock, so each record uses its own CRC32
+	private static int checksum(final int consensusId, final byte[] batch) {
+		final CRC32 crc = new CRC32();
+		crc.update(ByteBuffer.allocate(4).putInt(consensusId).array());
+		crc.update(batch);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Returns true if the file was written by a CommandLog, rather than by earlier
+	 * versions which wrote one serialized batch after the other
+	 * 
+	 * @param file
+	 * @return
+	 */
+	public static boolean isCommandLog(final File file) {
+		try (final RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			return (raf.length() >= HEADER_SIZE) && (raf.readInt() == MAGIC);
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Reads the records of a log in order
+	 */
+	public static class Reader implements Closeable {
+
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+		private final CRC32 crc = new CRC32();
+
+		private int consensusId;
+		private byte[] batch;
+
+		/**
+		 * Opens a log for reading
+		 * 
+		 * @param file
+		 * @param position
+		 *            The offset of the first record to read, as returned by
+		 *            getPosition, or 0 to start from the first record
+		 * @throws IOException
+		 */
+		@SuppressWarnings("resource")
+		public Reader(final File file, final long position) throws IOException {
+			this.channel = new RandomAccessFile(file, "r").getChannel();
+			final long size = this.channel.size();
+			if (MAPPED_READS && size <= Integer.MAX_VALUE) {
+				this.buffer = this.channel.map(MapMode.READ_ONLY, 0, size);
+			} else {
+				this.buffer = ByteBuffer.allocate((int) Math.min(size, Integer.MAX_VALUE));
+				while (this.buffer.hasRemaining() && this.channel.read(this.buffer) >= 0) {
+				}
+				this.buffer.flip();
+			}
+
+			if (this.buffer.remaining() < HEADER_SIZE || this.buffer.getInt(0) != MAGIC) {
+				close();
+				throw new IOException("Not a command log: " + file);
+			}
+			final int version = this.buffer.getInt(4);
+			if (version != FORMAT_VERSION) {
+				close();
+				throw new IOException("Unsupported command log version: " + version);
+			}
+			this.buffer.position((int) Math.max(position, HEADER_SIZE));
+		}
+
+		/**
+		 * Advances to the next record
+		 * 
+		 * @return false if there are no more complete and valid records
+		 */
+		public boolean next() {
+			if (this.buffer.remaining() < RECORD_HEADER_SIZE) {
+				return false;
+			}
+			final int start = this.buffer.position();
+			final int length = this.buffer.getInt();
+			final int checksum = this.buffer.getInt();
+			final int cid = this.buffer.getInt();
+			if (length <= 0 || length > this.buffer.remaining()) {
+				this.buffer.position(start);
+				return false;
+			}
+
+			final byte[] bytes = new byte[length];
+			this.buffer.get(bytes);
+
+			this.crc.reset();
+			this.crc.update(ByteBuffer.allocate(4).putInt(cid).array());
+			this.crc.update(bytes);
+			if ((int) this.crc.getValue() != checksum) {
+				System.err.println("Stopped reading log at corrupt record at offset " + start);
+				this.buffer.position(start);
+				return false;
+			}
+
+			this.consensusId = cid;
+			this.batch = bytes;
+			return true;
+		}
+
+		public int getConsensusId() {
+			return this.consensusId;
+		}
+
+		public byte[] getBatch() {
+			return this.batch;
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.channel.close();
+		}
+	}
+}
@@ -18,6 +18,7 @@
  */
 package bftsmart.tom.server.defaultservices;
 
+import java.io.IOException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
@@ -191,6 +192,21 @@ public abstract class DefaultRecoverable implements Recoverable, BatchExecutable
 		Logger.println("(TOMLayer.saveState) Finished saving state of CID " + lastCID);
 	}
 
+	/**
+	 * Waits until the batches logged so far are durable. ServiceReplica invokes
+	 * this once for all the consensus instances it delivered together, before
+	 * sending the replies to their requests.
+	 * 
+	 * @throws IOException
+	 *             If a batch could not be logged
+	 */
+	public void syncLog() throws IOException {
+		StateLog thisLog = log;
+		if (thisLog != null) {
+			thisLog.sync();
+		}
+	}
+
 	/**
 	 * Write commands to log file
 	 *
@@ -15,6 +15,7 @@ limitations under the License.
 */
 package bftsmart.tom.server.defaultservices;
 
+import java.io.IOException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
@@ -138,6 +139,21 @@ public abstract class DefaultSingleRecoverable implements Recoverable, SingleExe
         Logger.println("(TOMLayer.saveState) Finished saving state of CID " + lastCID);
     }
 
+    /**
+     * Waits until the batches logged so far are durable. ServiceReplica invokes
+     * this once for all the consensus instances it delivered together, before
+     * sending the replies to their requests.
+     * 
+     * @throws IOException
+     *             If a batch could not be logged
+     */
+    public void syncLog() throws IOException {
+        StateLog thisLog = log;
+        if (thisLog != null) {
+            thisLog.sync();
+        }
+    }
+
     private void saveCommands(byte[][] commands, MessageContext[] msgCtx) {
         
         if (commands.length != msgCtx.length) {
@@ -15,11 +15,9 @@ limitations under the License.
 */
 package bftsmart.tom.server.defaultservices;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
@@ -27,6 +25,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.locks.ReentrantLock;
 
+import bftsmart.communication.codec.SystemMessageCodec;
 import bftsmart.statemanagement.ApplicationState;
 import bftsmart.tom.MessageContext;
 
@@ -37,7 +36,7 @@ public class DiskStateLog extends StateLog {
 	private static final int INT_BYTE_SIZE = 4;
 	private static final int EOF = 0;
 
-	private RandomAccessFile log;
+	private CommandLog log;
 	private boolean syncLog;
 	private String logPath;
 	private String lastCkpPath;
@@ -46,6 +45,10 @@ public class DiskStateLog extends StateLog {
 	private ReentrantLock checkpointLock = new ReentrantLock();
 	private Map<Integer, Long> logPointers;
 
+	// Set when a batch could not be logged, until the next checkpoint replaces
+	// the log
+	private IOException logFailure = null;
+
 	public DiskStateLog(int id, byte[] initialState, byte[] initialHash, boolean isToLog, boolean syncLog,
 			boolean syncCkp) {
 		super(id, initialState, initialHash);
@@ -59,13 +62,12 @@ public class DiskStateLog extends StateLog {
 	private void createLogFile() {
 		logPath = DEFAULT_DIR + String.valueOf(id) + "." + System.currentTimeMillis() + ".log";
 		try {
-			log = new RandomAccessFile(logPath, (syncLog ? "rwd" : "rw"));
-			// PreAllocation
-			/*
-			 * log.setLength(TEN_MB); log.seek(0);
-			 */
-		} catch (FileNotFoundException e) {
+			log = new CommandLog(new File(logPath), syncLog);
+			logFailure = null;
+		} catch (IOException e) {
 			e.printStackTrace();
+			log = null;
+			logFailure = e;
 		}
 	}
 
@@ -82,7 +84,7 @@ public class DiskStateLog extends StateLog {
 	public void addMessageBatch(byte[][] commands, MessageContext[] msgCtx, int consensusId) {
 		CommandsInfo command = new CommandsInfo(commands, msgCtx);
 		if (isToLog) {
-			if (log == null)
+			if (log == null && logFailure == null)
 				createLogFile();
 			writeCommandToDisk(command, consensusId);
 		}
@@ -90,26 +92,32 @@ public class DiskStateLog extends StateLog {
 	}
 
 	private void writeCommandToDisk(CommandsInfo commandsInfo, int consensusId) {
-		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		// Batches following one which is missing could not be replayed
+		if (logFailure != null) {
+			return;
+		}
 		try {
-			ObjectOutputStream oos = new ObjectOutputStream(bos);
-			oos.writeObject(commandsInfo);
-			oos.flush();
-
-			byte[] batchBytes = bos.toByteArray();
-
-			ByteBuffer bf = ByteBuffer.allocate(3 * INT_BYTE_SIZE + batchBytes.length);
-			bf.putInt(batchBytes.length);
-			bf.put(batchBytes);
-			bf.putInt(EOF);
-			bf.putInt(consensusId);
-
-			log.write(bf.array());
-			log.seek(log.length() - 2 * INT_BYTE_SIZE);// Next write will overwrite
-														// the EOF mark
+			log.append(consensusId, SystemMessageCodec.encodeCommandsInfo(commandsInfo));
 		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			System.err.println("Failed to log consensus " + consensusId + ": " + e.getMessage());
+			logFailure = e;
+		}
+	}
+
+	/**
+	 * Waits until every batch added so far is durable, the replies to its
+	 * requests must not be sent before
+	 * 
+	 * @throws IOException
+	 *             If a batch added since the last checkpoint could not be logged
+	 */
+	@Override
+	public void sync() throws IOException {
+		if (logFailure != null) {
+			throw logFailure;
+		}
+		if (log != null) {
+			log.sync();
 		}
 	}
 
@@ -239,13 +247,9 @@ public class DiskStateLog extends StateLog {
 		// save the file pointer to retrieve log information later
 		if ((cid % checkpointPeriod) % checkpointPortion == checkpointPortion - 1) {
 			int ckpReplicaIndex = (((cid % checkpointPeriod) + 1) / checkpointPortion) - 1;
-			try {
-				System.out.println(" --- Replica " + ckpReplicaIndex + " took checkpoint. My current log pointer is "
-						+ log.getFilePointer());
-				logPointers.put(ckpReplicaIndex, log.getFilePointer());
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
+			System.out.println(" --- Replica " + ckpReplicaIndex + " took checkpoint. My current log pointer is "
+					+ log.getPosition());
+			logPointers.put(ckpReplicaIndex, log.getPosition());
 		}
 	}
 
@@ -26,6 +26,8 @@ import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 
+import bftsmart.communication.codec.SystemMessageCodec;
+
 public class FileRecoverer {
 
 	private byte[] ckpHash;
@@ -58,6 +60,9 @@ public class FileRecoverer {
 		RandomAccessFile log = null;
 
 		System.out.println("GETTING LOG FROM " + logPath);
+		if (CommandLog.isCommandLog(new File(logPath))) {
+			return recoverCommandLog(new File(logPath), 0, 0, index);
+		}
 		if ((log = openLogFile(logPath)) != null) {
 
 			CommandsInfo[] logState = recoverLogState(log, index);
@@ -87,6 +92,9 @@ public class FileRecoverer {
 		RandomAccessFile log = null;
 
 		System.out.println("GETTING LOG FROM " + logPath);
+		if (CommandLog.isCommandLog(new File(logPath))) {
+			return recoverCommandLog(new File(logPath), pointer, startOffset, number);
+		}
 		if ((log = openLogFile(logPath)) != null) {
 
 			CommandsInfo[] logState = recoverLogState(log, pointer, startOffset, number);
@@ -294,6 +302,55 @@ public class FileRecoverer {
 		return null;
 	}
 
+	/**
+	 * Reads a batch from the log, accepting batches written with Java
+	 * serialization by earlier versions
+	 */
+	private static CommandsInfo readCommandsInfo(byte[] bytes) throws IOException, ClassNotFoundException {
+		if (SystemMessageCodec.isEncodedCommandsInfo(bytes)) {
+			return SystemMessageCodec.decodeCommandsInfo(bytes);
+		}
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+		return (CommandsInfo) ois.readObject();
+	}
+
+	/**
+	 * Reads batches from a log written by CommandLog
+	 * 
+	 * @param pointer
+	 *            The offset of the first record, or 0 for the start of the log
+	 * @param startOffset
+	 *            The number of records to skip
+	 * @param number
+	 *            The number of batches to read, or 0 to read to the end of the log
+	 * @return The batches read
+	 */
+	private CommandsInfo[] recoverCommandLog(File logFile, long pointer, int startOffset, int number) {
+		try (CommandLog.Reader reader = new CommandLog.Reader(logFile, pointer)) {
+			ArrayList<CommandsInfo> state = new ArrayList<CommandsInfo>();
+			int index = 0;
+			while (reader.next()) {
+				if (index++ < startOffset) {
+					continue;
+				}
+				state.add(readCommandsInfo(reader.getBatch()));
+				if (state.size() == number) {
+					return state.toArray(new CommandsInfo[state.size()]);
+				}
+			}
+			if (index > 0) {
+				logLastConsensusId = reader.getConsensusId();
+			}
+			System.out.println("Recovered batches: " + state.size() + ", logLastConsensusId: " + logLastConsensusId);
+			return state.toArray(new CommandsInfo[state.size()]);
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.err.println("State recover was aborted due to an unexpected exception");
+		}
+
+		return null;
+	}
+
 	private CommandsInfo[] recoverLogState(RandomAccessFile log, int endOffset) {
 		try {
 			long logLength = log.length();
@@ -310,9 +367,7 @@ public class FileRecoverer {
 							byte[] bytes = new byte[size];
 							int read = log.read(bytes);
 							if (read == size) {
-								ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
-								ObjectInputStream ois = new ObjectInputStream(bis);
-								state.add((CommandsInfo) ois.readObject());
+								state.add(readCommandsInfo(bytes));
 								if (++recoveredBatches == endOffset) {
 									System.out.println("read all " + endOffset + " log messages");
 									return state.toArray(new CommandsInfo[state.size()]);
@@ -384,10 +439,7 @@ public class FileRecoverer {
 							byte[] bytes = new byte[size];
 							int read = log.read(bytes);
 							if (read == size) {
-								ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
-								ObjectInputStream ois = new ObjectInputStream(bis);
-
-								state.add((CommandsInfo) ois.readObject());
+								state.add(readCommandsInfo(bytes));
 
 								if (++recoveredBatches == number) {
 									return state.toArray(new CommandsInfo[state.size()]);
@@ -15,6 +15,8 @@ limitations under the License.
 */
 package bftsmart.tom.server.defaultservices;
 
+import java.io.IOException;
+
 import bftsmart.tom.MessageContext;
 
 /**
@@ -183,6 +185,15 @@ public class StateLog {
 		setLastCID(lastConsensusId);
 	}
 
+	/**
+	 * Waits until the batches added so far are durable. Batches kept in memory
+	 * never are, so this returns at once.
+	 * 
+	 * @throws IOException
+	 */
+	public void sync() throws IOException {
+	}
+
 	/**
 	 * Returns a batch of messages, given its correspondent consensus ID
 	 * 
@@ -15,11 +15,9 @@ limitations under the License.
 */
 package bftsmart.tom.server.defaultservices.durability;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
@@ -27,10 +25,12 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.locks.ReentrantLock;
 
+import bftsmart.communication.codec.SystemMessageCodec;
 import bftsmart.statemanagement.strategy.durability.CSTRequest;
 import bftsmart.statemanagement.strategy.durability.CSTRequestF1;
 import bftsmart.statemanagement.strategy.durability.CSTState;
 import bftsmart.tom.MessageContext;
+import bftsmart.tom.server.defaultservices.CommandLog;
 import bftsmart.tom.server.defaultservices.CommandsInfo;
 import bftsmart.tom.server.defaultservices.FileRecoverer;
 import bftsmart.tom.server.defaultservices.StateLog;
@@ -43,7 +43,7 @@ public class DurableStateLog extends StateLog {
 	private static final int INT_BYTE_SIZE = 4;
 	private static final int EOF = 0;
 
-	private RandomAccessFile log;
+	private CommandLog log;
 	private boolean syncLog;
 	private String logPath;
 	private String lastCkpPath;
@@ -67,8 +67,8 @@ public class DurableStateLog extends StateLog {
 	private void createLogFile() {
 		logPath = DEFAULT_DIR + String.valueOf(id) + "." + System.currentTimeMillis() + ".log";
 		try {
-			log = new RandomAccessFile(logPath, (syncLog ? "rwd" : "rw"));
-		} catch (FileNotFoundException e) {
+			log = new CommandLog(new File(logPath), syncLog);
+		} catch (IOException e) {
 			e.printStackTrace();
 		}
 	}
@@ -97,26 +97,14 @@ public class DurableStateLog extends StateLog {
 	}
 
 	private void writeCommandToDisk(CommandsInfo commandsInfo, int consensusId) {
-		ByteArrayOutputStream bos = new ByteArrayOutputStream();
 		try {
-			ObjectOutputStream oos = new ObjectOutputStream(bos);
-			oos.writeObject(commandsInfo);
-			oos.flush();
-
-			byte[] batchBytes = bos.toByteArray();
-
-			ByteBuffer bf = ByteBuffer.allocate(3 * INT_BYTE_SIZE + batchBytes.length);
-			bf.putInt(batchBytes.length);
-			bf.put(batchBytes);
-			bf.putInt(EOF);
-			bf.putInt(consensusId);
-
-			log.write(bf.array());
-			log.seek(log.length() - 2 * INT_BYTE_SIZE);// Next write will overwrite
-														// the EOF mark
+			log.append(consensusId, SystemMessageCodec.encodeCommandsInfo(commandsInfo));
+			log.sync();
 		} catch (IOException e) {
-			// TODO Auto-generated catch block
+			// Replies may already depend on this batch, stop rather than lose it
+			System.err.println("Failed to log consensus " + consensusId + ": " + e.getMessage());
 			e.printStackTrace();
+			System.exit(-1);
 		}
 	}
 
@@ -278,13 +266,9 @@ public class DurableStateLog extends StateLog {
 		// save the file pointer to retrieve log information later
 		if ((cid % checkpointPeriod) % checkpointPortion == checkpointPortion - 1) {
 			int ckpReplicaIndex = (((cid % checkpointPeriod) + 1) / checkpointPortion) - 1;
-			try {
-				System.out.println(" --- Replica " + ckpReplicaIndex + " took checkpoint. My current log pointer is "
-						+ log.getFilePointer());
-				logPointers.put(ckpReplicaIndex, log.getFilePointer());
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
+			System.out.println(" --- Replica " + ckpReplicaIndex + " took checkpoint. My current log pointer is "
+					+ log.getPosition());
+			logPointers.put(ckpReplicaIndex, log.getPosition());
 		}
 	}
 
@@ -0,0 +1,226 @@
+package bftsmart.tom.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import bftsmart.communication.client.ReplyListener;
+import bftsmart.reconfiguration.views.View;
+import bftsmart.reconfiguration.views.ViewStorage;
+import bftsmart.tom.AsynchServiceProxy;
+import bftsmart.tom.MessageContext;
+import bftsmart.tom.RequestContext;
+import bftsmart.tom.ServiceReplica;
+import bftsmart.tom.core.messages.TOMMessage;
+import bftsmart.tom.core.messages.TOMMessageType;
+import bftsmart.tom.server.defaultservices.DefaultSingleRecoverable;
+import net.i2p.crypto.eddsa.EdDSASecurityProvider;
+
+/**
+ * Runs four replicas in this process with a pipeline depth of three and checks
+ * the leader proposes consensus instances while earlier ones are running, and
+ * that every replica still executes the same requests in the same order.
+ */
+public class TOMLayerPipelineTest {
+
+	private static final int NUM_REPLICAS = 4;
+	private static final int NUM_REQUESTS = 300;
+	private static final long TIMEOUT_MS = 60_000;
+
+	private static final File KEYS_DIRECTORY = new File("../pross-server/config/server/keys");
+
+	/**
+	 * Keeps views in memory so the view stored in the working directory is not
+	 * used or overwritten
+	 */
+	public static class MemoryViewStorage implements ViewStorage {
+
+		@Override
+		public boolean storeView(final View view) {
+			return true;
+		}
+
+		@Override
+		public View readView() {
+			return null;
+		}
+	}
+
+	/**
+	 * Records the requests a replica executes in order
+	 */
+	private static class RecordingReplica extends DefaultSingleRecoverable {
+
+		private final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+
+		@Override
+		public byte[] appExecuteOrdered(final byte[] command, final MessageContext msgCtx) {
+			this.executed.add(ByteBuffer.wrap(command).getInt());
+			return command;
+		}
+
+		@Override
+		public byte[] appExecuteUnordered(final byte[] command, final MessageContext msgCtx) {
+			return command;
+		}
+
+		@Override
+		public void installSnapshot(final byte[] state) {
+		}
+
+		@Override
+		public byte[] getSnapshot() {
+			return new byte[0];
+		}
+	}
+
+	private File configHome;
+	private final RecordingReplica[] recorders = new RecordingReplica[NUM_REPLICAS];
+	private final ServiceReplica[] replicas = new ServiceReplica[NUM_REPLICAS];
+	private AsynchServiceProxy proxy;
+
+	@BeforeClass
+	public static void setupProviders() {
+		// Replicas authenticate each other with the EdDSA keys of the servers
+		Security.insertProviderAt(new EdDSASecurityProvider(), 1);
+		Security.addProvider(new BouncyCastleProvider());
+	}
+
+	@Before
+	public void startReplicas() throws Exception {
+		this.configHome = writeConfiguration();
+
+		final Thread[] starters = new Thread[NUM_REPLICAS];
+		for (int i = 0; i < NUM_REPLICAS; i++) {
+			final int id = i;
+			this.recorders[id] = new RecordingReplica();
+			starters[id] = new Thread() {
+				public void run() {
+					replicas[id] = new ServiceReplica(id, configHome.getAbsolutePath(), recorders[id], recorders[id],
+							null, null);
+				}
+			};
+			starters[id].start();
+		}
+		for (final Thread starter : starters) {
+			starter.join(TIMEOUT_MS);
+		}
+
+		this.proxy = new AsynchServiceProxy(0, this.configHome.getAbsolutePath());
+	}
+
+	@After
+	public void stopReplicas() {
+		if (this.proxy != null) {
+			this.proxy.close();
+		}
+		for (final ServiceReplica replica : this.replicas) {
+			if (replica != null) {
+				replica.kill();
+			}
+		}
+	}
+
+	@Test
+	public void testLeaderProposesAheadOfRunningConsensus() throws Exception {
+		final ReplyListener ignoreReplies = new ReplyListener() {
+			@Override
+			public void reset() {
+			}
+
+			@Override
+			public void replyReceived(final RequestContext context, final TOMMessage reply) {
+			}
+		};
+
+		for (int i = 0; i < NUM_REQUESTS; i++) {
+			final byte[] request = ByteBuffer.allocate(Integer.BYTES).putInt(i).array();
+			this.proxy.invokeAsynchRequest(request, ignoreReplies, TOMMessageType.ORDERED_REQUEST);
+		}
+
+		final long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+		for (final RecordingReplica recorder : this.recorders) {
+			while (recorder.executed.size() < NUM_REQUESTS && System.currentTimeMillis() < deadline) {
+				Thread.sleep(50);
+			}
+			Assert.assertEquals(NUM_REQUESTS, recorder.executed.size());
+		}
+
+		// The batch size is one, so each request was ordered by its own consensus
+		Assert.assertTrue(this.replicas[0].getTOMLayer().getProposedAheadCount() > 0);
+
+		final List<Integer> expected = new ArrayList<>();
+		for (int i = 0; i < NUM_REQUESTS; i++) {
+			expected.add(i);
+		}
+		for (final RecordingReplica recorder : this.recorders) {
+			Assert.assertEquals(expected, recorder.executed);
+		}
+	}
+
+	private static File writeConfiguration() throws IOException {
+		final File configHome = Files.createTempDirectory("pipeline").toFile();
+		final File serverDirectory = new File(configHome, "server");
+		final File bftDirectory = new File(serverDirectory, "bft-config");
+		final File keysDirectory = new File(serverDirectory, "keys");
+		bftDirectory.mkdirs();
+		keysDirectory.mkdirs();
+
+		// Replicas also listen on the port plus 200 and plus 201
+		final int basePort = ThreadLocalRandom.current().nextInt(20000, 40000);
+		try (final PrintWriter writer = new PrintWriter(new File(serverDirectory, "common.config"))) {
+			writer.println("num_servers = " + NUM_REPLICAS);
+			for (int i = 1; i <= NUM_REPLICAS; i++) {
+				writer.println("server." + i + " = 127.0.0.1:" + (basePort + (10 * i)));
+			}
+		}
+
+		try (final PrintWriter writer = new PrintWriter(new File(bftDirectory, "system.config"))) {
+			writer.println("system.communication.useSenderThread = true");
+			writer.println("system.communication.defaultkeys = false");
+			writer.println("system.totalordermulticast.timeout = 30000");
+			writer.println("system.totalordermulticast.maxbatchsize = 1");
+			writer.println("system.totalordermulticast.pipeline_depth = 3");
+			writer.println("system.totalordermulticast.nonces = 10");
+			writer.println("system.totalordermulticast.verifyTimestamps = false");
+			writer.println("system.communication.inQueueSize = 500000");
+			writer.println("system.communication.outQueueSize = 500000");
+			writer.println("system.communication.useSignatures = 1");
+			writer.println("system.communication.useMACs = 0");
+			writer.println("system.debug = 0");
+			writer.println("system.shutdownhook = false");
+			writer.println("system.totalordermulticast.state_transfer = true");
+			writer.println("system.totalordermulticast.highMark = 10000");
+			writer.println("system.totalordermulticast.log = true");
+			writer.println("system.totalordermulticast.log_to_disk = false");
+			writer.println("system.totalordermulticast.checkpoint_period = 1000");
+			writer.println("system.totalordermulticast.checkpoint_to_disk = false");
+			writer.println("system.ttp.id = 7002");
+			writer.println("system.bft = true");
+			writer.println("view.storage.handler = " + MemoryViewStorage.class.getName());
+		}
+
+		for (final File keyFile : KEYS_DIRECTORY.listFiles()) {
+			Files.copy(keyFile.toPath(), new File(keysDirectory, keyFile.getName()).toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+
+		return configHome;
+	}
+
+}
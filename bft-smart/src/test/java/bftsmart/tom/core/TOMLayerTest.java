@@ -0,0 +1,44 @@
+package bftsmart.tom.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TOMLayerTest {
+
+	@Test
+	public void testDepthOneNeverProposesAhead() {
+		// Consensus 5 was proposed and is running
+		Assert.assertEquals(5, TOMLayer.getNextProposal(4, 5, true, 1));
+		Assert.assertFalse(TOMLayer.canProposeAhead(4, 5, true, 1));
+	}
+
+	@Test
+	public void testProposesAheadUpToDepth() {
+		final int depth = 3;
+
+		// Nothing proposed ahead yet, consensus 5 is running
+		Assert.assertEquals(6, TOMLayer.getNextProposal(4, 5, true, depth));
+		Assert.assertTrue(TOMLayer.canProposeAhead(4, 5, true, depth));
+
+		// 6 and 7 were proposed ahead, 8 would exceed the depth
+		Assert.assertEquals(7, TOMLayer.getNextProposal(4, 6, true, depth));
+		Assert.assertTrue(TOMLayer.canProposeAhead(4, 6, true, depth));
+		Assert.assertEquals(8, TOMLayer.getNextProposal(4, 7, true, depth));
+		Assert.assertFalse(TOMLayer.canProposeAhead(4, 7, true, depth));
+
+		// Once 5 is decided there is room for 8
+		Assert.assertTrue(TOMLayer.canProposeAhead(5, 7, true, depth));
+	}
+
+	@Test
+	public void testRegencyChangeRestartsAfterLastDecided() {
+		final int depth = 3;
+
+		// Proposals of the old regency are dropped, the new leader proposes 5 again
+		Assert.assertEquals(5, TOMLayer.getNextProposal(4, 7, false, depth));
+
+		// And waits for the running consensus instead of proposing ahead of it
+		Assert.assertFalse(TOMLayer.canProposeAhead(4, 7, false, depth));
+	}
+
+}
@@ -0,0 +1,141 @@
+package bftsmart.tom.core.messages;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import bftsmart.communication.codec.BinaryObjectInput;
+import bftsmart.communication.codec.BinaryObjectOutput;
+import bftsmart.communication.codec.SystemMessageCodec;
+import bftsmart.consensus.messages.ConsensusMessage;
+import bftsmart.consensus.messages.MessageFactory.PaxosMessageType;
+import bftsmart.tom.server.defaultservices.CommandsInfo;
+
+public class SystemMessageCodecTest {
+
+	@Test
+	public void testRequestRoundTrip() throws Exception {
+		final TOMMessage request = new TOMMessage(3, 1, 7, 2, "abc".getBytes(StandardCharsets.UTF_8), 0,
+				TOMMessageType.ORDERED_REQUEST);
+
+		final TOMMessage decoded = (TOMMessage) SystemMessageCodec.decode(SystemMessageCodec.encode(request));
+		Assert.assertEquals(request, decoded);
+		Assert.assertEquals(2, decoded.getOperationId());
+		Assert.assertEquals(TOMMessageType.ORDERED_REQUEST, decoded.getReqType());
+		Assert.assertArrayEquals(request.getContent(), decoded.getContent());
+		Assert.assertFalse(decoded.signed);
+	}
+
+	@Test
+	public void testConsensusMessageRoundTrip() throws Exception {
+		final ConsensusMessage message = new ConsensusMessage(PaxosMessageType.ACCEPT, 5, 1, 2, new byte[] { 1, 2 });
+		final Map<Integer, byte[]> macVector = new HashMap<>();
+		macVector.put(0, new byte[] { 9 });
+		macVector.put(3, new byte[] { 8, 7 });
+		message.setProof(macVector);
+
+		final ConsensusMessage decoded = (ConsensusMessage) SystemMessageCodec
+				.decode(SystemMessageCodec.encode(message));
+		Assert.assertEquals(PaxosMessageType.ACCEPT, decoded.getType());
+		Assert.assertEquals(5, decoded.getNumber());
+		Assert.assertEquals(1, decoded.getEpoch());
+		Assert.assertEquals(2, decoded.getSender());
+		Assert.assertArrayEquals(new byte[] { 1, 2 }, decoded.getValue());
+
+		@SuppressWarnings("unchecked")
+		final Map<Integer, byte[]> decodedVector = (Map<Integer, byte[]>) decoded.getProof();
+		Assert.assertEquals(2, decodedVector.size());
+		Assert.assertArrayEquals(new byte[] { 8, 7 }, decodedVector.get(3));
+	}
+
+	@Test
+	public void testCommandsInfoRoundTrip() throws Exception {
+		final CommandsInfo commandsInfo = new CommandsInfo();
+		commandsInfo.commands = new byte[][] { { 1 }, null, {} };
+
+		final byte[] encoded = SystemMessageCodec.encodeCommandsInfo(commandsInfo);
+		Assert.assertTrue(SystemMessageCodec.isEncodedCommandsInfo(encoded));
+
+		final CommandsInfo decoded = SystemMessageCodec.decodeCommandsInfo(encoded);
+		Assert.assertEquals(3, decoded.commands.length);
+		Assert.assertArrayEquals(new byte[] { 1 }, decoded.commands[0]);
+		Assert.assertNull(decoded.commands[1]);
+		Assert.assertEquals(0, decoded.commands[2].length);
+		Assert.assertNull(decoded.msgCtx);
+	}
+
+	@Test
+	public void testTruncatedMessagesAreRejected() throws Exception {
+		final ConsensusMessage message = new ConsensusMessage(PaxosMessageType.PROPOSE, 5, 0, 1, new byte[100]);
+		final byte[] encoded = SystemMessageCodec.encode(message);
+
+		for (int length = 0; length < encoded.length; length += 7) {
+			try {
+				SystemMessageCodec.decode(Arrays.copyOf(encoded, length));
+				Assert.fail("Decoded a message truncated to " + length + " bytes");
+			} catch (IOException expected) {
+			}
+		}
+	}
+
+	@Test
+	public void testOversizedLengthsAreRejected() throws Exception {
+		final TOMMessage request = new TOMMessage(3, 1, 7, new byte[] { 1 }, 0, TOMMessageType.ORDERED_REQUEST);
+		final byte[] encoded = SystemMessageCodec.encode(request);
+
+		// The content length follows the type tag and seven int fields
+		ByteBuffer.wrap(encoded).putInt(1 + 7 * 4, Integer.MAX_VALUE);
+		try {
+			SystemMessageCodec.decode(encoded);
+			Assert.fail("Expected the content length to be rejected");
+		} catch (EOFException expected) {
+		}
+
+		ByteBuffer.wrap(encoded).putInt(1 + 7 * 4, -2);
+		try {
+			SystemMessageCodec.decode(encoded);
+			Assert.fail("Expected a negative content length to be rejected");
+		} catch (IOException expected) {
+		}
+	}
+
+	@Test
+	public void testOversizedCountsAreRejected() throws Exception {
+		final BinaryObjectOutput out = new BinaryObjectOutput(16);
+		out.writeByte(SystemMessageCodec.encodeCommandsInfo(new CommandsInfo())[0]);
+		out.writeInt(Integer.MAX_VALUE);
+		try {
+			SystemMessageCodec.decodeCommandsInfo(out.toByteArray());
+			Assert.fail("Expected the command count to be rejected");
+		} catch (EOFException expected) {
+		}
+
+		final BinaryObjectOutput arrayOut = new BinaryObjectOutput(16);
+		arrayOut.writeInt(-5);
+		try {
+			new BinaryObjectInput(arrayOut.toByteArray()).readByteArray();
+			Assert.fail("Expected a negative array length to be rejected");
+		} catch (IOException expected) {
+		}
+	}
+
+	@Test
+	public void testReadLine() throws Exception {
+		final BinaryObjectOutput out = new BinaryObjectOutput(16);
+		out.writeBytes("first\r\nsecond\nthird");
+
+		final BinaryObjectInput in = new BinaryObjectInput(out.toByteArray());
+		Assert.assertEquals("first", in.readLine());
+		Assert.assertEquals("second", in.readLine());
+		Assert.assertEquals("third", in.readLine());
+		Assert.assertNull(in.readLine());
+	}
+
+}
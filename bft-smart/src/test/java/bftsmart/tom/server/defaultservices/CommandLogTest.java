@@ -0,0 +1,183 @@
+package bftsmart.tom.server.defaultservices;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CommandLogTest {
+
+	private File file;
+	private int segmentSize;
+
+	@Before
+	public void setup() throws IOException {
+		this.file = File.createTempFile("command-log", ".log");
+		this.segmentSize = CommandLog.SEGMENT_SIZE;
+		CommandLog.SEGMENT_SIZE = 64;
+	}
+
+	@After
+	public void cleanup() {
+		CommandLog.SEGMENT_SIZE = this.segmentSize;
+		this.file.delete();
+	}
+
+	private static byte[] batch(final int consensusId) {
+		return ("batch-" + consensusId).getBytes(StandardCharsets.UTF_8);
+	}
+
+	private List<Integer> readConsensusIds(final long position) throws IOException {
+		final List<Integer> consensusIds = new ArrayList<>();
+		try (final CommandLog.Reader reader = new CommandLog.Reader(this.file, position)) {
+			while (reader.next()) {
+				Assert.assertArrayEquals(batch(reader.getConsensusId()), reader.getBatch());
+				consensusIds.add(reader.getConsensusId());
+			}
+		}
+		return consensusIds;
+	}
+
+	@Test
+	public void testReadFromOffset() throws IOException {
+		final long secondRecord;
+		try (final CommandLog log = new CommandLog(this.file, false)) {
+			log.append(1, batch(1));
+			secondRecord = log.getPosition();
+			log.append(2, batch(2));
+			log.append(3, batch(3));
+		}
+
+		Assert.assertTrue(CommandLog.isCommandLog(this.file));
+		Assert.assertEquals(3, readConsensusIds(0).size());
+		Assert.assertEquals(3, readConsensusIds(CommandLog.HEADER_SIZE).size());
+
+		final List<Integer> fromSecond = readConsensusIds(secondRecord);
+		Assert.assertEquals(2, fromSecond.size());
+		Assert.assertEquals(Integer.valueOf(2), fromSecond.get(0));
+		Assert.assertEquals(Integer.valueOf(3), fromSecond.get(1));
+	}
+
+	@Test
+	public void testTornTailIsIgnored() throws IOException {
+		final long lastRecord;
+		try (final CommandLog log = new CommandLog(this.file, false)) {
+			log.append(1, batch(1));
+			log.append(2, batch(2));
+			lastRecord = log.getPosition();
+			log.append(3, batch(3));
+		}
+
+		// Cut the last record short, as a crash during the write would
+		try (final RandomAccessFile raf = new RandomAccessFile(this.file, "rw")) {
+			raf.setLength(lastRecord + 14);
+		}
+
+		final List<Integer> consensusIds = readConsensusIds(0);
+		Assert.assertEquals(2, consensusIds.size());
+		Assert.assertEquals(Integer.valueOf(2), consensusIds.get(1));
+	}
+
+	@Test
+	public void testCorruptRecordStopsReading() throws IOException {
+		final long secondRecord;
+		try (final CommandLog log = new CommandLog(this.file, false)) {
+			log.append(1, batch(1));
+			secondRecord = log.getPosition();
+			log.append(2, batch(2));
+			log.append(3, batch(3));
+		}
+
+		// Change a byte of the second batch without updating its checksum
+		try (final RandomAccessFile raf = new RandomAccessFile(this.file, "rw")) {
+			raf.seek(secondRecord + 12);
+			raf.write('X');
+		}
+
+		final List<Integer> consensusIds = readConsensusIds(0);
+		Assert.assertEquals(1, consensusIds.size());
+		Assert.assertEquals(Integer.valueOf(1), consensusIds.get(0));
+	}
+
+	@Test
+	public void testLegacyLogIsDetected() throws IOException {
+		// Earlier versions wrote each batch as a length and its bytes
+		try (final DataOutputStream out = new DataOutputStream(new FileOutputStream(this.file))) {
+			out.writeInt(batch(1).length);
+			out.write(batch(1));
+		}
+		Assert.assertFalse(CommandLog.isCommandLog(this.file));
+
+		try {
+			new CommandLog.Reader(this.file, 0).close();
+			Assert.fail("Expected a legacy log to be rejected");
+		} catch (IOException expected) {
+		}
+	}
+
+	@Test
+	public void testSyncAfterSeveralInstances() throws IOException {
+		try (final CommandLog log = new CommandLog(this.file, true)) {
+			// As a replica appends the instances delivered together
+			for (int i = 1; i <= 10; i++) {
+				log.append(i, batch(i));
+			}
+			log.sync();
+			Assert.assertEquals(10, readConsensusIds(0).size());
+
+			// Nothing was added since, so this returns at once
+			log.sync();
+		}
+	}
+
+	@Test
+	public void testSyncCoversConcurrentAppends() throws Exception {
+		final int threadCount = 4;
+		final int appendsPerThread = 25;
+
+		try (final CommandLog log = new CommandLog(this.file, true)) {
+			final List<Thread> threads = new ArrayList<>();
+			final List<Throwable> failures = new ArrayList<>();
+			for (int t = 0; t < threadCount; t++) {
+				final int first = t * appendsPerThread;
+				final Thread thread = new Thread() {
+					@Override
+					public void run() {
+						try {
+							for (int i = first; i < first + appendsPerThread; i++) {
+								log.append(i, batch(i));
+							}
+						} catch (Throwable e) {
+							synchronized (failures) {
+								failures.add(e);
+							}
+						}
+					}
+				};
+				threads.add(thread);
+				thread.start();
+			}
+			for (final Thread thread : threads) {
+				thread.join();
+			}
+			Assert.assertTrue(failures.isEmpty());
+			log.sync();
+
+			// Every batch can be read back before the log is closed
+			final Set<Integer> consensusIds = new HashSet<>(readConsensusIds(0));
+			Assert.assertEquals(threadCount * appendsPerThread, consensusIds.size());
+		}
+	}
+
+}
@@ -1,10 +1,20 @@
 package com.ibm.pross.client.encryption;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigInteger;
 import java.net.InetSocketAddress;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.cert.CertificateException;
@@ -12,13 +22,9 @@ import java.security.cert.X509Certificate;
 import java.security.spec.InvalidKeySpecException;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
@@ -37,6 +43,8 @@ import com.ibm.pross.common.config.ServerConfigurationLoader;
 import com.ibm.pross.common.exceptions.http.ResourceUnavailableException;
 import com.ibm.pross.common.util.crypto.ecc.EcPoint;
 import com.ibm.pross.common.util.crypto.elgamal.EciesEncryption;
+import com.ibm.pross.common.util.crypto.elgamal.EciesStreamEncryption;
+import com.ibm.pross.common.util.crypto.elgamal.EciesStreamEncryption.Header;
 import com.ibm.pross.common.util.crypto.rsa.threshold.sign.exceptions.BelowThresholdException;
 import com.ibm.pross.common.util.serialization.Pem;
 import com.ibm.pross.common.util.shamir.Polynomials;
@@ -47,6 +55,9 @@ import com.ibm.pross.common.util.shamir.Polynomials;
  */
 public class EciesEncryptionClient extends BaseClient {
 
+	// Size of the buffers used when reading and writing files
+	public static int BUFFER_SIZE = 256 * 1024;
+
 	// Parameters of operation
 	private final String secretName;
 	private final File inputFile;
@@ -81,25 +92,17 @@ public class EciesEncryptionClient extends BaseClient {
 		System.out.println("Current epoch for secret: " + currentEpoch);
 		System.out.println();
 
-		// Reading
-		System.out.print("Reading input file: " + this.inputFile + "... ");
-		final byte[] plaintextData = Files.readAllBytes(inputFile.toPath());
-		System.out.println(" (done)");
-		System.out.println("Read " + plaintextData.length + " bytes.");
-		System.out.println();
-
-		// Perform ECIES encryption
-		System.out.print("Performing ECIES encryption of file content... ");
-		final byte[] ciphertext = EciesEncryption.encrypt(plaintextData, publicKey);
-		System.out.println(" (done)");
-		System.out.println("Encrypted length " + ciphertext.length + " bytes.");
-		System.out.println();
-
-		// Write ciphertext to output file
-		System.out.print("Writing ciphertext to file: " + this.outputFile + "... ");
-		Files.write(this.outputFile.toPath(), ciphertext);
+		// Perform ECIES encryption, streaming the file content in chunks
+		System.out.print("Performing ECIES encryption of file: " + this.inputFile + "... ");
+		final long plaintextLength;
+		try (final InputStream in = new FileInputStream(this.inputFile);
+				final OutputStream out = EciesStreamEncryption.newEncryptingStream(
+						new BufferedOutputStream(new FileOutputStream(this.outputFile), BUFFER_SIZE), publicKey)) {
+			plaintextLength = copy(in, out);
+		}
 		System.out.println(" (done)");
-		System.out.println("Wrote " + ciphertext.length + " bytes.");
+		System.out.println("Encrypted " + plaintextLength + " bytes.");
+		System.out.println("Wrote " + this.outputFile.length() + " bytes to file: " + this.outputFile);
 		System.out.println();
 
 		System.out.println("Done.");
@@ -112,9 +115,73 @@ public class EciesEncryptionClient extends BaseClient {
 		System.out.println("-----------------------------------------------------------");
 		System.out.println("Beginning decryption of file: " + this.inputFile);
 
+		try (final BufferedInputStream in = new BufferedInputStream(new FileInputStream(this.inputFile),
+				BUFFER_SIZE)) {
+
+			// Files written before streaming encryption are decrypted in memory
+			if (isStreamFormat(in)) {
+				decryptStream(in);
+			} else {
+				decryptWholeFile(in);
+			}
+		}
+
+		System.out.println("Done.");
+	}
+
+	/**
+	 * Decrypts a file in the format produced by EciesStreamEncryption, holding
+	 * only one chunk in memory at a time
+	 */
+	private void decryptStream(final InputStream in)
+			throws IOException, ResourceUnavailableException, BelowThresholdException {
+
+		// Extract public value from ciphertext
+		System.out.print("Extracting public value from ciphertext: " + this.inputFile + "... ");
+		final Header header = EciesStreamEncryption.readHeader(in);
+		final EcPoint publicValue = header.getPublicValue();
+		System.out.println(" (done)");
+		System.out.println("Public Value is: " + publicValue);
+		System.out.println();
+
+		// The shared secret is computed once for the whole file
+		final EcPoint exponentiationResult = getSharedSecret(publicValue);
+
+		// Perform ECIES decryption, streaming the file content in chunks
+		System.out.print("Performing ECIES decryption of file content... ");
+		// Chunks are written before the last one is verified, so write them to a
+		// temporary file which only replaces the output once all of them verify
+		final File outputDirectory = this.outputFile.getAbsoluteFile().getParentFile();
+		final File partialFile = File.createTempFile(this.outputFile.getName(), ".part", outputDirectory);
+		final long plaintextLength;
+		try {
+			try (final InputStream decrypting = EciesStreamEncryption.newDecryptingStream(in, header,
+					exponentiationResult);
+					final OutputStream out = new BufferedOutputStream(new FileOutputStream(partialFile),
+							BUFFER_SIZE)) {
+				plaintextLength = copy(decrypting, out);
+			}
+			Files.move(partialFile.toPath(), this.outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			// Only left behind if decryption failed
+			Files.deleteIfExists(partialFile.toPath());
+		}
+		System.out.println(" (done)");
+		System.out.println("Wrote " + plaintextLength + " bytes of plaintext to file: " + this.outputFile);
+		System.out.println();
+	}
+
+	/**
+	 * Decrypts a file in the format produced by EciesEncryption, which must be
+	 * held in memory
+	 */
+	private void decryptWholeFile(final InputStream in) throws BadPaddingException, IllegalBlockSizeException,
+			IOException, ResourceUnavailableException, BelowThresholdException {
+
 		// Reading ciphertext
 		System.out.print("Reading input file: " + this.inputFile + "... ");
-		final byte[] ciphertextData = Files.readAllBytes(inputFile.toPath());
+		final byte[] ciphertextData = readAll(in);
 		System.out.println(" (done)");
 		System.out.println("Read " + ciphertextData.length + " bytes of ciphertext.");
 		System.out.println();
@@ -126,6 +193,30 @@ public class EciesEncryptionClient extends BaseClient {
 		System.out.println("Public Value is: " + publicValue);
 		System.out.println();
 
+		final EcPoint exponentiationResult = getSharedSecret(publicValue);
+
+		// Perform ECIES decryption
+		System.out.print("Performing ECIES decryption of file content... ");
+		final byte[] plaintext = EciesEncryption.decrypt(ciphertextData, exponentiationResult);
+		System.out.println(" (done)");
+		System.out.println("Plaintext length " + plaintext.length + " bytes.");
+		System.out.println();
+
+		// Write plaintext to output file
+		System.out.print("Writing plaintext to file: " + this.outputFile + "... ");
+		Files.write(this.outputFile.toPath(), plaintext);
+		System.out.println(" (done)");
+		System.out.println("Wrote " + plaintext.length + " bytes.");
+		System.out.println();
+	}
+
+	/**
+	 * Has the servers exponentiate the public value of a ciphertext with the
+	 * secret, producing the shared secret of the ciphertext
+	 */
+	private EcPoint getSharedSecret(final EcPoint publicValue)
+			throws ResourceUnavailableException, BelowThresholdException {
+
 		// Get public key and current epoch from the server
 		System.out.print("Accessing public key for secret: " + this.secretName + "... ");
 		final SimpleEntry<List<EcPoint>, Long> shareVerificationKeysAndEpoch = this.getServerVerificationKeys(secretName);
@@ -138,27 +229,50 @@ public class EciesEncryptionClient extends BaseClient {
 
 		// Get public key and current epoch from the server
 		System.out.print("Performing threshold exponentiation on public value using: " + this.secretName + "... ");
-		final EcPoint exponentiationResult = this.exponentiatePoint(publicValue, currentEpoch);
+		EcPoint exponentiationResult;
+		try {
+			exponentiationResult = this.exponentiatePoint(publicValue, currentEpoch);
+		} catch (ResourceUnavailableException e) {
+			// The secret may have been refreshed since its keys were cached, retry once
+			final SimpleEntry<List<EcPoint>, Long> newerKeysAndEpoch = getKeysOfNewerEpoch(secretName, currentEpoch);
+			if (newerKeysAndEpoch == null) {
+				throw e;
+			}
+			exponentiationResult = this.exponentiatePoint(publicValue, newerKeysAndEpoch.getValue());
+		}
 		System.out.println(" (done)");
 		System.out.println("Shared secret obtained:    " + exponentiationResult);
 		System.out.println();
 
-		// Perform ECIES decryption
-		System.out.print("Performing ECIES decryption of file content... ");
-		final byte[] plaintext = EciesEncryption.decrypt(ciphertextData, exponentiationResult);
-		System.out.println(" (done)");
-		System.out.println("Plaintext length " + plaintext.length + " bytes.");
-		System.out.println();
+		return exponentiationResult;
+	}
 
-		// Write plaintext to output file
-		System.out.print("Writing plaintext to file: " + this.outputFile + "... ");
-		Files.write(this.outputFile.toPath(), plaintext);
-		System.out.println(" (done)");
-		System.out.println("Wrote " + plaintext.length + " bytes.");
-		System.out.println();
+	private static boolean isStreamFormat(final InputStream in) throws IOException {
+		in.mark(4);
+		try {
+			return new DataInputStream(in).readInt() == EciesStreamEncryption.MAGIC;
+		} catch (EOFException e) {
+			return false;
+		} finally {
+			in.reset();
+		}
+	}
 
-		System.out.println("Done.");
+	private static long copy(final InputStream in, final OutputStream out) throws IOException {
+		final byte[] buffer = new byte[BUFFER_SIZE];
+		long total = 0;
+		int read;
+		while ((read = in.read(buffer)) >= 0) {
+			out.write(buffer, 0, read);
+			total += read;
+		}
+		return total;
+	}
 
+	private static byte[] readAll(final InputStream in) throws IOException {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		copy(in, bos);
+		return bos.toByteArray();
 	}
 
 	public static void main(final String args[]) throws IOException, NoSuchAlgorithmException, InvalidKeySpecException,
@@ -228,10 +342,6 @@ public class EciesEncryptionClient extends BaseClient {
 		}
 	}
 
-	private static DerivationResult createDerivationResult(Object obj) {
-		return (DerivationResult) obj;
-	}
-
 	/**
 	 * Interacts with the servers to exponentiate a point for the given secret
 	 * 
@@ -243,23 +353,10 @@ public class EciesEncryptionClient extends BaseClient {
 			throws ResourceUnavailableException {
 
 		// Server configuration
-		final int numShareholders = this.serverConfiguration.getNumServers();
 		final int reconstructionThreshold = this.serverConfiguration.getReconstructionThreshold();
 
-		// We create a thread pool with a thread for each task and remote server
-		final ExecutorService executor = Executors.newFixedThreadPool(numShareholders - 1);
-
-		// The countdown latch tracks progress towards reaching a threshold
-		final CountDownLatch latch = new CountDownLatch(reconstructionThreshold);
-		final AtomicInteger failureCounter = new AtomicInteger(0);
-		final int maximumFailures = (numShareholders - reconstructionThreshold);
-
-		// Each task deposits its result into this map after verifying it is correct and
-		// consistent
-		// TODO: Add verification via proofs
-		final List<Object> verifiedResults = Collections.synchronizedList(new ArrayList<>());
-
-		// Create a partial result task for everyone except ourselves
+		// Create a partial result task for everyone
+		final Map<Integer, PartialResultTask<DerivationResult>> requests = new HashMap<>();
 		int serverId = 0;
 		for (final InetSocketAddress serverAddress : this.serverConfiguration.getServerAddresses()) {
 			serverId++;
@@ -271,10 +368,9 @@ public class EciesEncryptionClient extends BaseClient {
 			final int thisServerId = serverId;
 
 			// Create new task to get the partial exponentiation result from the server
-			executor.submit(new PartialResultTask(this, serverId, linkUrl, verifiedResults, latch, failureCounter,
-					maximumFailures) {
+			requests.put(serverId, new PartialResultTask<DerivationResult>(this, serverId, linkUrl) {
 				@Override
-				protected void parseJsonResult(final String json) throws Exception {
+				protected DerivationResult parseJsonResult(final String json) throws Exception {
 
 					// Parse JSON
 					final JSONParser parser = new JSONParser();
@@ -282,6 +378,7 @@ public class EciesEncryptionClient extends BaseClient {
 					final JSONObject jsonObject = (JSONObject) obj;
 					final Long responder = (Long) jsonObject.get("responder");
 					final long epoch = (Long) jsonObject.get("epoch");
+					observeEpoch(secretName, thisServerId, epoch);
 					final JSONArray resultPoint = (JSONArray) jsonObject.get("result_point");
 					final BigInteger x = new BigInteger((String) resultPoint.get(0));
 					final BigInteger y = new BigInteger((String) resultPoint.get(1));
@@ -289,17 +386,13 @@ public class EciesEncryptionClient extends BaseClient {
 					// Verify result
 					// TODO: Separate results by their epoch, wait for enough results of the same
 					// epoch
-					// TOOD: Implement retry if epoch mismatch and below threshold
 					if ((responder == thisServerId) && (epoch == expectedEpoch)) {
 
 						// FIXME: Do verification of the results (using proofs)
 						final EcPoint partialResult = new EcPoint(x, y);
 
-						// Store result for later processing
-						verifiedResults.add(new DerivationResult(BigInteger.valueOf(responder), partialResult));
-
-						// Everything checked out, increment successes
-						latch.countDown();
+						// Return result for later processing
+						return new DerivationResult(BigInteger.valueOf(responder), partialResult);
 					} else {
 						throw new Exception(
 								"Server " + thisServerId + " sent inconsistent results (likely during epoch change)");
@@ -309,29 +402,11 @@ public class EciesEncryptionClient extends BaseClient {
 			});
 		}
 
-		try {
-			// Once we have K successful responses we can interpolate our share
-			latch.await();
-
-			// Check that we have enough results to interpolate the share
-			if (failureCounter.get() <= maximumFailures) {
+		// Once we have K successful responses we can interpolate our share
+		final List<DerivationResult> results = fanOut.invoke(requests, reconstructionThreshold);
 
-				List<DerivationResult> results = verifiedResults.stream().map(obj -> createDerivationResult(obj))
-						.collect(Collectors.toList());
-
-				// When complete, interpolate the result at zero (where the secret lies)
-				final EcPoint interpolatedResult = Polynomials.interpolateExponents(results, reconstructionThreshold,
-						0);
-				executor.shutdown();
-
-				return interpolatedResult;
-			} else {
-				executor.shutdown();
-				throw new ResourceUnavailableException();
-			}
-		} catch (InterruptedException e) {
-			throw new RuntimeException(e);
-		}
+		// When complete, interpolate the result at zero (where the secret lies)
+		return Polynomials.interpolateExponents(results, reconstructionThreshold, 0);
 	}
 
 }
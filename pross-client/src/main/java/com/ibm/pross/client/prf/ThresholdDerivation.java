@@ -8,15 +8,22 @@ package com.ibm.pross.client.prf;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.ibm.pross.common.DerivationResult;
 import com.ibm.pross.common.EcPseudoRandomFunction;
 import com.ibm.pross.common.config.CommonConfiguration;
+import com.ibm.pross.common.exceptions.http.ResourceUnavailableException;
+import com.ibm.pross.common.util.concurrent.FanOutEngine;
+import com.ibm.pross.common.util.concurrent.FanOutEngine.ServerRequest;
 import com.ibm.pross.common.util.crypto.ecc.EcCurve;
 import com.ibm.pross.common.util.crypto.ecc.EcPoint;
 import com.ibm.pross.common.util.shamir.Polynomials;
@@ -35,6 +42,12 @@ public class ThresholdDerivation implements EcPseudoRandomFunction {
 	private final Map<EcPseudoRandomFunction, BigInteger> shareholders = new HashMap<>();
 	private final int threshold;
 
+	// Sends derivations to the shareholders, preferring the fastest
+	private final FanOutEngine fanOut = new FanOutEngine();
+
+	// Lagrange coefficients by the indices of the shareholders which responded
+	private final ConcurrentMap<List<BigInteger>, BigInteger[]> lagrangeVectors = new ConcurrentHashMap<>();
+
 	// The public key of the thresholdized secret
 	private final EcPoint publicKey;
 
@@ -70,49 +83,87 @@ public class ThresholdDerivation implements EcPseudoRandomFunction {
 			}
 		}
 
-		final EcPoint totalPublicKey = Polynomials.interpolateExponents(results, threshold, 0);
+		final EcPoint totalPublicKey = combine(results);
 
 		return totalPublicKey;
 	}
 
 	@Override
-	public EcPoint derive(final EcPoint input) {
-
-		final List<DerivationResult> results = new ArrayList<>();
-
-		// Send derive operation to each server
-		List<EcPseudoRandomFunction> shareholderList = new ArrayList<>(this.shareholders.keySet());
-		Collections.shuffle(shareholderList);
-		for (EcPseudoRandomFunction shareholder : shareholderList) {
-
-			final BigInteger shareholderIndex = this.shareholders.get(shareholder);
-
-			try {
-				final EcPoint result = shareholder.derive(input);
-				results.add(new DerivationResult(shareholderIndex, result));
-
-				if (results.size() >= this.threshold) {
-					break; // Exit when we have enough valid responses
+	public EcPoint derive(final EcPoint input) throws ResourceUnavailableException {
+
+		// Send derive operation to each shareholder at once, each result is
+		// verified (if the shareholder is verifiable) before it is counted
+		final Map<Integer, ServerRequest<DerivationResult>> requests = new HashMap<>();
+		for (final Entry<EcPseudoRandomFunction, BigInteger> entry : this.shareholders.entrySet()) {
+			final EcPseudoRandomFunction shareholder = entry.getKey();
+			final BigInteger shareholderIndex = entry.getValue();
+			requests.put(shareholderIndex.intValue(), new ServerRequest<DerivationResult>() {
+				@Override
+				public DerivationResult call() throws Exception {
+					try {
+						return new DerivationResult(shareholderIndex, shareholder.derive(input));
+					} catch (Exception e) {
+						// Requests still running once a threshold responded are cancelled
+						if (!FanOutEngine.isCancellation(e)) {
+							System.out.println("Failed to get valid response from shareholder [" + shareholderIndex + "]");
+						}
+						throw e;
+					}
 				}
-
-			} catch (Exception e) {
-				System.out.println("Failed to get valid response from shareholder [" + shareholderIndex + "]");
-
-			}
-
+			});
 		}
 
+		// Exit when we have enough valid responses
+		final List<DerivationResult> results = this.fanOut.invoke(requests, this.threshold);
+
 		// Combine shares
 		System.out.print("  Recovering secret from shares...");
-
-		// Randomize which shareholders are used
-		final List<DerivationResult> ranomizedList = new ArrayList<>(new HashSet<>(results));
-		final EcPoint totalResult = Polynomials.interpolateExponents(ranomizedList, threshold, 0);
+		final EcPoint totalResult = combine(results);
 		System.out.println(" done.");
 
 		return totalResult;
 	}
 
+	/**
+	 * Interpolates a threshold of results at zero, as a single multi-scalar
+	 * multiplication using the Lagrange coefficients for their indices
+	 */
+	protected EcPoint combine(final List<DerivationResult> results) {
+		// Results arrive in any order, sort them so each set of indices has one key
+		final List<DerivationResult> sorted = new ArrayList<>(results.subList(0, this.threshold));
+		Collections.sort(sorted, new Comparator<DerivationResult>() {
+			@Override
+			public int compare(final DerivationResult first, final DerivationResult second) {
+				return first.getIndex().compareTo(second.getIndex());
+			}
+		});
+
+		final EcPoint[] points = new EcPoint[this.threshold];
+		final BigInteger[] indices = new BigInteger[this.threshold];
+		for (int i = 0; i < this.threshold; i++) {
+			points[i] = sorted.get(i).getDerivedSharePoint();
+			indices[i] = sorted.get(i).getIndex();
+		}
+		return curve.sumOfProducts(points, getLagrangeVector(indices));
+	}
+
+	/**
+	 * Returns the Lagrange coefficients for interpolating at zero from the given
+	 * indices, computing them only the first time a set of indices is seen
+	 */
+	private BigInteger[] getLagrangeVector(final BigInteger[] indices) {
+		final List<BigInteger> key = Arrays.asList(indices);
+		BigInteger[] lagrangeVector = this.lagrangeVectors.get(key);
+		if (lagrangeVector == null) {
+			lagrangeVector = new BigInteger[indices.length];
+			for (int i = 0; i < indices.length; i++) {
+				lagrangeVector[i] = Polynomials.interpolatePartial(indices, BigInteger.ZERO, indices[i], r);
+			}
+			this.lagrangeVectors.putIfAbsent(key, lagrangeVector);
+		}
+		return lagrangeVector;
+	}
+
 	@Override
 	public EcPoint getPublicKey() {
 		return this.publicKey;
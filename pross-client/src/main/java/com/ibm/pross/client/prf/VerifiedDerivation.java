@@ -7,10 +7,16 @@
 package com.ibm.pross.client.prf;
 
 import java.math.BigInteger;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.ibm.pross.common.EcPseudoRandomFunction;
 import com.ibm.pross.common.config.CommonConfiguration;
 import com.ibm.pross.common.util.RandomNumberGenerator;
+import com.ibm.pross.common.util.concurrent.NamedThreadFactory;
 import com.ibm.pross.common.util.crypto.ecc.EcCurve;
 import com.ibm.pross.common.util.crypto.ecc.EcPoint;
 
@@ -23,6 +29,11 @@ public class VerifiedDerivation implements EcPseudoRandomFunction {
 	final public static EcCurve curve = CommonConfiguration.CURVE;
 	final public static BigInteger r = curve.getR();
 
+	// Runs the challenges, unbounded since derivations may themselves be run by
+	// a bounded pool and wait on these
+	private static final ExecutorService executor = Executors
+			.newCachedThreadPool(new NamedThreadFactory("verified-derivation"));
+
 	// Private fields
 	private final EcPseudoRandomFunction firstDerivation;
 	private final EcPseudoRandomFunction secondDerivation;
@@ -54,16 +65,31 @@ public class VerifiedDerivation implements EcPseudoRandomFunction {
 	@Override
 	public EcPoint derive(final EcPoint input) throws Exception {
 
-		// Perform derivation
-		final EcPoint result = this.firstDerivation.derive(input);
-
 		// Form a challenge challenge
 		final BigInteger v = RandomNumberGenerator.generateRandomPositiveInteger(r);
 		final BigInteger w = RandomNumberGenerator.generateRandomPositiveInteger(r);
 		final EcPoint challenge = ChallengeResponseVerifier.generateChallenge(input, v, w, curve);
 
-		// Get response to challenge
-		final EcPoint response = this.secondDerivation.derive(challenge);
+		// Get response to challenge while performing the derivation, as neither
+		// depends on the other
+		final Future<EcPoint> pendingResponse = executor.submit(new Callable<EcPoint>() {
+			@Override
+			public EcPoint call() throws Exception {
+				return secondDerivation.derive(challenge);
+			}
+		});
+
+		final EcPoint result;
+		final EcPoint response;
+		try {
+			// Perform derivation
+			result = this.firstDerivation.derive(input);
+			response = pendingResponse.get();
+		} catch (ExecutionException e) {
+			throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+		} finally {
+			pendingResponse.cancel(true);
+		}
 
 		// Verify response consistency
 		if (ChallengeResponseVerifier.isResponseValid(response, getPublicKey(), v, w, curve, result)) {
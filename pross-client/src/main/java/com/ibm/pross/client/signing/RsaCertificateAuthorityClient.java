@@ -17,14 +17,11 @@ import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.security.interfaces.RSAPublicKey;
 import java.security.spec.InvalidKeySpecException;
+import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
@@ -216,7 +213,13 @@ public class RsaCertificateAuthorityClient extends BaseClient {
 
 		// Get public key and current epoch from the server
 		System.out.print("  Performing threshold signing of certificate using: " + this.secretName + "... ");
-		final BigInteger signatureResult = this.signMessage(toBeSignedRaw);
+		BigInteger signatureResult;
+		try {
+			signatureResult = this.signMessage(toBeSignedRaw);
+		} catch (ResourceUnavailableException | BelowThresholdException e) {
+			// Servers may disagree while the sharing changes, retry once
+			signatureResult = this.signMessage(toBeSignedRaw);
+		}
 		System.out.println("done.");
 		System.out.println("Signature result obtained: " + signatureResult);
 		System.out.println();
@@ -335,10 +338,6 @@ public class RsaCertificateAuthorityClient extends BaseClient {
 		}
 	}
 
-	private static SignatureResponse createSignatureResult(Object obj) {
-		return (SignatureResponse) obj;
-	}
-
 	/**
 	 * Interacts with the servers to store an RSA sharing to a given secret
 	 * 
@@ -351,21 +350,10 @@ public class RsaCertificateAuthorityClient extends BaseClient {
 			throws ResourceUnavailableException, BelowThresholdException {
 
 		// Server configuration
-		final int numShareholders = this.serverConfiguration.getNumServers();
 		final int reconstructionThreshold = this.serverConfiguration.getReconstructionThreshold();
 
-		// We create a thread pool with a thread for each task and remote server
-		final ExecutorService executor = Executors.newFixedThreadPool(numShareholders - 1);
-
-		// The countdown latch tracks progress towards reaching a threshold
-		final CountDownLatch latch = new CountDownLatch(reconstructionThreshold);
-		final AtomicInteger failureCounter = new AtomicInteger(0);
-		final int maximumFailures = (numShareholders - reconstructionThreshold);
-
-		// Each task deposits its result into this map after verifying it is correct and
-		// consistent
-		// TODO: Add verification via proofs
-		final List<Object> successfulResults = Collections.synchronizedList(new ArrayList<>());
+		// Each task returns its result after verifying it is correct and consistent
+		final Map<Integer, PartialResultTask<Boolean>> requests = new HashMap<>();
 
 		// Collect pulic data to register with servers
 
@@ -398,41 +386,22 @@ public class RsaCertificateAuthorityClient extends BaseClient {
 					+ share;
 
 			// Create new task to get the partial exponentiation result from the server
-			executor.submit(new PartialResultTask(this, serverId, linkUrl, successfulResults, latch, failureCounter,
-					maximumFailures) {
+			requests.put(serverId, new PartialResultTask<Boolean>(this, serverId, linkUrl) {
 				@Override
-				protected void parseJsonResult(final String json) throws Exception {
-
-					// Store result for later processing
-					successfulResults.add(Boolean.TRUE);
-
-					// Everything checked out, increment successes
-					latch.countDown();
+				protected Boolean parseJsonResult(final String json) throws Exception {
 
+					// Everything checked out
+					return Boolean.TRUE;
 				}
 			});
 		}
 
-		try {
-			// Once we have K successful responses we can interpolate our share
-			latch.await();
-
-			// Check that we have enough results to interpolate the share
-			if (failureCounter.get() <= maximumFailures) {
-
-				// When complete, interpolate the result at zero (where the secret lies)
-				final Boolean wereSuccessful = (Boolean) getConsistentConfiguration(successfulResults,
-						reconstructionThreshold);
-				executor.shutdown();
+		// Once we have K successful responses the sharing is stored
+		final List<Boolean> successfulResults = fanOut.invoke(requests, reconstructionThreshold);
+		final Boolean wereSuccessful = (Boolean) getConsistentConfiguration(new ArrayList<Object>(successfulResults),
+				reconstructionThreshold);
 
-				return wereSuccessful;
-			} else {
-				executor.shutdown();
-				throw new ResourceUnavailableException();
-			}
-		} catch (InterruptedException e) {
-			throw new RuntimeException(e);
-		}
+		return wereSuccessful;
 	}
 
 	/**
@@ -451,19 +420,8 @@ public class RsaCertificateAuthorityClient extends BaseClient {
 		final int numShareholders = this.serverConfiguration.getNumServers();
 		final int reconstructionThreshold = this.serverConfiguration.getReconstructionThreshold();
 
-		// We create a thread pool with a thread for each task and remote server
-		final ExecutorService executor = Executors.newFixedThreadPool(numShareholders - 1);
-
-		// The countdown latch tracks progress towards reaching a threshold
-		final CountDownLatch latch = new CountDownLatch(reconstructionThreshold);
-		final AtomicInteger failureCounter = new AtomicInteger(0);
-		final int maximumFailures = (numShareholders - reconstructionThreshold);
-
-		// Each task deposits its result into this map after verifying it is correct and
-		// consistent
-		// TODO: Add verification via proofs
-		final List<Object> signatureResponses = Collections.synchronizedList(new ArrayList<>());
-		final List<Object> publicConfigurations = Collections.synchronizedList(new ArrayList<>());
+		// Each task returns its result after verifying it is correct and consistent
+		final Map<Integer, PartialResultTask<SimpleEntry<SignatureResponse, ServerPublicConfiguration>>> requests = new HashMap<>();
 
 		// Create a partial result task for everyone except ourselves
 		int serverId = 0;
@@ -477,10 +435,9 @@ public class RsaCertificateAuthorityClient extends BaseClient {
 			final int thisServerId = serverId;
 
 			// Create new task to get the partial exponentiation result from the server
-			executor.submit(new PartialResultTask(this, serverId, linkUrl, signatureResponses, latch, failureCounter,
-					maximumFailures) {
+			requests.put(serverId, new PartialResultTask<SimpleEntry<SignatureResponse, ServerPublicConfiguration>>(this, serverId, linkUrl) {
 				@Override
-				protected void parseJsonResult(final String json) throws Exception {
+				protected SimpleEntry<SignatureResponse, ServerPublicConfiguration> parseJsonResult(final String json) throws Exception {
 
 					// FIXME: Do majority voting of correct parameters
 
@@ -506,8 +463,7 @@ public class RsaCertificateAuthorityClient extends BaseClient {
 						sharePublicKeys[i] = new BigInteger((String) vertificationKeys.get(i));
 					}
 
-					// Verify result
-					// TOOD: Implement retry if epoch mismatch and below threshold
+					// Verify result (issuerCertificate retries once if this fails)
 					if ((responder == thisServerId)) {
 
 						// Add both to lists, one is private, one is public and should be agreed upon
@@ -516,12 +472,8 @@ public class RsaCertificateAuthorityClient extends BaseClient {
 						final ServerPublicConfiguration publicConfiguration = new ServerPublicConfiguration(
 								numShareholders, reconstructionThreshold, n, e, v, sharePublicKeys);
 
-						// Store result for later processing
-						signatureResponses.add(signatureResponse);
-						publicConfigurations.add(publicConfiguration);
-
-						// Everything checked out, increment successes
-						latch.countDown();
+						// Return result for later processing
+						return new SimpleEntry<SignatureResponse, ServerPublicConfiguration>(signatureResponse, publicConfiguration);
 					} else {
 						throw new Exception(
 								"Server " + thisServerId + " sent inconsistent results (likely during epoch change)");
@@ -531,34 +483,22 @@ public class RsaCertificateAuthorityClient extends BaseClient {
 			});
 		}
 
-		try {
-			// Once we have K successful responses we can interpolate our share
-			latch.await();
-
-			// Get consistent view of public sharings
-			final ServerPublicConfiguration publicConfiguration = (ServerPublicConfiguration) getConsistentConfiguration(
-					publicConfigurations, reconstructionThreshold);
-
-			// Check that we have enough results to interpolate the share
-			if (failureCounter.get() <= maximumFailures) {
-
-				final List<SignatureResponse> results = signatureResponses.stream()
-						.map(obj -> createSignatureResult(obj)).collect(Collectors.toList());
-
-				// When complete, interpolate the result at zero (where the secret lies)
-				final BigInteger signature = ThresholdSignatures.recoverSignature(toBeSigned, results,
-						publicConfiguration);
+		// Once we have K successful responses we can interpolate our share
+		final List<SimpleEntry<SignatureResponse, ServerPublicConfiguration>> results = fanOut.invoke(requests,
+				reconstructionThreshold);
+		final List<SignatureResponse> signatureResponses = new ArrayList<>();
+		final List<Object> publicConfigurations = new ArrayList<>();
+		for (final SimpleEntry<SignatureResponse, ServerPublicConfiguration> result : results) {
+			signatureResponses.add(result.getKey());
+			publicConfigurations.add(result.getValue());
+		}
 
-				executor.shutdown();
+		// Get consistent view of public sharings
+		final ServerPublicConfiguration publicConfiguration = (ServerPublicConfiguration) getConsistentConfiguration(
+				publicConfigurations, reconstructionThreshold);
 
-				return signature;
-			} else {
-				executor.shutdown();
-				throw new ResourceUnavailableException();
-			}
-		} catch (InterruptedException e) {
-			throw new RuntimeException(e);
-		}
+		// When complete, interpolate the result at zero (where the secret lies)
+		return ThresholdSignatures.recoverSignature(toBeSigned, signatureResponses, publicConfiguration);
 	}
 
 	/*** Static Methods ***/
@@ -14,19 +14,15 @@ import java.security.cert.X509Certificate;
 import java.security.spec.InvalidKeySpecException;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.UUID;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
@@ -105,8 +101,19 @@ public class SchnorrSignatureClient extends BaseClient {
 		System.out.print("Performing threshold Schnorr signature calculation using: " + this.secretName + "... ");
 		final byte[] fileDigest = MessageDigest.getInstance("SHA-512").digest(messageBytes);
 		// final byte[] signatureBytes = localSign(fileDigest);
-		final byte[] signatureBytes = this.computeSignature(fileDigest, currentEpoch,
-				shareVerificationKeysAndEpoch.getKey(), publicKey);
+		byte[] signatureBytes;
+		try {
+			signatureBytes = this.computeSignature(fileDigest, currentEpoch, shareVerificationKeysAndEpoch.getKey(),
+					publicKey);
+		} catch (ResourceUnavailableException e) {
+			// The secret may have been refreshed since its keys were cached, retry once
+			final SimpleEntry<List<EcPoint>, Long> newerKeysAndEpoch = getKeysOfNewerEpoch(secretName, currentEpoch);
+			if (newerKeysAndEpoch == null) {
+				throw e;
+			}
+			signatureBytes = this.computeSignature(fileDigest, newerKeysAndEpoch.getValue(),
+					newerKeysAndEpoch.getKey(), newerKeysAndEpoch.getKey().get(0));
+		}
 		System.out.println(" (done)");
 		System.out.println("Signature obtained:    " + HexUtil.binToHex(signatureBytes));
 		System.out.println();
@@ -331,20 +338,10 @@ public class SchnorrSignatureClient extends BaseClient {
 			throws ResourceUnavailableException {
 
 		// Server configuration
-		final int numShareholders = this.serverConfiguration.getNumServers();
 		final int reconstructionThreshold = this.serverConfiguration.getReconstructionThreshold();
 
-		// We create a thread pool with a thread for each task and remote server
-		final ExecutorService executor = Executors.newFixedThreadPool(numShareholders - 1);
-
-		// The countdown latch tracks progress towards reaching a threshold
-		final CountDownLatch latch = new CountDownLatch(reconstructionThreshold);
-		final AtomicInteger failureCounter = new AtomicInteger(0);
-		final int maximumFailures = (numShareholders - reconstructionThreshold);
-
-		// Each task deposits its result into this map after verifying it is correct and
-		// consistent
-		final List<Object> verifiedResults = Collections.synchronizedList(new ArrayList<>());
+		// Each task returns its result after verifying it is correct and consistent
+		final Map<Integer, PartialResultTask<NonceCommitment>> requests = new HashMap<>();
 
 		// Create a partial result task for everyone except ourselves
 		int serverId = 0;
@@ -358,10 +355,9 @@ public class SchnorrSignatureClient extends BaseClient {
 			final int thisServerId = serverId;
 
 			// Create new task to get the nonce commitment results from the servers
-			executor.submit(new PartialResultTask(this, serverId, linkUrl, verifiedResults, latch, failureCounter,
-					maximumFailures) {
+			requests.put(serverId, new PartialResultTask<NonceCommitment>(this, serverId, linkUrl) {
 				@Override
-				protected void parseJsonResult(final String json) throws Exception {
+				protected NonceCommitment parseJsonResult(final String json) throws Exception {
 
 					// Parse JSON
 					final JSONParser parser = new JSONParser();
@@ -370,6 +366,7 @@ public class SchnorrSignatureClient extends BaseClient {
 
 					final Long responder = (Long) jsonObject.get("responder");
 					final long epoch = (Long) jsonObject.get("epoch");
+					observeEpoch(secretName, thisServerId, epoch);
 
 					final JSONArray dCommitment = (JSONArray) jsonObject.get("gd");
 					final BigInteger dx = new BigInteger((String) dCommitment.get(0));
@@ -382,17 +379,13 @@ public class SchnorrSignatureClient extends BaseClient {
 					// Verify result
 					// TODO: Separate results by their epoch, wait for enough results of the same
 					// epoch
-					// TOOD: Implement retry if epoch mismatch and below threshold
 					if ((responder == thisServerId) && (epoch == expectedEpoch)) {
 
 						final EcPoint dCommitmentPoint = new EcPoint(dx, dy);
 						final EcPoint eCommitmentPoint = new EcPoint(ex, ey);
 
-						// Store result for later processing
-						verifiedResults.add(new NonceCommitment(thisServerId, dCommitmentPoint, eCommitmentPoint));
-
-						// Everything checked out, increment successes
-						latch.countDown();
+						// Return result for later processing
+						return new NonceCommitment(thisServerId, dCommitmentPoint, eCommitmentPoint);
 					} else {
 						throw new Exception(
 								"Server " + thisServerId + " sent inconsistent results (likely during epoch change)");
@@ -402,33 +395,8 @@ public class SchnorrSignatureClient extends BaseClient {
 			});
 		}
 
-		try {
-			// Once we have K successful responses we can interpolate our share
-			latch.await();
-
-			// Check that we have enough results to interpolate the share
-			if (failureCounter.get() <= maximumFailures) {
-
-				List<NonceCommitment> results = verifiedResults.stream().map(obj -> createNonceCommitment(obj))
-						.collect(Collectors.toList());
-
-				return results;
-			} else {
-				executor.shutdown();
-				throw new ResourceUnavailableException();
-			}
-		} catch (InterruptedException e) {
-			throw new RuntimeException(e);
-		}
-
-	}
-
-	private static SignatureResponse createSignatureResponse(Object obj) {
-		return (SignatureResponse) obj;
-	}
-
-	private static NonceCommitment createNonceCommitment(Object obj) {
-		return (NonceCommitment) obj;
+		// Once we have K successful responses we can compute the signature
+		return fanOut.invoke(requests, reconstructionThreshold);
 	}
 
 	/**
@@ -444,17 +412,8 @@ public class SchnorrSignatureClient extends BaseClient {
 			final UUID nonceCacheId, final SortedMap<BigInteger, NonceCommitment> commitmentMap)
 			throws ResourceUnavailableException {
 
-		// We create a thread pool with a thread for each task and remote server
-		final ExecutorService executor = Executors.newFixedThreadPool(commitmentMap.size());
-
-		// The countdown latch tracks progress towards reaching a threshold
-		final CountDownLatch latch = new CountDownLatch(commitmentMap.size());
-		final AtomicInteger failureCounter = new AtomicInteger(0);
-		final int maximumFailures = 0;
-
-		// Each task deposits its result into this map after verifying it is correct and
-		// consistent
-		final List<Object> verifiedResults = Collections.synchronizedList(new ArrayList<>());
+		// Each task returns its result after verifying it is correct and consistent
+		final Map<Integer, PartialResultTask<SignatureResponse>> requests = new HashMap<>();
 
 		// Create a partial result task for everyone except ourselves
 		int serverId = 0;
@@ -489,10 +448,9 @@ public class SchnorrSignatureClient extends BaseClient {
 			final int thisServerId = serverId;
 
 			// Create new task to get the nonce commitment results from the servers
-			executor.submit(new PartialResultTask(this, serverId, linkUrl, verifiedResults, latch, failureCounter,
-					maximumFailures) {
+			requests.put(serverId, new PartialResultTask<SignatureResponse>(this, serverId, linkUrl) {
 				@Override
-				protected void parseJsonResult(final String json) throws Exception {
+				protected SignatureResponse parseJsonResult(final String json) throws Exception {
 
 					// Parse JSON
 					final JSONParser parser = new JSONParser();
@@ -501,20 +459,17 @@ public class SchnorrSignatureClient extends BaseClient {
 
 					final Long responder = (Long) jsonObject.get("responder");
 					final long epoch = (Long) jsonObject.get("epoch");
+					observeEpoch(secretName, thisServerId, epoch);
 
 					final BigInteger share = new BigInteger((String) jsonObject.get("share"));
 
 					// Verify result
 					// TODO: Separate results by their epoch, wait for enough results of the same
 					// epoch
-					// TOOD: Implement retry if epoch mismatch and below threshold
 					if ((responder == thisServerId) && (epoch == expectedEpoch)) {
 
-						// Store result for later processing
-						verifiedResults.add(new SignatureResponse(responder, share));
-
-						// Everything checked out, increment successes
-						latch.countDown();
+						// Return result for later processing
+						return new SignatureResponse(responder, share);
 					} else {
 						throw new Exception(
 								"Server " + thisServerId + " sent inconsistent results (likely during epoch change)");
@@ -524,25 +479,8 @@ public class SchnorrSignatureClient extends BaseClient {
 			});
 		}
 
-		try {
-			// Once we have K successful responses we can interpolate our share
-			latch.await();
-
-			// Check that we have enough results to interpolate the share
-			if (failureCounter.get() <= maximumFailures) {
-
-				List<SignatureResponse> results = verifiedResults.stream().map(obj -> createSignatureResponse(obj))
-						.collect(Collectors.toList());
-
-				return results;
-			} else {
-				executor.shutdown();
-				throw new ResourceUnavailableException();
-			}
-		} catch (InterruptedException e) {
-			throw new RuntimeException(e);
-		}
-
+		// Every server that committed must contribute to the signature
+		return fanOut.invoke(requests, requests.size());
 	}
 
 	public static final class SignatureResponse implements Comparable<SignatureResponse> {
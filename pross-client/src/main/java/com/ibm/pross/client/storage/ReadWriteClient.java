@@ -16,13 +16,9 @@ import java.security.cert.X509Certificate;
 import java.security.spec.InvalidKeySpecException;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
@@ -147,6 +143,9 @@ public class ReadWriteClient extends BaseClient {
 		Thread.sleep(5000);
 		System.out.println(" (done)");
 		
+		// Any keys we had for this secret are now out of date
+		this.verificationKeyCache.invalidate(secretName);
+
 		// Verify DKG
 		// Get public keys from the server
 		System.out.print("Accessing public key for secret: " + this.secretName + "... ");
@@ -185,13 +184,25 @@ public class ReadWriteClient extends BaseClient {
 		System.out.print("Accessing public key for secret: " + this.secretName + "... ");
 		final SimpleEntry<List<EcPoint>, Long> publicKeyAndEpoch = this.getServerVerificationKeys(secretName);
 		System.out.println(" (done)");
-		final List<EcPoint> publicKeys = publicKeyAndEpoch.getKey();
+		List<EcPoint> publicKeys = publicKeyAndEpoch.getKey();
 		System.out.println("Stored Public key for secret:    " + publicKeys.get(0));
 		System.out.println();
 
 		// Attempt recovery of the stored secret
 		System.out.println("Reading shares to decode secret: " + this.secretName);
-		final BigInteger recoveredSecret = this.readShares(publicKeys);
+		BigInteger recoveredSecret;
+		try {
+			recoveredSecret = this.readShares(publicKeys);
+		} catch (ResourceUnavailableException e) {
+			// Shares are checked against the cached keys, which may be of an earlier epoch
+			final SimpleEntry<List<EcPoint>, Long> newerKeysAndEpoch = getKeysOfNewerEpoch(secretName,
+					publicKeyAndEpoch.getValue());
+			if (newerKeysAndEpoch == null) {
+				throw e;
+			}
+			publicKeys = newerKeysAndEpoch.getKey();
+			recoveredSecret = this.readShares(publicKeys);
+		}
 		final EcPoint publicKeyOfSecret = CommonConfiguration.CURVE.multiply(CommonConfiguration.g, recoveredSecret);
 		System.out.println("Public key of recvered secret = " + publicKeyOfSecret);
 		boolean secretsMatch = publicKeyOfSecret.equals(publicKeys.get(0));
@@ -290,10 +301,6 @@ public class ReadWriteClient extends BaseClient {
 		}
 	}
 
-	private static ShamirShare createShamirShare(Object obj) {
-		return (ShamirShare) obj;
-	}
-
 	/**
 	 * Interacts with the servers to store an shares of a user provided secret
 	 * 
@@ -306,19 +313,10 @@ public class ReadWriteClient extends BaseClient {
 			throws ResourceUnavailableException, BelowThresholdException {
 
 		// Server configuration
-		final int numShareholders = this.serverConfiguration.getNumServers();
 		final int reconstructionThreshold = this.serverConfiguration.getReconstructionThreshold();
 
-		// We create a thread pool with a thread for each task and remote server
-		final ExecutorService executor = Executors.newFixedThreadPool(numShareholders - 1);
-
-		// The countdown latch tracks progress towards reaching a threshold
-		final CountDownLatch latch = new CountDownLatch(reconstructionThreshold);
-		final AtomicInteger failureCounter = new AtomicInteger(0);
-		final int maximumFailures = (numShareholders - reconstructionThreshold);
-
-		// Each task deposits its result into this map after verifying it is good
-		final List<Object> successfulResults = Collections.synchronizedList(new ArrayList<>());
+		// Each task returns its result after verifying it is correct and consistent
+		final Map<Integer, PartialResultTask<Boolean>> requests = new HashMap<>();
 
 		// Create a partial result task for everyone
 		int serverId = 0;
@@ -334,39 +332,21 @@ public class ReadWriteClient extends BaseClient {
 					+ "&share=" + share;
 
 			// Create new task to get the partial exponentiation result from the server
-			executor.submit(new PartialResultTask(this, serverId, linkUrl, successfulResults, latch, failureCounter,
-					maximumFailures) {
+			requests.put(serverId, new PartialResultTask<Boolean>(this, serverId, linkUrl) {
 				@Override
-				protected void parseJsonResult(final String json) throws Exception {
-					// Store result for later processing
-					successfulResults.add(Boolean.TRUE);
-
-					// Everything checked out, increment successes
-					latch.countDown();
+				protected Boolean parseJsonResult(final String json) throws Exception {
+					// Everything checked out
+					return Boolean.TRUE;
 				}
 			});
 		}
 
-		try {
-			// Once we have K successful responses we can interpolate our share
-			latch.await();
-
-			// Check that we have enough results to interpolate the share
-			if (failureCounter.get() <= maximumFailures) {
+		// Once we have K successful responses the secret is stored
+		final List<Boolean> successfulResults = fanOut.invoke(requests, reconstructionThreshold);
+		final Boolean wereSuccessful = (Boolean) getConsistentConfiguration(new ArrayList<Object>(successfulResults),
+				reconstructionThreshold);
 
-				// When complete, interpolate the result at zero (where the secret lies)
-				final Boolean wereSuccessful = (Boolean) getConsistentConfiguration(successfulResults,
-						reconstructionThreshold);
-				executor.shutdown();
-
-				return wereSuccessful;
-			} else {
-				executor.shutdown();
-				throw new ResourceUnavailableException();
-			}
-		} catch (InterruptedException e) {
-			throw new RuntimeException(e);
-		}
+		return wereSuccessful;
 	}
 
 	/**
@@ -379,20 +359,8 @@ public class ReadWriteClient extends BaseClient {
 	 */
 	private Boolean storeShares() throws ResourceUnavailableException, BelowThresholdException {
 
-		// Server configuration
-		final int numShareholders = this.serverConfiguration.getNumServers();
-
-		// We create a thread pool with a thread for each task and remote server
-		final ExecutorService executor = Executors.newFixedThreadPool(numShareholders - 1);
-
-		// The countdown latch tracks progress towards reaching a threshold (in this
-		// case 1)
-		final CountDownLatch latch = new CountDownLatch(1);
-		final AtomicInteger failureCounter = new AtomicInteger(0);
-		final int maximumFailures = (numShareholders - 1);
-
-		// Each task deposits its result into this map after verifying it is good
-		final List<Object> successfulResults = Collections.synchronizedList(new ArrayList<>());
+		// Each task returns its result after verifying it is correct and consistent
+		final Map<Integer, PartialResultTask<Boolean>> requests = new HashMap<>();
 
 		// Create a partial result task for everyone
 		int serverId = 0;
@@ -404,36 +372,19 @@ public class ReadWriteClient extends BaseClient {
 			final String linkUrl = "https://" + serverIp + ":" + serverPort + "/generate?secretName=" + this.secretName;
 
 			// Create new task to get the partial exponentiation result from the server
-			executor.submit(new PartialResultTask(this, serverId, linkUrl, successfulResults, latch, failureCounter,
-					maximumFailures) {
+			requests.put(serverId, new PartialResultTask<Boolean>(this, serverId, linkUrl) {
 				@Override
-				protected void parseJsonResult(final String json) throws Exception {
-					// Store result for later processing
-					successfulResults.add(Boolean.TRUE);
-
-					// Everything checked out, increment successes
-					latch.countDown();
+				protected Boolean parseJsonResult(final String json) throws Exception {
+					// Everything checked out
+					return Boolean.TRUE;
 				}
 			});
 		}
 
-		try {
-			// Once we have 1 successful response we can interpolate our share
-			latch.await();
-
-			// Check that we have enough results to interpolate the share
-			if (failureCounter.get() <= maximumFailures) {
-
-				executor.shutdown();
+		// Once we have 1 successful response the shares are generated
+		fanOut.invoke(requests, 1);
 
-				return true;
-			} else {
-				executor.shutdown();
-				throw new ResourceUnavailableException();
-			}
-		} catch (InterruptedException e) {
-			throw new RuntimeException(e);
-		}
+		return true;
 	}
 
 	/**
@@ -451,21 +402,10 @@ public class ReadWriteClient extends BaseClient {
 			throws ResourceUnavailableException, BadArgumentException, BelowThresholdException {
 
 		// Server configuration
-		final int numShareholders = this.serverConfiguration.getNumServers();
 		final int reconstructionThreshold = this.serverConfiguration.getReconstructionThreshold();
 
-		// We create a thread pool with a thread for each task and remote server
-		final ExecutorService executor = Executors.newFixedThreadPool(numShareholders - 1);
-
-		// The countdown latch tracks progress towards reaching a threshold
-		final CountDownLatch latch = new CountDownLatch(reconstructionThreshold);
-		final AtomicInteger failureCounter = new AtomicInteger(0);
-		final int maximumFailures = (numShareholders - reconstructionThreshold);
-
-		// Each task deposits its result into this map after verifying it is correct and
-		// consistent
-		// TODO: Add verification via proofs
-		final List<Object> shareResponses = Collections.synchronizedList(new ArrayList<>());
+		// Each task returns its result after verifying it is correct and consistent
+		final Map<Integer, PartialResultTask<ShamirShare>> requests = new HashMap<>();
 
 		// Create a partial result task for everyone except ourselves
 		int serverId = 0;
@@ -479,10 +419,9 @@ public class ReadWriteClient extends BaseClient {
 			final int thisServerId = serverId;
 
 			// Create new task to get the partial exponentiation result from the server
-			executor.submit(new PartialResultTask(this, serverId, linkUrl, shareResponses, latch, failureCounter,
-					maximumFailures) {
+			requests.put(serverId, new PartialResultTask<ShamirShare>(this, serverId, linkUrl) {
 				@Override
-				protected void parseJsonResult(final String json) throws Exception {
+				protected ShamirShare parseJsonResult(final String json) throws Exception {
 
 					// Parse JSON
 					final JSONParser parser = new JSONParser();
@@ -490,6 +429,7 @@ public class ReadWriteClient extends BaseClient {
 					final JSONObject jsonObject = (JSONObject) obj;
 					final Long responder = (Long) jsonObject.get("responder");
 					final long epoch = (Long) jsonObject.get("epoch");
+					observeEpoch(secretName, thisServerId, epoch);
 					if (jsonObject.get("share") != null) {
 						final BigInteger share = new BigInteger((String) jsonObject.get("share"));
 
@@ -507,11 +447,8 @@ public class ReadWriteClient extends BaseClient {
 							// Create a shamir share object and add it to the list of responses
 							final ShamirShare shamirShare = new ShamirShare(BigInteger.valueOf(thisServerId), share);
 
-							// Store result for later processing
-							shareResponses.add(shamirShare);
-
-							// Everything checked out, increment successes
-							latch.countDown();
+							// Return result for later processing
+							return shamirShare;
 						} else {
 							throw new Exception("Server " + thisServerId
 									+ " sent inconsistent results (likely during epoch change)");
@@ -525,29 +462,11 @@ public class ReadWriteClient extends BaseClient {
 			});
 		}
 
-		try {
-			// Once we have K successful responses we can interpolate our share
-			latch.await();
-
-			// Check that we have enough results to interpolate the share
-			if (failureCounter.get() <= maximumFailures) {
-
-				final List<ShamirShare> results = shareResponses.stream()
-						.map(obj -> createShamirShare(obj)).collect(Collectors.toList());
+		// Once we have K successful responses we can interpolate our share
+		final List<ShamirShare> results = fanOut.invoke(requests, reconstructionThreshold);
 
-				// When complete, interpolate the result at zero (where the secret lies)
-				final BigInteger secret = Polynomials.interpolateComplete(results, reconstructionThreshold, 0);
-
-				executor.shutdown();
-
-				return secret;
-			} else {
-				executor.shutdown();
-				throw new ResourceUnavailableException();
-			}
-		} catch (InterruptedException e) {
-			throw new RuntimeException(e);
-		}
+		// When complete, interpolate the result at zero (where the secret lies)
+		return Polynomials.interpolateComplete(results, reconstructionThreshold, 0);
 	}
 
 
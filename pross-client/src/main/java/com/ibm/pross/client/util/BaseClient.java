@@ -1,35 +1,20 @@
 package com.ibm.pross.client.util;
 
-import java.io.IOException;
 import java.math.BigInteger;
 import java.net.InetSocketAddress;
-import java.security.KeyManagementException;
-import java.security.KeyStore;
-import java.security.KeyStoreException;
-import java.security.NoSuchAlgorithmException;
+import java.security.GeneralSecurityException;
 import java.security.PrivateKey;
-import java.security.SecureRandom;
 import java.security.Security;
-import java.security.UnrecoverableKeyException;
-import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.net.ssl.HttpsURLConnection;
-import javax.net.ssl.KeyManagerFactory;
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManagerFactory;
 
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.json.simple.JSONArray;
@@ -40,8 +25,10 @@ import com.ibm.pross.common.config.CommonConfiguration;
 import com.ibm.pross.common.config.KeyLoader;
 import com.ibm.pross.common.config.ServerConfiguration;
 import com.ibm.pross.common.exceptions.http.ResourceUnavailableException;
+import com.ibm.pross.common.util.concurrent.FanOutEngine;
 import com.ibm.pross.common.util.crypto.ecc.EcPoint;
 import com.ibm.pross.common.util.crypto.rsa.threshold.sign.exceptions.BelowThresholdException;
+import com.ibm.pross.common.util.tls.HttpsConnectionManager;
 
 import net.i2p.crypto.eddsa.EdDSASecurityProvider;
 
@@ -71,6 +58,15 @@ public class BaseClient {
 	protected final X509Certificate clientCertificate;
 	protected final PrivateKey clientTlsKey;
 
+	// Pools our connections to the servers
+	protected final HttpsConnectionManager connectionManager;
+
+	// Sends requests to the servers, shared by all clients to track server latency
+	protected static final FanOutEngine fanOut = new FanOutEngine();
+
+	// Keys of the secrets we have used, so operations need not first fetch them
+	protected final VerificationKeyCache verificationKeyCache;
+
 	/**
 	 * Constructor for base clients. This requires the minimum configuration
 	 * information for a client to connect to the servers, authenticate them, and
@@ -90,42 +86,53 @@ public class BaseClient {
 		this.serverKeys = serverKeys;
 		this.clientCertificate = clientCertificate;
 		this.clientTlsKey = clientTlsKey;
-	}
-
-	protected void configureHttps(final HttpsURLConnection httpsConnection, final int remoteServerId)
-			throws KeyStoreException, NoSuchAlgorithmException, CertificateException, IOException,
-			UnrecoverableKeyException, KeyManagementException {
-
-		// Configure SSL context
-		final SSLContext sslContext = SSLContext.getInstance(CommonConfiguration.TLS_VERSION);
 
-		// Create in-memory key store
-		final KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
-		final char[] password = "password".toCharArray();
-		keyStore.load(null, password);
-
-		// Add the CA certificate for the server
-		keyStore.setCertificateEntry("ca-" + remoteServerId, this.caCertificates.get(remoteServerId - 1));
-
-		// Add certificate and private key for the server
 		// Note: Client CA cert is last after all the servers
 		final X509Certificate ourCaCert = this.caCertificates.get(this.serverConfiguration.getNumServers());
-		keyStore.setKeyEntry("host", this.clientTlsKey, password,
-				new X509Certificate[] { clientCertificate, ourCaCert });
+		this.connectionManager = new HttpsConnectionManager(clientTlsKey,
+				new X509Certificate[] { clientCertificate, ourCaCert }, caCertificates);
+
+		this.verificationKeyCache = new VerificationKeyCache(new VerificationKeyCache.Source() {
+			@Override
+			public SimpleEntry<List<EcPoint>, Long> fetch(final String secretName)
+					throws ResourceUnavailableException, BelowThresholdException {
+				return fetchServerVerificationKeys(secretName);
+			}
+		}, this.serverConfiguration.getReconstructionThreshold());
+	}
 
-		// Make Key Manager Factory
-		final KeyManagerFactory kmf = KeyManagerFactory.getInstance("SunX509");
-		kmf.init(keyStore, password);
+	protected void configureHttps(final HttpsURLConnection httpsConnection, final int remoteServerId)
+			throws GeneralSecurityException {
+		this.connectionManager.configure(httpsConnection, remoteServerId);
+	}
 
-		// Setup the trust manager factory
-		final TrustManagerFactory tmf = TrustManagerFactory.getInstance("SunX509");
-		tmf.init(keyStore);
+	/**
+	 * Returns the manager of our connections to the servers, such as to report
+	 * how many connections were reused
+	 */
+	public HttpsConnectionManager getConnectionManager() {
+		return this.connectionManager;
+	}
 
-		// Initialize the context
-		sslContext.init(kmf.getKeyManagers(), tmf.getTrustManagers(), new SecureRandom());
+	public static FanOutEngine getFanOutEngine() {
+		return fanOut;
+	}
+
+	public VerificationKeyCache getVerificationKeyCache() {
+		return this.verificationKeyCache;
+	}
 
-		// Get the socket factory from the context
-		httpsConnection.setSSLSocketFactory(sslContext.getSocketFactory());
+	/**
+	 * Called with the epoch reported in each server response, so that cached keys
+	 * are dropped once the secret moves to a new epoch
+	 * 
+	 * @param secretName
+	 * @param serverIndex
+	 *            The server which sent the response
+	 * @param epoch
+	 */
+	protected void observeEpoch(final String secretName, final int serverIndex, final long epoch) {
+		this.verificationKeyCache.observeEpoch(secretName, serverIndex, epoch);
 	}
 
 	protected Object getConsistentConfiguration(final Collection<Object> configurationData, int threshold)
@@ -167,37 +174,65 @@ public class BaseClient {
 		return mostCommonConfig;
 	}
 
+	/**
+	 * Returns the public key and share verification keys of the secret, and its
+	 * epoch, fetching them from the servers if they are not cached
+	 * 
+	 * @param secretName
+	 * @return
+	 * @throws ResourceUnavailableException
+	 * @throws BelowThresholdException
+	 */
+	protected SimpleEntry<List<EcPoint>, Long> getServerVerificationKeys(final String secretName)
+			throws ResourceUnavailableException, BelowThresholdException {
+		return this.verificationKeyCache.get(secretName);
+	}
+
+	/**
+	 * Called after an operation using the keys of the given epoch failed. Cached
+	 * keys are used until threshold-many servers report a newer epoch, so the
+	 * first operations after an epoch change fail. If any server reported a newer
+	 * epoch the keys are fetched again, and returned if they are of a newer epoch
+	 * so that the operation can be retried once with them.
+	 * 
+	 * @param secretName
+	 * @param failedEpoch
+	 *            The epoch of the keys used by the failed operation
+	 * @return The keys of a newer epoch, or null if the failure was not caused by
+	 *         an epoch change
+	 */
+	protected SimpleEntry<List<EcPoint>, Long> getKeysOfNewerEpoch(final String secretName, final long failedEpoch) {
+		if (!this.verificationKeyCache.mayBeStale(secretName, failedEpoch)) {
+			return null;
+		}
+		try {
+			final SimpleEntry<List<EcPoint>, Long> keysAndEpoch = this.verificationKeyCache.refresh(secretName);
+			return (keysAndEpoch.getValue() > failedEpoch) ? keysAndEpoch : null;
+		} catch (ResourceUnavailableException | BelowThresholdException e) {
+			// Report the failure of the operation instead
+			return null;
+		}
+	}
+
 	/**
 	 * Interacts with the servers to determine the public key of the secret (by
 	 * majority vote)
 	 * 
-	 * @param inputPoint
+	 * @param secretName
 	 * @return
 	 * @throws ResourceUnavailableException
 	 * @throws BelowThresholdException
 	 */
 	@SuppressWarnings("unchecked")
-	protected SimpleEntry<List<EcPoint>, Long> getServerVerificationKeys(final String secretName)
+	protected SimpleEntry<List<EcPoint>, Long> fetchServerVerificationKeys(final String secretName)
 			throws ResourceUnavailableException, BelowThresholdException {
 
 		// Server configuration
 		final int numShareholders = this.serverConfiguration.getNumServers();
 		final int reconstructionThreshold = this.serverConfiguration.getReconstructionThreshold();
 
-		// We create a thread pool with a thread for each task and remote server
-		final ExecutorService executor = Executors.newFixedThreadPool(numShareholders - 1);
-
-		// The countdown latch tracks progress towards reaching a threshold
-		final CountDownLatch latch = new CountDownLatch(reconstructionThreshold);
-		final AtomicInteger failureCounter = new AtomicInteger(0);
-		final int maximumFailures = (numShareholders - reconstructionThreshold);
-
-		// Each task deposits its result into this map after verifying it is correct and
-		// consistent
-		// TODO: Add verification via proofs
-		final List<Object> collectedResults = Collections.synchronizedList(new ArrayList<>());
-
-		// Create a partial result task for everyone except ourselves
+		// Create a partial result task for everyone
+		final Map<Integer, PartialResultTask<SimpleEntry<List<EcPoint>, Long>>> requests = new HashMap<>();
 		int serverId = 0;
 		for (final InetSocketAddress serverAddress : this.serverConfiguration.getServerAddresses()) {
 			serverId++;
@@ -209,10 +244,9 @@ public class BaseClient {
 			final int thisServerId = serverId;
 
 			// Create new task to get the secret info from the server
-			executor.submit(new PartialResultTask(this, serverId, linkUrl, collectedResults, latch, failureCounter,
-					maximumFailures) {
+			requests.put(serverId, new PartialResultTask<SimpleEntry<List<EcPoint>, Long>>(this, serverId, linkUrl) {
 				@Override
-				protected void parseJsonResult(final String json) throws Exception {
+				protected SimpleEntry<List<EcPoint>, Long> parseJsonResult(final String json) throws Exception {
 
 					// Parse JSON
 					final JSONParser parser = new JSONParser();
@@ -233,14 +267,9 @@ public class BaseClient {
 						verificationKeys.add(new EcPoint(x2, y2));
 					}
 
-					// Store parsed result
+					// Return parsed result
 					if ((responder == thisServerId)) {
-
-						// Store result for later processing
-						collectedResults.add(new SimpleEntry<List<EcPoint>, Long>(verificationKeys, epoch));
-
-						// Everything checked out, increment successes
-						latch.countDown();
+						return new SimpleEntry<List<EcPoint>, Long>(verificationKeys, epoch);
 					} else {
 						throw new Exception("Server " + thisServerId + " sent inconsistent results");
 					}
@@ -249,27 +278,13 @@ public class BaseClient {
 			});
 		}
 
-		try {
-			// Once we have K successful responses we attempt to find a consistent
-			// configuration
-			// FIXME: There is a better way of doing this, map result to a counter, wait for
-			// counter to reach majority (or fail)
-			// if not enough remaining responses permit getting a majority
-			latch.await();
-
-			// Check that we have enough results to interpolate the share
-			if (failureCounter.get() <= maximumFailures) {
-
-				executor.shutdown();
-
-				return (SimpleEntry<List<EcPoint>, Long>) getConsistentConfiguration(collectedResults,
-						reconstructionThreshold);
-			} else {
-				executor.shutdown();
-				throw new ResourceUnavailableException();
-			}
-		} catch (InterruptedException e) {
-			throw new RuntimeException(e);
-		}
+		// Once we have K successful responses we attempt to find a consistent
+		// configuration
+		// FIXME: There is a better way of doing this, wait for a majority (or fail) if
+		// not enough remaining responses permit getting a majority
+		final List<SimpleEntry<List<EcPoint>, Long>> collectedResults = fanOut.invoke(requests,
+				reconstructionThreshold);
+		return (SimpleEntry<List<EcPoint>, Long>) getConsistentConfiguration(new ArrayList<Object>(collectedResults),
+				reconstructionThreshold);
 	}
 }
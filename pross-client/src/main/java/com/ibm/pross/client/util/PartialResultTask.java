@@ -8,13 +8,17 @@ import java.security.PublicKey;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
-import java.util.List;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.net.ssl.HttpsURLConnection;
 
-public abstract class PartialResultTask implements Runnable {
+import com.ibm.pross.common.util.concurrent.FanOutEngine;
+import com.ibm.pross.common.util.concurrent.FanOutEngine.ServerRequest;
+
+/**
+ * Requests a partial result from one server, returning it once the identity of
+ * the server has been checked and the result parsed and verified
+ */
+public abstract class PartialResultTask<T> implements ServerRequest<T> {
 
 	// Creator class
 	private final BaseClient baseClient;
@@ -23,27 +27,16 @@ public abstract class PartialResultTask implements Runnable {
 	private final int remoteServerId;
 	private final String requestUrl;
 
-	// State management
-	private final CountDownLatch latch;
-	private final AtomicInteger failureCounter;
-	private final int maximumFailures;
-
-	public PartialResultTask(final BaseClient baseClient, final int remoteServerId, final String requestUrl, final List<Object> verifiedResults,
-			final CountDownLatch latch, final AtomicInteger failureCounter, final int maximumFailures) {
+	public PartialResultTask(final BaseClient baseClient, final int remoteServerId, final String requestUrl) {
 
 		this.baseClient = baseClient;
 		// Remote server info
 		this.remoteServerId = remoteServerId;
 		this.requestUrl = requestUrl;
-
-		// State management
-		this.latch = latch;
-		this.failureCounter = failureCounter;
-		this.maximumFailures = maximumFailures;
 	}
 
 	@Override
-	public void run() {
+	public T call() throws Exception {
 
 		try {
 			// Create HTTPS connection to the remote server
@@ -78,23 +71,25 @@ public abstract class PartialResultTask implements Runnable {
 				final String inputLine = bufferedReader.readLine();
 
 				// Parse and process
-				this.parseJsonResult(inputLine);
-
+				return this.parseJsonResult(inputLine);
 			}
 
 		} catch (Exception e) {
-			// Increment failure counter
-			final int numFailures = this.failureCounter.incrementAndGet();
-
-			// Check if there have been too many failures to succeed
-			if (numFailures == (maximumFailures + 1)) { // n - k + 1
-				while (latch.getCount() > 0) {
-					latch.countDown();
-				}
+			// Requests still running once enough servers responded are cancelled
+			if (!FanOutEngine.isCancellation(e)) {
+				System.err.println("Exception from server #" + remoteServerId + ": " + e.getMessage());
 			}
-			System.err.println("Exception from server #" + remoteServerId + ": " + e.getMessage());
+			throw e;
 		}
 	}
 
-	protected abstract void parseJsonResult(final String jsonString) throws Exception;
-}
\ No newline at end of file
+	/**
+	 * Parses and verifies the response of the server
+	 * 
+	 * @param jsonString
+	 * @return The result to use from this server
+	 * @throws Exception
+	 *             If the result is invalid
+	 */
+	protected abstract T parseJsonResult(final String jsonString) throws Exception;
+}
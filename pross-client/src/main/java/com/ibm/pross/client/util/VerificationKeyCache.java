@@ -0,0 +1,233 @@
+package com.ibm.pross.client.util;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ibm.pross.common.exceptions.http.ResourceUnavailableException;
+import com.ibm.pross.common.util.concurrent.NamedThreadFactory;
+import com.ibm.pross.common.util.crypto.ecc.EcPoint;
+import com.ibm.pross.common.util.crypto.rsa.threshold.sign.exceptions.BelowThresholdException;
+
+/**
+ * Caches the public key and share verification keys of each secret, along with
+ * the epoch they were agreed for, so that operations need not first query
+ * every server for them.
+ *
+ * An entry is dropped once threshold-many distinct servers report a newer
+ * epoch for its secret, so that a single faulty server cannot force keys to be
+ * fetched again, or once it is older than MAX_AGE_MS. Entries may also be refreshed in the
+ * background so that operations rarely wait for them. An operation which fails
+ * after a server reported a newer epoch than that of its keys is retried once
+ * by the client with the keys of the new epoch.
+ */
+public class VerificationKeyCache {
+
+	// Maximum time an entry is used before fetching it again, zero to disable
+	public static long MAX_AGE_MS = 5 * 60 * 1000;
+
+	/**
+	 * Fetches the keys of a secret from the servers
+	 */
+	public interface Source {
+
+		/**
+		 * @return The public key followed by the share verification keys, and the
+		 *         epoch of the secret
+		 */
+		SimpleEntry<List<EcPoint>, Long> fetch(String secretName)
+				throws ResourceUnavailableException, BelowThresholdException;
+	}
+
+	private static class CachedKeys {
+		private final SimpleEntry<List<EcPoint>, Long> keysAndEpoch;
+		private final long fetchedTime;
+
+		// Servers which have reported a newer epoch than that of the keys
+		private final Set<Integer> newerEpochReporters = ConcurrentHashMap.newKeySet();
+
+		public CachedKeys(final SimpleEntry<List<EcPoint>, Long> keysAndEpoch) {
+			this.keysAndEpoch = keysAndEpoch;
+			this.fetchedTime = System.currentTimeMillis();
+		}
+
+		public long getEpoch() {
+			return this.keysAndEpoch.getValue();
+		}
+
+		public boolean isExpired() {
+			return (MAX_AGE_MS > 0) && ((System.currentTimeMillis() - this.fetchedTime) > MAX_AGE_MS);
+		}
+	}
+
+	private final Source source;
+	private final int threshold;
+	private final ConcurrentMap<String, CachedKeys> entries = new ConcurrentHashMap<>();
+
+	// Background refresh, if started
+	private ScheduledExecutorService refresher;
+	private ScheduledFuture<?> refreshTask;
+
+	// Statistics
+	private final AtomicLong hits = new AtomicLong(0);
+	private final AtomicLong misses = new AtomicLong(0);
+	private final AtomicLong invalidations = new AtomicLong(0);
+
+	/**
+	 * @param source
+	 * @param threshold
+	 *            Number of distinct servers which must report a newer epoch before
+	 *            the keys of a secret are dropped
+	 */
+	public VerificationKeyCache(final Source source, final int threshold) {
+		this.source = source;
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Returns the keys and epoch of a secret, fetching them from the servers if
+	 * they are not cached
+	 *
+	 * @param secretName
+	 * @return
+	 * @throws ResourceUnavailableException
+	 * @throws BelowThresholdException
+	 */
+	public SimpleEntry<List<EcPoint>, Long> get(final String secretName)
+			throws ResourceUnavailableException, BelowThresholdException {
+		final CachedKeys cached = this.entries.get(secretName);
+		if ((cached != null) && !cached.isExpired()) {
+			this.hits.incrementAndGet();
+			return cached.keysAndEpoch;
+		}
+		this.misses.incrementAndGet();
+		return refresh(secretName);
+	}
+
+	/**
+	 * Fetches the keys of a secret from the servers and caches them
+	 */
+	public SimpleEntry<List<EcPoint>, Long> refresh(final String secretName)
+			throws ResourceUnavailableException, BelowThresholdException {
+		final SimpleEntry<List<EcPoint>, Long> keysAndEpoch = this.source.fetch(secretName);
+		final CachedKeys fetched = new CachedKeys(keysAndEpoch);
+
+		// Never replace keys with those of an older epoch
+		while (true) {
+			final CachedKeys existing = this.entries.get(secretName);
+			if (existing == null) {
+				if (this.entries.putIfAbsent(secretName, fetched) == null) {
+					break;
+				}
+			} else if (existing.getEpoch() > fetched.getEpoch()) {
+				return existing.keysAndEpoch;
+			} else if (this.entries.replace(secretName, existing, fetched)) {
+				break;
+			}
+		}
+		return keysAndEpoch;
+	}
+
+	/**
+	 * Records the epoch a server reported for a secret, dropping the cached keys
+	 * once threshold-many servers have reported an epoch after theirs
+	 *
+	 * @param secretName
+	 * @param serverIndex
+	 *            The server which reported the epoch
+	 * @param epoch
+	 */
+	public void observeEpoch(final String secretName, final int serverIndex, final long epoch) {
+		final CachedKeys cached = this.entries.get(secretName);
+		if ((cached == null) || (cached.getEpoch() >= epoch)) {
+			return;
+		}
+		cached.newerEpochReporters.add(serverIndex);
+		if ((cached.newerEpochReporters.size() >= this.threshold) && this.entries.remove(secretName, cached)) {
+			this.invalidations.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Returns true if the keys of the given epoch may no longer be current for
+	 * the secret: they were dropped or replaced, or a server has reported a newer
+	 * epoch than theirs
+	 *
+	 * @param secretName
+	 * @param epoch
+	 *            The epoch of the keys an operation used
+	 * @return
+	 */
+	public boolean mayBeStale(final String secretName, final long epoch) {
+		final CachedKeys cached = this.entries.get(secretName);
+		return (cached == null) || (cached.getEpoch() != epoch) || !cached.newerEpochReporters.isEmpty();
+	}
+
+	/**
+	 * Drops the cached keys of a secret, such as after it has been written
+	 */
+	public void invalidate(final String secretName) {
+		if (this.entries.remove(secretName) != null) {
+			this.invalidations.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Periodically fetches the keys of every cached secret in the background
+	 *
+	 * @param periodMs
+	 *            Time between refreshes, should be less than MAX_AGE_MS
+	 */
+	public synchronized void startRefresh(final long periodMs) {
+		stopRefresh();
+		if (this.refresher == null) {
+			this.refresher = Executors
+					.newSingleThreadScheduledExecutor(new NamedThreadFactory("verification-key-refresh"));
+		}
+		this.refreshTask = this.refresher.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				for (final String secretName : entries.keySet()) {
+					try {
+						refresh(secretName);
+					} catch (ResourceUnavailableException | BelowThresholdException e) {
+						// Keep the existing keys, they will be fetched again when used
+						System.err.println("Failed to refresh keys for secret '" + secretName + "': " + e);
+					}
+				}
+			}
+		}, periodMs, periodMs, TimeUnit.MILLISECONDS);
+	}
+
+	public synchronized void stopRefresh() {
+		if (this.refreshTask != null) {
+			this.refreshTask.cancel(false);
+			this.refreshTask = null;
+		}
+	}
+
+	public long getHitCount() {
+		return this.hits.get();
+	}
+
+	public long getMissCount() {
+		return this.misses.get();
+	}
+
+	public long getInvalidationCount() {
+		return this.invalidations.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("secrets=%d hits=%d misses=%d invalidations=%d", this.entries.size(), getHitCount(),
+				getMissCount(), getInvalidationCount());
+	}
+}
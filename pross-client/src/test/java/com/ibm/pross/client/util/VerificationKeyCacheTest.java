@@ -0,0 +1,126 @@
+package com.ibm.pross.client.util;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.pross.client.util.VerificationKeyCache.Source;
+import com.ibm.pross.common.util.crypto.ecc.EcPoint;
+
+/*
+ * Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ * Project name: pross
+ * This project is licensed under the MIT License, see LICENSE.
+ */
+public class VerificationKeyCacheTest {
+
+	/**
+	 * Returns empty keys for the current epoch, counting each fetch
+	 */
+	private static class EpochSource implements Source {
+
+		private final AtomicLong epoch = new AtomicLong(1);
+		private final AtomicInteger fetches = new AtomicInteger(0);
+
+		@Override
+		public SimpleEntry<List<EcPoint>, Long> fetch(final String secretName) {
+			this.fetches.incrementAndGet();
+			return new SimpleEntry<List<EcPoint>, Long>(Collections.<EcPoint>emptyList(), this.epoch.get());
+		}
+	}
+
+	@Test
+	public void testCachedUntilThresholdReportsNewerEpoch() throws Exception {
+		final EpochSource source = new EpochSource();
+		final VerificationKeyCache cache = new VerificationKeyCache(source, 2);
+
+		Assert.assertEquals(Long.valueOf(1), cache.get("secret").getValue());
+		Assert.assertEquals(Long.valueOf(1), cache.get("secret").getValue());
+		Assert.assertEquals(1, source.fetches.get());
+		Assert.assertEquals(1, cache.getHitCount());
+
+		// One server alone, even repeating itself, cannot drop the keys
+		source.epoch.set(2);
+		cache.observeEpoch("secret", 3, 2);
+		cache.observeEpoch("secret", 3, 5);
+		cache.observeEpoch("secret", 4, 1);
+		cache.get("secret");
+		Assert.assertEquals(1, source.fetches.get());
+		Assert.assertEquals(0, cache.getInvalidationCount());
+
+		// A second server reporting a newer epoch drops them
+		cache.observeEpoch("secret", 4, 2);
+		Assert.assertEquals(1, cache.getInvalidationCount());
+		Assert.assertEquals(Long.valueOf(2), cache.get("secret").getValue());
+		Assert.assertEquals(2, source.fetches.get());
+	}
+
+	@Test
+	public void testReportsOfTheCachedEpochAreIgnored() throws Exception {
+		final EpochSource source = new EpochSource();
+		final VerificationKeyCache cache = new VerificationKeyCache(source, 1);
+		cache.get("secret");
+
+		cache.observeEpoch("secret", 1, 1);
+		cache.observeEpoch("other", 1, 7);
+		Assert.assertEquals(0, cache.getInvalidationCount());
+		cache.get("secret");
+		Assert.assertEquals(1, source.fetches.get());
+	}
+
+	@Test
+	public void testKeysMayBeStaleOnceANewerEpochIsReported() throws Exception {
+		final EpochSource source = new EpochSource();
+		final VerificationKeyCache cache = new VerificationKeyCache(source, 2);
+		Assert.assertTrue(cache.mayBeStale("secret", 1));
+		cache.get("secret");
+		Assert.assertFalse(cache.mayBeStale("secret", 1));
+
+		// A single report is enough to retry, though not to drop the keys
+		cache.observeEpoch("secret", 3, 2);
+		Assert.assertTrue(cache.mayBeStale("secret", 1));
+		Assert.assertEquals(0, cache.getInvalidationCount());
+
+		// Keys of the newer epoch are current again
+		source.epoch.set(2);
+		cache.refresh("secret");
+		Assert.assertFalse(cache.mayBeStale("secret", 2));
+		Assert.assertTrue(cache.mayBeStale("secret", 1));
+	}
+
+	@Test
+	public void testRefreshNeverGoesBackAnEpoch() throws Exception {
+		final EpochSource source = new EpochSource();
+		final VerificationKeyCache cache = new VerificationKeyCache(source, 1);
+		source.epoch.set(3);
+		cache.get("secret");
+
+		// A lagging server answers a refresh with an older epoch
+		source.epoch.set(2);
+		Assert.assertEquals(Long.valueOf(3), cache.refresh("secret").getValue());
+		Assert.assertEquals(Long.valueOf(3), cache.get("secret").getValue());
+	}
+
+	@Test
+	public void testExpiredEntriesAreFetchedAgain() throws Exception {
+		final long maxAge = VerificationKeyCache.MAX_AGE_MS;
+		VerificationKeyCache.MAX_AGE_MS = 1;
+		try {
+			final EpochSource source = new EpochSource();
+			final VerificationKeyCache cache = new VerificationKeyCache(source, 1);
+			cache.get("secret");
+			Thread.sleep(10);
+			cache.get("secret");
+			Assert.assertEquals(2, source.fetches.get());
+			Assert.assertEquals(2, cache.getMissCount());
+		} finally {
+			VerificationKeyCache.MAX_AGE_MS = maxAge;
+		}
+	}
+
+}
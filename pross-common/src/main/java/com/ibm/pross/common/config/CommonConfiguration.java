@@ -40,6 +40,13 @@ public class CommonConfiguration {
 	public static final EcPoint g = CURVE.getPointHasher().hashToCurve(new byte[] { 0x01 });
 	public static final EcPoint h = CURVE.getPointHasher().hashToCurve(new byte[] { 0x02 });
 
+	// Nearly every commitment, proof and nonce multiplies one of these bases
+	static {
+		CURVE.precomputeFixedBase(g);
+		CURVE.precomputeFixedBase(h);
+		CURVE.precomputeFixedBase(CURVE.getG());
+	}
+
 	// Default hash algorithm
 	public static final String HASH_ALGORITHM = "SHA-512";
 	
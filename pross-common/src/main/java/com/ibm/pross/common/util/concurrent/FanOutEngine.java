@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ * Project name: pross
+ * This project is licensed under the MIT License, see LICENSE.
+ */
+
+package com.ibm.pross.common.util.concurrent;
+
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ibm.pross.common.exceptions.http.ResourceUnavailableException;
+
+/**
+ * Sends a request to many servers and completes once a threshold of them have
+ * returned valid results.
+ *
+ * Requests run on an executor shared by every engine, bounded to MAX_THREADS.
+ * Once the threshold is reached, or it can no longer be reached, requests
+ * which have not yet started are never sent and those in flight are
+ * interrupted.
+ *
+ * The latency of each server is tracked as a moving average, and requests are
+ * sent to the fastest servers first. When HEDGE_DELAY_MS is positive, only a
+ * threshold of the fastest servers is asked at first. Another server is then
+ * asked whenever a request fails or a further HEDGE_DELAY_MS passes without
+ * reaching the threshold. Otherwise every server is asked at once.
+ */
+public class FanOutEngine {
+
+	// Threads shared by all requests to servers
+	public static int MAX_THREADS = 64;
+
+	// Time allowed for a threshold of servers to respond
+	public static long TIMEOUT_MS = 30_000;
+
+	// Delay before asking another server, zero to ask all servers at once
+	public static long HEDGE_DELAY_MS = 0;
+
+	// Weight of the newest sample in each server's latency estimate
+	public static double LATENCY_SMOOTHING = 0.2;
+
+	private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 60,
+			TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("fan-out"));
+
+	private static final ScheduledExecutorService scheduler = Executors
+			.newSingleThreadScheduledExecutor(new NamedThreadFactory("fan-out-timer"));
+
+	static {
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * A request to a single server, returning its result after validating it
+	 */
+	public interface ServerRequest<T> {
+
+		/**
+		 * @return The result from the server
+		 * @throws Exception
+		 *             If the server could not be reached or its result was invalid
+		 */
+		T call() throws Exception;
+	}
+
+	// Estimated latency of each server, in milliseconds
+	private final ConcurrentMap<Integer, Double> latencies = new ConcurrentHashMap<>();
+
+	// Statistics
+	private final AtomicLong calls = new AtomicLong(0);
+	private final AtomicLong requestsSent = new AtomicLong(0);
+	private final AtomicLong requestsFailed = new AtomicLong(0);
+	private final AtomicLong requestsCancelled = new AtomicLong(0);
+	private final AtomicLong hedges = new AtomicLong(0);
+	private final AtomicLong failedCalls = new AtomicLong(0);
+
+	/**
+	 * Sends the requests to their servers, completing with the first threshold
+	 * of results (in the order they arrived)
+	 *
+	 * @param requests
+	 *            The request to send to each server, by server index
+	 * @param threshold
+	 *            The number of results needed
+	 * @return A future which fails with ResourceUnavailableException if too many
+	 *         requests fail or time out
+	 */
+	public <T> CompletableFuture<List<T>> submit(final Map<Integer, ? extends ServerRequest<T>> requests,
+			final int threshold) {
+		this.calls.incrementAndGet();
+		final Call<T> call = new Call<>(requests, threshold);
+		call.start();
+		return call.result;
+	}
+
+	/**
+	 * Sends the requests and waits for the first threshold of results
+	 *
+	 * @see #submit(Map, int)
+	 * @throws ResourceUnavailableException
+	 *             If too many requests fail or time out
+	 */
+	public <T> List<T> invoke(final Map<Integer, ? extends ServerRequest<T>> requests, final int threshold)
+			throws ResourceUnavailableException {
+		try {
+			return submit(requests, threshold).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ResourceUnavailableException();
+		} catch (ExecutionException e) {
+			throw new ResourceUnavailableException();
+		}
+	}
+
+	/**
+	 * Returns the server indices ordered from fastest to slowest, servers not yet
+	 * seen are tried first
+	 */
+	public List<Integer> rankServers(final Iterable<Integer> serverIds) {
+		final List<Integer> ranked = new ArrayList<>();
+		for (final Integer serverId : serverIds) {
+			ranked.add(serverId);
+		}
+		Collections.sort(ranked, new Comparator<Integer>() {
+			@Override
+			public int compare(final Integer a, final Integer b) {
+				return Double.compare(getLatency(a), getLatency(b));
+			}
+		});
+		return ranked;
+	}
+
+	/**
+	 * Returns the estimated latency of a server in milliseconds, or zero if no
+	 * request has completed
+	 */
+	public double getLatency(final int serverId) {
+		final Double latency = this.latencies.get(serverId);
+		return (latency == null) ? 0.0 : latency;
+	}
+
+	/**
+	 * Returns true if a request failed only because it was cancelled, as happens
+	 * to the requests still in flight once a call completes. Such failures are
+	 * expected and need not be reported.
+	 */
+	public static boolean isCancellation(final Throwable cause) {
+		return (cause instanceof InterruptedException) || (cause instanceof ClosedByInterruptException)
+				|| (cause instanceof InterruptedIOException) || Thread.currentThread().isInterrupted();
+	}
+
+	private void recordLatency(final int serverId, final double latencyMs) {
+		while (true) {
+			final Double previous = this.latencies.get(serverId);
+			if (previous == null) {
+				if (this.latencies.putIfAbsent(serverId, latencyMs) == null) {
+					return;
+				}
+			} else {
+				final double updated = previous + (LATENCY_SMOOTHING * (latencyMs - previous));
+				if (this.latencies.replace(serverId, previous, updated)) {
+					return;
+				}
+			}
+		}
+	}
+
+	public long getCallCount() {
+		return this.calls.get();
+	}
+
+	public long getFailedCallCount() {
+		return this.failedCalls.get();
+	}
+
+	public long getRequestsSent() {
+		return this.requestsSent.get();
+	}
+
+	public long getRequestsFailed() {
+		return this.requestsFailed.get();
+	}
+
+	public long getRequestsCancelled() {
+		return this.requestsCancelled.get();
+	}
+
+	public long getHedgeCount() {
+		return this.hedges.get();
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder latencies = new StringBuilder();
+		for (final Integer serverId : rankServers(this.latencies.keySet())) {
+			latencies.append(String.format(" server_%d_ms=%.1f", serverId, getLatency(serverId)));
+		}
+		return String.format("calls=%d failed_calls=%d sent=%d failed=%d cancelled=%d hedges=%d",
+				getCallCount(), getFailedCallCount(), getRequestsSent(), getRequestsFailed(), getRequestsCancelled(),
+				getHedgeCount()) + latencies;
+	}
+
+	/**
+	 * The state of one fan out to the servers
+	 */
+	private class Call<T> {
+
+		private final Map<Integer, ? extends ServerRequest<T>> requests;
+		private final int threshold;
+		private final int maximumFailures;
+
+		// Servers not yet asked, fastest first
+		private final List<Integer> pending;
+
+		private final List<T> results;
+		private int failures = 0;
+		private final List<Future<?>> inFlight = new ArrayList<>();
+		private final List<ScheduledFuture<?>> timers = new ArrayList<>();
+
+		private final CompletableFuture<List<T>> result = new CompletableFuture<>();
+
+		private Call(final Map<Integer, ? extends ServerRequest<T>> requests, final int threshold) {
+			this.requests = requests;
+			this.threshold = threshold;
+			this.maximumFailures = requests.size() - threshold;
+			this.pending = rankServers(requests.keySet());
+			this.results = new ArrayList<>(threshold);
+		}
+
+		private synchronized void start() {
+			if (this.maximumFailures < 0) {
+				fail(new ResourceUnavailableException());
+				return;
+			}
+			if (this.threshold == 0) {
+				complete();
+				return;
+			}
+
+			this.timers.add(scheduler.schedule(new Runnable() {
+				@Override
+				public void run() {
+					fail(new TimeoutException("Fewer than " + threshold + " servers responded in " + TIMEOUT_MS
+							+ " ms"));
+				}
+			}, TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+			if (HEDGE_DELAY_MS > 0) {
+				for (int i = 0; i < this.threshold; i++) {
+					sendNext();
+				}
+				this.timers.add(scheduler.scheduleWithFixedDelay(new Runnable() {
+					@Override
+					public void run() {
+						hedge();
+					}
+				}, HEDGE_DELAY_MS, HEDGE_DELAY_MS, TimeUnit.MILLISECONDS));
+			} else {
+				while (!this.pending.isEmpty()) {
+					sendNext();
+				}
+			}
+		}
+
+		private synchronized void sendNext() {
+			if (this.result.isDone() || this.pending.isEmpty()) {
+				return;
+			}
+			final Integer serverId = this.pending.remove(0);
+			final ServerRequest<T> request = this.requests.get(serverId);
+			requestsSent.incrementAndGet();
+			this.inFlight.add(executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					execute(serverId, request);
+				}
+			}));
+		}
+
+		private synchronized void hedge() {
+			if (!this.result.isDone() && !this.pending.isEmpty()) {
+				hedges.incrementAndGet();
+				sendNext();
+			}
+		}
+
+		private void execute(final int serverId, final ServerRequest<T> request) {
+			if (this.result.isDone()) {
+				return;
+			}
+			final long startTime = System.nanoTime();
+			try {
+				final T value = request.call();
+				recordLatency(serverId, (System.nanoTime() - startTime) / 1_000_000.0);
+				succeeded(value);
+			} catch (Exception e) {
+				if (!this.result.isDone()) {
+					// Unreachable or misbehaving servers fall to the back
+					recordLatency(serverId, Math.max(getLatency(serverId), TIMEOUT_MS));
+				}
+				failed();
+			}
+		}
+
+		private synchronized void succeeded(final T value) {
+			if (this.result.isDone()) {
+				return;
+			}
+			this.results.add(value);
+			if (this.results.size() == this.threshold) {
+				complete();
+			}
+		}
+
+		private synchronized void failed() {
+			if (this.result.isDone()) {
+				return;
+			}
+			requestsFailed.incrementAndGet();
+			this.failures++;
+			if (this.failures > this.maximumFailures) {
+				fail(new ResourceUnavailableException());
+			} else if (HEDGE_DELAY_MS > 0) {
+				// Replace the failed request
+				sendNext();
+			}
+		}
+
+		private synchronized void complete() {
+			this.result.complete(new ArrayList<>(this.results));
+			cancelRemaining();
+		}
+
+		private synchronized void fail(final Exception cause) {
+			if (this.result.completeExceptionally(cause)) {
+				failedCalls.incrementAndGet();
+				cancelRemaining();
+			}
+		}
+
+		private synchronized void cancelRemaining() {
+			for (final ScheduledFuture<?> timer : this.timers) {
+				timer.cancel(false);
+			}
+			for (final Future<?> future : this.inFlight) {
+				if (future.cancel(true)) {
+					requestsCancelled.incrementAndGet();
+				}
+			}
+			this.pending.clear();
+		}
+	}
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ * Project name: pross
+ * This project is licensed under the MIT License, see LICENSE.
+ */
+
+package com.ibm.pross.common.util.concurrent;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates daemon threads with a recognizable name, so that background pools
+ * never keep the process alive and their threads can be told apart
+ */
+public class NamedThreadFactory implements ThreadFactory {
+
+	private final String prefix;
+	private final AtomicInteger threadCount = new AtomicInteger(0);
+
+	public NamedThreadFactory(final String prefix) {
+		this.prefix = prefix;
+	}
+
+	@Override
+	public Thread newThread(final Runnable runnable) {
+		final Thread thread = new Thread(runnable, this.prefix + "-" + this.threadCount.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	}
+}
@@ -102,6 +102,41 @@ public interface EcCurve {
 	 */
 	public EcPoint multiply(final EcPoint p, BigInteger n);
 
+	/**
+	 * Multiplies each of the given points by the same constant
+	 * 
+	 * Implementations may share work between the points, making this cheaper
+	 * than separate calls to multiply().
+	 * 
+	 * @param points
+	 * @param n
+	 * @return The products, in the order of the points
+	 */
+	public EcPoint[] multiplyAll(final EcPoint[] points, BigInteger n);
+
+	/**
+	 * Computes the sum of products of points and scalars (a multi-scalar
+	 * multiplication): points[0] * scalars[0] + ... + points[n-1] * scalars[n-1]
+	 * 
+	 * Implementations may share work between the terms, making this cheaper than
+	 * summing the results of separate calls to multiply(). It is not guaranteed
+	 * to run in constant time and so should only be used with public scalars.
+	 * 
+	 * @param points
+	 * @param scalars
+	 * @return
+	 */
+	public EcPoint sumOfProducts(final EcPoint[] points, final BigInteger[] scalars);
+
+	/**
+	 * Precomputes a table for a base point which is multiplied often, such as a
+	 * generator. Later calls to multiply() with this base use the table.
+	 * Implementations without support for precomputation may ignore this.
+	 * 
+	 * @param base
+	 */
+	public void precomputeFixedBase(final EcPoint base);
+
 	/**
 	 * Evaluates the elliptic curve equation given x
 	 * 
@@ -8,15 +8,33 @@ package com.ibm.pross.common.util.crypto.ecc;
 
 import java.math.BigInteger;
 import java.security.spec.ECParameterSpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.bouncycastle.jce.ECNamedCurveTable;
 import org.bouncycastle.jce.spec.ECNamedCurveParameterSpec;
+import org.bouncycastle.math.ec.ECAlgorithms;
+import org.bouncycastle.math.ec.ECCurve;
 import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.WNafUtil;
 
 public class EcCurveBc extends EcCurveImpl {
 
 	private final ECNamedCurveParameterSpec parameterSpec;
 
+	// Multi-scalar multiplications with at least this many terms use Pippenger's
+	// bucket method, smaller ones use interleaved windows (Straus)
+	public static int PIPPENGER_THRESHOLD = 256;
+
+	// Window width of the NAF used when multiplying many points by one constant
+	public static int BATCH_WNAF_WIDTH = 5;
+
+	// Precomputed tables for bases which are frequently multiplied
+	private final ConcurrentMap<EcPoint, FixedBaseMultiplier> fixedBases = new ConcurrentHashMap<>();
+
 	public static EcCurveBc createByName(final String curveName) {
 		final ECNamedCurveParameterSpec parameterSpec = ECNamedCurveTable.getParameterSpec(curveName);
 		return new EcCurveBc(parameterSpec);
@@ -55,6 +73,16 @@ public class EcCurveBc extends EcCurveImpl {
 		}
 	}
 
+	protected EcPoint toEcPoint(final ECPoint point) {
+		final ECPoint normalized = point.normalize();
+		if (normalized.getAffineXCoord() == null) {
+			return EcPoint.pointAtInfinity;
+		} else {
+			return new EcPoint(normalized.getAffineXCoord().toBigInteger(),
+					normalized.getAffineYCoord().toBigInteger());
+		}
+	}
+
 	/**
 	 * Uses BC's point addition implementation
 	 */
@@ -74,11 +102,17 @@ public class EcCurveBc extends EcCurveImpl {
 	}
 
 	/**
-	 * Uses BC's scalar multiplication implementation
+	 * Uses BC's scalar multiplication implementation, or a precomputed table if
+	 * one was built for this point
 	 */
 	@Override
 	public EcPoint multiply(final EcPoint p, final BigInteger n) {
 
+		final FixedBaseMultiplier fixedBase = this.fixedBases.get(p);
+		if (fixedBase != null) {
+			return fixedBase.multiply(n);
+		}
+
 		final ECPoint bcP = createECPoint(p);
 
 		final ECPoint product = bcP.multiply(n).normalize();
@@ -92,6 +126,156 @@ public class EcCurveBc extends EcCurveImpl {
 
 	}
 
+	/**
+	 * Recodes the constant in width-w NAF once and multiplies each point left to
+	 * right with a small table of its odd multiples. The products are converted
+	 * to affine coordinates together, so the batch shares a single field
+	 * inversion.
+	 */
+	@Override
+	public EcPoint[] multiplyAll(final EcPoint[] points, final BigInteger n) {
+		final BigInteger k = n.mod(this.getR());
+		final ECCurve curve = this.parameterSpec.getCurve();
+		final ECPoint[] products = new ECPoint[points.length];
+		if (k.signum() == 0) {
+			Arrays.fill(products, curve.getInfinity());
+		} else {
+			final byte[] wnaf = WNafUtil.generateWindowNaf(BATCH_WNAF_WIDTH, k);
+			final ECPoint[] table = new ECPoint[1 << (BATCH_WNAF_WIDTH - 2)];
+			for (int i = 0; i < points.length; i++) {
+				products[i] = multiplyWnaf(createECPoint(points[i]), wnaf, table);
+			}
+			curve.normalizeAll(products);
+		}
+
+		final EcPoint[] results = new EcPoint[points.length];
+		for (int i = 0; i < points.length; i++) {
+			results[i] = toEcPoint(products[i]);
+		}
+		return results;
+	}
+
+	/**
+	 * Computes p * k given the width-w NAF of k, least significant digit first
+	 */
+	private static ECPoint multiplyWnaf(final ECPoint p, final byte[] wnaf, final ECPoint[] table) {
+		if (p.isInfinity()) {
+			return p;
+		}
+
+		// table[i] = (2i + 1) * p
+		final ECPoint twiceP = p.twice();
+		table[0] = p;
+		for (int i = 1; i < table.length; i++) {
+			table[i] = table[i - 1].add(twiceP);
+		}
+
+		ECPoint result = p.getCurve().getInfinity();
+		for (int i = wnaf.length - 1; i >= 0; i--) {
+			result = result.twice();
+			final int digit = wnaf[i];
+			if (digit > 0) {
+				result = result.add(table[digit >>> 1]);
+			} else if (digit < 0) {
+				result = result.subtract(table[(-digit) >>> 1]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Uses BC's interleaved wNAF (Straus) for small numbers of terms and
+	 * Pippenger's bucket method for large ones
+	 */
+	@Override
+	public EcPoint sumOfProducts(final EcPoint[] points, final BigInteger[] scalars) {
+		if (points.length != scalars.length) {
+			throw new IllegalArgumentException("Number of points does not match number of scalars");
+		}
+
+		// Drop terms which contribute nothing
+		final List<ECPoint> bcPoints = new ArrayList<>(points.length);
+		final List<BigInteger> reducedScalars = new ArrayList<>(scalars.length);
+		for (int i = 0; i < points.length; i++) {
+			final BigInteger k = scalars[i].mod(this.getR());
+			if ((k.signum() != 0) && !points[i].equals(EcPoint.pointAtInfinity)) {
+				bcPoints.add(createECPoint(points[i]));
+				reducedScalars.add(k);
+			}
+		}
+
+		final int terms = bcPoints.size();
+		if (terms == 0) {
+			return EcPoint.pointAtInfinity;
+		} else if (terms == 1) {
+			return toEcPoint(bcPoints.get(0).multiply(reducedScalars.get(0)));
+		} else if (terms < PIPPENGER_THRESHOLD) {
+			return toEcPoint(ECAlgorithms.sumOfMultiplies(bcPoints.toArray(new ECPoint[terms]),
+					reducedScalars.toArray(new BigInteger[terms])));
+		} else {
+			return toEcPoint(pippenger(bcPoints, reducedScalars));
+		}
+	}
+
+	/**
+	 * Processes the scalars a window of bits at a time. For each window, every
+	 * point is added to the bucket selected by its scalar's digit, and the
+	 * buckets are combined with a running sum so that bucket j is counted j
+	 * times.
+	 */
+	private ECPoint pippenger(final List<ECPoint> points, final List<BigInteger> scalars) {
+		final int terms = points.size();
+		final int width = Math.max(2, (31 - Integer.numberOfLeadingZeros(terms)) - 2);
+		final int numBuckets = (1 << width) - 1;
+
+		int maxBits = 0;
+		for (final BigInteger k : scalars) {
+			maxBits = Math.max(maxBits, k.bitLength());
+		}
+		final int numWindows = (maxBits + width - 1) / width;
+
+		final ECPoint infinity = this.parameterSpec.getCurve().getInfinity();
+		final ECPoint[] buckets = new ECPoint[numBuckets];
+		ECPoint result = infinity;
+
+		for (int window = numWindows - 1; window >= 0; window--) {
+			result = result.timesPow2(width);
+
+			Arrays.fill(buckets, infinity);
+			for (int i = 0; i < terms; i++) {
+				final int digit = getDigit(scalars.get(i), window * width, width);
+				if (digit != 0) {
+					buckets[digit - 1] = buckets[digit - 1].add(points.get(i));
+				}
+			}
+
+			ECPoint runningSum = infinity;
+			ECPoint windowSum = infinity;
+			for (int j = numBuckets - 1; j >= 0; j--) {
+				runningSum = runningSum.add(buckets[j]);
+				windowSum = windowSum.add(runningSum);
+			}
+			result = result.add(windowSum);
+		}
+
+		return result;
+	}
+
+	private static int getDigit(final BigInteger k, final int offset, final int width) {
+		int digit = 0;
+		for (int b = width - 1; b >= 0; b--) {
+			digit = (digit << 1) | (k.testBit(offset + b) ? 1 : 0);
+		}
+		return digit;
+	}
+
+	@Override
+	public void precomputeFixedBase(final EcPoint base) {
+		if (!this.fixedBases.containsKey(base)) {
+			this.fixedBases.putIfAbsent(base, new FixedBaseMultiplier(this, base));
+		}
+	}
+
 	/**
 	 * Perform point doubling as "multiply by 2"
 	 */
@@ -169,6 +169,56 @@ public class EcCurveImpl implements EcCurve {
 		return result;
 	}
 
+	/**
+	 * Multiplies each point by the constant, one point at a time
+	 * 
+	 * @param points
+	 * @param n
+	 * @return
+	 */
+	@Override
+	public EcPoint[] multiplyAll(final EcPoint[] points, final BigInteger n) {
+		final EcPoint[] products = new EcPoint[points.length];
+		for (int i = 0; i < points.length; i++) {
+			products[i] = multiply(points[i], n);
+		}
+		return products;
+	}
+
+	/**
+	 * Computes the sum of products of points and scalars, one term at a time
+	 * 
+	 * @param points
+	 * @param scalars
+	 * @return
+	 */
+	@Override
+	public EcPoint sumOfProducts(final EcPoint[] points, final BigInteger[] scalars) {
+		if (points.length != scalars.length) {
+			throw new IllegalArgumentException("Number of points does not match number of scalars");
+		}
+
+		EcPoint sum = EcPoint.pointAtInfinity;
+		for (int i = 0; i < points.length; i++) {
+			final EcPoint product = multiply(points[i], scalars[i].mod(this.r));
+			if (sum.equals(EcPoint.pointAtInfinity)) {
+				sum = product;
+			} else if (!product.equals(EcPoint.pointAtInfinity)) {
+				sum = addPoints(sum, product);
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Not supported by this implementation, multiplication is always generic
+	 * 
+	 * @param base
+	 */
+	public void precomputeFixedBase(final EcPoint base) {
+		// Nothing to do
+	}
+
 	/**
 	 * Evaluates the elliptic curve equation given x
 	 * 
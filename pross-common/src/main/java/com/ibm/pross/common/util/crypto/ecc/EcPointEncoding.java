@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ * Project name: pross
+ * This project is licensed under the MIT License, see LICENSE.
+ */
+
+package com.ibm.pross.common.util.crypto.ecc;
+
+import java.math.BigInteger;
+
+/**
+ * Fixed length binary encoding of points in SEC1 compressed form: a prefix of
+ * 0x02 or 0x03 giving the parity of y, followed by x as an unsigned big-endian
+ * integer the size of a field element. The point at infinity is encoded as all
+ * zeros, so that every encoded point of a curve has the same length.
+ */
+public class EcPointEncoding {
+
+	private static final byte EVEN_Y = 0x02;
+	private static final byte ODD_Y = 0x03;
+
+	/**
+	 * Returns the length of an encoded point of the given curve
+	 * 
+	 * @param curve
+	 * @return
+	 */
+	public static int getEncodedLength(final EcCurve curve) {
+		return 1 + ((curve.getP().bitLength() + 7) / 8);
+	}
+
+	/**
+	 * Encodes a point into the given array
+	 * 
+	 * @param curve
+	 * @param point
+	 * @param output
+	 * @param offset
+	 *            The position at which getEncodedLength(curve) bytes are written
+	 */
+	public static void encode(final EcCurve curve, final EcPoint point, final byte[] output, final int offset) {
+		final int length = getEncodedLength(curve);
+		if (point.equals(EcPoint.pointAtInfinity)) {
+			for (int i = 0; i < length; i++) {
+				output[offset + i] = 0;
+			}
+			return;
+		}
+
+		output[offset] = point.getY().testBit(0) ? ODD_Y : EVEN_Y;
+
+		// Write x right aligned, dropping any sign byte
+		final byte[] x = point.getX().toByteArray();
+		final int xLength = Math.min(x.length, length - 1);
+		final int padding = (length - 1) - xLength;
+		for (int i = 0; i < padding; i++) {
+			output[offset + 1 + i] = 0;
+		}
+		System.arraycopy(x, x.length - xLength, output, offset + 1 + padding, xLength);
+	}
+
+	public static byte[] encode(final EcCurve curve, final EcPoint point) {
+		final byte[] output = new byte[getEncodedLength(curve)];
+		encode(curve, point, output, 0);
+		return output;
+	}
+
+	/**
+	 * Decodes a point from the given array, ensuring it is on the curve
+	 * 
+	 * @param curve
+	 * @param input
+	 * @param offset
+	 *            The position of the getEncodedLength(curve) bytes to read
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             If the bytes do not encode a point of the curve
+	 */
+	public static EcPoint decode(final EcCurve curve, final byte[] input, final int offset) {
+		final int length = getEncodedLength(curve);
+		if (offset < 0 || (offset + length) > input.length) {
+			throw new IllegalArgumentException("Encoded point is truncated");
+		}
+
+		final byte prefix = input[offset];
+		if (prefix == 0) {
+			for (int i = 1; i < length; i++) {
+				if (input[offset + i] != 0) {
+					throw new IllegalArgumentException("Invalid encoding of the point at infinity");
+				}
+			}
+			return EcPoint.pointAtInfinity;
+		} else if (prefix != EVEN_Y && prefix != ODD_Y) {
+			throw new IllegalArgumentException("Unsupported point encoding: " + prefix);
+		}
+
+		final byte[] xBytes = new byte[length - 1];
+		System.arraycopy(input, offset + 1, xBytes, 0, xBytes.length);
+		final BigInteger x = new BigInteger(1, xBytes);
+		if (x.compareTo(curve.getP()) >= 0) {
+			throw new IllegalArgumentException("X coordinate is not a field element");
+		}
+
+		// Throws if x is not on the curve
+		final EcPoint point = new EcPoint(x, curve);
+		if (point.getY().testBit(0) != (prefix == ODD_Y)) {
+			return curve.reflectPoint(point);
+		}
+		return point;
+	}
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ * Project name: pross
+ * This project is licensed under the MIT License, see LICENSE.
+ */
+
+package com.ibm.pross.common.util.crypto.ecc;
+
+import java.math.BigInteger;
+
+import org.bouncycastle.math.ec.ECMultiplier;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.FixedPointCombMultiplier;
+import org.bouncycastle.math.ec.FixedPointUtil;
+
+/**
+ * Multiplies a single base point by arbitrary scalars using a comb table
+ * which is computed once when the multiplier is created.
+ * 
+ * Compared to a generic scalar multiplication, which performs one point
+ * doubling per bit of the scalar, the comb method needs only about
+ * bits/width doublings. Table lookups are done in constant time, so secret
+ * scalars may be used.
+ * 
+ * Instances are immutable once constructed and may be shared between threads.
+ * 
+ * @see EcCurve#precomputeFixedBase(EcPoint)
+ */
+public class FixedBaseMultiplier {
+
+	private final EcCurveBc curve;
+	private final EcPoint base;
+	private final ECPoint bcBase;
+
+	// The multiplier holds no state, the table is attached to bcBase
+	private final ECMultiplier multiplier = new FixedPointCombMultiplier();
+
+	public FixedBaseMultiplier(final EcCurveBc curve, final EcPoint base) {
+		if (base.equals(EcPoint.pointAtInfinity)) {
+			throw new IllegalArgumentException("Base cannot be the point at infinity");
+		}
+		this.curve = curve;
+		this.base = base;
+		this.bcBase = curve.createECPoint(base).normalize();
+
+		// Build the comb table now rather than on first use
+		FixedPointUtil.precompute(this.bcBase);
+	}
+
+	/**
+	 * Returns base * n
+	 * 
+	 * @param n
+	 * @return
+	 */
+	public EcPoint multiply(final BigInteger n) {
+		// The comb only covers scalars smaller than the order of the curve
+		final BigInteger k = n.mod(this.curve.getR());
+		if (k.signum() == 0) {
+			return EcPoint.pointAtInfinity;
+		}
+		return this.curve.toEcPoint(this.multiplier.multiply(this.bcBase, k));
+	}
+
+	public EcPoint getBase() {
+		return this.base;
+	}
+
+	public EcCurve getCurve() {
+		return this.curve;
+	}
+
+}
@@ -0,0 +1,443 @@
+/*
+ * Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ * Project name: pross
+ * This project is licensed under the MIT License, see LICENSE.
+ */
+
+package com.ibm.pross.common.util.crypto.elgamal;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.ibm.pross.common.util.crypto.ecc.EcPoint;
+import com.ibm.pross.common.util.crypto.ecc.EcPointEncoding;
+import com.ibm.pross.common.util.crypto.kdf.EntropyExtractor;
+import com.ibm.pross.common.util.crypto.kdf.HmacKeyDerivationFunction;
+
+/**
+ * Implements ECIES for content too large to hold in memory.
+ *
+ * A single DH public value is generated for the whole stream and the shared
+ * secret is expanded once into an AES-256 key. The content is then split into
+ * chunks of a fixed size, each encrypted and authenticated separately with
+ * AES-GCM, following the STREAM construction of
+ * https://eprint.iacr.org/2015/189.pdf . The nonce of each chunk is made from
+ * a prefix derived from the shared secret, the index of the chunk and a flag
+ * marking the final chunk, so chunks cannot be reordered, dropped or
+ * truncated from the end without failing authentication. The header is
+ * authenticated as associated data of every chunk.
+ *
+ * Format: magic (int) || version (byte) || chunk size (int) || R (compressed)
+ * followed by the chunks, each of chunk size bytes plus a GCM tag. The final
+ * chunk is shorter, possibly holding no content at all.
+ *
+ * Decryption needs only the shared secret, so the public value may be read
+ * from the header and exponentiated once (such as by the servers holding a
+ * shared private key) before the content is decrypted.
+ */
+public class EciesStreamEncryption {
+
+	public static final int MAGIC = 0x45435353; // "ECSS"
+	public static final byte VERSION = 1;
+
+	// Amount of content in each authenticated chunk
+	public static int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+	// Largest chunk accepted when decrypting, bounds the memory used
+	public static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+
+	final public static String ALGORITHM = "ECIES-STREAM";
+	final public static byte[] ECIES_STREAM = ALGORITHM.getBytes(StandardCharsets.UTF_8);
+
+	private static final byte[] AES_256_KEY = "aes-256-key".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] NONCE_PREFIX = "nonce-prefix".getBytes(StandardCharsets.UTF_8);
+
+	private static final int AES_KEY_LENGTH = 32;
+	private static final int NONCE_LENGTH = 12;
+	private static final int NONCE_PREFIX_LENGTH = NONCE_LENGTH - 5;
+	private static final int TAG_LENGTH = 16;
+
+	/**
+	 * Returns a stream which encrypts everything written to it for the given
+	 * recipient. The header is written to the output immediately, and the final
+	 * chunk when the returned stream is closed.
+	 *
+	 * @param out
+	 * @param recipientPublicKey
+	 * @return
+	 * @throws IOException
+	 */
+	public static OutputStream newEncryptingStream(final OutputStream out, final EcPoint recipientPublicKey)
+			throws IOException {
+		return newEncryptingStream(out, recipientPublicKey, DEFAULT_CHUNK_SIZE);
+	}
+
+	public static OutputStream newEncryptingStream(final OutputStream out, final EcPoint recipientPublicKey,
+			final int chunkSize) throws IOException {
+		if ((chunkSize <= 0) || (chunkSize > MAX_CHUNK_SIZE)) {
+			throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+		}
+
+		// Calculate R (our DH public value) and the shared secret
+		final BigInteger r = EciesEncryption.generateR();
+		final EcPoint R = EciesEncryption.curve.multiply(EciesEncryption.G, r);
+		final EcPoint sharedSecret = EciesEncryption.curve.multiply(recipientPublicKey, r);
+
+		final Header header = new Header(R, chunkSize);
+		out.write(header.getEncoded());
+		return new EncryptingOutputStream(out, new ChunkCipher(header, sharedSecret, Cipher.ENCRYPT_MODE));
+	}
+
+	/**
+	 * Reads the header from the start of a stream, leaving the stream positioned
+	 * at the first chunk
+	 *
+	 * @param in
+	 * @return The header, holding the DH public value needed to compute the
+	 *         shared secret
+	 * @throws IOException
+	 *             If the stream is not in this format
+	 */
+	public static Header readHeader(final InputStream in) throws IOException {
+		return Header.read(in);
+	}
+
+	/**
+	 * Returns a stream which decrypts the chunks following the given header. Each
+	 * chunk is authenticated before any of its content is returned, and an
+	 * IOException is thrown if any chunk fails authentication or the stream ends
+	 * before the final chunk.
+	 *
+	 * @param in
+	 * @param header
+	 * @param sharedSecret
+	 * @return
+	 */
+	public static InputStream newDecryptingStream(final InputStream in, final Header header,
+			final EcPoint sharedSecret) {
+		return new DecryptingInputStream(in, new ChunkCipher(header, sharedSecret, Cipher.DECRYPT_MODE));
+	}
+
+	public static InputStream newDecryptingStream(final InputStream in, final BigInteger privateKey)
+			throws IOException {
+		final Header header = readHeader(in);
+		final EcPoint sharedSecret = EciesEncryption.curve.multiply(header.getPublicValue(), privateKey);
+		return newDecryptingStream(in, header, sharedSecret);
+	}
+
+	/**
+	 * Encrypts all content of one channel to another
+	 *
+	 * @param in
+	 * @param out
+	 * @param recipientPublicKey
+	 * @return The number of bytes of content encrypted
+	 * @throws IOException
+	 */
+	public static long encrypt(final ReadableByteChannel in, final WritableByteChannel out,
+			final EcPoint recipientPublicKey) throws IOException {
+		try (final OutputStream encrypting = newEncryptingStream(Channels.newOutputStream(out),
+				recipientPublicKey)) {
+			return copy(Channels.newInputStream(in), encrypting, DEFAULT_CHUNK_SIZE);
+		}
+	}
+
+	/**
+	 * Decrypts the content of a channel positioned after the given header
+	 *
+	 * @param header
+	 * @param in
+	 * @param out
+	 * @param sharedSecret
+	 * @return The number of bytes of content decrypted
+	 * @throws IOException
+	 */
+	public static long decrypt(final Header header, final ReadableByteChannel in, final WritableByteChannel out,
+			final EcPoint sharedSecret) throws IOException {
+		try (final InputStream decrypting = newDecryptingStream(Channels.newInputStream(in), header,
+				sharedSecret)) {
+			return copy(decrypting, Channels.newOutputStream(out), header.getChunkSize());
+		}
+	}
+
+	private static long copy(final InputStream in, final OutputStream out, final int bufferSize)
+			throws IOException {
+		final byte[] buffer = new byte[bufferSize];
+		long total = 0;
+		int read;
+		while ((read = in.read(buffer)) >= 0) {
+			out.write(buffer, 0, read);
+			total += read;
+		}
+		out.flush();
+		return total;
+	}
+
+	/**
+	 * The header at the start of an encrypted stream
+	 */
+	public static class Header {
+
+		private final EcPoint publicValue;
+		private final int chunkSize;
+		private final byte[] encoded;
+
+		private Header(final EcPoint publicValue, final int chunkSize) {
+			this.publicValue = publicValue;
+			this.chunkSize = chunkSize;
+
+			final byte[] point = EcPointEncoding.encode(EciesEncryption.curve, publicValue);
+			final ByteBuffer buffer = ByteBuffer.allocate(9 + point.length);
+			buffer.putInt(MAGIC).put(VERSION).putInt(chunkSize).put(point);
+			this.encoded = buffer.array();
+		}
+
+		private static Header read(final InputStream in) throws IOException {
+			final DataInputStream din = new DataInputStream(in);
+			if (din.readInt() != MAGIC) {
+				throw new IOException("Not an ECIES stream");
+			}
+			final byte version = din.readByte();
+			if (version != VERSION) {
+				throw new IOException("Unsupported ECIES stream version: " + version);
+			}
+			final int chunkSize = din.readInt();
+			if ((chunkSize <= 0) || (chunkSize > MAX_CHUNK_SIZE)) {
+				throw new IOException("Invalid chunk size: " + chunkSize);
+			}
+			final byte[] point = new byte[EcPointEncoding.getEncodedLength(EciesEncryption.curve)];
+			din.readFully(point);
+			final EcPoint publicValue;
+			try {
+				publicValue = EcPointEncoding.decode(EciesEncryption.curve, point, 0);
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Invalid public value", e);
+			}
+			if (publicValue.equals(EcPoint.pointAtInfinity)) {
+				throw new IOException("Invalid public value");
+			}
+			return new Header(publicValue, chunkSize);
+		}
+
+		public EcPoint getPublicValue() {
+			return this.publicValue;
+		}
+
+		public int getChunkSize() {
+			return this.chunkSize;
+		}
+
+		public byte[] getEncoded() {
+			return this.encoded.clone();
+		}
+	}
+
+	/**
+	 * Encrypts or decrypts the chunks of one stream, keyed once from the shared
+	 * secret
+	 */
+	private static class ChunkCipher {
+
+		private final Cipher cipher;
+		private final SecretKeySpec key;
+		private final byte[] nonce = new byte[NONCE_LENGTH];
+		private final byte[] associatedData;
+		private final int chunkSize;
+		private final int mode;
+		private int chunkIndex = 0;
+
+		private ChunkCipher(final Header header, final EcPoint sharedSecret, final int mode) {
+			final HmacKeyDerivationFunction kdf = EntropyExtractor.getKeyGenerator(ECIES_STREAM, sharedSecret);
+			this.key = new SecretKeySpec(kdf.createKey(AES_256_KEY, AES_KEY_LENGTH), "AES");
+			System.arraycopy(kdf.createKey(NONCE_PREFIX, NONCE_PREFIX_LENGTH), 0, this.nonce, 0,
+					NONCE_PREFIX_LENGTH);
+			this.associatedData = header.encoded;
+			this.chunkSize = header.getChunkSize();
+			this.mode = mode;
+			try {
+				this.cipher = Cipher.getInstance("AES/GCM/NoPadding");
+			} catch (GeneralSecurityException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		/**
+		 * Processes the next chunk in place, returning the length of the result
+		 */
+		private int process(final byte[] buffer, final int length, final boolean last) throws IOException {
+			if (this.chunkIndex < 0) {
+				throw new IOException("Too many chunks");
+			}
+			ByteBuffer.wrap(this.nonce, NONCE_PREFIX_LENGTH, 5).putInt(this.chunkIndex++).put((byte) (last ? 1 : 0));
+			try {
+				this.cipher.init(this.mode, this.key, new GCMParameterSpec(TAG_LENGTH * Byte.SIZE, this.nonce));
+				this.cipher.updateAAD(this.associatedData);
+				return this.cipher.doFinal(buffer, 0, length, buffer, 0);
+			} catch (AEADBadTagException e) {
+				throw new IOException("Chunk " + (this.chunkIndex - 1) + " failed authentication", e);
+			} catch (GeneralSecurityException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	private static class EncryptingOutputStream extends FilterOutputStream {
+
+		private final ChunkCipher chunkCipher;
+		private final byte[] buffer;
+		private int position = 0;
+		private boolean closed = false;
+
+		private EncryptingOutputStream(final OutputStream out, final ChunkCipher chunkCipher) {
+			super(out);
+			this.chunkCipher = chunkCipher;
+			this.buffer = new byte[chunkCipher.chunkSize + TAG_LENGTH];
+		}
+
+		@Override
+		public void write(final int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(final byte[] b, int offset, int length) throws IOException {
+			if (this.closed) {
+				throw new IOException("Stream closed");
+			}
+			while (length > 0) {
+				// A full chunk is only written once more content follows it, since
+				// the final chunk must be marked as such
+				if (this.position == this.chunkCipher.chunkSize) {
+					writeChunk(false);
+				}
+				final int count = Math.min(length, this.chunkCipher.chunkSize - this.position);
+				System.arraycopy(b, offset, this.buffer, this.position, count);
+				this.position += count;
+				offset += count;
+				length -= count;
+			}
+		}
+
+		private void writeChunk(final boolean last) throws IOException {
+			final int length = this.chunkCipher.process(this.buffer, this.position, last);
+			this.out.write(this.buffer, 0, length);
+			this.position = 0;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!this.closed) {
+				this.closed = true;
+				try {
+					writeChunk(true);
+					this.out.flush();
+				} finally {
+					this.out.close();
+				}
+			}
+		}
+	}
+
+	private static class DecryptingInputStream extends InputStream {
+
+		private final InputStream in;
+		private final ChunkCipher chunkCipher;
+
+		// Holds one encrypted chunk plus a byte of the next to tell if it is the last
+		private final byte[] buffer;
+		private int buffered = 0;
+
+		// Decrypted content of the current chunk
+		private final byte[] plaintext;
+		private int plaintextPosition = 0;
+		private int plaintextLength = 0;
+		private boolean finished = false;
+
+		private DecryptingInputStream(final InputStream in, final ChunkCipher chunkCipher) {
+			this.in = in;
+			this.chunkCipher = chunkCipher;
+			this.buffer = new byte[chunkCipher.chunkSize + TAG_LENGTH + 1];
+			this.plaintext = new byte[chunkCipher.chunkSize + TAG_LENGTH];
+		}
+
+		@Override
+		public int read() throws IOException {
+			final byte[] b = new byte[1];
+			return (read(b, 0, 1) < 0) ? -1 : (b[0] & 0xFF);
+		}
+
+		@Override
+		public int read(final byte[] b, final int offset, final int length) throws IOException {
+			if (length == 0) {
+				return 0;
+			}
+			while (this.plaintextPosition == this.plaintextLength) {
+				if (this.finished) {
+					return -1;
+				}
+				readChunk();
+			}
+			final int count = Math.min(length, this.plaintextLength - this.plaintextPosition);
+			System.arraycopy(this.plaintext, this.plaintextPosition, b, offset, count);
+			this.plaintextPosition += count;
+			return count;
+		}
+
+		private void readChunk() throws IOException {
+			// Fill the buffer, or as much of it as remains in the stream
+			while (this.buffered < this.buffer.length) {
+				final int read = this.in.read(this.buffer, this.buffered, this.buffer.length - this.buffered);
+				if (read < 0) {
+					break;
+				}
+				this.buffered += read;
+			}
+
+			final int chunkLength = Math.min(this.buffered, this.buffer.length - 1);
+			final boolean last = (this.buffered < this.buffer.length);
+			if (chunkLength < TAG_LENGTH) {
+				throw new EOFException("Stream ended before the final chunk");
+			}
+
+			System.arraycopy(this.buffer, 0, this.plaintext, 0, chunkLength);
+			this.plaintextLength = this.chunkCipher.process(this.plaintext, chunkLength, last);
+			this.plaintextPosition = 0;
+			this.finished = last;
+
+			// Keep the byte read from the next chunk
+			if (!last) {
+				this.buffer[0] = this.buffer[chunkLength];
+				this.buffered = 1;
+			} else {
+				this.buffered = 0;
+			}
+		}
+
+		@Override
+		public int available() {
+			return this.plaintextLength - this.plaintextPosition;
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.in.close();
+		}
+	}
+
+}
@@ -37,6 +37,18 @@ public class PaillierCipher {
 	}
 
 	public static BigInteger decrypt(final PaillierPrivateKey decryptionKey, final BigInteger ciphertext) {
+		if (decryptionKey.hasFactors()) {
+			return decryptCrt(decryptionKey, ciphertext);
+		} else {
+			return decryptWithoutFactors(decryptionKey, ciphertext);
+		}
+	}
+
+	/**
+	 * Decrypts using only lambda and mu, by computing c^lambda mod n^2
+	 */
+	protected static BigInteger decryptWithoutFactors(final PaillierPrivateKey decryptionKey,
+			final BigInteger ciphertext) {
 
 		// Get private key parameters
 		final BigInteger lambda = decryptionKey.getLambda();
@@ -48,4 +60,30 @@ public class PaillierCipher {
 		return l(innerPart, n).multiply(mu).mod(n);
 	}
 
+	/**
+	 * Decrypts modulo p^2 and q^2 and recombines the results using the Chinese
+	 * Remainder Theorem. The exponents and moduli are half the size of those
+	 * used with c^lambda mod n^2, making this several times faster.
+	 */
+	protected static BigInteger decryptCrt(final PaillierPrivateKey decryptionKey, final BigInteger ciphertext) {
+
+		// Get private key parameters
+		final BigInteger p = decryptionKey.getP();
+		final BigInteger q = decryptionKey.getQ();
+		final BigInteger pSquared = decryptionKey.getPSquared();
+		final BigInteger qSquared = decryptionKey.getQSquared();
+
+		// m_p = L_p(c^(p-1) mod p^2) * h_p mod p
+		final BigInteger cp = Exponentiation.modPow(ciphertext.mod(pSquared), p.subtract(BigInteger.ONE), pSquared);
+		final BigInteger mp = l(cp, p).multiply(decryptionKey.getHp()).mod(p);
+
+		// m_q = L_q(c^(q-1) mod q^2) * h_q mod q
+		final BigInteger cq = Exponentiation.modPow(ciphertext.mod(qSquared), q.subtract(BigInteger.ONE), qSquared);
+		final BigInteger mq = l(cq, q).multiply(decryptionKey.getHq()).mod(q);
+
+		// m = m_q + q * ((m_p - m_q) * q^-1 mod p)
+		final BigInteger u = mp.subtract(mq).multiply(decryptionKey.getQInverse()).mod(p);
+		return mq.add(u.multiply(q));
+	}
+
 }
@@ -39,7 +39,7 @@ public class PaillierKeyGenerator {
 		final BigInteger mu = lambda.modInverse(n); // lambda^-1 % n
 
 		final PaillierPublicKey publicKey = new PaillierPublicKey(n, g, nSquared);
-		final PaillierPrivateKey privateKey = new PaillierPrivateKey(lambda, mu, n, nSquared);
+		final PaillierPrivateKey privateKey = new PaillierPrivateKey(lambda, mu, n, nSquared, p, q);
 		
 		return new PaillierKeyPair(publicKey, privateKey);
 	}
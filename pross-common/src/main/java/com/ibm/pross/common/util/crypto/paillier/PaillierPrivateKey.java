@@ -13,6 +13,17 @@ public class PaillierPrivateKey implements Serializable, PrivateKey {
 	private final BigInteger n;
 	private final BigInteger nSquared;
 
+	// Factorization of n, these are null for keys loaded without it
+	private final BigInteger p;
+	private final BigInteger q;
+
+	// Precomputed values for decryption modulo p^2 and q^2
+	private final BigInteger pSquared;
+	private final BigInteger qSquared;
+	private final BigInteger hp;
+	private final BigInteger hq;
+	private final BigInteger qInverse;
+
 	public PaillierPrivateKey(final BigInteger lambda, final BigInteger n) {
 		this(lambda, lambda.modInverse(n), n, n.multiply(n));
 	}
@@ -23,10 +34,58 @@ public class PaillierPrivateKey implements Serializable, PrivateKey {
 
 	protected PaillierPrivateKey(final BigInteger lambda, final BigInteger mu, final BigInteger n,
 			final BigInteger nSquared) {
+		this(lambda, mu, n, nSquared, null, null);
+	}
+
+	/**
+	 * Creates a private key which retains the factorization of n, allowing
+	 * decryption to be performed modulo p^2 and q^2 and recombined using the
+	 * Chinese Remainder Theorem
+	 * 
+	 * @param lambda
+	 * @param mu
+	 * @param n
+	 * @param nSquared
+	 * @param p
+	 *            A prime factor of n, or null if unknown
+	 * @param q
+	 *            The other prime factor of n, or null if unknown
+	 */
+	public PaillierPrivateKey(final BigInteger lambda, final BigInteger mu, final BigInteger n,
+			final BigInteger nSquared, final BigInteger p, final BigInteger q) {
 		this.lambda = lambda;
 		this.mu = mu;
 		this.n = n;
 		this.nSquared = nSquared;
+
+		if ((p != null) && (q != null)) {
+			if (!p.multiply(q).equals(n) || p.equals(q)) {
+				throw new IllegalArgumentException("p and q are not distinct factors of n");
+			}
+			this.p = p;
+			this.q = q;
+			this.pSquared = p.multiply(p);
+			this.qSquared = q.multiply(q);
+			this.hp = h(n.add(BigInteger.ONE), p, this.pSquared);
+			this.hq = h(n.add(BigInteger.ONE), q, this.qSquared);
+			this.qInverse = q.modInverse(p);
+		} else {
+			this.p = null;
+			this.q = null;
+			this.pSquared = null;
+			this.qSquared = null;
+			this.hp = null;
+			this.hq = null;
+			this.qInverse = null;
+		}
+	}
+
+	/**
+	 * Computes h = L_p(g^(p-1) mod p^2)^-1 mod p, where L_p(u) = (u-1) / p
+	 */
+	private static BigInteger h(final BigInteger g, final BigInteger p, final BigInteger pSquared) {
+		final BigInteger u = g.modPow(p.subtract(BigInteger.ONE), pSquared);
+		return u.subtract(BigInteger.ONE).divide(p).modInverse(p);
 	}
 
 	public BigInteger getLambda() {
@@ -45,6 +104,41 @@ public class PaillierPrivateKey implements Serializable, PrivateKey {
 		return nSquared;
 	}
 
+	/**
+	 * Returns true if this key retains the factorization of n
+	 */
+	public boolean hasFactors() {
+		return (p != null);
+	}
+
+	public BigInteger getP() {
+		return p;
+	}
+
+	public BigInteger getQ() {
+		return q;
+	}
+
+	public BigInteger getPSquared() {
+		return pSquared;
+	}
+
+	public BigInteger getQSquared() {
+		return qSquared;
+	}
+
+	public BigInteger getHp() {
+		return hp;
+	}
+
+	public BigInteger getHq() {
+		return hq;
+	}
+
+	public BigInteger getQInverse() {
+		return qInverse;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
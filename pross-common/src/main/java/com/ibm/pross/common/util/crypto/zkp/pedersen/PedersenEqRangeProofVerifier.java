@@ -4,6 +4,7 @@ import java.math.BigInteger;
 
 import com.ibm.pross.common.config.CommonConfiguration;
 import com.ibm.pross.common.util.Exponentiation;
+import com.ibm.pross.common.util.RandomNumberGenerator;
 import com.ibm.pross.common.util.crypto.ecc.EcCurve;
 import com.ibm.pross.common.util.crypto.ecc.EcPoint;
 import com.ibm.pross.common.util.crypto.paillier.PaillierCipher;
@@ -16,21 +17,43 @@ public class PedersenEqRangeProofVerifier {
 	public static final EcPoint g = CommonConfiguration.g;
 	public static final EcPoint h = CommonConfiguration.h;
 
+	// Size of the random weights used to combine equations
+	public static final int BATCH_WEIGHT_BITS = 128;
+
 	public static boolean isValid(final PedersenEqRangeProof proof, final BigInteger Ea, final BigInteger Eb,
 			final EcPoint S, final PaillierPublicKey publicKey) {
 
+		// Step 1: Recompute c = H(Ealpha, Ebeta, S1, Ea, Eb, S)
+		final BigInteger c = computeChallenge(proof, Ea, Eb, S);
+
+		// Steps 2 and 3 check the encryptions, step 4 checks the commitment
+		return isEncryptionValid(proof, Ea, Eb, c, publicKey) && isCommitmentValid(proof, S, c);
+	}
+
+	/**
+	 * Computes the challenge c = H(Ealpha, Ebeta, S1, Ea, Eb, S)
+	 */
+	public static BigInteger computeChallenge(final PedersenEqRangeProof proof, final BigInteger Ea,
+			final BigInteger Eb, final EcPoint S) {
+		return PedersenEqRangeProofGenerator.hashParameters(proof.getEalpha(), proof.getEbeta(), proof.getS1(), Ea,
+				Eb, S);
+	}
+
+	/**
+	 * Checks the Paillier equations of the proof: Enc(z1, e1) = Ea^c * Eα and
+	 * Enc(z2, e2) = Eb^c * Eβ
+	 */
+	public static boolean isEncryptionValid(final PedersenEqRangeProof proof, final BigInteger Ea,
+			final BigInteger Eb, final BigInteger c, final PaillierPublicKey publicKey) {
+
 		// Get fields of the proof
 		final BigInteger Ealpha = proof.getEalpha();
 		final BigInteger Ebeta = proof.getEbeta();
-		final EcPoint S1 = proof.getS1();
 		final BigInteger z1 = proof.getZ1();
 		final BigInteger z2 = proof.getZ2();
 		final BigInteger e1 = proof.getE1();
 		final BigInteger e2 = proof.getE2();
 
-		// Step 1: Recompute c = H(Ealpha, Ebeta, S1, Ea, Eb, S)
-		final BigInteger c = PedersenEqRangeProofGenerator.hashParameters(Ealpha, Ebeta, S1, Ea, Eb, S);
-
 		// Step 2: Enc(z1, e1) = Ea^c * Eα
 		final BigInteger nSquared = publicKey.getNSquared();
 		final BigInteger enc1 = PaillierCipher.encrypt(publicKey, z1, e1);
@@ -46,15 +69,54 @@ public class PedersenEqRangeProofVerifier {
 			return false;
 		}
 
-		// Step 4: Check that (g^z1 * h^z2) = (S^c * S1)
-		final EcPoint lhs = curve.addPoints(curve.multiply(g, z1), curve.multiply(h, z2));
-		final EcPoint rhs = curve.addPoints(curve.multiply(S, c), S1);
-		if (!lhs.equals(rhs)) {
-			return false;
-		}
-
-		// All checks passed
 		return true;
 	}
 
+	/**
+	 * Checks both Paillier equations of the proof with a single encryption, by
+	 * combining them with a random weight ρ:
+	 * 
+	 * Enc(z1 + ρ·z2, e1·e2^ρ) = (Ea^c * Eα) * (Eb^c * Eβ)^ρ
+	 * 
+	 * A proof passes this check with non-negligible probability only if both
+	 * equations hold up to a factor which is itself an encryption of zero, so
+	 * the plaintext relations the proof establishes are unchanged.
+	 */
+	public static boolean isEncryptionValidBatched(final PedersenEqRangeProof proof, final BigInteger Ea,
+			final BigInteger Eb, final BigInteger c, final PaillierPublicKey publicKey) {
+
+		// Get fields of the proof
+		final BigInteger Ealpha = proof.getEalpha();
+		final BigInteger Ebeta = proof.getEbeta();
+		final BigInteger z1 = proof.getZ1();
+		final BigInteger z2 = proof.getZ2();
+		final BigInteger e1 = proof.getE1();
+		final BigInteger e2 = proof.getE2();
+
+		final BigInteger n = publicKey.getN();
+		final BigInteger nSquared = publicKey.getNSquared();
+		final BigInteger rho = RandomNumberGenerator.generateRandomInteger(BATCH_WEIGHT_BITS);
+
+		// Left side: a single encryption of the combined plaintext and randomness
+		final BigInteger combinedMessage = z1.add(rho.multiply(z2));
+		final BigInteger combinedRandomness = e1.multiply(Exponentiation.modPow(e2, rho, n)).mod(n);
+		final BigInteger enc = PaillierCipher.encrypt(publicKey, combinedMessage, combinedRandomness);
+
+		// Right side
+		final BigInteger product1 = Exponentiation.modPow(Ea, c, nSquared).multiply(Ealpha).mod(nSquared);
+		final BigInteger product2 = Exponentiation.modPow(Eb, c, nSquared).multiply(Ebeta).mod(nSquared);
+		final BigInteger product = product1.multiply(Exponentiation.modPow(product2, rho, nSquared)).mod(nSquared);
+
+		return enc.equals(product);
+	}
+
+	/**
+	 * Step 4: Check that (g^z1 * h^z2) = (S^c * S1)
+	 */
+	public static boolean isCommitmentValid(final PedersenEqRangeProof proof, final EcPoint S, final BigInteger c) {
+		final EcPoint lhs = curve.addPoints(curve.multiply(g, proof.getZ1()), curve.multiply(h, proof.getZ2()));
+		final EcPoint rhs = curve.addPoints(curve.multiply(S, c), proof.getS1());
+		return lhs.equals(rhs);
+	}
+
 }
@@ -40,6 +40,9 @@ public class PublicSharing implements Serializable {
 	private final int numShares;
 	private final int threshold;
 
+	// Set once the commitments have been checked, not serialized
+	private transient volatile boolean commitmentsValidated = false;
+
 	/**
 	 * Constructs a public sharing of a secret. This sharing can be validated by
 	 * anyone who holds the public keys of the shareholding participants.
@@ -105,15 +108,8 @@ public class PublicSharing implements Serializable {
 	 */
 	public boolean verifyAllShares(final PaillierPublicKey[] shareholderKeys) {
 
-		// Make sure each proof can be verified
-		for (int i = 0; i < shareholderKeys.length; i++) {
-			if (!verifyShare(i, shareholderKeys[i])) {
-				return false;
-			}
-		}
-
-		// Return true only if all proofs were validated
-		return true;
+		// Proofs are checked concurrently, return true only if all were validated
+		return PublicSharingVerifier.findInvalidShares(this, shareholderKeys).isEmpty();
 	}
 
 	/**
@@ -132,6 +128,7 @@ public class PublicSharing implements Serializable {
 
 		// Use the Pedersen commitments to determine g^share_i using polynomial
 		// evaluation "in the exponent"
+		validateCommitments();
 		final BigInteger xPosition = BigInteger.valueOf(shareIndex + 1);
 		final EcPoint shareCommitment = PublicSharingGenerator.interpolatePedersonCommitments(xPosition,
 				this.pedersenCommitments);
@@ -150,6 +147,7 @@ public class PublicSharing implements Serializable {
 	public EcPoint getSecretCommitment() {
 
 		// Use the Pedersen commitments to determine g^secret using polynomial evaluation "in the exponent"
+		validateCommitments();
 		final BigInteger xPosition = BigInteger.ZERO;
 		final EcPoint secretCommitment = PublicSharingGenerator.interpolatePedersonCommitments(xPosition,
 				this.pedersenCommitments);
@@ -157,6 +155,19 @@ public class PublicSharing implements Serializable {
 		return secretCommitment;
 	}
 
+	/**
+	 * Checks the commitments are valid points the first time they are used
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If any of the commitments are invalid
+	 */
+	void validateCommitments() {
+		if (!this.commitmentsValidated) {
+			PublicSharingGenerator.validateCommitments(this.pedersenCommitments);
+			this.commitmentsValidated = true;
+		}
+	}
+
 	/**
 	 * Decrypt a first share from the public sharing using the appropriate private key
 	 * 
@@ -85,7 +85,16 @@ public class PublicSharingGenerator {
 		return new PublicSharing(pedersenCommitments, encryptedShares1, encryptedShares2, proofs);
 	}
 
-	public static EcPoint interpolatePedersonCommitments(final BigInteger position, final EcPoint[] commitments) {
+	/**
+	 * Checks that each commitment is on the curve and is not the point at
+	 * infinity. Commitments received from others must pass this check before
+	 * they are interpolated.
+	 * 
+	 * @param commitments
+	 * @throws IllegalArgumentException
+	 *             If any of the commitments are invalid
+	 */
+	public static void validateCommitments(final EcPoint[] commitments) {
 
 		// Check that each point is on the curve and is not a point at infinity or has a
 		// null x coordinate
@@ -94,16 +103,30 @@ public class PublicSharingGenerator {
 				throw new IllegalArgumentException("Commitments are invalid");
 			}
 		}
+	}
+
+	/**
+	 * Evaluates the committed polynomial "in the exponent" at the given position.
+	 * The commitments are assumed to have been checked with
+	 * validateCommitments().
+	 * 
+	 * @param position
+	 * @param commitments
+	 * @return
+	 */
+	public static EcPoint interpolatePedersonCommitments(final BigInteger position, final EcPoint[] commitments) {
 
 		// Compute expected value of a commitment for a given share, from the
-		// co-efficient commitments
-		EcPoint sum = EcPoint.pointAtInfinity;
+		// co-efficient commitments, as a single multi-scalar multiplication
+		final BigInteger r = curve.getR();
+		final BigInteger[] powers = new BigInteger[commitments.length];
+		BigInteger power = BigInteger.ONE;
 		for (int i = 0; i < commitments.length; i++) {
-			final EcPoint term = curve.multiply(commitments[i], position.pow(i));
-			sum = curve.addPoints(sum, term);
+			powers[i] = power;
+			power = power.multiply(position).mod(r);
 		}
 
-		return sum;
+		return curve.sumOfProducts(commitments, powers);
 	}
 
 	public int getNumShares() {
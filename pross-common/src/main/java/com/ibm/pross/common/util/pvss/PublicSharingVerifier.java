@@ -0,0 +1,209 @@
+package com.ibm.pross.common.util.pvss;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.ibm.pross.common.config.CommonConfiguration;
+import com.ibm.pross.common.util.RandomNumberGenerator;
+import com.ibm.pross.common.util.crypto.ecc.EcCurve;
+import com.ibm.pross.common.util.crypto.ecc.EcPoint;
+import com.ibm.pross.common.util.crypto.paillier.PaillierPublicKey;
+import com.ibm.pross.common.util.crypto.zkp.pedersen.PedersenEqRangeProof;
+import com.ibm.pross.common.util.crypto.zkp.pedersen.PedersenEqRangeProofVerifier;
+
+/**
+ * Verifies the proofs of a public sharing concurrently on a bounded pool.
+ *
+ * In batch mode the elliptic curve equations of all proofs, g^z1 * h^z2 = S^c *
+ * S1, are combined with random weights into a single multi-scalar
+ * multiplication, and the two Paillier equations of each proof are combined
+ * into one encryption. The Paillier equations of different proofs are not
+ * combined as each is under a different shareholder's modulus. If the combined
+ * curve check fails, each proof is checked individually to identify which
+ * shares are invalid.
+ */
+public class PublicSharingVerifier {
+
+	public static int NUM_VERIFICATION_THREADS = Runtime.getRuntime().availableProcessors();
+	public static boolean BATCH_VERIFICATION = true;
+
+	// Workers of a fork join pool are daemon threads
+	private static final ForkJoinPool verificationPool = new ForkJoinPool(NUM_VERIFICATION_THREADS);
+
+	private static final EcCurve curve = CommonConfiguration.CURVE;
+	private static final EcPoint g = CommonConfiguration.g;
+	private static final EcPoint h = CommonConfiguration.h;
+
+	/**
+	 * Returns the indices of the shares whose proofs are not valid, in ascending
+	 * order. The list is empty if the whole sharing is valid.
+	 *
+	 * @param sharing
+	 * @param shareholderKeys
+	 *            The ordered array of shareholder public keys
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             If the commitments of the sharing are invalid
+	 */
+	public static List<Integer> findInvalidShares(final PublicSharing sharing,
+			final PaillierPublicKey[] shareholderKeys) {
+
+		sharing.validateCommitments();
+
+		final boolean batch = BATCH_VERIFICATION;
+
+		// Check the Paillier equations of each proof concurrently, these are the
+		// most expensive part
+		final List<Callable<ShareCheck>> checks = new ArrayList<>(shareholderKeys.length);
+		for (int i = 0; i < shareholderKeys.length; i++) {
+			final int shareIndex = i;
+			checks.add(new Callable<ShareCheck>() {
+				@Override
+				public ShareCheck call() {
+					return checkShare(sharing, shareIndex, shareholderKeys[shareIndex], batch);
+				}
+			});
+		}
+		final List<ShareCheck> results = invokeAll(checks);
+
+		final List<Integer> invalidShares = new ArrayList<>();
+		final List<ShareCheck> pendingCurveChecks = new ArrayList<>();
+		for (final ShareCheck result : results) {
+			if (!result.valid) {
+				invalidShares.add(result.shareIndex);
+			} else if (batch) {
+				pendingCurveChecks.add(result);
+			}
+		}
+
+		// Combine the remaining curve equations, checking each only if that fails
+		if (!pendingCurveChecks.isEmpty() && !isCommitmentBatchValid(pendingCurveChecks)) {
+			final List<Callable<ShareCheck>> curveChecks = new ArrayList<>(pendingCurveChecks.size());
+			for (final ShareCheck pending : pendingCurveChecks) {
+				curveChecks.add(new Callable<ShareCheck>() {
+					@Override
+					public ShareCheck call() {
+						pending.valid = PedersenEqRangeProofVerifier.isCommitmentValid(pending.proof,
+								pending.shareCommitment, pending.challenge);
+						return pending;
+					}
+				});
+			}
+			for (final ShareCheck result : invokeAll(curveChecks)) {
+				if (!result.valid) {
+					invalidShares.add(result.shareIndex);
+				}
+			}
+		}
+
+		Collections.sort(invalidShares);
+		return invalidShares;
+	}
+
+	private static ShareCheck checkShare(final PublicSharing sharing, final int shareIndex,
+			final PaillierPublicKey encryptionKey, final boolean batch) {
+
+		// Get the corresponding share to validate
+		final BigInteger encryptedShare1 = sharing.getEncryptedShares1()[shareIndex];
+		final BigInteger encryptedShare2 = sharing.getEncryptedShares2()[shareIndex];
+		final PedersenEqRangeProof proof = sharing.getProofs()[shareIndex];
+
+		// Use the Pedersen commitments to determine g^share_i using polynomial
+		// evaluation "in the exponent"
+		final BigInteger xPosition = BigInteger.valueOf(shareIndex + 1);
+		final EcPoint shareCommitment = PublicSharingGenerator.interpolatePedersonCommitments(xPosition,
+				sharing.getPedersenCommitments());
+
+		final BigInteger c = PedersenEqRangeProofVerifier.computeChallenge(proof, encryptedShare1, encryptedShare2,
+				shareCommitment);
+
+		final ShareCheck result = new ShareCheck(shareIndex, proof, shareCommitment, c);
+		if (batch) {
+			result.valid = PedersenEqRangeProofVerifier.isEncryptionValidBatched(proof, encryptedShare1,
+					encryptedShare2, c, encryptionKey);
+		} else {
+			result.valid = PedersenEqRangeProofVerifier.isEncryptionValid(proof, encryptedShare1, encryptedShare2, c,
+					encryptionKey) && PedersenEqRangeProofVerifier.isCommitmentValid(proof, shareCommitment, c);
+		}
+		return result;
+	}
+
+	/**
+	 * Checks sum_i d_i * (z1_i * g + z2_i * h - c_i * S_i - S1_i) = 0 for random
+	 * weights d_i, which holds for all i with overwhelming probability only if
+	 * each individual equation holds
+	 */
+	private static boolean isCommitmentBatchValid(final List<ShareCheck> checks) {
+		final BigInteger r = curve.getR();
+
+		final int terms = 2 + (2 * checks.size());
+		final EcPoint[] points = new EcPoint[terms];
+		final BigInteger[] scalars = new BigInteger[terms];
+
+		BigInteger gScalar = BigInteger.ZERO;
+		BigInteger hScalar = BigInteger.ZERO;
+		int term = 2;
+		for (final ShareCheck check : checks) {
+			final BigInteger weight = RandomNumberGenerator
+					.generateRandomInteger(PedersenEqRangeProofVerifier.BATCH_WEIGHT_BITS);
+			gScalar = gScalar.add(weight.multiply(check.proof.getZ1())).mod(r);
+			hScalar = hScalar.add(weight.multiply(check.proof.getZ2())).mod(r);
+
+			points[term] = check.shareCommitment;
+			scalars[term++] = weight.multiply(check.challenge).negate();
+			points[term] = check.proof.getS1();
+			scalars[term++] = weight.negate();
+		}
+		points[0] = g;
+		scalars[0] = gScalar;
+		points[1] = h;
+		scalars[1] = hScalar;
+
+		return curve.sumOfProducts(points, scalars).equals(EcPoint.pointAtInfinity);
+	}
+
+	private static <T> List<T> invokeAll(final List<Callable<T>> tasks) {
+		final List<T> results = new ArrayList<>(tasks.size());
+		try {
+			for (final Future<T> future : verificationPool.invokeAll(tasks)) {
+				results.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while verifying public sharing", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+		return results;
+	}
+
+	/**
+	 * The values computed for one share which are needed to check its proof
+	 */
+	private static class ShareCheck {
+
+		private final int shareIndex;
+		private final PedersenEqRangeProof proof;
+		private final EcPoint shareCommitment;
+		private final BigInteger challenge;
+		private volatile boolean valid;
+
+		public ShareCheck(final int shareIndex, final PedersenEqRangeProof proof, final EcPoint shareCommitment,
+				final BigInteger challenge) {
+			this.shareIndex = shareIndex;
+			this.proof = proof;
+			this.shareCommitment = shareCommitment;
+			this.challenge = challenge;
+		}
+	}
+
+}
@@ -18,10 +18,14 @@ import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.security.interfaces.ECPrivateKey;
 import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPrivateCrtKey;
 import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
 import java.security.spec.InvalidKeySpecException;
+import java.security.spec.KeySpec;
 import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.RSAPrivateCrtKeySpec;
+import java.security.spec.RSAPrivateKeySpec;
 import java.security.spec.X509EncodedKeySpec;
 
 import org.bouncycastle.util.io.pem.PemObject;
@@ -160,10 +164,43 @@ public class Pem {
 		final BigInteger n = rsaPrivateKey.getModulus(); // treat as 'n'
 		final BigInteger lambda = rsaPrivateKey.getPrivateExponent(); // treat as 'lambda'
 
+		// Keys written by earlier versions do not contain the factors of n
+		if (rsaPrivateKey instanceof RSAPrivateCrtKey) {
+			final BigInteger p = ((RSAPrivateCrtKey) rsaPrivateKey).getPrimeP(); // treat as 'p'
+			final BigInteger q = ((RSAPrivateCrtKey) rsaPrivateKey).getPrimeQ(); // treat as 'q'
+			if ((p != null) && (q != null) && (p.signum() > 0) && (q.signum() > 0) && p.multiply(q).equals(n)) {
+				return new PaillierPrivateKey(lambda, lambda.modInverse(n), n, n.multiply(n), p, q);
+			}
+		}
+
 		// Convert them back to Paillier private key
 		return new PaillierPrivateKey(lambda, n);
 	}
 
+	// Note this is only to take advantage of existing serialization methods
+	public static RSAPrivateKey convertFromPaillierPrivateKey(final PaillierPrivateKey paillierPrivateKey,
+			final PaillierPublicKey paillierPublicKey) throws InvalidKeySpecException, NoSuchAlgorithmException {
+
+		// Get fields
+		final BigInteger n = paillierPublicKey.getN(); // treat as 'N'
+		final BigInteger e = paillierPublicKey.getG(); // treat as 'e'
+		final BigInteger d = paillierPrivateKey.getLambda(); // treat as 'd'
+
+		// Represent it as an RSA key, including the factors of n when known
+		final KeySpec privKeySpec;
+		if (paillierPrivateKey.hasFactors()) {
+			final BigInteger p = paillierPrivateKey.getP();
+			final BigInteger q = paillierPrivateKey.getQ();
+			privKeySpec = new RSAPrivateCrtKeySpec(n, e, d, p, q, p.subtract(BigInteger.ONE),
+					q.subtract(BigInteger.ONE), paillierPrivateKey.getQInverse());
+		} else {
+			privKeySpec = new RSAPrivateKeySpec(n, d);
+		}
+
+		final KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+		return (RSAPrivateKey) keyFactory.generatePrivate(privKeySpec);
+	}
+
 	// Note this is only to take advantage of existing serialization methods
 	public static PaillierPublicKey convertToPaillierPublicKey(final RSAPublicKey rsaPublicKey)
 			throws InvalidKeySpecException, NoSuchAlgorithmException {
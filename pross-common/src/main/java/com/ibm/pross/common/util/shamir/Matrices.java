@@ -81,15 +81,16 @@ public class Matrices {
 		final int t = matrix.length;
 		final EcPoint[] result = new EcPoint[t];
 		
+		final EcPoint[] points = new EcPoint[t];
+		for (int j = 0; j < t; j++)
+		{
+			points[j] = responses.get(j).getDerivedSharePoint();
+		}
+		
+		// Each row is one multi-scalar multiplication
 		for (int i = 0; i < t; i++)
 		{
-			result[i] = EcPoint.pointAtInfinity;
-			
-			// Loop to compute sum
-			for (int j = 0; j < t; j++)
-			{
-				result[i] = curve.addPoints(result[i], curve.multiply(responses.get(j).getDerivedSharePoint(), matrix[i][j]));
-			}
+			result[i] = curve.sumOfProducts(points, matrix[i]);
 		}
 		
 		return result;
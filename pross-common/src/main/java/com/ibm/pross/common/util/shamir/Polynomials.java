@@ -207,23 +207,19 @@ public class Polynomials {
 			xCoords[i] = toprfResponse.getIndex();
 		}
 
-		// Interpolate polynomial
-		EcPoint sum = null;
+		// Interpolate polynomial as a single multi-scalar multiplication
+		final EcPoint[] outputShares = new EcPoint[threshold];
+		final BigInteger[] coefficients = new BigInteger[threshold];
 		for (int i = 0; i < threshold; i++) {
 			final DerivationResult toprfResponse = responses.get(i);
 
 			final BigInteger j = toprfResponse.getIndex();
-			final EcPoint outputShare = toprfResponse.getDerivedSharePoint();
-			final BigInteger L_ij = Polynomials.interpolatePartial(xCoords, BigInteger.valueOf(xPosition), j, r);
-
-			final EcPoint product = CommonConfiguration.CURVE.multiply(outputShare, L_ij);
-
-			if (sum == null)
-				sum = product;
-			else
-				sum = CommonConfiguration.CURVE.addPoints(sum, product);
+			outputShares[i] = toprfResponse.getDerivedSharePoint();
+			coefficients[i] = Polynomials.interpolatePartial(xCoords, BigInteger.valueOf(xPosition), j, r);
 		}
 
+		final EcPoint sum = CommonConfiguration.CURVE.sumOfProducts(outputShares, coefficients);
+
 		return sum;
 	}
 
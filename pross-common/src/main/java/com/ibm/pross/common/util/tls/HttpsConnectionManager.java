@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ * Project name: pross
+ * This project is licensed under the MIT License, see LICENSE.
+ */
+
+package com.ibm.pross.common.util.tls;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.HandshakeCompletedEvent;
+import javax.net.ssl.HandshakeCompletedListener;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
+
+import com.ibm.pross.common.config.CommonConfiguration;
+
+/**
+ * Manages the mutually authenticated HTTPS connections made by one local
+ * identity (a client or a server) to the servers.
+ *
+ * An SSLContext is built once for each remote server, trusting only the CA of
+ * that server. Since the JDK pools keep-alive connections by socket factory,
+ * reusing the same factory lets requests to a server share idle connections
+ * rather than each paying for a TCP connection and a TLS handshake. The session
+ * cache of each context also lets new connections resume an earlier session
+ * with an abbreviated handshake.
+ *
+ * The pool holds at most MAX_CONNECTIONS_PER_SERVER idle connections to each
+ * server, and the JDK closes connections which stay idle longer than the
+ * keep-alive timeout. Responses must be read to the end and their streams
+ * closed for a connection to return to the pool.
+ */
+public class HttpsConnectionManager {
+
+	// Maximum number of idle connections kept open to each server
+	public static int MAX_CONNECTIONS_PER_SERVER = 16;
+
+	// Sessions kept for resumption by each context
+	public static int SESSION_CACHE_SIZE = 64;
+	public static int SESSION_TIMEOUT_SECONDS = 60 * 60;
+
+	private static final char[] PASSWORD = "password".toCharArray();
+
+	static {
+		// Read once by the JDK when the first connection is made, so an explicit
+		// setting on the command line takes precedence
+		if (System.getProperty("http.keepAlive") == null) {
+			System.setProperty("http.keepAlive", "true");
+		}
+		if (System.getProperty("http.maxConnections") == null) {
+			System.setProperty("http.maxConnections", String.valueOf(MAX_CONNECTIONS_PER_SERVER));
+		}
+	}
+
+	// Our identity
+	private final PrivateKey privateKey;
+	private final X509Certificate[] certificateChain;
+
+	// The CA certificate of each server, indexed from server 1
+	private final List<X509Certificate> serverCaCertificates;
+
+	private final ConcurrentMap<Integer, SSLSocketFactory> socketFactories = new ConcurrentHashMap<>();
+
+	// Statistics
+	private final AtomicLong contexts = new AtomicLong(0);
+	private final AtomicLong requests = new AtomicLong(0);
+	private final AtomicLong connections = new AtomicLong(0);
+	private final AtomicLong fullHandshakes = new AtomicLong(0);
+	private final AtomicLong resumedHandshakes = new AtomicLong(0);
+
+	/**
+	 * @param privateKey
+	 *            Our private key for client authentication
+	 * @param certificateChain
+	 *            Our certificate followed by the certificate of its CA
+	 * @param serverCaCertificates
+	 *            The CA certificates of the servers, the first being that of
+	 *            server 1
+	 */
+	public HttpsConnectionManager(final PrivateKey privateKey, final X509Certificate[] certificateChain,
+			final List<X509Certificate> serverCaCertificates) {
+		this.privateKey = privateKey;
+		this.certificateChain = certificateChain.clone();
+		this.serverCaCertificates = serverCaCertificates;
+	}
+
+	/**
+	 * Opens a connection to the given server, which will reuse an idle
+	 * connection to it if one is available
+	 *
+	 * @param url
+	 * @param remoteServerId
+	 * @return
+	 * @throws IOException
+	 * @throws GeneralSecurityException
+	 */
+	public HttpsURLConnection openConnection(final URL url, final int remoteServerId)
+			throws IOException, GeneralSecurityException {
+		final HttpsURLConnection httpsConnection = (HttpsURLConnection) url.openConnection();
+		configure(httpsConnection, remoteServerId);
+		return httpsConnection;
+	}
+
+	/**
+	 * Sets up a connection to authenticate us to the given server and to only
+	 * trust that server
+	 *
+	 * @param httpsConnection
+	 * @param remoteServerId
+	 * @throws GeneralSecurityException
+	 */
+	public void configure(final HttpsURLConnection httpsConnection, final int remoteServerId)
+			throws GeneralSecurityException {
+		httpsConnection.setSSLSocketFactory(getSocketFactory(remoteServerId));
+		this.requests.incrementAndGet();
+	}
+
+	public SSLSocketFactory getSocketFactory(final int remoteServerId) throws GeneralSecurityException {
+		SSLSocketFactory socketFactory = this.socketFactories.get(remoteServerId);
+		if (socketFactory == null) {
+			final SSLContext sslContext = createContext(remoteServerId);
+			this.socketFactories.putIfAbsent(remoteServerId, new CountingSocketFactory(sslContext.getSocketFactory()));
+			socketFactory = this.socketFactories.get(remoteServerId);
+		}
+		return socketFactory;
+	}
+
+	private SSLContext createContext(final int remoteServerId) throws GeneralSecurityException {
+
+		try {
+			// Configure SSL context
+			final SSLContext sslContext = SSLContext.getInstance(CommonConfiguration.TLS_VERSION);
+
+			// Create in-memory key store
+			final KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+			keyStore.load(null, PASSWORD);
+
+			// Add the CA certificate for the server
+			keyStore.setCertificateEntry("ca-" + remoteServerId, this.serverCaCertificates.get(remoteServerId - 1));
+
+			// Add our certificate and private key
+			keyStore.setKeyEntry("host", this.privateKey, PASSWORD, this.certificateChain);
+
+			// Make Key Manager Factory
+			final KeyManagerFactory kmf = KeyManagerFactory.getInstance("SunX509");
+			kmf.init(keyStore, PASSWORD);
+
+			// Setup the trust manager factory
+			final TrustManagerFactory tmf = TrustManagerFactory.getInstance("SunX509");
+			tmf.init(keyStore);
+
+			// Initialize the context
+			sslContext.init(kmf.getKeyManagers(), tmf.getTrustManagers(), new SecureRandom());
+
+			final SSLSessionContext sessionContext = sslContext.getClientSessionContext();
+			sessionContext.setSessionCacheSize(SESSION_CACHE_SIZE);
+			sessionContext.setSessionTimeout(SESSION_TIMEOUT_SECONDS);
+
+			this.contexts.incrementAndGet();
+			return sslContext;
+		} catch (IOException e) {
+			// Not possible for an in-memory key store
+			throw new RuntimeException(e);
+		}
+	}
+
+	public long getContextCount() {
+		return this.contexts.get();
+	}
+
+	public long getRequestCount() {
+		return this.requests.get();
+	}
+
+	/**
+	 * Returns the number of new connections made, requests beyond this number
+	 * reused a pooled connection
+	 */
+	public long getConnectionCount() {
+		return this.connections.get();
+	}
+
+	public long getFullHandshakeCount() {
+		return this.fullHandshakes.get();
+	}
+
+	public long getResumedHandshakeCount() {
+		return this.resumedHandshakes.get();
+	}
+
+	/**
+	 * Returns the fraction of requests sent over a pooled connection
+	 */
+	public double getReuseRate() {
+		final long requests = getRequestCount();
+		return (requests == 0) ? 0.0 : ((double) Math.max(0, requests - getConnectionCount()) / requests);
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"contexts=%d requests=%d connections=%d reuse_rate=%.2f full_handshakes=%d resumed_handshakes=%d",
+				getContextCount(), getRequestCount(), getConnectionCount(), getReuseRate(), getFullHandshakeCount(),
+				getResumedHandshakeCount());
+	}
+
+	/**
+	 * Counts the connections made and whether their handshakes resumed a session
+	 */
+	private class CountingSocketFactory extends SSLSocketFactory {
+
+		private final SSLSocketFactory socketFactory;
+
+		public CountingSocketFactory(final SSLSocketFactory socketFactory) {
+			this.socketFactory = socketFactory;
+		}
+
+		private Socket count(final Socket socket) {
+			connections.incrementAndGet();
+			if (socket instanceof SSLSocket) {
+				final long createdTime = System.currentTimeMillis();
+				((SSLSocket) socket).addHandshakeCompletedListener(new HandshakeCompletedListener() {
+					@Override
+					public void handshakeCompleted(final HandshakeCompletedEvent event) {
+						// A resumed session was created by an earlier handshake
+						if (event.getSession().getCreationTime() < createdTime) {
+							resumedHandshakes.incrementAndGet();
+						} else {
+							fullHandshakes.incrementAndGet();
+						}
+					}
+				});
+			}
+			return socket;
+		}
+
+		@Override
+		public String[] getDefaultCipherSuites() {
+			return this.socketFactory.getDefaultCipherSuites();
+		}
+
+		@Override
+		public String[] getSupportedCipherSuites() {
+			return this.socketFactory.getSupportedCipherSuites();
+		}
+
+		@Override
+		public Socket createSocket() throws IOException {
+			return count(this.socketFactory.createSocket());
+		}
+
+		@Override
+		public Socket createSocket(final Socket socket, final String host, final int port, final boolean autoClose)
+				throws IOException {
+			return count(this.socketFactory.createSocket(socket, host, port, autoClose));
+		}
+
+		@Override
+		public Socket createSocket(final String host, final int port) throws IOException {
+			return count(this.socketFactory.createSocket(host, port));
+		}
+
+		@Override
+		public Socket createSocket(final String host, final int port, final InetAddress localHost,
+				final int localPort) throws IOException {
+			return count(this.socketFactory.createSocket(host, port, localHost, localPort));
+		}
+
+		@Override
+		public Socket createSocket(final InetAddress host, final int port) throws IOException {
+			return count(this.socketFactory.createSocket(host, port));
+		}
+
+		@Override
+		public Socket createSocket(final InetAddress address, final int port, final InetAddress localAddress,
+				final int localPort) throws IOException {
+			return count(this.socketFactory.createSocket(address, port, localAddress, localPort));
+		}
+	}
+
+}
@@ -0,0 +1,171 @@
+package com.ibm.pross.common.util.concurrent;
+
+import java.io.IOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.pross.common.exceptions.http.ResourceUnavailableException;
+import com.ibm.pross.common.util.concurrent.FanOutEngine.ServerRequest;
+
+/*
+ * Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ * Project name: pross
+ * This project is licensed under the MIT License, see LICENSE.
+ */
+public class FanOutEngineTest {
+
+	private static ServerRequest<Integer> respond(final int value) {
+		return new ServerRequest<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				return value;
+			}
+		};
+	}
+
+	private static ServerRequest<Integer> respondAfter(final CountDownLatch latch, final int value) {
+		return new ServerRequest<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				latch.await();
+				// Give the other requests time to finish
+				Thread.sleep(100);
+				return value;
+			}
+		};
+	}
+
+	private static ServerRequest<Integer> fail() {
+		return new ServerRequest<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				throw new Exception("Bad response");
+			}
+		};
+	}
+
+	private static ServerRequest<Integer> failAndCount(final CountDownLatch failed) {
+		return new ServerRequest<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				failed.countDown();
+				throw new Exception("Bad response");
+			}
+		};
+	}
+
+	private static ServerRequest<Integer> block(final CountDownLatch started, final AtomicInteger interrupted) {
+		return new ServerRequest<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				started.countDown();
+				try {
+					Thread.sleep(60_000);
+				} catch (InterruptedException e) {
+					interrupted.incrementAndGet();
+					throw e;
+				}
+				return -1;
+			}
+		};
+	}
+
+	@Test
+	public void testThresholdOfResults() throws Exception {
+		final FanOutEngine engine = new FanOutEngine();
+		final Map<Integer, ServerRequest<Integer>> requests = new HashMap<>();
+		for (int i = 1; i <= 5; i++) {
+			requests.put(i, respond(i));
+		}
+
+		final List<Integer> results = engine.invoke(requests, 3);
+		Assert.assertEquals(3, results.size());
+		for (final Integer result : results) {
+			Assert.assertTrue(requests.containsKey(result));
+		}
+	}
+
+	@Test
+	public void testToleratesFailures() throws Exception {
+		final FanOutEngine engine = new FanOutEngine();
+		final Map<Integer, ServerRequest<Integer>> requests = new HashMap<>();
+		final CountDownLatch failed = new CountDownLatch(2);
+		requests.put(1, failAndCount(failed));
+		requests.put(2, respondAfter(failed, 2));
+		requests.put(3, failAndCount(failed));
+		requests.put(4, respondAfter(failed, 4));
+
+		final List<Integer> results = engine.invoke(requests, 2);
+		Assert.assertEquals(2, results.size());
+		Assert.assertTrue(results.contains(2));
+		Assert.assertTrue(results.contains(4));
+		Assert.assertEquals(2, engine.getRequestsFailed());
+	}
+
+	@Test(expected = ResourceUnavailableException.class)
+	public void testTooManyFailures() throws Exception {
+		final FanOutEngine engine = new FanOutEngine();
+		final Map<Integer, ServerRequest<Integer>> requests = new HashMap<>();
+		requests.put(1, fail());
+		requests.put(2, respond(2));
+		requests.put(3, fail());
+
+		// Must fail rather than wait for responses which will never come
+		engine.invoke(requests, 2);
+	}
+
+	@Test
+	public void testStragglersAreCancelled() throws Exception {
+		final FanOutEngine engine = new FanOutEngine();
+		final CountDownLatch started = new CountDownLatch(1);
+		final AtomicInteger interrupted = new AtomicInteger(0);
+
+		final Map<Integer, ServerRequest<Integer>> requests = new HashMap<>();
+		requests.put(1, block(started, interrupted));
+		requests.put(2, respondAfter(started, 2));
+		requests.put(3, respondAfter(started, 3));
+
+		// Completes without waiting for the slow request
+		final long startTime = System.nanoTime();
+		Assert.assertEquals(2, engine.invoke(requests, 2).size());
+		Assert.assertTrue(System.nanoTime() - startTime < TimeUnit.SECONDS.toNanos(30));
+
+		final long deadline = System.currentTimeMillis() + 5_000;
+		while ((interrupted.get() == 0) && (System.currentTimeMillis() < deadline)) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(1, interrupted.get());
+	}
+
+	@Test
+	public void testFastestServersRankedFirst() throws Exception {
+		final FanOutEngine engine = new FanOutEngine();
+		final Map<Integer, ServerRequest<Integer>> requests = new HashMap<>();
+		final CountDownLatch failed = new CountDownLatch(1);
+		requests.put(1, failAndCount(failed));
+		requests.put(2, respondAfter(failed, 2));
+		requests.put(3, respondAfter(failed, 3));
+
+		engine.invoke(requests, 2);
+
+		// The failed server is moved to the back
+		final List<Integer> ranked = engine.rankServers(requests.keySet());
+		Assert.assertEquals(Integer.valueOf(1), ranked.get(2));
+	}
+
+	@Test
+	public void testCancellationIsRecognized() throws Exception {
+		Assert.assertTrue(FanOutEngine.isCancellation(new InterruptedException()));
+		Assert.assertTrue(FanOutEngine.isCancellation(new ClosedByInterruptException()));
+		Assert.assertFalse(FanOutEngine.isCancellation(new IOException("Connection refused")));
+	}
+
+}
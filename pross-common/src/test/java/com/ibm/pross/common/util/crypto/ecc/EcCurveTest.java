@@ -123,6 +123,61 @@ public class EcCurveTest {
 		}
 	}
 
+	@Test
+	public void testSumOfProducts() {
+		final int terms = 12;
+		final EcPoint[] points = new EcPoint[terms];
+		final BigInteger[] scalars = new BigInteger[terms];
+		EcPoint expected = EcPoint.pointAtInfinity;
+		for (int i = 0; i < terms; i++) {
+			points[i] = this.curveUnderTest.multiply(this.curveUnderTest.getG(),
+					RandomNumberGenerator.generateRandomInteger(this.curveUnderTest.getR()));
+			scalars[i] = RandomNumberGenerator.generateRandomInteger(this.curveUnderTest.getR());
+			expected = this.curveUnderTest.addPoints(expected, this.curveUnderTest.multiply(points[i], scalars[i]));
+		}
+
+		// Include terms which contribute nothing
+		points[terms - 1] = EcPoint.pointAtInfinity;
+		expected = EcPoint.pointAtInfinity;
+		scalars[0] = BigInteger.ZERO;
+		for (int i = 0; i < terms; i++) {
+			expected = this.curveUnderTest.addPoints(expected, this.curveUnderTest.multiply(points[i], scalars[i]));
+		}
+
+		Assert.assertEquals(expected, this.curveUnderTest.sumOfProducts(points, scalars));
+
+		// Force the bucket method to be used
+		final int threshold = EcCurveBc.PIPPENGER_THRESHOLD;
+		EcCurveBc.PIPPENGER_THRESHOLD = 2;
+		try {
+			Assert.assertEquals(expected, this.curveUnderTest.sumOfProducts(points, scalars));
+		} finally {
+			EcCurveBc.PIPPENGER_THRESHOLD = threshold;
+		}
+
+		Assert.assertEquals(EcPoint.pointAtInfinity,
+				this.curveUnderTest.sumOfProducts(new EcPoint[0], new BigInteger[0]));
+	}
+
+	@Test
+	public void testMultiplyAll() {
+		final EcPoint[] points = new EcPoint[10];
+		for (int i = 0; i < points.length; i++) {
+			points[i] = this.curveUnderTest.multiply(this.curveUnderTest.getG(),
+					RandomNumberGenerator.generateRandomInteger(this.curveUnderTest.getR()));
+		}
+		points[3] = EcPoint.pointAtInfinity;
+
+		for (final BigInteger n : Arrays.asList(RandomNumberGenerator.generateRandomInteger(this.curveUnderTest.getR()),
+				BigInteger.ONE, BigInteger.ZERO, this.curveUnderTest.getR().subtract(BigInteger.ONE))) {
+			final EcPoint[] products = this.curveUnderTest.multiplyAll(points, n);
+			Assert.assertEquals(points.length, products.length);
+			for (int i = 0; i < points.length; i++) {
+				Assert.assertEquals(this.curveUnderTest.multiply(points[i], n), products[i]);
+			}
+		}
+	}
+
 	@Test
 	public void testAddPointAtInfinity() {
 
@@ -0,0 +1,57 @@
+package com.ibm.pross.common.util.crypto.ecc;
+
+import java.math.BigInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.pross.common.config.CommonConfiguration;
+import com.ibm.pross.common.util.RandomNumberGenerator;
+
+public class EcPointEncodingTest {
+
+	private static final EcCurve curve = CommonConfiguration.CURVE;
+
+	@Test
+	public void testEncodeDecode() {
+		final int length = EcPointEncoding.getEncodedLength(curve);
+		Assert.assertEquals(33, length);
+
+		final byte[] encoded = new byte[20 * length];
+		final EcPoint[] points = new EcPoint[20];
+		for (int i = 0; i < points.length; i++) {
+			points[i] = curve.multiply(curve.getG(), RandomNumberGenerator.generateRandomInteger(curve.getR()));
+			EcPointEncoding.encode(curve, points[i], encoded, i * length);
+		}
+		points[5] = EcPoint.pointAtInfinity;
+		EcPointEncoding.encode(curve, points[5], encoded, 5 * length);
+
+		for (int i = 0; i < points.length; i++) {
+			Assert.assertEquals(points[i], EcPointEncoding.decode(curve, encoded, i * length));
+		}
+	}
+
+	@Test
+	public void testReflectedPointsDiffer() {
+		final EcPoint point = curve.multiply(curve.getG(), BigInteger.valueOf(12345));
+		final EcPoint reflected = curve.reflectPoint(point);
+		final byte[] encoded = EcPointEncoding.encode(curve, point);
+		final byte[] encodedReflected = EcPointEncoding.encode(curve, reflected);
+		Assert.assertEquals(encoded[0] ^ 1, encodedReflected[0]);
+		Assert.assertEquals(reflected, EcPointEncoding.decode(curve, encodedReflected, 0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidPrefix() {
+		final byte[] encoded = EcPointEncoding.encode(curve, curve.getG());
+		encoded[0] = 0x04;
+		EcPointEncoding.decode(curve, encoded, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTruncated() {
+		final byte[] encoded = EcPointEncoding.encode(curve, curve.getG());
+		EcPointEncoding.decode(curve, encoded, 1);
+	}
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ * Project name: pross
+ * This project is licensed under the MIT License, see LICENSE.
+ */
+
+package com.ibm.pross.common.util.crypto.ecc;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.ibm.pross.common.util.RandomNumberGenerator;
+
+@RunWith(Parameterized.class)
+public class FixedBaseMultiplierTest {
+
+	@Parameters(name = "{0}")
+	public static Collection<Object> data() {
+		return Arrays.asList(new Object[] { EcCurve.secp256r1.getName(), EcCurve.secp384r1.getName(),
+				EcCurve.secp521r1.getName() });
+	}
+
+	private final EcCurveBc curveUnderTest;
+
+	public FixedBaseMultiplierTest(final String curveName) {
+		this.curveUnderTest = EcCurveBc.createByName(curveName);
+	}
+
+	@Test
+	public void testMatchesGenericMultiply() {
+		final EcPoint base = this.curveUnderTest.getPointHasher().hashToCurve(new byte[] { 0x01 });
+		final FixedBaseMultiplier fixedBase = new FixedBaseMultiplier(this.curveUnderTest, base);
+		final BigInteger r = this.curveUnderTest.getR();
+
+		final BigInteger[] scalars = new BigInteger[] { BigInteger.ONE, BigInteger.valueOf(2), r.subtract(BigInteger.ONE),
+				r.add(BigInteger.valueOf(5)), BigInteger.valueOf(-7), RandomNumberGenerator.generateRandomInteger(r) };
+		for (final BigInteger n : scalars) {
+			Assert.assertEquals(this.curveUnderTest.multiply(base, n), fixedBase.multiply(n));
+		}
+
+		Assert.assertEquals(EcPoint.pointAtInfinity, fixedBase.multiply(BigInteger.ZERO));
+		Assert.assertEquals(EcPoint.pointAtInfinity, fixedBase.multiply(r));
+	}
+
+	@Test
+	public void testPrecomputedBaseIsUsedByMultiply() {
+		final EcCurveBc curve = EcCurveBc.createByName(this.curveUnderTest.getName());
+		final EcPoint base = curve.getPointHasher().hashToCurve(new byte[] { 0x02 });
+		final BigInteger n = RandomNumberGenerator.generateRandomInteger(curve.getR());
+
+		final EcPoint expected = curve.multiply(base, n);
+		curve.precomputeFixedBase(base);
+		Assert.assertEquals(expected, curve.multiply(base, n));
+	}
+
+	@Test
+	public void testPerformance() {
+		final EcPoint base = this.curveUnderTest.getPointHasher().hashToCurve(new byte[] { 0x03 });
+		final FixedBaseMultiplier fixedBase = new FixedBaseMultiplier(this.curveUnderTest, base);
+		final BigInteger r = this.curveUnderTest.getR();
+
+		final int iterations = 1000;
+		final BigInteger[] scalars = new BigInteger[iterations];
+		for (int i = 0; i < iterations; i++) {
+			scalars[i] = RandomNumberGenerator.generateRandomInteger(r);
+		}
+
+		// Warm up both paths
+		for (int i = 0; i < iterations; i++) {
+			this.curveUnderTest.multiply(base, scalars[i]);
+			fixedBase.multiply(scalars[i]);
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			this.curveUnderTest.multiply(base, scalars[i]);
+		}
+		final long genericTime = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			fixedBase.multiply(scalars[i]);
+		}
+		final long fixedBaseTime = System.nanoTime() - start;
+
+		System.out.println(this.curveUnderTest.getName() + ": generic multiply " + (genericTime / iterations)
+				+ " ns, fixed-base multiply " + (fixedBaseTime / iterations) + " ns");
+	}
+
+}
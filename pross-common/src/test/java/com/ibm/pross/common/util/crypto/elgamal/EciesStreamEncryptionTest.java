@@ -0,0 +1,131 @@
+package com.ibm.pross.common.util.crypto.elgamal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.pross.common.util.crypto.ecc.EcPoint;
+import com.ibm.pross.common.util.crypto.elgamal.EciesStreamEncryption.Header;
+
+/*
+ * Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ * Project name: pross
+ * This project is licensed under the MIT License, see LICENSE.
+ */
+public class EciesStreamEncryptionTest {
+
+	private static final int CHUNK_SIZE = 1024;
+
+	private static final BigInteger privateKey = EciesEncryption.generateR();
+	private static final EcPoint publicKey = EciesEncryption.curve.multiply(EciesEncryption.G, privateKey);
+
+	private static byte[] encrypt(final byte[] message) throws IOException {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		try (final OutputStream out = EciesStreamEncryption.newEncryptingStream(bos, publicKey, CHUNK_SIZE)) {
+			// Write in pieces which do not line up with the chunks
+			for (int i = 0; i < message.length; i += 700) {
+				out.write(message, i, Math.min(700, message.length - i));
+			}
+		}
+		return bos.toByteArray();
+	}
+
+	private static byte[] decrypt(final byte[] ciphertext) throws IOException {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		try (final InputStream in = EciesStreamEncryption.newDecryptingStream(new ByteArrayInputStream(ciphertext),
+				privateKey)) {
+			final byte[] buffer = new byte[333];
+			int read;
+			while ((read = in.read(buffer)) >= 0) {
+				bos.write(buffer, 0, read);
+			}
+		}
+		return bos.toByteArray();
+	}
+
+	private static byte[] randomMessage(final int length) {
+		final byte[] message = new byte[length];
+		new Random(length).nextBytes(message);
+		return message;
+	}
+
+	@Test
+	public void testEncryptDecrypt() throws Exception {
+		for (int length : new int[] { 0, 1, CHUNK_SIZE - 1, CHUNK_SIZE, CHUNK_SIZE + 1, 5 * CHUNK_SIZE, 12345 }) {
+			final byte[] message = randomMessage(length);
+			final byte[] ciphertext = encrypt(message);
+			Assert.assertArrayEquals(message, decrypt(ciphertext));
+		}
+	}
+
+	@Test
+	public void testDecryptWithSharedSecret() throws Exception {
+		final byte[] message = randomMessage(3 * CHUNK_SIZE);
+		final ByteArrayInputStream in = new ByteArrayInputStream(encrypt(message));
+
+		// As done by a client which has the servers exponentiate the public value
+		final Header header = EciesStreamEncryption.readHeader(in);
+		Assert.assertEquals(CHUNK_SIZE, header.getChunkSize());
+		final EcPoint sharedSecret = EciesEncryption.curve.multiply(header.getPublicValue(), privateKey);
+
+		final byte[] decrypted = new byte[message.length];
+		int length = 0;
+		try (final InputStream decrypting = EciesStreamEncryption.newDecryptingStream(in, header, sharedSecret)) {
+			int read;
+			while ((read = decrypting.read(decrypted, length, decrypted.length - length)) > 0) {
+				length += read;
+			}
+			Assert.assertEquals(-1, decrypting.read());
+		}
+		Assert.assertArrayEquals(message, decrypted);
+	}
+
+	@Test(expected = IOException.class)
+	public void testModifiedChunkIsRejected() throws Exception {
+		final byte[] ciphertext = encrypt(randomMessage(3 * CHUNK_SIZE));
+		ciphertext[ciphertext.length - 2 * CHUNK_SIZE] ^= 1;
+		decrypt(ciphertext);
+	}
+
+	@Test(expected = IOException.class)
+	public void testModifiedHeaderIsRejected() throws Exception {
+		final byte[] ciphertext = encrypt(randomMessage(100));
+		// Change the chunk size
+		ciphertext[8] ^= 1;
+		decrypt(ciphertext);
+	}
+
+	@Test
+	public void testTruncationIsRejected() throws Exception {
+		final byte[] ciphertext = encrypt(randomMessage(3 * CHUNK_SIZE));
+		final int chunkLength = CHUNK_SIZE + 16;
+
+		// Drop the (empty) final chunk, then a whole full chunk, then part of one
+		for (int dropped : new int[] { 16, 16 + chunkLength, 100 }) {
+			try {
+				decrypt(Arrays.copyOf(ciphertext, ciphertext.length - dropped));
+				Assert.fail("Truncated ciphertext was accepted");
+			} catch (IOException expected) {
+				// Expected
+			}
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testWrongKeyIsRejected() throws Exception {
+		final ByteArrayInputStream in = new ByteArrayInputStream(encrypt(randomMessage(10)));
+		final Header header = EciesStreamEncryption.readHeader(in);
+		final EcPoint wrongSecret = EciesEncryption.curve.multiply(header.getPublicValue(),
+				privateKey.add(BigInteger.ONE));
+		EciesStreamEncryption.newDecryptingStream(in, header, wrongSecret).read();
+	}
+
+}
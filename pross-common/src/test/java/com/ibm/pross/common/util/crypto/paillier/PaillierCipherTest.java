@@ -4,6 +4,7 @@ import static org.junit.Assert.fail;
 
 import java.math.BigInteger;
 
+import org.junit.Assert;
 import org.junit.Test;
 
 import com.ibm.pross.common.util.RandomNumberGenerator;
@@ -97,4 +98,62 @@ public class PaillierCipherTest {
 	}
 
 
+	@Test
+	public void testDecryptCrtMatchesWithoutFactors() {
+		final PaillierKeyPair keyPair = new PaillierKeyGenerator(1024).generate();
+		final PaillierPublicKey publicKey = keyPair.getPublicKey();
+		final PaillierPrivateKey privateKey = keyPair.getPrivateKey();
+		Assert.assertTrue(privateKey.hasFactors());
+
+		// A key without its factors must decrypt to the same values
+		final PaillierPrivateKey legacyKey = new PaillierPrivateKey(privateKey.getLambda(), privateKey.getN());
+		Assert.assertFalse(legacyKey.hasFactors());
+		Assert.assertEquals(privateKey, legacyKey);
+
+		final BigInteger n = publicKey.getN();
+		for (int i = 0; i < 50; i++) {
+			final BigInteger x = RandomNumberGenerator.generateRandomInteger(n);
+			final BigInteger c = PaillierCipher.encrypt(publicKey, x);
+			Assert.assertEquals(x, PaillierCipher.decryptCrt(privateKey, c));
+			Assert.assertEquals(x, PaillierCipher.decryptWithoutFactors(privateKey, c));
+			Assert.assertEquals(x, PaillierCipher.decrypt(legacyKey, c));
+		}
+		Assert.assertEquals(BigInteger.ZERO, PaillierCipher.decrypt(privateKey, PaillierCipher.encrypt(publicKey, BigInteger.ZERO)));
+	}
+
+	@Test
+	public void testDecryptCrtPerformance() {
+		final PaillierKeyPair keyPair = new PaillierKeyGenerator(2048).generate();
+		final PaillierPublicKey publicKey = keyPair.getPublicKey();
+		final PaillierPrivateKey privateKey = keyPair.getPrivateKey();
+
+		final int iterations = 200;
+		final BigInteger[] ciphertexts = new BigInteger[iterations];
+		for (int i = 0; i < iterations; i++) {
+			ciphertexts[i] = PaillierCipher.encrypt(publicKey, RandomNumberGenerator.generateRandomInteger(publicKey.getN()));
+		}
+
+		// Warm up
+		for (int i = 0; i < 20; i++) {
+			PaillierCipher.decryptCrt(privateKey, ciphertexts[i]);
+			PaillierCipher.decryptWithoutFactors(privateKey, ciphertexts[i]);
+		}
+
+		long start = System.nanoTime();
+		for (final BigInteger c : ciphertexts) {
+			PaillierCipher.decryptWithoutFactors(privateKey, c);
+		}
+		final long withoutFactorsNs = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (final BigInteger c : ciphertexts) {
+			PaillierCipher.decryptCrt(privateKey, c);
+		}
+		final long crtNs = System.nanoTime() - start;
+
+		System.out.println("Without factors (ms): " + withoutFactorsNs / (iterations * 1_000_000.0));
+		System.out.println("CRT (ms):             " + crtNs / (iterations * 1_000_000.0));
+		System.out.println("Speedup:              " + ((double) withoutFactorsNs / crtNs));
+	}
+
 }
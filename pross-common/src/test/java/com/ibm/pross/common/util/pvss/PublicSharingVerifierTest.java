@@ -0,0 +1,84 @@
+package com.ibm.pross.common.util.pvss;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ibm.pross.common.config.CommonConfiguration;
+import com.ibm.pross.common.util.crypto.paillier.PaillierKeyGenerator;
+import com.ibm.pross.common.util.crypto.paillier.PaillierPublicKey;
+import com.ibm.pross.common.util.crypto.zkp.pedersen.PedersenEqRangeProof;
+
+public class PublicSharingVerifierTest {
+
+	private static final int n = 5;
+	private static final int t = 3;
+
+	private static PaillierPublicKey[] publicKeys;
+	private static PublicSharing sharing;
+
+	@BeforeClass
+	public static void setupBeforeClass() {
+		final PaillierKeyGenerator generator = new PaillierKeyGenerator(1024);
+		publicKeys = new PaillierPublicKey[n];
+		for (int i = 0; i < n; i++) {
+			publicKeys[i] = generator.generate().getPublicKey();
+		}
+		sharing = new PublicSharingGenerator(n, t).shareSecret(BigInteger.valueOf(844), publicKeys);
+	}
+
+	private static PublicSharing withProofs(final PedersenEqRangeProof[] proofs) {
+		return new PublicSharing(sharing.getPedersenCommitments(), sharing.getEncryptedShares1(),
+				sharing.getEncryptedShares2(), proofs);
+	}
+
+	@Test
+	public void testValidSharing() {
+		final boolean batch = PublicSharingVerifier.BATCH_VERIFICATION;
+		try {
+			PublicSharingVerifier.BATCH_VERIFICATION = true;
+			Assert.assertEquals(Collections.emptyList(), PublicSharingVerifier.findInvalidShares(sharing, publicKeys));
+			PublicSharingVerifier.BATCH_VERIFICATION = false;
+			Assert.assertEquals(Collections.emptyList(), PublicSharingVerifier.findInvalidShares(sharing, publicKeys));
+		} finally {
+			PublicSharingVerifier.BATCH_VERIFICATION = batch;
+		}
+		Assert.assertTrue(sharing.verifyAllShares(publicKeys));
+	}
+
+	@Test
+	public void testInvalidCommitmentIsIdentified() {
+		// Alter only the curve point of one proof, so its Paillier equations still hold
+		final PedersenEqRangeProof[] proofs = sharing.getProofs().clone();
+		final PedersenEqRangeProof original = proofs[3];
+		proofs[3] = new PedersenEqRangeProof(original.getEalpha(), original.getEbeta(),
+				CommonConfiguration.CURVE.addPoints(original.getS1(), CommonConfiguration.g), original.getZ1(),
+				original.getZ2(), original.getE1(), original.getE2());
+
+		final boolean batch = PublicSharingVerifier.BATCH_VERIFICATION;
+		try {
+			PublicSharingVerifier.BATCH_VERIFICATION = true;
+			Assert.assertEquals(Arrays.asList(3), PublicSharingVerifier.findInvalidShares(withProofs(proofs), publicKeys));
+			PublicSharingVerifier.BATCH_VERIFICATION = false;
+			Assert.assertEquals(Arrays.asList(3), PublicSharingVerifier.findInvalidShares(withProofs(proofs), publicKeys));
+		} finally {
+			PublicSharingVerifier.BATCH_VERIFICATION = batch;
+		}
+	}
+
+	@Test
+	public void testInvalidEncryptionIsIdentified() {
+		// Swap two proofs, neither matches its encrypted shares
+		final PedersenEqRangeProof[] proofs = sharing.getProofs().clone();
+		proofs[0] = sharing.getProofs()[1];
+		proofs[1] = sharing.getProofs()[0];
+
+		Assert.assertEquals(Arrays.asList(0, 1), PublicSharingVerifier.findInvalidShares(withProofs(proofs), publicKeys));
+		Assert.assertFalse(withProofs(proofs).verifyAllShares(publicKeys));
+	}
+
+}
@@ -0,0 +1,74 @@
+package com.ibm.pross.common.util.serialization;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.KeyFactory;
+import java.security.Security;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.spec.RSAPrivateKeySpec;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ibm.pross.common.util.crypto.paillier.PaillierCipher;
+import com.ibm.pross.common.util.crypto.paillier.PaillierKeyGenerator;
+import com.ibm.pross.common.util.crypto.paillier.PaillierKeyPair;
+import com.ibm.pross.common.util.crypto.paillier.PaillierPrivateKey;
+
+import net.i2p.crypto.eddsa.EdDSASecurityProvider;
+
+public class PemTest {
+
+	@BeforeClass
+	public static void setupBeforeClass() {
+		Security.addProvider(new BouncyCastleProvider());
+		Security.addProvider(new EdDSASecurityProvider());
+	}
+
+	@Test
+	public void testPaillierPrivateKeyRetainsFactors() throws Exception {
+		final PaillierKeyPair keyPair = new PaillierKeyGenerator(1024).generate();
+
+		final RSAPrivateKey rsaPrivateKey = Pem.convertFromPaillierPrivateKey(keyPair.getPrivateKey(),
+				keyPair.getPublicKey());
+		final PaillierPrivateKey loadedKey = (PaillierPrivateKey) storeAndLoad(rsaPrivateKey);
+
+		Assert.assertEquals(keyPair.getPrivateKey(), loadedKey);
+		Assert.assertTrue(loadedKey.hasFactors());
+		Assert.assertEquals(keyPair.getPrivateKey().getP(), loadedKey.getP());
+		Assert.assertEquals(keyPair.getPrivateKey().getQ(), loadedKey.getQ());
+
+		final BigInteger c = PaillierCipher.encrypt(keyPair.getPublicKey(), BigInteger.valueOf(12345));
+		Assert.assertEquals(BigInteger.valueOf(12345), PaillierCipher.decrypt(loadedKey, c));
+	}
+
+	@Test
+	public void testPaillierPrivateKeyWithoutFactorsLoads() throws Exception {
+		final PaillierKeyPair keyPair = new PaillierKeyGenerator(1024).generate();
+
+		// Keys were previously written with only the modulus and lambda
+		final RSAPrivateKey rsaPrivateKey = (RSAPrivateKey) KeyFactory.getInstance("RSA").generatePrivate(
+				new RSAPrivateKeySpec(keyPair.getPublicKey().getN(), keyPair.getPrivateKey().getLambda()));
+		final PaillierPrivateKey loadedKey = (PaillierPrivateKey) storeAndLoad(rsaPrivateKey);
+
+		Assert.assertEquals(keyPair.getPrivateKey(), loadedKey);
+		Assert.assertFalse(loadedKey.hasFactors());
+
+		final BigInteger c = PaillierCipher.encrypt(keyPair.getPublicKey(), BigInteger.valueOf(12345));
+		Assert.assertEquals(BigInteger.valueOf(12345), PaillierCipher.decrypt(loadedKey, c));
+	}
+
+	private static Object storeAndLoad(final RSAPrivateKey key) throws Exception {
+		final File keyFile = File.createTempFile("paillier", ".pem");
+		try {
+			Pem.storeKeyToFile(key, keyFile);
+			return Pem.loadKeyFromFile(keyFile);
+		} finally {
+			keyFile.delete();
+		}
+	}
+
+}
@@ -17,7 +17,6 @@ import java.security.cert.CertificateEncodingException;
 import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
 import java.security.spec.InvalidKeySpecException;
-import java.security.spec.RSAPrivateKeySpec;
 import java.security.spec.RSAPublicKeySpec;
 
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
@@ -98,16 +97,14 @@ public class KeyGeneratorCli {
 		// Get fields
 		final BigInteger n = paillierPublicKey.getN(); // treat as 'N'
 		final BigInteger e = paillierPublicKey.getG(); // treat as 'e'
-		final BigInteger d = paillierPrivateKey.getLambda(); // treat as 'd'
 
-		// Represent them as RSA keys
-		final RSAPrivateKeySpec privKeySpec = new RSAPrivateKeySpec(n, d);
+		// Represent them as RSA keys, the private key retains the factors of n
 		final RSAPublicKeySpec pubKeySpec = new RSAPublicKeySpec(n, e);
 
 		// Convert to key pair
 		final KeyFactory keyFactory = KeyFactory.getInstance("RSA");
 		final PublicKey rsaPublic = keyFactory.generatePublic(pubKeySpec);
-		final PrivateKey rsaPrivate = keyFactory.generatePrivate(privKeySpec);
+		final PrivateKey rsaPrivate = Pem.convertFromPaillierPrivateKey(paillierPrivateKey, paillierPublicKey);
 
 		return new KeyPair(rsaPublic, rsaPrivate);
 	}
@@ -122,10 +119,9 @@ public class KeyGeneratorCli {
 		// Get fields
 		final BigInteger n = rsaPublicKey.getModulus(); // treat as 'n'
 		final BigInteger g = rsaPublicKey.getPublicExponent(); // treat as 'g'
-		final BigInteger lambda = rsaPrivateKey.getPrivateExponent(); // treat as 'lambda'
 
 		// Convert them back to Paillier keys
-		final PaillierPrivateKey privKey = new PaillierPrivateKey(lambda, n);
+		final PaillierPrivateKey privKey = Pem.convertToPaillierPrivateKey(rsaPrivateKey);
 		final PaillierPublicKey pubKey = new PaillierPublicKey(n, g);
 
 		// Convert to key pair
@@ -136,12 +132,8 @@ public class KeyGeneratorCli {
 	public static PaillierPrivateKey convertToPaillierPrivateKey(final RSAPrivateKey rsaPrivateKey)
 			throws InvalidKeySpecException, NoSuchAlgorithmException {
 
-		// Get fields
-		final BigInteger n = rsaPrivateKey.getModulus(); // treat as 'n'
-		final BigInteger lambda = rsaPrivateKey.getPrivateExponent(); // treat as 'lambda'
-
-		// Convert them back to Paillier private key
-		return new PaillierPrivateKey(lambda, n);
+		// Old keys without the factors of n are still accepted
+		return Pem.convertToPaillierPrivateKey(rsaPrivateKey);
 	}
 
 	// Note this is only to take advantage of existing serialization methods
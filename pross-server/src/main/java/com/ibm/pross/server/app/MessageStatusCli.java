@@ -14,8 +14,8 @@ import java.security.interfaces.ECPublicKey;
 import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
 import java.security.spec.InvalidKeySpecException;
-import java.security.spec.RSAPrivateKeySpec;
 import java.security.spec.RSAPublicKeySpec;
+import java.util.TreeMap;
 
 import org.bouncycastle.util.io.pem.PemObject;
 import org.bouncycastle.util.io.pem.PemWriter;
@@ -23,8 +23,11 @@ import org.bouncycastle.util.io.pem.PemWriter;
 import com.ibm.pross.common.util.crypto.paillier.PaillierKeyPair;
 import com.ibm.pross.common.util.crypto.paillier.PaillierPrivateKey;
 import com.ibm.pross.common.util.crypto.paillier.PaillierPublicKey;
+import com.ibm.pross.common.util.serialization.Pem;
 import com.ibm.pross.server.messages.SignedMessage;
 import com.ibm.pross.server.util.AtomicFileOperations;
+import com.ibm.pross.server.util.MessageLog;
+import com.ibm.pross.server.util.MessageSerializer;
 
 import net.i2p.crypto.eddsa.EdDSAPrivateKey;
 import net.i2p.crypto.eddsa.EdDSAPublicKey;
@@ -49,6 +52,63 @@ public class MessageStatusCli {
 		final File bftMessageFolder = new File(serverPath, "bft-chain");
 		final File certifiedMessageFolder = new File(serverPath, "certified-chain");
 
+		if (MessageLog.exists(bftMessageFolder)) {
+			listLoggedMessages(bftMessageFolder, certifiedMessageFolder);
+		} else {
+			listMessageFiles(bftMessageFolder, certifiedMessageFolder);
+		}
+
+		System.out.println();
+		System.out.println("Done listing messages");
+	}
+
+	/**
+	 * Lists messages from the segmented message logs
+	 */
+	private static void listLoggedMessages(final File bftMessageFolder, final File certifiedMessageFolder)
+			throws IOException {
+
+		try (final MessageLog bftLog = new MessageLog(bftMessageFolder, true);
+				final MessageLog certifiedLog = new MessageLog(certifiedMessageFolder, true)) {
+
+			// Load both chains in one pass over each log rather than a read per message
+			final TreeMap<Long, byte[]> bftMessages = bftLog.readAll();
+			final TreeMap<Long, byte[]> certifiedMessages = certifiedLog.readAll();
+
+			// List through contiguous messages until one is missing
+			long messageIndex = 1;
+			while (bftMessages.containsKey(messageIndex)) {
+				final String strIndex = String.format("%08d", messageIndex);
+
+				// Load BFT message
+				final SignedMessage bftMessage = MessageSerializer
+						.deserializeSignedMessage(bftMessages.get(messageIndex));
+
+				final byte[] certifiedData = certifiedMessages.get(messageIndex);
+				if (certifiedData != null) {
+					// Attempt to load certified message
+					final SignedMessage certifiedMessage = MessageSerializer.deserializeSignedMessage(certifiedData);
+
+					if (!bftMessage.equals(certifiedMessage)) {
+						System.err.print("Something went wrong, BFT message does not match certified message for position " + messageIndex);
+					}
+
+					System.out.println(strIndex + " [CERTIFIED] " + bftMessage.toString());
+				} else {
+					System.out.println(strIndex + "             " + bftMessage.toString());
+				}
+
+				messageIndex++;
+			}
+		}
+	}
+
+	/**
+	 * Lists messages stored one per file, as written by earlier versions
+	 */
+	private static void listMessageFiles(final File bftMessageFolder, final File certifiedMessageFolder)
+			throws IOException {
+
 		// List through messages until no more files found
 		int messageIndex = 1;
 		while (true) {
@@ -81,9 +141,6 @@ public class MessageStatusCli {
 
 			messageIndex++;
 		}
-		
-		System.out.println();
-		System.out.println("Done listing messages");
 	}
 
 	private static void writeObject(final Key key, final PemWriter writer) throws IOException {
@@ -122,16 +179,14 @@ public class MessageStatusCli {
 		// Get fields
 		final BigInteger n = paillierPublicKey.getN(); // treat as 'N'
 		final BigInteger e = paillierPublicKey.getG(); // treat as 'e'
-		final BigInteger d = paillierPrivateKey.getLambda(); // treat as 'd'
 
-		// Represent them as RSA keys
-		final RSAPrivateKeySpec privKeySpec = new RSAPrivateKeySpec(n, d);
+		// Represent them as RSA keys, the private key retains the factors of n
 		final RSAPublicKeySpec pubKeySpec = new RSAPublicKeySpec(n, e);
 
 		// Convert to key pair
 		final KeyFactory keyFactory = KeyFactory.getInstance("RSA");
 		final PublicKey rsaPublic = keyFactory.generatePublic(pubKeySpec);
-		final PrivateKey rsaPrivate = keyFactory.generatePrivate(privKeySpec);
+		final PrivateKey rsaPrivate = Pem.convertFromPaillierPrivateKey(paillierPrivateKey, paillierPublicKey);
 
 		return new KeyPair(rsaPublic, rsaPrivate);
 	}
@@ -146,10 +201,9 @@ public class MessageStatusCli {
 		// Get fields
 		final BigInteger n = rsaPublicKey.getModulus(); // treat as 'n'
 		final BigInteger g = rsaPublicKey.getPublicExponent(); // treat as 'g'
-		final BigInteger lambda = rsaPrivateKey.getPrivateExponent(); // treat as 'lambda'
 
 		// Convert them back to Paillier keys
-		final PaillierPrivateKey privKey = new PaillierPrivateKey(lambda, n);
+		final PaillierPrivateKey privKey = Pem.convertToPaillierPrivateKey(rsaPrivateKey);
 		final PaillierPublicKey pubKey = new PaillierPublicKey(n, g);
 
 		// Convert to key pair
@@ -160,12 +214,8 @@ public class MessageStatusCli {
 	public static PaillierPrivateKey convertToPaillierPrivateKey(final RSAPrivateKey rsaPrivateKey)
 			throws InvalidKeySpecException, NoSuchAlgorithmException {
 
-		// Get fields
-		final BigInteger n = rsaPrivateKey.getModulus(); // treat as 'n'
-		final BigInteger lambda = rsaPrivateKey.getPrivateExponent(); // treat as 'lambda'
-
-		// Convert them back to Paillier private key
-		return new PaillierPrivateKey(lambda, n);
+		// Old keys without the factors of n are still accepted
+		return Pem.convertToPaillierPrivateKey(rsaPrivateKey);
 	}
 
 	// Note this is only to take advantage of existing serialization methods
@@ -103,8 +103,9 @@ public class ServerApplication {
 		for (final String secretName : accessEnforcement.getKnownSecrets()) {
 			// Create Shareholder
 			System.out.println("Starting APVSS Shareholder for secret: " + secretName);
+			final File epochArchiveDir = new File(new File(serverSaveDir, "epochs"), secretName);
 			final ApvssShareholder shareholder = new ApvssShareholder(secretName, serverKeys, chainBuilder, serverIndex,
-					n, k);
+					n, k, epochArchiveDir);
 			shareholder.start(false); // Start the message processing thread but don't start the DKG
 			shareholders.put(secretName, shareholder);
 		}
@@ -1,5 +1,7 @@
 package com.ibm.pross.server.app.avpss;
 
+import java.io.File;
+import java.io.IOException;
 import java.math.BigInteger;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
@@ -9,17 +11,23 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.SortedSet;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.ibm.pross.common.DerivationResult;
 import com.ibm.pross.common.config.CommonConfiguration;
 import com.ibm.pross.common.config.KeyLoader;
+import com.ibm.pross.common.util.concurrent.NamedThreadFactory;
 import com.ibm.pross.common.util.crypto.ecc.EcCurve;
 import com.ibm.pross.common.util.crypto.ecc.EcPoint;
 import com.ibm.pross.common.util.crypto.paillier.PaillierCipher;
@@ -33,6 +41,7 @@ import com.ibm.pross.common.util.pvss.PublicSharingGenerator;
 import com.ibm.pross.common.util.shamir.Polynomials;
 import com.ibm.pross.common.util.shamir.ShamirShare;
 import com.ibm.pross.server.app.avpss.channel.FifoAtomicBroadcastChannel;
+import com.ibm.pross.server.app.avpss.channel.MessageSubscriber;
 import com.ibm.pross.server.app.avpss.exceptions.DuplicateMessageReceivedException;
 import com.ibm.pross.server.app.avpss.exceptions.ErrorConditionException;
 import com.ibm.pross.server.app.avpss.exceptions.InconsistentShareException;
@@ -45,7 +54,7 @@ import com.ibm.pross.server.messages.Payload.OpCode;
 import com.ibm.pross.server.messages.payloads.apvss.PublicSharingPayload;
 import com.ibm.pross.server.messages.payloads.apvss.ZkpPayload;
 
-public class ApvssShareholder {
+public class ApvssShareholder implements MessageSubscriber {
 
 	public enum SharingType {
 		PEDERSEN_DKG, FELDMAN_DKG, STORED, RSA_STORED;
@@ -62,16 +71,31 @@ public class ApvssShareholder {
 	// Error log (useful for testing and for identifying problem shareholders)
 	protected final AlertLog alertLog = new AlertLog();
 
+	// Maximum messages processed in one turn before yielding the shared thread
+	public static int MAX_MESSAGES_PER_DRAIN = 64;
+
+	// Number of most recent epochs whose full state is kept in memory, the
+	// previous epoch is needed to refresh so this must be at least two
+	public static int RETAINED_EPOCHS = 2;
+
+	// Threads shared by all shareholders for processing messages
+	private static final ExecutorService messageProcessingPool = Executors
+			.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new NamedThreadFactory("Shareholder"));
+
+	// Timer shared by all shareholders for doing proactive refresh
+	private static final ScheduledExecutorService refreshScheduler = Executors
+			.newSingleThreadScheduledExecutor(new NamedThreadFactory("Shareholder-Refresh"));
+
 	// Channel-related variables
 	private final FifoAtomicBroadcastChannel channel;
-	private final AtomicLong currentMessageId = new AtomicLong(0);
 
-	// Our message processing thread
-	private final Thread messageProcessingThread;
+	// Messages routed to us by the channel awaiting processing
+	private final Queue<Message> inbox = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
 	private final AtomicBoolean stopped = new AtomicBoolean(true);
 
-	// Our timer task for doing proactive refresh
-	private final Timer timer = new Timer(true);
+	// Our next scheduled proactive refresh
+	private volatile ScheduledFuture<?> scheduledRefresh;
 
 	/********************** Misc Info ******************************/
 	// The unique name for this secret
@@ -100,22 +124,46 @@ public class ApvssShareholder {
 	// Track each epoch separately
 	private final Map<Long, SharingState> sharingStates = new ConcurrentHashMap<>();
 	private final AtomicLong currentEpoch = new AtomicLong(0);
+	private final AtomicLong oldestRetainedEpoch = new AtomicLong(0);
 	private final AtomicLong nextEpoch = new AtomicLong(0);
 	private final AtomicLong[] shareholderMessageCounts;
 
 	// Used to hold an initial share of a secret (to supported stored secrets)
 	private volatile BigInteger storedShareOfSecret = null;
 
+	// Holds epochs older than those retained in memory (may be null)
+	private final EpochArchive epochArchive;
+
 	public ApvssShareholder(final String secretName, final KeyLoader keyLoader,
 			final FifoAtomicBroadcastChannel channel, final int index, final int n, final int k) {
 		this(secretName, keyLoader, channel, index, n, k, true);
 	}
 
+	public ApvssShareholder(final String secretName, final KeyLoader keyLoader,
+			final FifoAtomicBroadcastChannel channel, final int index, final int n, final int k,
+			final File archiveDirectory) {
+		this(secretName, keyLoader, channel, index, n, k, true, archiveDirectory);
+	}
+
 	public ApvssShareholder(final String secretName, final KeyLoader keyLoader,
 			final FifoAtomicBroadcastChannel channel, final int index, final int n, final int k,
 			final boolean sendValidCommitments) {
+		this(secretName, keyLoader, channel, index, n, k, sendValidCommitments, null);
+	}
+
+	/**
+	 * Creates a shareholder for a secret
+	 * 
+	 * @param archiveDirectory
+	 *            Where epochs no longer retained in memory are archived. If null,
+	 *            old epochs are kept in memory but their transcripts are discarded.
+	 */
+	public ApvssShareholder(final String secretName, final KeyLoader keyLoader,
+			final FifoAtomicBroadcastChannel channel, final int index, final int n, final int k,
+			final boolean sendValidCommitments, final File archiveDirectory) {
 
 		this.secretName = secretName;
+		this.epochArchive = (archiveDirectory == null) ? null : new EpochArchive(archiveDirectory);
 
 		// Start first epoch
 		this.sharingStates.put(currentEpoch.get(), new SharingState(n, k, 0));
@@ -136,35 +184,48 @@ public class ApvssShareholder {
 		this.channel = channel;
 		this.n = n;
 		this.k = k; // reconstruction threshold (usually f_S + 1)
-
-		this.messageProcessingThread = createMessageProcessingThread(this.channel);
 	}
 
-	public Thread createMessageProcessingThread(final FifoAtomicBroadcastChannel channel) {
-		return new Thread(new Runnable() {
+	// Task which processes the messages in our inbox on a shared thread
+	private final Runnable drainTask = new Runnable() {
+		@Override
+		public void run() {
+			try {
+				int processed = 0;
+				Message message;
+				while (!stopped.get() && (processed < MAX_MESSAGES_PER_DRAIN) && ((message = inbox.poll()) != null)) {
+					deliver(message);
+					processed++;
+				}
+			} finally {
+				drainScheduled.set(false);
+			}
 
-			@Override
-			public void run() {
-				while (!ApvssShareholder.this.stopped.get()) {
+			// Messages may have arrived after we stopped polling
+			if (!inbox.isEmpty()) {
+				scheduleDrain();
+			}
+		}
+	};
 
-					while (channel.getMessageCount() > currentMessageId.get()) {
-						messageIsAvailable();
-					}
+	/**
+	 * Invoked by the channel for each message sent on our secret's channel, in
+	 * channel order
+	 */
+	@Override
+	public void messageAvailable(final Message message) {
+		this.inbox.add(message);
+		scheduleDrain();
+	}
 
-					try {
-						synchronized (channel) {
-							channel.wait(100);
-						}
-					} catch (InterruptedException e) {
-						// Ignore
-					}
-				}
-			}
-		}, "Shareholder-Thread-" + this.index);
+	private void scheduleDrain() {
+		if (!this.stopped.get() && this.drainScheduled.compareAndSet(false, true)) {
+			messageProcessingPool.execute(this.drainTask);
+		}
 	}
 
-	// Periodic task for stubborn message delivery
-	public class RefreshTask extends TimerTask {
+	// Periodic task for proactive refresh
+	public class RefreshTask implements Runnable {
 		@Override
 		public void run() {
 			final long currentEpoch = ApvssShareholder.this.nextEpoch.get();
@@ -175,26 +236,6 @@ public class ApvssShareholder {
 		}
 	}
 
-	/**
-	 * A message is available on the queue, get it and deliver it for processing
-	 */
-	private synchronized void messageIsAvailable() {
-
-		final long messageId = this.currentMessageId.incrementAndGet();
-		final Message message = this.channel.getMessage(messageId);
-
-		// TODO: Remove this debugging text
-		// long messageCount = this.channel.getMessageCount();
-		// System.err.println(messageCount + ";" + messageId);
-
-		// Deliver only if this message is relevant for the given epoch and secret
-		final String channelName = this.secretName;
-		if (message.isRecipient(channelName)) {
-			// System.out.println("DKG app processing message #" + messageId);
-			deliver(message);
-		}
-	}
-
 	/**
 	 * Deliver a message received on the FIFO-AB channel to the correct method
 	 * 
@@ -221,6 +262,11 @@ public class ApvssShareholder {
 					// throw new StateViolationException("Sender is getting too far ahead");
 				}
 
+				// Messages for epochs we no longer retain are stale
+				if (senderEpoch < this.oldestRetainedEpoch.get()) {
+					return;
+				}
+
 				switch (opcode) {
 				case PS:
 					deliverPublicSharing(senderEpoch, (Message) message);
@@ -249,8 +295,8 @@ public class ApvssShareholder {
 				broadcastPublicSharing(0);
 			}
 
-			// Start the shareholder (await and process messages)
-			this.messageProcessingThread.start();
+			// Start the shareholder (messages for our secret are pushed to our inbox)
+			this.channel.subscribe(this.secretName, this);
 		}
 	}
 
@@ -258,15 +304,16 @@ public class ApvssShareholder {
 
 		if (this.stopped.compareAndSet(false, true)) {
 
-			// Wake the sleeping threads
-			synchronized (this.channel) {
-				this.channel.notifyAll();
+			// Stop receiving messages and cancel any pending refresh
+			this.channel.unsubscribe(this.secretName, this);
+			final ScheduledFuture<?> refresh = this.scheduledRefresh;
+			if (refresh != null) {
+				refresh.cancel(false);
 			}
 
-			try {
-				this.messageProcessingThread.join();
-			} catch (InterruptedException e) {
-				// Interrupted
+			// Wait for an in-progress message to finish processing
+			synchronized (this) {
+				this.inbox.clear();
 			}
 		}
 	}
@@ -275,13 +322,92 @@ public class ApvssShareholder {
 		return currentEpoch.get();
 	}
 
+	/**
+	 * Returns the state of the given epoch, creating it if the epoch has not
+	 * started yet
+	 * 
+	 * @param epochNumber
+	 * @return The state, or null if the epoch was pruned and cannot be read back
+	 *         from the archive
+	 */
 	public SharingState getSharing(final long epochNumber) {
 		synchronized (this.sharingStates) {
+			final SharingState sharingState = this.sharingStates.get(epochNumber);
+			if (sharingState != null) {
+				return sharingState;
+			}
+
+			// Epochs no longer retained are read back from the archive, never re-created
+			if (epochNumber < this.oldestRetainedEpoch.get()) {
+				if (this.epochArchive != null) {
+					try {
+						return this.epochArchive.read(epochNumber, n, k);
+					} catch (IOException e) {
+						System.err.println("Failed to read archived epoch " + epochNumber + " of secret '"
+								+ this.secretName + "': " + e.getMessage());
+					}
+				}
+				return null;
+			}
+
 			this.sharingStates.putIfAbsent(epochNumber, new SharingState(n, k, epochNumber));
 			return this.sharingStates.get(epochNumber);
 		}
 	}
 
+	/**
+	 * Releases the state of epochs older than the last RETAINED_EPOCHS, either by
+	 * archiving them or by discarding their transcripts
+	 */
+	private void pruneEpochs(final long newEpoch) {
+		final long oldestRetained = Math.max(0, newEpoch - Math.max(2, RETAINED_EPOCHS) + 1);
+		synchronized (this.sharingStates) {
+			for (final Long epochNumber : new ArrayList<>(this.sharingStates.keySet())) {
+				if (epochNumber >= oldestRetained) {
+					continue;
+				}
+				final SharingState sharingState = this.sharingStates.get(epochNumber);
+				if (this.epochArchive != null) {
+					try {
+						this.epochArchive.write(sharingState);
+						this.sharingStates.remove(epochNumber);
+						continue;
+					} catch (IOException e) {
+						System.err.println("Failed to archive epoch " + epochNumber + " of secret '" + this.secretName
+								+ "': " + e.getMessage());
+					}
+				}
+				sharingState.discardTranscript();
+			}
+			this.oldestRetainedEpoch.set(oldestRetained);
+		}
+	}
+
+	/**
+	 * Returns the number of epochs whose state is held in memory
+	 */
+	public int getRetainedEpochCount() {
+		return this.sharingStates.size();
+	}
+
+	/**
+	 * Returns the number of epochs which have been moved to the archive
+	 */
+	public int getArchivedEpochCount() {
+		return (this.epochArchive == null) ? 0 : this.epochArchive.getArchivedEpochCount();
+	}
+
+	/**
+	 * Returns an estimate of the bytes held in memory by the epoch states
+	 */
+	public long getRetainedSize() {
+		long size = 0;
+		for (final SharingState sharingState : this.sharingStates.values()) {
+			size += sharingState.getSize();
+		}
+		return size;
+	}
+
 	private SharingState getCurrentSharing() {
 		return getSharing(getCurrentEpoch());
 	}
@@ -411,6 +537,9 @@ public class ApvssShareholder {
 			final EcPoint secretCommitment = publicSharing.getSecretCommitment();
 
 			final SharingState previousSharing = this.getSharing(senderEpoch - 1);
+			if (previousSharing == null) {
+				throw new StateViolationException("previous epoch is no longer available");
+			}
 			final EcPoint previousShareCommitment = PublicSharingGenerator.interpolatePedersonCommitments(
 					BigInteger.valueOf(senderIndex), previousSharing.getPedersenCommitments());
 
@@ -453,17 +582,18 @@ public class ApvssShareholder {
 		// Start counters at zero
 		BigInteger share1Y = BigInteger.ZERO;
 		BigInteger share2Y = BigInteger.ZERO;
-		EcPoint[] combinedPedersenCommitments = new EcPoint[this.k];
-		for (int i = 0; i < this.k; i++) {
-			combinedPedersenCommitments[i] = EcPoint.pointAtInfinity;
-		}
+
+		// Commitments of each contributor, weighted by its lagrange co-efficient
+		final EcPoint[][] contributedCommitments = new EcPoint[this.k][contributors.size()];
+		final BigInteger[] lagrangeCoefficients = new BigInteger[contributors.size()];
 
 		// Use our decryption key to access our shares
 		final PaillierPrivateKey decryptionKey = (PaillierPrivateKey) this.keyLoader.getDecryptionKey();
 
 		// Iterate over every public sharing in qual
-		for (final Integer contributor : contributors) {
+		for (int c = 0; c < contributors.size(); c++) {
 
+			final Integer contributor = contributors.get(c);
 			final BigInteger j = BigInteger.valueOf(contributor);
 			final PublicSharing sharing = sharingState.getQualifiedSharings().get(contributor);
 
@@ -481,14 +611,19 @@ public class ApvssShareholder {
 			share1Y = share1Y.add(share1.getY().multiply(l)).mod(curve.getR());
 			share2Y = share2Y.add(share2.getY().multiply(l)).mod(curve.getR());
 
-			// Add Pedersen commitments to our running sum
+			// Collect Pedersen commitments to be summed
+			lagrangeCoefficients[c] = l;
 			for (int i = 0; i < this.k; i++) {
-				final EcPoint interpolatedCommitment = curve.multiply(commitments[i], l);
-				combinedPedersenCommitments[i] = curve.addPoints(combinedPedersenCommitments[i],
-						interpolatedCommitment);
+				contributedCommitments[i][c] = commitments[i];
 			}
 		}
 
+		// Combine each Pedersen commitment as a single multi-scalar multiplication
+		final EcPoint[] combinedPedersenCommitments = new EcPoint[this.k];
+		for (int i = 0; i < this.k; i++) {
+			combinedPedersenCommitments[i] = curve.sumOfProducts(contributedCommitments[i], lagrangeCoefficients);
+		}
+
 		// We have our shares
 		sharingState.setShare1(new ShamirShare(BigInteger.valueOf(this.index), share1Y));
 		sharingState.setShare2(new ShamirShare(BigInteger.valueOf(this.index), share2Y));
@@ -607,6 +742,7 @@ public class ApvssShareholder {
 					final long newEpoch = currentEpoch.incrementAndGet();
 					System.out.println("Refresh complete for secret '" + ApvssShareholder.this.secretName
 							+ "', now at epoch: " + newEpoch);
+					pruneEpochs(newEpoch);
 				}
 			}
 		}
@@ -633,10 +769,15 @@ public class ApvssShareholder {
 		}
 
 		final List<DerivationResult> shareVerificationKeys = new ArrayList<>();
+		final EcPoint[] sharePublicKeys = new EcPoint[this.n + 1];
 		for (int i = 0; i <= this.n; i++) {
-			sharingState.getSharePublicKeys()[i] = Polynomials.interpolateExponents(provenShareKeys, this.k, i);
-			shareVerificationKeys
-					.add(new DerivationResult(BigInteger.valueOf(i), sharingState.getSharePublicKeys()[i]));
+			sharePublicKeys[i] = Polynomials.interpolateExponents(provenShareKeys, this.k, i);
+			shareVerificationKeys.add(new DerivationResult(BigInteger.valueOf(i), sharePublicKeys[i]));
+		}
+
+		// Publish the secret public key last, others wait on it to know all are set
+		for (int i = this.n; i >= 0; i--) {
+			sharingState.getSharePublicKeys()[i] = sharePublicKeys[i];
 		}
 
 		// Convert the share public keys to Feldman Coefficients using matrix inversion
@@ -688,7 +829,7 @@ public class ApvssShareholder {
 		// Schedule Proactive Refresh Task
 		System.out.println("Scheduling next Refresh to occur in " + this.getRefreshFrequency() + " seconds");
 		final int refreshPeriodMillis = this.getRefreshFrequency() * 1000;
-		this.timer.schedule(new RefreshTask(), refreshPeriodMillis);
+		this.scheduledRefresh = refreshScheduler.schedule(new RefreshTask(), refreshPeriodMillis, TimeUnit.MILLISECONDS);
 
 		// System.out.println("Signatures generated: " + SigningUtil.signCount.get());
 		// System.out.println("Signatures verified: " + SigningUtil.verCount.get());
@@ -941,7 +1082,8 @@ public class ApvssShareholder {
 
 	public Date getCreationTime() {
 		// Creation time of the secret is when the 0th epoch completed
-		return this.sharingStates.get(new Long(0)).getCreationTime();
+		final SharingState firstSharing = this.getSharing(0);
+		return (firstSharing == null) ? null : firstSharing.getCreationTime();
 	}
 
 	public long getEpoch() {
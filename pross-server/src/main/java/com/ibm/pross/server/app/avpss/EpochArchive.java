@@ -0,0 +1,158 @@
+package com.ibm.pross.server.app.avpss;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.util.Date;
+
+import com.ibm.pross.common.util.crypto.ecc.EcPoint;
+import com.ibm.pross.server.util.AtomicFileOperations;
+
+/**
+ * Stores the public values of completed epochs which are no longer held in
+ * memory, one small file per epoch. These are the values shown for past epochs:
+ * the completion time, share public keys and Feldman values. Shares and the
+ * transcript of the sharing are never written.
+ */
+public class EpochArchive {
+
+	private static final int FORMAT_VERSION = 1;
+
+	private static final byte NULL_POINT = 0;
+	private static final byte POINT_AT_INFINITY = 1;
+	private static final byte AFFINE_POINT = 2;
+
+	private final File directory;
+
+	public EpochArchive(final File directory) {
+		this.directory = directory;
+		this.directory.mkdirs();
+	}
+
+	private File getEpochFile(final long epochNumber) {
+		return new File(this.directory, String.format("epoch-%08d.dat", epochNumber));
+	}
+
+	public boolean contains(final long epochNumber) {
+		return getEpochFile(epochNumber).exists();
+	}
+
+	/**
+	 * Returns the number of epochs which have been archived
+	 */
+	public int getArchivedEpochCount() {
+		final String[] files = this.directory.list();
+		return (files == null) ? 0 : files.length;
+	}
+
+	/**
+	 * Writes the public values of a completed epoch
+	 *
+	 * @param sharingState
+	 * @throws IOException
+	 */
+	public void write(final SharingState sharingState) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (final DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(FORMAT_VERSION);
+			out.writeLong(sharingState.getEpochNumber());
+			final Date creationTime = sharingState.getCreationTime();
+			out.writeLong((creationTime == null) ? -1 : creationTime.getTime());
+			writePoints(out, sharingState.getSharePublicKeys());
+			writePoints(out, sharingState.getFeldmanValues());
+		}
+		AtomicFileOperations.atomicWriteBytes(getEpochFile(sharingState.getEpochNumber()), bytes.toByteArray());
+	}
+
+	/**
+	 * Reads the public values of an archived epoch
+	 *
+	 * @param epochNumber
+	 * @param n
+	 *            The number of shareholders
+	 * @param k
+	 *            The recovery threshold of the secret
+	 * @return A sharing state holding only the archived values, or null if the
+	 *         epoch was not archived
+	 * @throws IOException
+	 */
+	public SharingState read(final long epochNumber, final int n, final int k) throws IOException {
+		final File epochFile = getEpochFile(epochNumber);
+		if (!epochFile.exists()) {
+			return null;
+		}
+
+		try (final DataInputStream in = new DataInputStream(Files.newInputStream(epochFile.toPath()))) {
+			final int version = in.readInt();
+			if (version != FORMAT_VERSION) {
+				throw new IOException("Unsupported epoch archive version: " + version);
+			}
+			final long archivedEpoch = in.readLong();
+			if (archivedEpoch != epochNumber) {
+				throw new IOException("Archive for epoch " + epochNumber + " contains epoch " + archivedEpoch);
+			}
+
+			final SharingState sharingState = new SharingState(n, k, epochNumber);
+			final long creationTime = in.readLong();
+			if (creationTime >= 0) {
+				sharingState.setCreationTime(new Date(creationTime));
+			}
+
+			final EcPoint[] sharePublicKeys = readPoints(in);
+			System.arraycopy(sharePublicKeys, 0, sharingState.getSharePublicKeys(), 0,
+					Math.min(sharePublicKeys.length, sharingState.getSharePublicKeys().length));
+			sharingState.setFeldmanValues(readPoints(in));
+			sharingState.setQualSetDefined(true);
+			sharingState.discardTranscript();
+
+			return sharingState;
+		}
+	}
+
+	private static void writePoints(final DataOutputStream out, final EcPoint[] points) throws IOException {
+		out.writeInt(points.length);
+		for (final EcPoint point : points) {
+			if (point == null) {
+				out.writeByte(NULL_POINT);
+			} else if (point.equals(EcPoint.pointAtInfinity)) {
+				out.writeByte(POINT_AT_INFINITY);
+			} else {
+				out.writeByte(AFFINE_POINT);
+				writeBigInteger(out, point.getX());
+				writeBigInteger(out, point.getY());
+			}
+		}
+	}
+
+	private static EcPoint[] readPoints(final DataInputStream in) throws IOException {
+		final EcPoint[] points = new EcPoint[in.readInt()];
+		for (int i = 0; i < points.length; i++) {
+			final byte type = in.readByte();
+			if (type == POINT_AT_INFINITY) {
+				points[i] = EcPoint.pointAtInfinity;
+			} else if (type == AFFINE_POINT) {
+				final BigInteger x = readBigInteger(in);
+				final BigInteger y = readBigInteger(in);
+				points[i] = new EcPoint(x, y);
+			}
+		}
+		return points;
+	}
+
+	private static void writeBigInteger(final DataOutputStream out, final BigInteger value) throws IOException {
+		final byte[] bytes = value.toByteArray();
+		out.writeShort(bytes.length);
+		out.write(bytes);
+	}
+
+	private static BigInteger readBigInteger(final DataInputStream in) throws IOException {
+		final byte[] bytes = new byte[in.readUnsignedShort()];
+		in.readFully(bytes);
+		return new BigInteger(bytes);
+	}
+
+}
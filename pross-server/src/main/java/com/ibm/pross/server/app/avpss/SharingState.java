@@ -2,6 +2,7 @@ package com.ibm.pross.server.app.avpss;
 
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.SortedMap;
 import java.util.TreeMap;
@@ -57,6 +58,9 @@ public class SharingState {
 	// Used to time operation
 	private volatile long startTime;
 
+	// Set once the transcript of the sharing has been discarded
+	private volatile boolean transcriptDiscarded = false;
+
 	public SharingState(final int n, final int k, final long epochNumber) {
 		this.epochNumber = epochNumber;
 
@@ -184,4 +188,41 @@ public class SharingState {
 		this.rsaSharing = rsaSharing;
 	}
 
+	/**
+	 * Releases the public sharings, proofs and commitments received for this epoch,
+	 * along with its shares. Only the values needed to describe the completed
+	 * epoch are kept: its completion time, share public keys and Feldman values.
+	 */
+	public void discardTranscript() {
+		Arrays.fill(this.receivedSharings, null);
+		Arrays.fill(this.receivedProofs, null);
+		this.qualifiedSharings = new TreeMap<>();
+		this.qualifiedProofs.clear();
+		this.pedersenCommitments = null;
+		this.share1 = null;
+		this.share2 = null;
+		this.transcriptDiscarded = true;
+	}
+
+	public boolean isTranscriptDiscarded() {
+		return transcriptDiscarded;
+	}
+
+	/**
+	 * Returns an estimate of the number of bytes held by the public values of this
+	 * epoch, dominated by the received public sharings
+	 */
+	public long getSize() {
+		long size = 0;
+		for (final PublicSharing sharing : this.receivedSharings) {
+			if (sharing != null) {
+				size += sharing.getSize();
+			}
+		}
+		final long pointSize = ((CommonConfiguration.CURVE.getR().bitLength() + 7) / 8) + 1; // Assumes point compression
+		size += pointSize * (this.sharePublicKeys.length + this.feldmanValues.length);
+		size += pointSize * 2 * this.qualifiedProofs.size();
+		return size;
+	}
+
 }
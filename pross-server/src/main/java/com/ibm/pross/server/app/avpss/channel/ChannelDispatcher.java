@@ -0,0 +1,127 @@
+package com.ibm.pross.server.app.avpss.channel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.ibm.pross.server.messages.Message;
+
+/**
+ * Routes messages delivered on a FIFO-AB channel to the subscribers of the
+ * message's channel name, so that each subscriber only ever sees its own
+ * messages rather than scanning the entire channel.
+ *
+ * The positions of the messages of each channel name are indexed so that a
+ * subscriber registering late can be handed the messages previously delivered
+ * for its channel name. Only the positions are kept here, the messages are
+ * read back from the channel itself, without holding the dispatcher's lock.
+ */
+public class ChannelDispatcher {
+
+	// The channel whose messages are dispatched, read again to replay them
+	private final FifoAtomicBroadcastChannel channel;
+
+	// Guarded by this
+	private final Map<String, List<Long>> positionsByChannel = new HashMap<>();
+	private final Map<String, List<Subscription>> subscribersByChannel = new HashMap<>();
+
+	public ChannelDispatcher(final FifoAtomicBroadcastChannel channel) {
+		this.channel = channel;
+	}
+
+	/**
+	 * Holds back the messages dispatched to a subscriber while earlier messages
+	 * are still being replayed to it
+	 */
+	private static class Subscription {
+
+		private final MessageSubscriber subscriber;
+
+		// Guarded by this, null once the replay has completed
+		private List<Message> heldMessages = new ArrayList<>();
+
+		public Subscription(final MessageSubscriber subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		public synchronized void messageAvailable(final Message message) {
+			if (this.heldMessages != null) {
+				this.heldMessages.add(message);
+			} else {
+				this.subscriber.messageAvailable(message);
+			}
+		}
+
+		public synchronized void replayCompleted() {
+			for (final Message message : this.heldMessages) {
+				this.subscriber.messageAvailable(message);
+			}
+			this.heldMessages = null;
+		}
+	}
+
+	/**
+	 * Hands a message to all subscribers of its channel name. Must be invoked in
+	 * channel order.
+	 *
+	 * @param position
+	 *            The index of the message in the channel
+	 * @param message
+	 */
+	public synchronized void dispatch(final long position, final Message message) {
+		final String channelName = message.getChannelName();
+
+		this.positionsByChannel.computeIfAbsent(channelName, name -> new ArrayList<>()).add(position);
+
+		final List<Subscription> subscriptions = this.subscribersByChannel.get(channelName);
+		if (subscriptions != null) {
+			for (final Subscription subscription : subscriptions) {
+				subscription.messageAvailable(message);
+			}
+		}
+	}
+
+	/**
+	 * Registers a subscriber for the given channel name, replaying all messages
+	 * previously delivered on the channel for that channel name. Messages
+	 * dispatched during the replay are handed to the subscriber after it.
+	 *
+	 * @param channelName
+	 * @param subscriber
+	 */
+	public void subscribe(final String channelName, final MessageSubscriber subscriber) {
+		final Subscription subscription = new Subscription(subscriber);
+
+		// Register and take the positions to replay together, so each message is
+		// either replayed or dispatched to the subscriber but never both
+		final List<Long> previousPositions;
+		synchronized (this) {
+			final List<Long> positions = this.positionsByChannel.get(channelName);
+			previousPositions = (positions == null) ? new ArrayList<Long>() : new ArrayList<>(positions);
+			this.subscribersByChannel.computeIfAbsent(channelName, name -> new CopyOnWriteArrayList<>())
+					.add(subscription);
+		}
+
+		for (final Long position : previousPositions) {
+			final Message message = this.channel.getMessage(position);
+			if (message != null) {
+				subscriber.messageAvailable(message);
+			}
+		}
+		subscription.replayCompleted();
+	}
+
+	public synchronized void unsubscribe(final String channelName, final MessageSubscriber subscriber) {
+		final List<Subscription> subscriptions = this.subscribersByChannel.get(channelName);
+		if (subscriptions != null) {
+			for (final Subscription subscription : subscriptions) {
+				if (subscription.subscriber == subscriber) {
+					subscriptions.remove(subscription);
+				}
+			}
+		}
+	}
+
+}
@@ -12,7 +12,7 @@ public interface FifoAtomicBroadcastChannel {
 	public void send(final Message message);
 
 	/**
-	 * Returns the message by the index
+	 * Returns the message by the index, the first message having index 1
 	 * 
 	 * @param messageIndex
 	 * @return
@@ -24,5 +24,23 @@ public interface FifoAtomicBroadcastChannel {
 	 * @return
 	 */
 	public int getMessageCount();
-	
+
+	/**
+	 * Registers a subscriber to be handed every message sent with the given
+	 * channel name, in order, including messages delivered before the
+	 * subscription was made
+	 * 
+	 * @param channelName
+	 * @param subscriber
+	 */
+	public void subscribe(final String channelName, final MessageSubscriber subscriber);
+
+	/**
+	 * Stops handing messages to a previously registered subscriber
+	 * 
+	 * @param channelName
+	 * @param subscriber
+	 */
+	public void unsubscribe(final String channelName, final MessageSubscriber subscriber);
+
 }
@@ -10,16 +10,21 @@ public class FifoAtomicBroadcastChannelLocalImpl implements FifoAtomicBroadcastC
 
 	private final List<Message> messageLog = Collections.synchronizedList(new ArrayList<>());
 
+	private final ChannelDispatcher dispatcher = new ChannelDispatcher(this);
+
 	public synchronized void send(final Message message) {
 
 		// Add message to message log
 		messageLog.add(message);
+
+		// Route message to the subscribers of its channel
+		dispatcher.dispatch(messageLog.size(), message);
 		
 		notifyAll();
 	}
 
 	public synchronized Message getMessage(final long messageIndex) {
-		return messageLog.get((int) messageIndex);
+		return messageLog.get((int) messageIndex - 1);
 	}
 	
 	public synchronized int getMessageCount()
@@ -30,4 +35,12 @@ public class FifoAtomicBroadcastChannelLocalImpl implements FifoAtomicBroadcastC
 		}
 	}
 
+	public void subscribe(final String channelName, final MessageSubscriber subscriber) {
+		dispatcher.subscribe(channelName, subscriber);
+	}
+
+	public void unsubscribe(final String channelName, final MessageSubscriber subscriber) {
+		dispatcher.unsubscribe(channelName, subscriber);
+	}
+
 }
@@ -0,0 +1,20 @@
+package com.ibm.pross.server.app.avpss.channel;
+
+import com.ibm.pross.server.messages.Message;
+
+/**
+ * Interface for an entity that is handed the messages of a single channel name
+ * as they become available on a FIFO-AB channel
+ */
+public interface MessageSubscriber {
+
+	/**
+	 * Invoked once for each message on the subscribed channel name, in channel
+	 * order. Implementations must not block as this may be called while the
+	 * channel holds locks.
+	 * 
+	 * @param message
+	 */
+	public void messageAvailable(final Message message);
+
+}
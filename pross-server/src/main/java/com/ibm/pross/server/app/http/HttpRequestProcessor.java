@@ -17,9 +17,10 @@ import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
@@ -29,8 +30,10 @@ import javax.net.ssl.TrustManagerFactory;
 import com.ibm.pross.common.config.CommonConfiguration;
 import com.ibm.pross.common.config.KeyLoader;
 import com.ibm.pross.common.config.ServerConfiguration;
-import com.ibm.pross.common.util.crypto.schnorr.NonceCommitment;
+import com.ibm.pross.common.util.concurrent.NamedThreadFactory;
+import com.ibm.pross.common.util.tls.HttpsConnectionManager;
 import com.ibm.pross.server.app.avpss.ApvssShareholder;
+import com.ibm.pross.server.app.http.handlers.BatchExponentiateHandler;
 import com.ibm.pross.server.app.http.handlers.DeleteHandler;
 import com.ibm.pross.server.app.http.handlers.DisableHandler;
 import com.ibm.pross.server.app.http.handlers.EnableHandler;
@@ -39,6 +42,7 @@ import com.ibm.pross.server.app.http.handlers.GenerateHandler;
 import com.ibm.pross.server.app.http.handlers.IdHandler;
 import com.ibm.pross.server.app.http.handlers.InfoHandler;
 import com.ibm.pross.server.app.http.handlers.PartialHandler;
+import com.ibm.pross.server.app.http.handlers.QueuedHandler;
 import com.ibm.pross.server.app.http.handlers.ReadHandler;
 import com.ibm.pross.server.app.http.handlers.RecoverHandler;
 import com.ibm.pross.server.app.http.handlers.RootHandler;
@@ -47,6 +51,7 @@ import com.ibm.pross.server.app.http.handlers.SchnorrNonceHandler;
 import com.ibm.pross.server.app.http.handlers.SchnorrSignHandler;
 import com.ibm.pross.server.app.http.handlers.StoreHandler;
 import com.ibm.pross.server.configuration.permissions.AccessEnforcement;
+import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpsConfigurator;
 import com.sun.net.httpserver.HttpsParameters;
 import com.sun.net.httpserver.HttpsServer;
@@ -57,8 +62,35 @@ public class HttpRequestProcessor {
 	public static int SHUTDOWN_DELAY_SECONDS = 5;
 	public static int NUM_PROCESSING_THREADS = 15;
 
+	// Threads for CPU-heavy operations (exponentiate, sign...)
+	public static int NUM_CRYPTO_THREADS = Runtime.getRuntime().availableProcessors();
+
+	// Threads for share recovery, which mostly waits on the other servers
+	public static int NUM_RECOVERY_THREADS = 4;
+
+	// Maximum requests waiting or executing per CPU-heavy endpoint before 503 is returned
+	public static int MAX_QUEUED_REQUESTS_PER_ENDPOINT = 256;
+
 	private final HttpsServer server;
 
+	// Executes cheap requests directly (info, id, read...)
+	private final ExecutorService dispatchPool;
+
+	// Executes requests which perform expensive cryptographic operations
+	private final ExecutorService cryptoPool;
+
+	// Executes recoveries, kept apart so their network waits cannot stall the crypto pool
+	private final ExecutorService recoveryPool;
+
+	// Queue metrics for each CPU-heavy endpoint
+	private final ConcurrentMap<String, QueuedHandler> queuedHandlers = new ConcurrentSkipListMap<>();
+
+	// Nonces generated ahead of time for threshold Schnorr signatures
+	private final NonceCommitmentPool noncePool;
+
+	// Pooled connections to the other servers (for share recovery)
+	private final HttpsConnectionManager serverConnections;
+
 	public HttpRequestProcessor(final int serverIndex, final ServerConfiguration serverConfig,
 			final AccessEnforcement accessEnforcement, final ConcurrentMap<String, ApvssShareholder> shareholders,
 			final List<X509Certificate> caCerts, final X509Certificate hostCert, final PrivateKey privateKey,
@@ -68,6 +100,13 @@ public class HttpRequestProcessor {
 
 		final int httpListenPort = CommonConfiguration.BASE_HTTP_PORT + serverIndex;
 		this.server = HttpsServer.create(new InetSocketAddress(httpListenPort), 0);
+		this.dispatchPool = Executors.newFixedThreadPool(NUM_PROCESSING_THREADS, new NamedThreadFactory("http-dispatch"));
+		this.cryptoPool = Executors.newFixedThreadPool(NUM_CRYPTO_THREADS, new NamedThreadFactory("http-crypto"));
+		this.recoveryPool = Executors.newFixedThreadPool(NUM_RECOVERY_THREADS, new NamedThreadFactory("http-recovery"));
+		this.server.setExecutor(this.dispatchPool);
+		this.noncePool = new NonceCommitmentPool(serverIndex);
+		this.serverConnections = new HttpsConnectionManager(privateKey,
+				new X509Certificate[] { hostCert, caCerts.get(serverIndex - 1) }, caCerts);
 
 		setupTls(caCerts, hostCert, privateKey, serverIndex);
 
@@ -76,8 +115,6 @@ public class HttpRequestProcessor {
 		addHandlers(serverIndex, serverConfig, accessEnforcement, shareholders, clientKeys, serverKeys, caCerts, hostCert, privateKey);
 
 		System.out.println("Ready to process requests.");
-
-		// this.server.setExecutor(Executors.newFixedThreadPool(NUM_PROCESSING_THREADS));
 	}
 
 	public void addHandlers(final int serverIndex, final ServerConfiguration serverConfig,
@@ -85,7 +122,7 @@ public class HttpRequestProcessor {
 			final KeyLoader clientKeys, final KeyLoader serverKeys, final List<X509Certificate> caCerts, final X509Certificate hostCert, final PrivateKey privateKey) {
 		
 		// Returns basic information about this server: (quorum information, other servers)
-		this.server.createContext("/", new RootHandler(serverIndex, serverConfig, shareholders));
+		this.server.createContext("/", new RootHandler(serverIndex, serverConfig, shareholders, this.queuedHandlers, this.noncePool, this.serverConnections));
 
 		// Used to debug authentication and access control problems
 		this.server.createContext("/id", new IdHandler(clientKeys, accessEnforcement, shareholders));
@@ -100,25 +137,40 @@ public class HttpRequestProcessor {
 
 		// Handlers for deleting or recovering shares
 		this.server.createContext("/delete", new DeleteHandler(clientKeys, accessEnforcement, shareholders));
-		this.server.createContext("/recover", new RecoverHandler(clientKeys, accessEnforcement, serverConfig, shareholders, caCerts, serverKeys, hostCert, privateKey));
+		this.createQueuedContext("/recover", new RecoverHandler(clientKeys, accessEnforcement, serverConfig, shareholders, serverKeys, this.serverConnections), this.recoveryPool);
 
 		// Handlers for enabling and disabling shares
 		this.server.createContext("/enable", new EnableHandler(clientKeys, accessEnforcement, shareholders));
 		this.server.createContext("/disable", new DisableHandler(clientKeys, accessEnforcement, shareholders));
 
 		// Handlers for using the shares to perform functions
-		this.server.createContext("/exponentiate", new ExponentiateHandler(clientKeys, accessEnforcement, shareholders));
-		this.server.createContext("/sign", new RsaSignHandler(clientKeys, accessEnforcement, shareholders));
+		this.createQueuedContext("/exponentiate", new ExponentiateHandler(clientKeys, accessEnforcement, shareholders), this.cryptoPool);
+		// Batches are multiplied on their own pool, the handler only waits on them
+		this.createQueuedContext("/exponentiate-batch", new BatchExponentiateHandler(clientKeys, accessEnforcement, shareholders), this.dispatchPool);
+		this.createQueuedContext("/sign", new RsaSignHandler(clientKeys, accessEnforcement, shareholders), this.cryptoPool);
 		
 		// Handlers for Schnorr threshold signatures
-		final ConcurrentHashMap<UUID, NonceCommitment> nonceCommitments = new ConcurrentHashMap<>();
-		this.server.createContext("/schnorr-nonce", new SchnorrNonceHandler(clientKeys, accessEnforcement, shareholders, nonceCommitments));
-		this.server.createContext("/schnorr-sign", new SchnorrSignHandler(clientKeys, accessEnforcement, shareholders, nonceCommitments));
+		this.createQueuedContext("/schnorr-nonce", new SchnorrNonceHandler(clientKeys, accessEnforcement, shareholders, this.noncePool), this.cryptoPool);
+		this.createQueuedContext("/schnorr-sign", new SchnorrSignHandler(clientKeys, accessEnforcement, shareholders, this.noncePool), this.cryptoPool);
 
-		// Define server to server requests
+		// Define server to server requests (kept off the crypto pool since /recover waits on them)
 		this.server.createContext("/partial", new PartialHandler(serverKeys, shareholders));
 	}
 
+	/**
+	 * Registers a handler whose requests are executed on the given worker pool,
+	 * subject to a per-endpoint limit on outstanding requests
+	 * 
+	 * @param path
+	 * @param handler
+	 * @param workerPool
+	 */
+	private void createQueuedContext(final String path, final HttpHandler handler, final ExecutorService workerPool) {
+		final QueuedHandler queuedHandler = new QueuedHandler(handler, workerPool, MAX_QUEUED_REQUESTS_PER_ENDPOINT);
+		this.queuedHandlers.put(path, queuedHandler);
+		this.server.createContext(path, queuedHandler);
+	}
+
 	public void setupTls(final List<X509Certificate> caCerts, final X509Certificate hostCert, final PrivateKey hostKey,
 			final int serverIndex) throws NoSuchAlgorithmException, KeyManagementException, KeyStoreException,
 			CertificateException, IOException, UnrecoverableKeyException {
@@ -173,6 +225,13 @@ public class HttpRequestProcessor {
 
 	public void stop() {
 		this.server.stop(SHUTDOWN_DELAY_SECONDS);
+		this.cryptoPool.shutdown();
+		this.recoveryPool.shutdown();
+		this.dispatchPool.shutdown();
+	}
+
+	public Map<String, QueuedHandler> getQueuedHandlers() {
+		return this.queuedHandlers;
 	}
 
 	/**
@@ -0,0 +1,280 @@
+package com.ibm.pross.server.app.http;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ibm.pross.common.util.concurrent.NamedThreadFactory;
+import com.ibm.pross.common.util.crypto.schnorr.NonceCommitment;
+import com.ibm.pross.server.app.avpss.ApvssShareholder;
+
+/**
+ * Performs the preprocessing phase of FROST threshold Schnorr signatures (
+ * https://eprint.iacr.org/2020/852.pdf ).
+ *
+ * Nonce pairs are generated ahead of time by a background thread, so handing
+ * out a commitment does not cost any curve multiplications. A pool is kept for
+ * each secret used for signing, and it is refilled whenever it falls below
+ * TARGET_POOL_SIZE.
+ *
+ * Each nonce pair is used for at most one signature. It leaves the pool when
+ * its commitment is handed out under a nonce id, and it is forgotten when that
+ * id is redeemed by a signing request. Commitments which are not redeemed
+ * within COMMITMENT_TTL_MS are discarded.
+ */
+public class NonceCommitmentPool {
+
+	// Number of nonce pairs generated ahead of time for each secret
+	public static int TARGET_POOL_SIZE = 256;
+
+	// Maximum number of commitments handed out in one request
+	public static int MAX_BATCH_SIZE = 128;
+
+	// Time after which a commitment which has not been used for signing is discarded
+	public static long COMMITMENT_TTL_MS = 10 * 60 * 1000;
+	public static long EVICTION_INTERVAL_MS = 30 * 1000;
+
+	// Maximum number of commitments handed out and not yet used or discarded
+	public static int MAX_OUTSTANDING_COMMITMENTS = 100_000;
+
+	private final int participantIndex;
+
+	private final ScheduledExecutorService executor = Executors
+			.newSingleThreadScheduledExecutor(new NamedThreadFactory("nonce-preprocessing"));
+
+	private final ConcurrentMap<String, SecretPool> pools = new ConcurrentHashMap<>();
+	private final ConcurrentMap<UUID, OutstandingCommitment> outstanding = new ConcurrentHashMap<>();
+
+	// Statistics
+	private final AtomicLong hits = new AtomicLong(0);
+	private final AtomicLong misses = new AtomicLong(0);
+	private final AtomicLong redeemed = new AtomicLong(0);
+	private final AtomicLong expired = new AtomicLong(0);
+
+	/**
+	 * @param participantIndex
+	 *            The index of this server, used in every commitment
+	 */
+	public NonceCommitmentPool(final int participantIndex) {
+		this.participantIndex = participantIndex;
+		this.executor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				evictExpired();
+			}
+		}, EVICTION_INTERVAL_MS, EVICTION_INTERVAL_MS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Returns the commitment for the given nonce id, taking a fresh nonce pair from
+	 * the pool of the secret if the id has not been seen before
+	 *
+	 * @param secretName
+	 * @param nonceId
+	 * @return The commitment, or null if the nonce id is in use for another secret
+	 *         or too many commitments are outstanding
+	 */
+	public NonceCommitment assign(final String secretName, final UUID nonceId) {
+		final OutstandingCommitment existing = this.outstanding.get(nonceId);
+		if (existing != null) {
+			// The client asked again for the same nonce, such as when retrying
+			return existing.secretName.equals(secretName) ? existing.commitment : null;
+		}
+
+		if (this.outstanding.size() >= MAX_OUTSTANDING_COMMITMENTS) {
+			evictExpired();
+			if (this.outstanding.size() >= MAX_OUTSTANDING_COMMITMENTS) {
+				return null;
+			}
+		}
+
+		final SecretPool pool = getPool(secretName);
+		NonceCommitment commitment = pool.poll();
+		if (commitment != null) {
+			this.hits.incrementAndGet();
+		} else {
+			this.misses.incrementAndGet();
+			commitment = NonceCommitment.generateNonceCommitment(ApvssShareholder.curve, this.participantIndex);
+		}
+		pool.refillInBackground();
+
+		final OutstandingCommitment assigned = new OutstandingCommitment(secretName, commitment);
+		final OutstandingCommitment raced = this.outstanding.putIfAbsent(nonceId, assigned);
+		if (raced != null) {
+			// Our nonce pair was never revealed, so it may still be used
+			pool.offer(commitment);
+			return raced.secretName.equals(secretName) ? raced.commitment : null;
+		}
+		return commitment;
+	}
+
+	/**
+	 * Removes and returns the commitment handed out under the given nonce id, so
+	 * that it can be used for exactly one signature
+	 *
+	 * @param secretName
+	 * @param nonceId
+	 * @return The commitment, or null if there is no unexpired commitment for this
+	 *         nonce id and secret
+	 */
+	public NonceCommitment redeem(final String secretName, final UUID nonceId) {
+		final OutstandingCommitment assigned = this.outstanding.get(nonceId);
+		if ((assigned == null) || !assigned.secretName.equals(secretName)
+				|| !this.outstanding.remove(nonceId, assigned)) {
+			return null;
+		}
+		if (assigned.isExpired(System.currentTimeMillis())) {
+			this.expired.incrementAndGet();
+			return null;
+		}
+		this.redeemed.incrementAndGet();
+		return assigned.commitment;
+	}
+
+	/**
+	 * Discards the commitments which were handed out too long ago
+	 */
+	public void evictExpired() {
+		final long now = System.currentTimeMillis();
+		final Iterator<Entry<UUID, OutstandingCommitment>> iterator = this.outstanding.entrySet().iterator();
+		while (iterator.hasNext()) {
+			final Entry<UUID, OutstandingCommitment> entry = iterator.next();
+			if (entry.getValue().isExpired(now) && this.outstanding.remove(entry.getKey(), entry.getValue())) {
+				this.expired.incrementAndGet();
+			}
+		}
+	}
+
+	private SecretPool getPool(final String secretName) {
+		SecretPool pool = this.pools.get(secretName);
+		if (pool == null) {
+			this.pools.putIfAbsent(secretName, new SecretPool());
+			pool = this.pools.get(secretName);
+		}
+		return pool;
+	}
+
+	/**
+	 * Returns the number of nonce pairs generated ahead of time, for all secrets
+	 */
+	public int getAvailableCount() {
+		int available = 0;
+		for (final SecretPool pool : this.pools.values()) {
+			available += pool.size.get();
+		}
+		return available;
+	}
+
+	public int getAvailableCount(final String secretName) {
+		final SecretPool pool = this.pools.get(secretName);
+		return (pool == null) ? 0 : pool.size.get();
+	}
+
+	public int getOutstandingCount() {
+		return this.outstanding.size();
+	}
+
+	public long getHits() {
+		return this.hits.get();
+	}
+
+	public long getMisses() {
+		return this.misses.get();
+	}
+
+	/**
+	 * Returns the fraction of commitments which were taken from a pool rather than
+	 * generated on the request path
+	 */
+	public double getHitRate() {
+		final long hits = getHits();
+		final long total = hits + getMisses();
+		return (total == 0) ? 0.0 : ((double) hits / total);
+	}
+
+	public long getRedeemedCount() {
+		return this.redeemed.get();
+	}
+
+	public long getExpiredCount() {
+		return this.expired.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("available=%d outstanding=%d hits=%d misses=%d hit_rate=%.2f redeemed=%d expired=%d",
+				getAvailableCount(), getOutstandingCount(), getHits(), getMisses(), getHitRate(), getRedeemedCount(),
+				getExpiredCount());
+	}
+
+	/**
+	 * The nonce pairs generated ahead of time for one secret
+	 */
+	private class SecretPool {
+
+		private final Queue<NonceCommitment> nonces = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger size = new AtomicInteger(0);
+		private final AtomicBoolean refilling = new AtomicBoolean(false);
+
+		private NonceCommitment poll() {
+			final NonceCommitment commitment = this.nonces.poll();
+			if (commitment != null) {
+				this.size.decrementAndGet();
+			}
+			return commitment;
+		}
+
+		private void offer(final NonceCommitment commitment) {
+			this.nonces.offer(commitment);
+			this.size.incrementAndGet();
+		}
+
+		private void refillInBackground() {
+			if ((this.size.get() < TARGET_POOL_SIZE) && this.refilling.compareAndSet(false, true)) {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							while (size.get() < TARGET_POOL_SIZE) {
+								offer(NonceCommitment.generateNonceCommitment(ApvssShareholder.curve,
+										participantIndex));
+							}
+						} finally {
+							refilling.set(false);
+						}
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * A commitment which has been handed out under a nonce id
+	 */
+	private static class OutstandingCommitment {
+
+		private final String secretName;
+		private final NonceCommitment commitment;
+		private final long assignedTime = System.currentTimeMillis();
+
+		public OutstandingCommitment(final String secretName, final NonceCommitment commitment) {
+			this.secretName = secretName;
+			this.commitment = commitment;
+		}
+
+		public boolean isExpired(final long now) {
+			return (now - this.assignedTime) > COMMITMENT_TTL_MS;
+		}
+	}
+
+}
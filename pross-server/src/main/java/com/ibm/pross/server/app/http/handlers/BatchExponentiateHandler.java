@@ -0,0 +1,254 @@
+package com.ibm.pross.server.app.http.handlers;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.ibm.pross.common.config.CommonConfiguration;
+import com.ibm.pross.common.config.KeyLoader;
+import com.ibm.pross.common.exceptions.http.BadRequestException;
+import com.ibm.pross.common.exceptions.http.HttpStatusCode;
+import com.ibm.pross.common.exceptions.http.NotFoundException;
+import com.ibm.pross.common.exceptions.http.ResourceUnavailableException;
+import com.ibm.pross.common.exceptions.http.UnauthorizedException;
+import com.ibm.pross.common.util.crypto.ecc.EcCurve;
+import com.ibm.pross.common.util.crypto.ecc.EcPoint;
+import com.ibm.pross.common.util.crypto.ecc.EcPointEncoding;
+import com.ibm.pross.common.util.shamir.ShamirShare;
+import com.ibm.pross.server.app.avpss.ApvssShareholder;
+import com.ibm.pross.server.app.http.HttpRequestProcessor;
+import com.ibm.pross.server.configuration.permissions.AccessEnforcement;
+import com.ibm.pross.server.configuration.permissions.ClientPermissions.Permissions;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * This handler performs an exponentiation of many points using a share of a
+ * secret, such as for evaluating a batch of OPRF inputs. Client's must have a
+ * specific authorization to be able to invoke this method. If the secret is
+ * not found a 404 is returned. If the client is not authorized a 403 is
+ * returned. If any point is not on the curve a 400 is returned.
+ *
+ * The request body holds the points in compressed form (see EcPointEncoding),
+ * one after the other. The points are multiplied in chunks on a shared pool
+ * and the results are streamed back in the same order and encoding, after a
+ * header of the responder index (int), epoch (long) and number of points
+ * (int).
+ *
+ * Requests are handled on the I/O pool, the thread handling one mostly waits
+ * for the multiplications on the shared pool to complete.
+ */
+@SuppressWarnings("restriction")
+public class BatchExponentiateHandler extends AuthenticatedClientRequestHandler {
+
+	public static final Permissions REQUEST_PERMISSION = Permissions.EXPONENTIATE;
+
+	// Query names
+	public static final String SECRET_NAME_FIELD = "secretName";
+
+	// Maximum number of points in one request
+	public static int MAX_BATCH_POINTS = 10_000;
+
+	// Number of points multiplied together by one task
+	public static int CHUNK_SIZE = 64;
+
+	public static int NUM_THREADS = Runtime.getRuntime().availableProcessors();
+
+	// Workers of a fork join pool are daemon threads
+	private static final ForkJoinPool multiplicationPool = new ForkJoinPool(NUM_THREADS);
+
+	private static final EcCurve curve = CommonConfiguration.CURVE;
+
+	// Fields
+	private final AccessEnforcement accessEnforcement;
+	private final ConcurrentMap<String, ApvssShareholder> shareholders;
+
+	public BatchExponentiateHandler(final KeyLoader clientKeys, final AccessEnforcement accessEnforcement,
+			final ConcurrentMap<String, ApvssShareholder> shareholders) {
+		super(clientKeys);
+		this.shareholders = shareholders;
+		this.accessEnforcement = accessEnforcement;
+	}
+
+	@Override
+	public void authenticatedClientHandle(final HttpExchange exchange, final String username) throws IOException,
+			UnauthorizedException, NotFoundException, BadRequestException, ResourceUnavailableException {
+
+		// Extract secret name from request
+		final String queryString = exchange.getRequestURI().getQuery();
+		final Map<String, List<String>> params = HttpRequestProcessor.parseQueryString(queryString);
+		final String secretName = HttpRequestProcessor.getParameterValue(params, SECRET_NAME_FIELD);
+		if (secretName == null) {
+			throw new BadRequestException();
+		}
+
+		// Perform authentication
+		accessEnforcement.enforceAccess(username, secretName, REQUEST_PERMISSION);
+
+		// Ensure shareholder exists
+		final ApvssShareholder shareholder = this.shareholders.get(secretName);
+		if (shareholder == null) {
+			throw new NotFoundException();
+		}
+		// Make sure secret is not disabled
+		if (!shareholder.isEnabled()) {
+			throw new ResourceUnavailableException();
+		}
+
+		// Use the same share for every point
+		final ShamirShare share = shareholder.getShare1();
+		final long epoch = shareholder.getEpoch();
+		if ((shareholder.getSecretPublicKey() == null) || (share == null)) {
+			throw new NotFoundException();
+		}
+
+		// Read the encoded points
+		final byte[] body = readBody(exchange, MAX_BATCH_POINTS * EcPointEncoding.getEncodedLength(curve));
+		exponentiateAll(exchange, body, share.getY(), shareholder.getIndex(), epoch);
+	}
+
+	/**
+	 * Decodes the points of a request body, validating every one before any
+	 * response is sent, then streams back each point multiplied by the exponent
+	 * 
+	 * @param exchange
+	 * @param body
+	 *            The points, in compressed form one after the other
+	 * @param exponent
+	 * @param index
+	 *            The index of this shareholder
+	 * @param epoch
+	 *            The epoch of the share the exponent was taken from
+	 * @throws IOException
+	 * @throws BadRequestException
+	 *             If the body is empty or a point is not on the curve
+	 */
+	static void exponentiateAll(final HttpExchange exchange, final byte[] body, final BigInteger exponent,
+			final int index, final long epoch) throws IOException, BadRequestException {
+
+		final int pointLength = EcPointEncoding.getEncodedLength(curve);
+		if ((body.length == 0) || ((body.length % pointLength) != 0)) {
+			throw new BadRequestException();
+		}
+		final int numPoints = body.length / pointLength;
+
+		// Decode and validate every point before responding
+		final List<Callable<EcPoint[]>> decodeTasks = new ArrayList<>();
+		for (int start = 0; start < numPoints; start += CHUNK_SIZE) {
+			final int chunkStart = start;
+			final int chunkEnd = Math.min(numPoints, start + CHUNK_SIZE);
+			decodeTasks.add(new Callable<EcPoint[]>() {
+				@Override
+				public EcPoint[] call() {
+					final EcPoint[] points = new EcPoint[chunkEnd - chunkStart];
+					for (int i = 0; i < points.length; i++) {
+						points[i] = EcPointEncoding.decode(curve, body, (chunkStart + i) * pointLength);
+					}
+					return points;
+				}
+			});
+		}
+		final List<EcPoint[]> chunks;
+		try {
+			chunks = getAll(multiplicationPool.invokeAll(decodeTasks));
+		} catch (IllegalArgumentException e) {
+			throw new BadRequestException();
+		}
+
+		// Multiply the chunks concurrently, streaming results as they complete in order
+		final List<Future<EcPoint[]>> products = new ArrayList<>(chunks.size());
+		for (final EcPoint[] chunk : chunks) {
+			products.add(multiplicationPool.submit(new Callable<EcPoint[]>() {
+				@Override
+				public EcPoint[] call() {
+					return curve.multiplyAll(chunk, exponent);
+				}
+			}));
+		}
+
+		// Write headers, the length is not known ahead of time so the response is chunked
+		exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+		exchange.sendResponseHeaders(HttpStatusCode.SUCCESS, 0);
+
+		// Write response
+		try (final OutputStream os = exchange.getResponseBody();
+				final DataOutputStream out = new DataOutputStream(os)) {
+			out.writeInt(index);
+			out.writeLong(epoch);
+			out.writeInt(numPoints);
+
+			for (final Future<EcPoint[]> future : products) {
+				final EcPoint[] results = getResult(future);
+				final byte[] encoded = new byte[results.length * pointLength];
+				for (int i = 0; i < results.length; i++) {
+					EcPointEncoding.encode(curve, results[i], encoded, i * pointLength);
+				}
+				out.write(encoded);
+			}
+		}
+	}
+
+	/**
+	 * Reads the request body, failing if it is longer than the given limit
+	 */
+	private static byte[] readBody(final HttpExchange exchange, final int maxLength)
+			throws IOException, BadRequestException {
+		try (final InputStream is = exchange.getRequestBody()) {
+			byte[] buffer = new byte[Math.min(maxLength + 1, 64 * 1024)];
+			int length = 0;
+			while (true) {
+				if (length == buffer.length) {
+					if (length > maxLength) {
+						throw new BadRequestException();
+					}
+					final byte[] larger = new byte[Math.min(maxLength + 1, buffer.length * 2)];
+					System.arraycopy(buffer, 0, larger, 0, length);
+					buffer = larger;
+				}
+				final int read = is.read(buffer, length, buffer.length - length);
+				if (read < 0) {
+					break;
+				}
+				length += read;
+			}
+			if (length > maxLength) {
+				throw new BadRequestException();
+			}
+			final byte[] body = new byte[length];
+			System.arraycopy(buffer, 0, body, 0, length);
+			return body;
+		}
+	}
+
+	private static <T> List<T> getAll(final List<Future<T>> futures) {
+		final List<T> results = new ArrayList<>(futures.size());
+		for (final Future<T> future : futures) {
+			results.add(getResult(future));
+		}
+		return results;
+	}
+
+	private static <T> T getResult(final Future<T> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while exponentiating", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+}
@@ -119,7 +119,8 @@ public class InfoHandler extends AuthenticatedClientRequestHandler {
 
 	@SuppressWarnings("unchecked")
 	private static String getSecretInfo(final ApvssShareholder shareholder, final String secretName,
-			final Long epochNumber, final ServerConfiguration serverConfig, final boolean outputJson) throws BadRequestException {
+			final Long epochNumber, final ServerConfiguration serverConfig, final boolean outputJson)
+			throws BadRequestException, NotFoundException {
 
 		// Prevent invalid epochs from being accessed
 		if ((epochNumber < 0) || (epochNumber > shareholder.getEpoch())) {
@@ -232,6 +233,10 @@ public class InfoHandler extends AuthenticatedClientRequestHandler {
 
 			// Print Epoch information
 			final SharingState sharingState = shareholder.getSharing(epochNumber);
+			if (sharingState == null) {
+				// Pruned and not archived
+				throw new NotFoundException();
+			}
 			stringBuilder.append("<b>Epoch:</b>\n");
 			final long firstEpoch = 0;
 			final long previousEpoch = epochNumber - 1;
@@ -255,6 +260,14 @@ public class InfoHandler extends AuthenticatedClientRequestHandler {
 
 			stringBuilder.append("<p/>");
 
+			// Print memory held by epoch states
+			stringBuilder.append("<b>Epoch Storage:</b>\n");
+			stringBuilder.append("epochs_in_memory  =  " + shareholder.getRetainedEpochCount() + "\n");
+			stringBuilder.append("epochs_archived   =  " + shareholder.getArchivedEpochCount() + "\n");
+			stringBuilder.append("retained_bytes    =  " + shareholder.getRetainedSize() + "\n");
+
+			stringBuilder.append("<p/>");
+
 			// Print share verification keys
 			stringBuilder.append("<b>Share Verification Keys:</b>\n");
 			for (int i = 1; i <= n; i++) {
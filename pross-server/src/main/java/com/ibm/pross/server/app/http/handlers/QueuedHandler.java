@@ -0,0 +1,137 @@
+package com.ibm.pross.server.app.http.handlers;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ibm.pross.common.exceptions.http.ResourceUnavailableException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Wraps a handler for an expensive operation such that it is executed on a
+ * separate worker pool rather than on the thread which accepted the request.
+ *
+ * At most maxQueuedRequests may be waiting or executing for this endpoint at
+ * any time. Requests beyond this limit are rejected with a 503 so that a burst
+ * against one endpoint cannot exhaust the memory or the workers of the server.
+ *
+ * Counters are kept for the number of queued and active requests as well as
+ * the time requests spent waiting for a worker.
+ */
+@SuppressWarnings("restriction")
+public class QueuedHandler extends BaseHttpHandler {
+
+	private final HttpHandler handler;
+	private final Executor workerPool;
+	private final int maxQueuedRequests;
+
+	// Metrics
+	private final AtomicInteger pendingRequests = new AtomicInteger(0);
+	private final AtomicInteger activeRequests = new AtomicInteger(0);
+	private final AtomicLong completedRequests = new AtomicLong(0);
+	private final AtomicLong rejectedRequests = new AtomicLong(0);
+	private final AtomicLong startedRequests = new AtomicLong(0);
+	private final AtomicLong totalWaitNanos = new AtomicLong(0);
+	private final AtomicLong maxWaitNanos = new AtomicLong(0);
+
+	public QueuedHandler(final HttpHandler handler, final Executor workerPool, final int maxQueuedRequests) {
+		this.handler = handler;
+		this.workerPool = workerPool;
+		this.maxQueuedRequests = maxQueuedRequests;
+	}
+
+	@Override
+	public void handleWithExceptions(final HttpExchange exchange) throws ResourceUnavailableException {
+
+		// Shed load if too many requests are already outstanding for this endpoint
+		if (this.pendingRequests.incrementAndGet() > this.maxQueuedRequests) {
+			this.pendingRequests.decrementAndGet();
+			this.rejectedRequests.incrementAndGet();
+			throw new ResourceUnavailableException();
+		}
+
+		final long enqueueTime = System.nanoTime();
+		try {
+			this.workerPool.execute(new Runnable() {
+				@Override
+				public void run() {
+					recordWaitTime(System.nanoTime() - enqueueTime);
+					activeRequests.incrementAndGet();
+					try {
+						handler.handle(exchange);
+					} catch (IOException e) {
+						// Client went away, nothing more can be sent
+						exchange.close();
+					} finally {
+						activeRequests.decrementAndGet();
+						pendingRequests.decrementAndGet();
+						completedRequests.incrementAndGet();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// Worker pool has been shut down
+			this.pendingRequests.decrementAndGet();
+			this.rejectedRequests.incrementAndGet();
+			throw new ResourceUnavailableException();
+		}
+	}
+
+	private void recordWaitTime(final long waitNanos) {
+		this.startedRequests.incrementAndGet();
+		this.totalWaitNanos.addAndGet(waitNanos);
+		long currentMax;
+		do {
+			currentMax = this.maxWaitNanos.get();
+		} while ((waitNanos > currentMax) && !this.maxWaitNanos.compareAndSet(currentMax, waitNanos));
+	}
+
+	/**
+	 * @return The number of requests accepted but not yet picked up by a worker
+	 */
+	public int getQueueDepth() {
+		return Math.max(0, this.pendingRequests.get() - this.activeRequests.get());
+	}
+
+	public int getActiveRequests() {
+		return this.activeRequests.get();
+	}
+
+	public int getMaxQueuedRequests() {
+		return this.maxQueuedRequests;
+	}
+
+	public long getCompletedRequests() {
+		return this.completedRequests.get();
+	}
+
+	public long getRejectedRequests() {
+		return this.rejectedRequests.get();
+	}
+
+	/**
+	 * @return The average time in milliseconds requests waited for a worker
+	 */
+	public double getAverageWaitMillis() {
+		final long started = this.startedRequests.get();
+		if (started == 0) {
+			return 0;
+		}
+		return (this.totalWaitNanos.get() / (double) started) / 1_000_000.0;
+	}
+
+	public double getMaxWaitMillis() {
+		return this.maxWaitNanos.get() / 1_000_000.0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("queued=%d active=%d limit=%d completed=%d rejected=%d avg_wait=%.2fms max_wait=%.2fms",
+				getQueueDepth(), getActiveRequests(), getMaxQueuedRequests(), getCompletedRequests(),
+				getRejectedRequests(), getAverageWaitMillis(), getMaxWaitMillis());
+	}
+
+}
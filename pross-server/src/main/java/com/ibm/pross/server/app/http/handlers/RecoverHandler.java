@@ -9,31 +9,18 @@ import java.math.BigInteger;
 import java.net.InetSocketAddress;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.security.KeyManagementException;
-import java.security.KeyStore;
-import java.security.KeyStoreException;
-import java.security.NoSuchAlgorithmException;
-import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.security.SecureRandom;
-import java.security.UnrecoverableKeyException;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.AbstractMap.SimpleEntry;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.net.ssl.HttpsURLConnection;
-import javax.net.ssl.KeyManagerFactory;
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManagerFactory;
 
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
@@ -47,8 +34,11 @@ import com.ibm.pross.common.exceptions.http.HttpStatusCode;
 import com.ibm.pross.common.exceptions.http.NotFoundException;
 import com.ibm.pross.common.exceptions.http.ResourceUnavailableException;
 import com.ibm.pross.common.exceptions.http.UnauthorizedException;
+import com.ibm.pross.common.util.concurrent.FanOutEngine;
+import com.ibm.pross.common.util.concurrent.FanOutEngine.ServerRequest;
 import com.ibm.pross.common.util.crypto.paillier.PaillierCipher;
 import com.ibm.pross.common.util.crypto.paillier.PaillierPrivateKey;
+import com.ibm.pross.common.util.tls.HttpsConnectionManager;
 import com.ibm.pross.server.app.avpss.ApvssShareholder;
 import com.ibm.pross.server.app.avpss.SharingState;
 import com.ibm.pross.server.app.http.HttpRequestProcessor;
@@ -77,25 +67,23 @@ public class RecoverHandler extends AuthenticatedClientRequestHandler {
 	private final AccessEnforcement accessEnforcement;
 	private final ServerConfiguration serverConfig;
 	private final ConcurrentMap<String, ApvssShareholder> shareholders;
-	private final List<X509Certificate> caCerts;
 	private final KeyLoader serverKeys;
-	private final X509Certificate hostCert;
-	private final PrivateKey privateKey;
+	private final HttpsConnectionManager connectionManager;
+
+	// Sends requests to the other servers
+	private final FanOutEngine fanOut = new FanOutEngine();
 
 	public RecoverHandler(final KeyLoader clientKeys, final AccessEnforcement accessEnforcement,
 			final ServerConfiguration serverConfig, final ConcurrentMap<String, ApvssShareholder> shareholders,
-			final List<X509Certificate> caCerts, final KeyLoader serverKeys, final X509Certificate hostCert,
-			final PrivateKey privateKey) {
+			final KeyLoader serverKeys, final HttpsConnectionManager connectionManager) {
 		super(clientKeys);
 		this.shareholders = shareholders;
 		this.serverConfig = serverConfig;
 		this.accessEnforcement = accessEnforcement;
 
 		// For connecting to and authenticating other servers
-		this.caCerts = caCerts;
 		this.serverKeys = serverKeys;
-		this.hostCert = hostCert;
-		this.privateKey = privateKey;
+		this.connectionManager = connectionManager;
 	}
 
 	@Override
@@ -141,7 +129,6 @@ public class RecoverHandler extends AuthenticatedClientRequestHandler {
 
 		// This server
 		final int serverIndex = shareholder.getIndex();
-		final int numShareholders = shareholder.getN();
 		final int reconstructionThreshold = shareholder.getK();
 
 		// Current sharing information (where we will rebuild the share
@@ -153,17 +140,8 @@ public class RecoverHandler extends AuthenticatedClientRequestHandler {
 			throw new ConflictException();
 		}
 
-		// We create a thread pool with a thread for each task and remote server
-		final ExecutorService executor = Executors.newFixedThreadPool(numShareholders - 1);
-
-		// The countdown latch tracks progress towards reaching a threshold
-		final CountDownLatch latch = new CountDownLatch(shareholder.getK());
-		final AtomicInteger failureCounter = new AtomicInteger(0);
-		final int maximumFailures = (numShareholders - reconstructionThreshold);
-
-		// Each task deposits its result into this map after verifying it is correct and
-		// consistent
-		final ConcurrentHashMap<Long, SimpleEntry<BigInteger, BigInteger>> verifiedResults = new ConcurrentHashMap<>();
+		// Each task returns its result after verifying it is correct and consistent
+		final Map<Integer, PartialResultTask> requests = new HashMap<>();
 
 		// Do processing
 		final long startTime = System.nanoTime();
@@ -178,44 +156,34 @@ public class RecoverHandler extends AuthenticatedClientRequestHandler {
 
 			if (serverId != serverIndex) {
 				// Create new task to get the partial result from the server
-				executor.submit(new PartialResultTask(serverId, linkUrl, serverIndex, sharingState, verifiedResults,
-						latch, failureCounter, maximumFailures));
+				requests.put(serverId, new PartialResultTask(serverId, linkUrl, serverIndex, sharingState));
 			}
 		}
 
-		try {
-			// Once we have K successful responses we can interpolate our share
-			latch.await();
-
-			// Check that we have enough results to interpolate the share
-			if (failureCounter.get() <= maximumFailures) {
-
-				// When complete, update our share value for the current epoch, and verify
-				// consistency of recovery against the existing public verification key
-				shareholder.recoverShare(sharingState, new ConcurrentHashMap<>(verifiedResults));
+		// Once we have K successful responses we can interpolate our share
+		final ConcurrentHashMap<Long, SimpleEntry<BigInteger, BigInteger>> verifiedResults = new ConcurrentHashMap<>();
+		for (final SimpleEntry<Long, SimpleEntry<BigInteger, BigInteger>> result : this.fanOut.invoke(requests,
+				reconstructionThreshold)) {
+			verifiedResults.put(result.getKey(), result.getValue());
+		}
 
-				final long endTime = System.nanoTime();
+		// When complete, update our share value for the current epoch, and verify
+		// consistency of recovery against the existing public verification key
+		shareholder.recoverShare(sharingState, verifiedResults);
 
-				// Compute processing time
-				final long processingTimeMs = (endTime - startTime) / 1_000_000;
+		final long endTime = System.nanoTime();
 
-				// Create response
-				final String response = "Recovered share #" + serverIndex + " in " + processingTimeMs
-						+ " milliseconds for '" + secretName + "' from epoch " + epochNumber + "\n";
+		// Compute processing time
+		final long processingTimeMs = (endTime - startTime) / 1_000_000;
 
-				executor.shutdown();
+		// Create response
+		final String response = "Recovered share #" + serverIndex + " in " + processingTimeMs
+				+ " milliseconds for '" + secretName + "' from epoch " + epochNumber + "\n";
 
-				return response;
-			} else {
-				executor.shutdown();
-				throw new ResourceUnavailableException();
-			}
-		} catch (InterruptedException e) {
-			throw new RuntimeException(e);
-		}
+		return response;
 	}
 
-	public class PartialResultTask implements Runnable {
+	public class PartialResultTask implements ServerRequest<SimpleEntry<Long, SimpleEntry<BigInteger, BigInteger>>> {
 
 		// Remote server info
 		private final int remoteServerId;
@@ -224,15 +192,9 @@ public class RecoverHandler extends AuthenticatedClientRequestHandler {
 		// State management
 		private final int ourServerId;
 		private final SharingState sharingState;
-		private final ConcurrentHashMap<Long, SimpleEntry<BigInteger, BigInteger>> verifiedResults;
-		private final CountDownLatch latch;
-		private final AtomicInteger failureCounter;
-		private final int maximumFailures;
 
 		public PartialResultTask(final int remoteServerId, final String requestUrl, final int ourServerId,
-				final SharingState sharingState,
-				final ConcurrentHashMap<Long, SimpleEntry<BigInteger, BigInteger>> verifiedResults,
-				final CountDownLatch latch, final AtomicInteger failureCounter, final int maximumFailures) {
+				final SharingState sharingState) {
 
 			// Remote server info
 			this.remoteServerId = remoteServerId;
@@ -241,22 +203,18 @@ public class RecoverHandler extends AuthenticatedClientRequestHandler {
 			// State management
 			this.ourServerId = ourServerId;
 			this.sharingState = sharingState;
-			this.verifiedResults = verifiedResults;
-			this.latch = latch;
-			this.failureCounter = failureCounter;
-			this.maximumFailures = maximumFailures;
 		}
 
 		@Override
-		public void run() {
+		public SimpleEntry<Long, SimpleEntry<BigInteger, BigInteger>> call() throws Exception {
 
 			try {
 				System.out.println("Reading encrypted partial share from: " + this.requestUrl);
 
 				// Create HTTPS connection to the remote server
 				final URL url = new URL(this.requestUrl);
-				final HttpsURLConnection httpsConnection = (HttpsURLConnection) url.openConnection();
-				RecoverHandler.this.configureHttps(httpsConnection, remoteServerId, ourServerId);
+				final HttpsURLConnection httpsConnection = RecoverHandler.this.connectionManager.openConnection(url,
+						remoteServerId);
 
 				// Configure timeouts and method
 				httpsConnection.setRequestMethod("GET");
@@ -308,11 +266,8 @@ public class RecoverHandler extends AuthenticatedClientRequestHandler {
 						// Check against known pedersent commitments from this epoch
 						validateConsistency(responder, share1Part, share2Part);
 						
-						// Store result for later processing
-						this.verifiedResults.put(responder, new SimpleEntry<>(share1Part, share2Part));
-								
-						// Everything checked out, increment successes
-						latch.countDown();
+						// Return result for later processing
+						return new SimpleEntry<>(responder, new SimpleEntry<>(share1Part, share2Part));
 					} else {
 						throw new Exception("Server " + this.remoteServerId +  " sent inconsistent results");
 					}
@@ -322,15 +277,11 @@ public class RecoverHandler extends AuthenticatedClientRequestHandler {
 
 
 			} catch (Exception e) {
-				// Increment failure counter
-				final int numFailures = this.failureCounter.incrementAndGet();
-				// Check if there have been too many failures to succeed
-				if (numFailures == (maximumFailures + 1)) { // n - k + 1
-					while (latch.getCount() > 0) {
-						latch.countDown();
-					}
+				// Requests still running once enough servers responded are cancelled
+				if (!FanOutEngine.isCancellation(e)) {
+					e.printStackTrace();
 				}
-				e.printStackTrace();
+				throw e;
 			}
 		}
 
@@ -341,38 +292,4 @@ public class RecoverHandler extends AuthenticatedClientRequestHandler {
 		}
 	}
 
-	public void configureHttps(final HttpsURLConnection httpsConnection, final int remoteServerId, final int ourIndex)
-			throws KeyStoreException, NoSuchAlgorithmException, CertificateException, IOException,
-			UnrecoverableKeyException, KeyManagementException {
-
-		// Configure SSL context
-		final SSLContext sslContext = SSLContext.getInstance(CommonConfiguration.TLS_VERSION);
-
-		// Create in-memory key store
-		final KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
-		final char[] password = "password".toCharArray();
-		keyStore.load(null, password);
-
-		// Add the CA certificate for the server
-		keyStore.setCertificateEntry("ca-" + remoteServerId, this.caCerts.get(remoteServerId - 1));
-
-		// Add certificate and private key for the server
-		final X509Certificate ourCaCert = caCerts.get(ourIndex - 1);
-		keyStore.setKeyEntry("host", this.privateKey, password, new X509Certificate[] { hostCert, ourCaCert });
-
-		// Make Key Manager Factory
-		final KeyManagerFactory kmf = KeyManagerFactory.getInstance("SunX509");
-		kmf.init(keyStore, password);
-
-		// Setup the trust manager factory
-		final TrustManagerFactory tmf = TrustManagerFactory.getInstance("SunX509");
-		tmf.init(keyStore);
-
-		// Initialize the context
-		sslContext.init(kmf.getKeyManagers(), tmf.getTrustManagers(), new SecureRandom());
-
-		// Get the socket factory from the context
-		httpsConnection.setSSLSocketFactory(sslContext.getSocketFactory());
-	}
-
 }
\ No newline at end of file
@@ -4,19 +4,22 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentMap;
 
 import com.ibm.pross.common.config.CommonConfiguration;
 import com.ibm.pross.common.config.ServerConfiguration;
 import com.ibm.pross.common.exceptions.http.HttpStatusCode;
+import com.ibm.pross.common.util.tls.HttpsConnectionManager;
 import com.ibm.pross.server.app.avpss.ApvssShareholder;
+import com.ibm.pross.server.app.http.NonceCommitmentPool;
 import com.sun.net.httpserver.HttpExchange;
 
 /**
  * This handler returns basic configuration information about the server,
  * including this server's id, the threshold parameters, identities of other
- * servers (as links), and benchmark results.
+ * servers (as links), benchmark results, request queue, nonce pool and server connection metrics.
  */
 @SuppressWarnings("restriction")
 public class RootHandler extends BaseHttpHandler {
@@ -24,12 +27,20 @@ public class RootHandler extends BaseHttpHandler {
 	private final int serverIndex;
 	private final ServerConfiguration serverConfiguration;
 	final ConcurrentMap<String, ApvssShareholder> shareholders;
+	final Map<String, QueuedHandler> queuedHandlers;
+	final NonceCommitmentPool noncePool;
+	final HttpsConnectionManager serverConnections;
 
 	public RootHandler(final int serverIndex, final ServerConfiguration serverConfiguration,
-			final ConcurrentMap<String, ApvssShareholder> shareholders) {
+			final ConcurrentMap<String, ApvssShareholder> shareholders,
+			final Map<String, QueuedHandler> queuedHandlers, final NonceCommitmentPool noncePool,
+			final HttpsConnectionManager serverConnections) {
 		this.serverIndex = serverIndex;
 		this.serverConfiguration = serverConfiguration;
 		this.shareholders = shareholders;
+		this.queuedHandlers = queuedHandlers;
+		this.noncePool = noncePool;
+		this.serverConnections = serverConnections;
 	}
 
 	@Override
@@ -80,6 +91,23 @@ public class RootHandler extends BaseHttpHandler {
 		}
 		stringBuilder.append("<p/>");
 
+		// Request queues
+		stringBuilder.append("<b>Request Queues:</b>\n");
+		for (final Entry<String, QueuedHandler> entry : this.queuedHandlers.entrySet()) {
+			stringBuilder.append(String.format("%-15s", entry.getKey()) + " " + entry.getValue() + "\n");
+		}
+		stringBuilder.append("<p/>");
+
+		// Nonce preprocessing for Schnorr signatures
+		stringBuilder.append("<b>Nonce Pool:</b>\n");
+		stringBuilder.append(this.noncePool + "\n");
+		stringBuilder.append("<p/>");
+
+		// Connections to other servers
+		stringBuilder.append("<b>Server Connections:</b>\n");
+		stringBuilder.append(this.serverConnections + "\n");
+		stringBuilder.append("<p/>");
+
 		// User authentication
 		stringBuilder.append("<b>You:</b>\n");
 		final String linkUrl = "https://" + ourHost + ":" + ourPort + "/id";
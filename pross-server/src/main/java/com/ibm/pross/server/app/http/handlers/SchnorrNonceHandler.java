@@ -6,7 +6,6 @@ import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import org.json.simple.JSONArray;
@@ -22,6 +21,7 @@ import com.ibm.pross.common.util.crypto.schnorr.NonceCommitment;
 import com.ibm.pross.server.app.avpss.ApvssShareholder;
 import com.ibm.pross.server.app.avpss.ApvssShareholder.SharingType;
 import com.ibm.pross.server.app.http.HttpRequestProcessor;
+import com.ibm.pross.server.app.http.NonceCommitmentPool;
 import com.ibm.pross.server.configuration.permissions.AccessEnforcement;
 import com.ibm.pross.server.configuration.permissions.ClientPermissions.Permissions;
 import com.sun.net.httpserver.HttpExchange;
@@ -31,6 +31,10 @@ import com.sun.net.httpserver.HttpExchange;
  * Client's must have a specific authorization to be able to invoke this method.
  * If the secret is not found a 404 is returned. If the client is not authorized
  * a 403 is returned.
+ * 
+ * The nonce-id parameter may be repeated, up to
+ * NonceCommitmentPool.MAX_BATCH_SIZE times, to obtain many commitments in one
+ * request. These are returned as an array under "commitments".
  */
 @SuppressWarnings("restriction")
 public class SchnorrNonceHandler extends AuthenticatedClientRequestHandler {
@@ -44,14 +48,14 @@ public class SchnorrNonceHandler extends AuthenticatedClientRequestHandler {
 	// Fields
 	private final AccessEnforcement accessEnforcement;
 	private final ConcurrentMap<String, ApvssShareholder> shareholders;
-	private final ConcurrentMap<UUID, NonceCommitment> nonceCommitments;
+	private final NonceCommitmentPool noncePool;
 
 	public SchnorrNonceHandler(final KeyLoader clientKeys, final AccessEnforcement accessEnforcement,
-			final ConcurrentMap<String, ApvssShareholder> shareholders, ConcurrentHashMap<UUID, NonceCommitment> nonceCommitments) {
+			final ConcurrentMap<String, ApvssShareholder> shareholders, final NonceCommitmentPool noncePool) {
 		super(clientKeys);
 		this.shareholders = shareholders;
 		this.accessEnforcement = accessEnforcement;
-		this.nonceCommitments = nonceCommitments;
+		this.noncePool = noncePool;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -82,14 +86,16 @@ public class SchnorrNonceHandler extends AuthenticatedClientRequestHandler {
 			throw new ResourceUnavailableException();
 		}
 
-		// Extract nonce ID from request
-		final String nonceId = HttpRequestProcessor.getParameterValue(params, NONCE_ID);
-		if (nonceId == null) {
+		// Extract nonce IDs from request
+		final List<String> nonceIds = params.get(NONCE_ID);
+		if ((nonceIds == null) || nonceIds.isEmpty() || (nonceIds.size() > NonceCommitmentPool.MAX_BATCH_SIZE)) {
 			throw new BadRequestException();
 		}
-		final UUID nonceUUID;
+		final UUID[] nonceUUIDs = new UUID[nonceIds.size()];
 		try {
-			nonceUUID = UUID.fromString(nonceId);
+			for (int i = 0; i < nonceUUIDs.length; i++) {
+				nonceUUIDs[i] = UUID.fromString(nonceIds.get(i));
+			}
 		} catch (Throwable t) {
 			throw new BadRequestException();
 		}
@@ -100,12 +106,15 @@ public class SchnorrNonceHandler extends AuthenticatedClientRequestHandler {
 			throw new BadRequestException();
 		}
 
-	
 		// Do processing
 		final long startTime = System.nanoTime();
-		final NonceCommitment nonceCommitment = NonceCommitment.generateNonceCommitment(ApvssShareholder.curve, serverIndex);
-		this.nonceCommitments.putIfAbsent(nonceUUID, nonceCommitment);
-		final NonceCommitment existingCommitment = this.nonceCommitments.get(nonceUUID);
+		final NonceCommitment[] commitments = new NonceCommitment[nonceUUIDs.length];
+		for (int i = 0; i < nonceUUIDs.length; i++) {
+			commitments[i] = this.noncePool.assign(secretName, nonceUUIDs[i]);
+			if (commitments[i] == null) {
+				throw new ResourceUnavailableException();
+			}
+		}
 		final long endTime = System.nanoTime();
 
 		// Compute processing time
@@ -119,19 +128,18 @@ public class SchnorrNonceHandler extends AuthenticatedClientRequestHandler {
 		obj.put("responder", new Integer(serverIndex));
 		obj.put("epoch", new Long(epoch));
 
-		// gD
-		JSONArray gD = new JSONArray();
-		gD.add(existingCommitment.getCommitmentD().getX().toString());
-		gD.add(existingCommitment.getCommitmentD().getY().toString());
-		obj.put("gd", gD);
-		
-		// gE
-		JSONArray gE = new JSONArray();
-		gE.add(existingCommitment.getCommitmentE().getX().toString());
-		gE.add(existingCommitment.getCommitmentE().getY().toString());
-		obj.put("ge", gE);
-		
-
+		if (commitments.length == 1) {
+			putCommitment(obj, commitments[0]);
+		} else {
+			final JSONArray commitmentArray = new JSONArray();
+			for (int i = 0; i < commitments.length; i++) {
+				final JSONObject commitmentObj = new JSONObject();
+				commitmentObj.put(NONCE_ID, nonceUUIDs[i].toString());
+				putCommitment(commitmentObj, commitments[i]);
+				commitmentArray.add(commitmentObj);
+			}
+			obj.put("commitments", commitmentArray);
+		}
 
 		obj.put("compute_time_us", new Long(processingTimeUs));
 
@@ -148,4 +156,19 @@ public class SchnorrNonceHandler extends AuthenticatedClientRequestHandler {
 		}
 	}
 
+	@SuppressWarnings("unchecked")
+	private static void putCommitment(final JSONObject obj, final NonceCommitment commitment) {
+		// gD
+		JSONArray gD = new JSONArray();
+		gD.add(commitment.getCommitmentD().getX().toString());
+		gD.add(commitment.getCommitmentD().getY().toString());
+		obj.put("gd", gD);
+
+		// gE
+		JSONArray gE = new JSONArray();
+		gE.add(commitment.getCommitmentE().getX().toString());
+		gE.add(commitment.getCommitmentE().getY().toString());
+		obj.put("ge", gE);
+	}
+
 }
\ No newline at end of file
@@ -11,7 +11,6 @@ import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.codec.DecoderException;
@@ -34,6 +33,7 @@ import com.ibm.pross.common.util.shamir.ShamirShare;
 import com.ibm.pross.server.app.avpss.ApvssShareholder;
 import com.ibm.pross.server.app.avpss.ApvssShareholder.SharingType;
 import com.ibm.pross.server.app.http.HttpRequestProcessor;
+import com.ibm.pross.server.app.http.NonceCommitmentPool;
 import com.ibm.pross.server.configuration.permissions.AccessEnforcement;
 import com.ibm.pross.server.configuration.permissions.ClientPermissions.Permissions;
 import com.sun.net.httpserver.HttpExchange;
@@ -61,15 +61,14 @@ public class SchnorrSignHandler extends AuthenticatedClientRequestHandler {
 	// Fields
 	private final AccessEnforcement accessEnforcement;
 	private final ConcurrentMap<String, ApvssShareholder> shareholders;
-	private final ConcurrentMap<UUID, NonceCommitment> nonceCommitments;
+	private final NonceCommitmentPool noncePool;
 
 	public SchnorrSignHandler(final KeyLoader clientKeys, final AccessEnforcement accessEnforcement,
-			final ConcurrentMap<String, ApvssShareholder> shareholders,
-			ConcurrentHashMap<UUID, NonceCommitment> nonceCommitments) {
+			final ConcurrentMap<String, ApvssShareholder> shareholders, final NonceCommitmentPool noncePool) {
 		super(clientKeys);
 		this.shareholders = shareholders;
 		this.accessEnforcement = accessEnforcement;
-		this.nonceCommitments = nonceCommitments;
+		this.noncePool = noncePool;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -151,7 +150,8 @@ public class SchnorrSignHandler extends AuthenticatedClientRequestHandler {
 			}
 		}
 
-		if (!commitmentMap.containsKey(BigInteger.valueOf(shareholder.getIndex()))) {
+		final NonceCommitment ourCommitment = commitmentMap.get(BigInteger.valueOf(shareholder.getIndex()));
+		if (ourCommitment == null) {
 			// We were given a request for a signing operation we are not part of
 			throw new BadRequestException();
 		}
@@ -163,7 +163,16 @@ public class SchnorrSignHandler extends AuthenticatedClientRequestHandler {
 		}
 
 		// Get the cached nonce, we remove it because it should only be used once
-		final NonceCommitment privateCommitment = this.nonceCommitments.remove(nonceUUID);
+		final NonceCommitment privateCommitment = this.noncePool.redeem(secretName, nonceUUID);
+		if (privateCommitment == null) {
+			throw new NotFoundException();
+		}
+
+		// The commitment attributed to us must be the one we handed out for this nonce
+		if (!privateCommitment.getCommitmentD().equals(ourCommitment.getCommitmentD())
+				|| !privateCommitment.getCommitmentE().equals(ourCommitment.getCommitmentE())) {
+			throw new BadRequestException();
+		}
 
 		// Do processing
 		final long startTime = System.nanoTime();
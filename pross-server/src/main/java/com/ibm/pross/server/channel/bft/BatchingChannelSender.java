@@ -0,0 +1,158 @@
+package com.ibm.pross.server.channel.bft;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ibm.pross.common.util.concurrent.NamedThreadFactory;
+import com.ibm.pross.server.channel.ChannelSender;
+import com.ibm.pross.server.messages.SignedMessage;
+import com.ibm.pross.server.util.MessageSerializer;
+
+/**
+ * Coalesces messages broadcast by all shareholders on this server into
+ * envelopes which are each ordered by a single BFT consensus instance.
+ *
+ * A batch is submitted once it holds MAX_BATCH_MESSAGES messages or
+ * MAX_BATCH_BYTES bytes, or MAX_BATCH_DELAY_MS after its first message was
+ * added, whichever comes first. MAX_BATCH_BYTES bounds the size of the whole
+ * envelope, including its header and per message lengths.
+ *
+ * Batches are formed under the lock but handed to the BFT by a send thread
+ * owned by this sender, in the order they were formed so messages from this
+ * server keep their FIFO order. Neither producers nor the shared flush timer
+ * ever wait for the BFT pipeline to drain.
+ */
+public class BatchingChannelSender implements ChannelSender {
+
+	public static int MAX_BATCH_MESSAGES = 128;
+	public static int MAX_BATCH_BYTES = MessageSerializer.MAX_MESSAGE_SIZE;
+	public static long MAX_BATCH_DELAY_MS = 10;
+
+	// Flushes the partial batches of every sender
+	private final static ScheduledExecutorService flushScheduler = Executors
+			.newSingleThreadScheduledExecutor(new NamedThreadFactory("bft-batch-flush"));
+
+	private final BftChannelSender sender;
+
+	// Submits formed batches to the BFT, one at a time and in order
+	private final ExecutorService sendExecutor = Executors
+			.newSingleThreadExecutor(new NamedThreadFactory("bft-batch-send"));
+
+	// Current batch being accumulated (guarded by this)
+	private List<byte[]> pendingMessages = new ArrayList<>();
+	private int pendingBytes = BftBatch.HEADER_LENGTH;
+	private long batchNumber = 0;
+
+	// Metrics
+	private final AtomicLong batchesSent = new AtomicLong(0);
+	private final AtomicLong messagesSent = new AtomicLong(0);
+
+	public BatchingChannelSender(final BftChannelSender sender) {
+		this.sender = sender;
+	}
+
+	@Override
+	public void broadcast(final SignedMessage message) {
+
+		// Serialize message to bytes outside of the lock
+		final byte[] serializedMessage = MessageSerializer.serializeSignedMessage(message);
+
+		final int entryLength = BftBatch.ENTRY_OVERHEAD + serializedMessage.length;
+
+		synchronized (this) {
+			// Make room if this message would push the envelope over its size limit
+			if (!this.pendingMessages.isEmpty() && (this.pendingBytes + entryLength > MAX_BATCH_BYTES)) {
+				flush();
+			}
+
+			this.pendingMessages.add(serializedMessage);
+			this.pendingBytes += entryLength;
+
+			if (this.pendingMessages.size() >= MAX_BATCH_MESSAGES || this.pendingBytes >= MAX_BATCH_BYTES) {
+				flush();
+			} else if (this.pendingMessages.size() == 1) {
+				scheduleFlush(this.batchNumber);
+			}
+		}
+	}
+
+	private void scheduleFlush(final long scheduledBatch) {
+		flushScheduler.schedule(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (BatchingChannelSender.this) {
+					// Only flush if that batch was not already sent for being full
+					if (BatchingChannelSender.this.batchNumber == scheduledBatch) {
+						flush();
+					}
+				}
+			}
+		}, MAX_BATCH_DELAY_MS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Queues the pending batch for sending, must be called while holding the
+	 * lock so batches are handed to the BFT in the order they were formed. The
+	 * send itself, which may wait for room in the BFT pipeline, happens on the
+	 * send thread.
+	 */
+	private void flush() {
+		if (this.pendingMessages.isEmpty()) {
+			return;
+		}
+
+		final List<byte[]> batch = this.pendingMessages;
+		this.pendingMessages = new ArrayList<>();
+		this.pendingBytes = BftBatch.HEADER_LENGTH;
+		this.batchNumber++;
+
+		this.sendExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				// A lone message is sent as is, avoiding the envelope overhead
+				final byte[] command = (batch.size() == 1) ? batch.get(0) : BftBatch.pack(batch);
+				BatchingChannelSender.this.sender.broadcastSerialized(command);
+
+				BatchingChannelSender.this.batchesSent.incrementAndGet();
+				BatchingChannelSender.this.messagesSent.addAndGet(batch.size());
+			}
+		});
+	}
+
+	/**
+	 * Sends any partial batch, waits for queued batches to be handed to the BFT
+	 * and closes the underlying sender
+	 */
+	public void close() {
+		synchronized (this) {
+			flush();
+			this.sendExecutor.shutdown();
+		}
+		try {
+			if (!this.sendExecutor.awaitTermination(BftChannelSender.INVOKE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+				System.err.println("Timed out sending the remaining batches");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		this.sender.close();
+	}
+
+	public long getBatchesSent() {
+		return this.batchesSent.get();
+	}
+
+	public long getMessagesSent() {
+		return this.messagesSent.get();
+	}
+
+	public BftChannelSender getSender() {
+		return this.sender;
+	}
+
+}
@@ -0,0 +1,31 @@
+package com.ibm.pross.server.channel.bft;
+
+import bftsmart.tom.server.defaultservices.DefaultApplicationState;
+
+/**
+ * A state sent to a replica which is catching up, carrying the BFT commands
+ * ordered before those held by the snapshot.
+ *
+ * The replicas agree on the hash of the snapshot only, so the commands carried
+ * here are not covered by it. The snapshot holds a digest chained over every
+ * command up to its position, and a replica checks the commands against it
+ * before delivering any of them.
+ */
+public class BftApplicationState extends DefaultApplicationState {
+
+	private static final long serialVersionUID = -2807340315496357208L;
+
+	// Commands from position 1, up to the first command held by the snapshot
+	private final byte[][] history;
+
+	public BftApplicationState(final DefaultApplicationState state, final int pid, final byte[][] history) {
+		super(state.getMessageBatches(), state.getLastCheckpointCID(), state.getLastCID(), state.getSerializedState(),
+				state.getStateHash(), pid);
+		this.history = history;
+	}
+
+	public byte[][] getHistory() {
+		return this.history;
+	}
+
+}
@@ -1,16 +1,30 @@
 package com.ibm.pross.server.channel.bft;
 
+import java.io.File;
+import java.io.IOException;
+
 import com.ibm.pross.server.channel.AtomicBroadcastChannel;
 import com.ibm.pross.server.channel.ChannelListener;
 import com.ibm.pross.server.channel.ChannelSender;
 
 public class BftAtomicBroadcastChannel implements AtomicBroadcastChannel {
 
+	// Where delivered commands are kept for replicas catching up
+	private final File commandLogDirectory;
+
 	private volatile BftListenerWrapper wrapper;
-	
+
+	public BftAtomicBroadcastChannel(final File commandLogDirectory) {
+		this.commandLogDirectory = commandLogDirectory;
+	}
+
 	@Override
 	public void register(final ChannelListener listener) {
-		this.wrapper = new BftListenerWrapper(listener);
+		try {
+			this.wrapper = new BftListenerWrapper(listener, this.commandLogDirectory);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
 	}
 	
 	public boolean isReady()
@@ -20,7 +34,7 @@ public class BftAtomicBroadcastChannel implements AtomicBroadcastChannel {
 
 	@Override
 	public ChannelSender link(final int senderId) {
-		return new BftChannelSender(senderId);
+		return new BatchingChannelSender(new BftChannelSender(senderId));
 	}
 
 	@Override
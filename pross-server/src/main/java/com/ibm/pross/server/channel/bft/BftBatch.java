@@ -0,0 +1,111 @@
+package com.ibm.pross.server.channel.bft;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Encodes several serialized signed messages into a single command so they
+ * can be ordered by one BFT consensus instance.
+ *
+ * An envelope begins with a magic prefix whose first byte is zero. A
+ * protostuff serialized message can never begin with a zero byte (field
+ * number zero is invalid) so commands holding a single un-batched message
+ * remain distinguishable from envelopes.
+ *
+ * <pre>
+ * envelope = MAGIC || count (int) || (length (int) || message)*
+ * </pre>
+ */
+public class BftBatch {
+
+	private static final byte[] MAGIC = new byte[] { 0x00, 'B', 'A', 'T' };
+
+	// Bytes an envelope adds in front of its messages and to each of them
+	public static final int HEADER_LENGTH = MAGIC.length + Integer.BYTES;
+	public static final int ENTRY_OVERHEAD = Integer.BYTES;
+
+	/**
+	 * Combines multiple serialized messages into a single envelope
+	 *
+	 * @param serializedMessages
+	 * @return
+	 */
+	public static byte[] pack(final List<byte[]> serializedMessages) {
+		int totalLength = HEADER_LENGTH;
+		for (final byte[] serializedMessage : serializedMessages) {
+			totalLength += ENTRY_OVERHEAD + serializedMessage.length;
+		}
+
+		final ByteBuffer buffer = ByteBuffer.allocate(totalLength);
+		buffer.put(MAGIC);
+		buffer.putInt(serializedMessages.size());
+		for (final byte[] serializedMessage : serializedMessages) {
+			buffer.putInt(serializedMessage.length);
+			buffer.put(serializedMessage);
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * Returns true if the command is a batch envelope rather than a single
+	 * serialized message
+	 *
+	 * @param command
+	 * @return
+	 */
+	public static boolean isBatch(final byte[] command) {
+		if (command.length < MAGIC.length) {
+			return false;
+		}
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (command[i] != MAGIC[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the serialized messages contained in a command in the order they
+	 * were packed. A command which is not an envelope is returned as a list of
+	 * one message.
+	 *
+	 * @param command
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             If the envelope is malformed
+	 */
+	public static List<byte[]> unpack(final byte[] command) {
+		if (!isBatch(command)) {
+			return Collections.singletonList(command);
+		}
+
+		try {
+			final ByteBuffer buffer = ByteBuffer.wrap(command);
+			buffer.position(MAGIC.length);
+
+			final int count = buffer.getInt();
+			if ((count < 0) || (count > buffer.remaining() / Integer.BYTES)) {
+				throw new IllegalArgumentException("Invalid message count in batch: " + count);
+			}
+
+			final List<byte[]> serializedMessages = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				final int length = buffer.getInt();
+				if ((length < 0) || (length > buffer.remaining())) {
+					throw new IllegalArgumentException("Invalid message length in batch: " + length);
+				}
+				final byte[] serializedMessage = new byte[length];
+				buffer.get(serializedMessage);
+				serializedMessages.add(serializedMessage);
+			}
+			return serializedMessages;
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Truncated batch", e);
+		}
+	}
+
+}
@@ -1,17 +1,69 @@
 package com.ibm.pross.server.channel.bft;
 
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ibm.pross.common.util.concurrent.NamedThreadFactory;
 import com.ibm.pross.server.channel.ChannelSender;
 import com.ibm.pross.server.messages.SignedMessage;
+import com.ibm.pross.server.util.LatencyHistogram;
 import com.ibm.pross.server.util.MessageSerializer;
 
-import bftsmart.tom.ServiceProxy;
+import bftsmart.communication.client.ReplyListener;
+import bftsmart.tom.AsynchServiceProxy;
+import bftsmart.tom.RequestContext;
+import bftsmart.tom.core.messages.TOMMessage;
+import bftsmart.tom.core.messages.TOMMessageType;
 
+/**
+ * Submits messages to the BFT layer for total ordering without waiting for
+ * each one to be delivered before sending the next.
+ *
+ * Up to MAX_IN_FLIGHT ordered invocations may be outstanding at once. An
+ * invocation is considered delivered once f + 1 replicas have replied, which
+ * guarantees at least one correct replica has executed it. Invocations which
+ * receive no such confirmation within INVOKE_TIMEOUT_MS are abandoned, as
+ * ServiceProxy.invokeOrdered would have done.
+ */
 public class BftChannelSender implements ChannelSender {
 
-	private final ServiceProxy serviceProxy;
+	public static int MAX_IN_FLIGHT = 64;
+	public static long INVOKE_TIMEOUT_MS = 40_000;
+
+	// Expires stalled requests of every sender
+	private final static ScheduledExecutorService timeoutChecker = Executors
+			.newSingleThreadScheduledExecutor(new NamedThreadFactory("bft-sender-timeout"));
+
+	private final AsynchServiceProxy serviceProxy;
+	private final Semaphore inFlightPermits;
+	private final ScheduledFuture<?> timeoutTask;
+
+	// Maps operation id to the time the invocation was sent
+	private final ConcurrentMap<Integer, Long> inFlight = new ConcurrentHashMap<>();
+
+	// Metrics
+	private final LatencyHistogram deliveryLatency = new LatencyHistogram();
+	private final AtomicLong timedOutCount = new AtomicLong(0);
 
 	public BftChannelSender(int senderId) {
-		this.serviceProxy = new ServiceProxy(senderId);
+		this.serviceProxy = new AsynchServiceProxy(senderId);
+		this.inFlightPermits = new Semaphore(MAX_IN_FLIGHT);
+
+		this.timeoutTask = timeoutChecker.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				expireStalledRequests();
+			}
+		}, 1, 1, TimeUnit.SECONDS);
 	}
 
 	@Override
@@ -20,17 +72,126 @@ public class BftChannelSender implements ChannelSender {
 		// Serialize message to bytes
 		byte[] serializedMessage = MessageSerializer.serializeSignedMessage(message);
 
-		// Send total ordered message
-		//System.out.println("Sending message: " + HexUtil.binToHex(serializedMessage));
-		this.serviceProxy.invokeOrdered(serializedMessage);
+		broadcastSerialized(serializedMessage);
+	}
+
+	/**
+	 * Submits an already serialized command (a single message or a batch) for
+	 * total ordering
+	 * 
+	 * @param serializedMessage
+	 */
+	public void broadcastSerialized(final byte[] serializedMessage) {
 
-		// Give some time for everyone to process the message
+		// Block only if the pipeline is full
 		try {
-			Thread.sleep(1000);
+			this.inFlightPermits.acquire();
 		} catch (InterruptedException e) {
 			throw new RuntimeException("interrupted", e);
 		}
 
+		// Send total ordered message, the listener confirms delivery
+		final long sendTime = System.nanoTime();
+		final DeliveryListener listener = new DeliveryListener(sendTime);
+		final int operationId = this.serviceProxy.invokeAsynchRequest(serializedMessage, listener,
+				TOMMessageType.ORDERED_REQUEST);
+		this.inFlight.put(operationId, sendTime);
+		listener.setOperationId(operationId);
+
+		// The reply may have arrived before the operation id was recorded
+		if (listener.isConfirmed()) {
+			complete(operationId, sendTime);
+		}
+	}
+
+	/**
+	 * Stops expiring requests and closes the connection to the replicas
+	 */
+	public void close() {
+		this.timeoutTask.cancel(false);
+		this.serviceProxy.close();
+	}
+
+	/**
+	 * Completes an invocation by the operation id it was first sent with, which
+	 * also cleans up any ids it was re-sent with after a reconfiguration
+	 */
+	private void complete(final int operationId, final long sendTime) {
+		if (this.inFlight.remove(operationId) != null) {
+			this.deliveryLatency.record(System.nanoTime() - sendTime);
+			this.serviceProxy.cleanAsynchRequest(operationId);
+			this.inFlightPermits.release();
+		}
+	}
+
+	private void expireStalledRequests() {
+		final long now = System.nanoTime();
+		for (final Entry<Integer, Long> entry : this.inFlight.entrySet()) {
+			if (TimeUnit.NANOSECONDS.toMillis(now - entry.getValue()) > INVOKE_TIMEOUT_MS) {
+				if (this.inFlight.remove(entry.getKey()) != null) {
+					System.err.println("Ordered invocation " + entry.getKey() + " was not confirmed in time");
+					this.timedOutCount.incrementAndGet();
+					this.serviceProxy.cleanAsynchRequest(entry.getKey());
+					this.inFlightPermits.release();
+				}
+			}
+		}
+	}
+
+	public int getInFlightCount() {
+		return this.inFlight.size();
+	}
+
+	public long getTimedOutCount() {
+		return this.timedOutCount.get();
+	}
+
+	public LatencyHistogram getDeliveryLatency() {
+		return this.deliveryLatency;
+	}
+
+	/**
+	 * Counts replies from distinct replicas for a single ordered invocation
+	 */
+	private class DeliveryListener implements ReplyListener {
+
+		private final long sendTime;
+		private final Set<Integer> repliedReplicas = new ConcurrentSkipListSet<>();
+		private volatile boolean confirmed = false;
+
+		// Id of the first invocation, the proxy uses a new one for each re-send
+		private volatile Integer operationId = null;
+
+		public DeliveryListener(final long sendTime) {
+			this.sendTime = sendTime;
+		}
+
+		public boolean isConfirmed() {
+			return this.confirmed;
+		}
+
+		public void setOperationId(final int operationId) {
+			this.operationId = operationId;
+		}
+
+		@Override
+		public void reset() {
+			this.repliedReplicas.clear();
+		}
+
+		@Override
+		public void replyReceived(final RequestContext context, final TOMMessage reply) {
+			this.repliedReplicas.add(reply.getSender());
+			final int confirmationQuorum = serviceProxy.getViewManager().getCurrentViewF() + 1;
+			if (!this.confirmed && (this.repliedReplicas.size() >= confirmationQuorum)) {
+				this.confirmed = true;
+				final Integer operationId = this.operationId;
+				// Otherwise it is completed once the operation id is known
+				if (operationId != null) {
+					complete(operationId, this.sendTime);
+				}
+			}
+		}
 	}
 
 }
@@ -15,32 +15,78 @@ limitations under the License.
 */
 package com.ibm.pross.server.channel.bft;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
 
 import com.ibm.pross.server.channel.ChannelListener;
+import com.ibm.pross.server.util.MessageLog;
 
+import bftsmart.statemanagement.ApplicationState;
 import bftsmart.tom.MessageContext;
 import bftsmart.tom.ServiceReplica;
 import bftsmart.tom.server.FIFOExecutable;
+import bftsmart.tom.server.defaultservices.DefaultApplicationState;
 import bftsmart.tom.server.defaultservices.DefaultSingleRecoverable;
 
 /**
- * Example replica that implements a BFT replicated service.
+ * BFT replica which delivers the ordered commands to a channel listener.
+ * 
+ * Ordered commands are passed through DefaultSingleRecoverable, which logs
+ * them and takes a snapshot every checkpoint period. A snapshot holds the
+ * position of the last delivered command, a digest chained over all commands,
+ * and the commands delivered since the previous checkpoint:
+ * 
+ * <pre>
+ * snapshot = version (int) || position (long) || digest length (int) || digest
+ *            || first position (long) || count (int) || (length (int) || command)*
+ * </pre>
+ * 
+ * Listeners rebuild their state from every command, so each delivered command
+ * is also written to a command log on disk. A replica sending its state to
+ * one catching up adds the commands before those in the snapshot, read from
+ * that log, so a replica which restarted or fell behind by several checkpoints
+ * can deliver every command it is missing. The missing commands are checked
+ * against the snapshot's digest before any is delivered. If they do not match,
+ * the replica stops delivering commands and reports that it is no longer
+ * ready.
  * 
  * @author jresch
  */
 public class BftListenerWrapper extends DefaultSingleRecoverable implements FIFOExecutable {
 
+	private static final int SNAPSHOT_VERSION = 1;
+
 	private final ChannelListener listener;
 	private volatile ServiceReplica serviceReplica;
 
 	final BftLog state = new BftLog();
 
-	public BftListenerWrapper(final ChannelListener listener) {
+	// Every delivered command by its position, read back for replicas catching up
+	private final MessageLog commandLog;
+
+	// Position of the last command passed to us for execution, this is behind
+	// the log position while commands we already delivered are replayed
+	private long executionPosition = 0;
+
+	// Commands received with the state being installed, guarded by the state
+	private byte[][] receivedHistory;
+
+	// Set once the delivered commands can no longer follow the other replicas
+	private volatile boolean stopped = false;
+
+	public BftListenerWrapper(final ChannelListener listener, final File commandLogDirectory) throws IOException {
 		this.listener = listener;
+		this.commandLog = new MessageLog(commandLogDirectory, false);
 
 		// Start service replica in a thread
 		final Thread thread = new Thread() {
@@ -53,66 +99,263 @@ public class BftListenerWrapper extends DefaultSingleRecoverable implements FIFO
 	}
 
 	public boolean isReady() {
-		return ((this.serviceReplica != null) && (this.serviceReplica.isServiceReady()));
+		return (!this.stopped && (this.serviceReplica != null) && (this.serviceReplica.isServiceReady()));
 	}
 
 	@Override
 	public byte[] executeOrderedFIFO(byte[] command, MessageContext msgCtx, int clientId, int operationId) {
+		// Log the command and take checkpoints
+		return executeOrdered(command, msgCtx);
+	}
+
+	@Override
+	public byte[] appExecuteOrdered(byte[] command, MessageContext msgCtx) {
 		return processCommand(command);
 	}
 
 	private synchronized byte[] processCommand(byte[] command) {
+		synchronized (this.state) {
+			if (this.stopped) {
+				return null;
+			}
+			this.executionPosition++;
+			if (this.executionPosition <= this.state.getPosition()) {
+				// Already delivered before a snapshot was installed
+				return command;
+			}
+			return deliverCommand(command) ? command : null;
+		}
+	}
+
+	private boolean deliverCommand(byte[] command) {
 		try {
-			synchronized (this.state) {
-				// Save state to support recovery
-				this.state.addMessage(command);
+			// Save state to support recovery
+			this.state.addMessage(command);
+			logCommand(this.state.getPosition(), command);
 
-				// Process message
-				this.listener.receiveSerializedMessage(command);
+			// Process each message of a batch at consecutive positions
+			for (final byte[] serializedMessage : BftBatch.unpack(command)) {
+				this.listener.receiveSerializedMessage(serializedMessage);
 			}
-
-		} catch (ClassNotFoundException | BadPaddingException | IllegalBlockSizeException | IOException e) {
+			return true;
+		} catch (ClassNotFoundException | BadPaddingException | IllegalBlockSizeException | IOException
+				| IllegalArgumentException e) {
 			e.printStackTrace();
-			return null;
+			return false;
 		}
-		return command;
 	}
 
+	/**
+	 * Writes a delivered command to the command log. A failure only prevents this
+	 * replica from sending the command to others catching up, so delivery
+	 * continues.
+	 */
+	private void logCommand(final long position, final byte[] command) {
+		try {
+			this.commandLog.append(position, command);
+		} catch (IOException e) {
+			System.err.println("Failed to log BFT command " + position + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Invoked by DefaultSingleRecoverable at each checkpoint, the commands in the
+	 * snapshot are released from memory once it is taken
+	 */
 	@Override
 	public byte[] getSnapshot() {
-		
-		// FIXEME: Although this isn't too important since the certification layer ensures all messages received
-		// Though it is needed to-re-receive messages if the locally persisted state is lost.
-		return new byte[1];
-		
-		//synchronized (this.state) {
-		//	return Parse.concatenate(this.state.getMessageLog());
-		//}
+		synchronized (this.state) {
+			final List<byte[]> commands = this.state.getMessageLog();
+			final byte[] digest = this.state.getDigest();
+
+			try {
+				final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				final DataOutputStream out = new DataOutputStream(bytes);
+				out.writeInt(SNAPSHOT_VERSION);
+				out.writeLong(this.state.getPosition());
+				out.writeInt(digest.length);
+				out.write(digest);
+				out.writeLong(this.state.getFirstRetainedPosition());
+				out.writeInt(commands.size());
+				for (final byte[] command : commands) {
+					out.writeInt(command.length);
+					out.write(command);
+				}
+				out.flush();
+
+				this.state.markCheckpoint();
+				return bytes.toByteArray();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	/**
+	 * Adds the commands ordered before those held by the snapshot when the state
+	 * is sent to a replica catching up
+	 */
+	@Override
+	public ApplicationState getState(int cid, boolean sendState) {
+		final ApplicationState applicationState = super.getState(cid, sendState);
+		if (!sendState || !(applicationState instanceof DefaultApplicationState)
+				|| (applicationState.getSerializedState() == null)) {
+			return applicationState;
+		}
+
+		try {
+			final Snapshot snapshot = Snapshot.read(applicationState.getSerializedState());
+			final byte[][] history = new byte[(int) Math.max(0, snapshot.firstPosition - 1)][];
+			for (int i = 0; i < history.length; i++) {
+				history[i] = this.commandLog.read(i + 1);
+				if (history[i] == null) {
+					throw new IOException("Command " + (i + 1) + " is not in the command log");
+				}
+			}
+			return new BftApplicationState((DefaultApplicationState) applicationState, this.listener.getId(),
+					history);
+		} catch (IOException e) {
+			// The receiver can still use the state if it is not that far behind
+			System.err.println("Sending state without earlier commands: " + e.getMessage());
+			return applicationState;
+		}
 	}
 
 	@Override
-	public void installSnapshot(byte[] state) {
+	public int setState(ApplicationState recvState) {
 		synchronized (this.state) {
+			this.receivedHistory = (recvState instanceof BftApplicationState)
+					? ((BftApplicationState) recvState).getHistory()
+					: null;
+		}
+		try {
+			return super.setState(recvState);
+		} finally {
+			synchronized (this.state) {
+				this.receivedHistory = null;
+			}
+		}
+	}
+
+	/**
+	 * Brings us to the position of the snapshot, delivering the commands we are
+	 * missing once they are checked against its digest
+	 */
+	@Override
+	public void installSnapshot(byte[] snapshot) {
+		// Snapshots taken by earlier versions held no state
+		if (snapshot == null || snapshot.length <= 1) {
+			return;
+		}
 
-			//final byte[][] messageLog = Parse.splitArrays(state);
+		synchronized (this.state) {
+			try {
+				final Snapshot received = Snapshot.read(snapshot);
+				if (received == null) {
+					return;
+				}
 
-			// Process all commands
-			//for (final byte[] command : messageLog) {
-				//processCommand(command);
-			//}
+				// Commands replayed after the snapshot follow its position
+				this.executionPosition = received.position;
 
+				for (final byte[] command : getMissingCommands(this.state, received, this.receivedHistory)) {
+					deliverCommand(command);
+				}
+			} catch (IOException | IllegalStateException e) {
+				// Nothing was delivered, but the commands which follow cannot be
+				this.stopped = true;
+				System.err.println("Failed to install BFT snapshot, no longer delivering commands: " + e.getMessage());
+			}
 		}
 	}
 
-	/*** Unsupported operations ***/
+	/**
+	 * Returns the commands which bring the log to the position of the snapshot,
+	 * taken from the history for those before the snapshot's own commands
+	 * 
+	 * @throws IllegalStateException
+	 *             If commands are missing, or if with them the log would not
+	 *             reach the snapshot's digest
+	 */
+	static List<byte[]> getMissingCommands(final BftLog log, final Snapshot snapshot, final byte[][] history) {
+		final List<byte[]> missing = new ArrayList<>();
+		final long localPosition = log.getPosition();
+		if (localPosition >= snapshot.position) {
+			// We already have everything in this snapshot
+			return missing;
+		}
 
-	@Override
-	public byte[] appExecuteUnordered(final byte[] command, final MessageContext msgCtx) {
-		throw new RuntimeException("Unused method was invoked!");
+		for (long position = localPosition + 1; position < snapshot.firstPosition; position++) {
+			if ((history == null) || (position > history.length)) {
+				throw new IllegalStateException("Missing BFT commands " + position + " to "
+						+ (snapshot.firstPosition - 1) + ", which are older than the snapshot at position "
+						+ snapshot.position);
+			}
+			missing.add(history[(int) (position - 1)]);
+		}
+		for (int i = 0; i < snapshot.commands.size(); i++) {
+			if ((snapshot.firstPosition + i) > localPosition) {
+				missing.add(snapshot.commands.get(i));
+			}
+		}
+
+		byte[] digest = log.getDigest();
+		for (final byte[] command : missing) {
+			digest = BftLog.chainDigest(digest, command);
+		}
+		if (!Arrays.equals(digest, snapshot.digest)) {
+			throw new IllegalStateException("BFT commands diverge from the snapshot at position " + snapshot.position);
+		}
+		return missing;
+	}
+
+	/**
+	 * A snapshot as written by {@link BftListenerWrapper#getSnapshot()}
+	 */
+	static class Snapshot {
+
+		final long position;
+		final byte[] digest;
+		final long firstPosition;
+		final List<byte[]> commands;
+
+		Snapshot(final long position, final byte[] digest, final long firstPosition, final List<byte[]> commands) {
+			this.position = position;
+			this.digest = digest;
+			this.firstPosition = firstPosition;
+			this.commands = commands;
+		}
+
+		/**
+		 * Reads a snapshot, returning null if it is of an unsupported version
+		 */
+		static Snapshot read(final byte[] snapshot) throws IOException {
+			try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(snapshot))) {
+				final int version = in.readInt();
+				if (version != SNAPSHOT_VERSION) {
+					System.err.println("Ignoring snapshot of unsupported version: " + version);
+					return null;
+				}
+				final long position = in.readLong();
+				final byte[] digest = new byte[in.readInt()];
+				in.readFully(digest);
+				final long firstPosition = in.readLong();
+				final int count = in.readInt();
+				final List<byte[]> commands = new ArrayList<>(count);
+				for (int i = 0; i < count; i++) {
+					final byte[] command = new byte[in.readInt()];
+					in.readFully(command);
+					commands.add(command);
+				}
+				return new Snapshot(position, digest, firstPosition, commands);
+			}
+		}
 	}
 
+	/*** Unsupported operations ***/
+
 	@Override
-	public byte[] appExecuteOrdered(byte[] command, MessageContext msgCtx) {
+	public byte[] appExecuteUnordered(final byte[] command, final MessageContext msgCtx) {
 		throw new RuntimeException("Unused method was invoked!");
 	}
 
@@ -1,22 +1,107 @@
 package com.ibm.pross.server.channel.bft;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.Deque;
 import java.util.List;
 
+/**
+ * Tracks the commands delivered by the BFT layer: the position of the last
+ * command, a digest chained over every command, and the commands delivered
+ * since the last checkpoint. Commands are never dropped before a checkpoint
+ * covers them, since the next snapshot must hold every one of them, so the
+ * memory held is bounded by the checkpoint period of the BFT configuration.
+ */
 public class BftLog implements Serializable {
 
 	private static final long serialVersionUID = 4660943197603171465L;
 
-	private final List<byte[]> messageLog = Collections.synchronizedList(new LinkedList<byte[]>());
-	
+	public static final String DIGEST_ALGORITHM = "SHA-256";
+
+	private final Deque<byte[]> messageLog = new ArrayDeque<byte[]>();
+
+	private long position = 0;
+	private byte[] digest = new byte[32];
+	private long retainedBytes = 0;
+
+	/**
+	 * Adds the command at the next position, chaining it into the digest
+	 */
 	public synchronized void addMessage(byte[] receivedMessage) {
-		messageLog.add(receivedMessage);
+		messageLog.addLast(receivedMessage);
+		position++;
+		digest = chainDigest(digest, receivedMessage);
+		retainedBytes += receivedMessage.length;
 	}
-	
+
+	/**
+	 * Returns the commands held since the last checkpoint, the first being at
+	 * {@link #getFirstRetainedPosition()}
+	 */
 	public synchronized List<byte[]> getMessageLog() {
-		return Collections.unmodifiableList(messageLog);
+		return Collections.unmodifiableList(new ArrayList<byte[]>(messageLog));
+	}
+
+	/**
+	 * Releases the commands delivered up to now, which are covered by a checkpoint
+	 */
+	public synchronized void markCheckpoint() {
+		messageLog.clear();
+		retainedBytes = 0;
 	}
-	
+
+	/**
+	 * Moves to a position reached elsewhere without delivering the commands before
+	 * it
+	 */
+	public synchronized void reset(final long position, final byte[] digest) {
+		markCheckpoint();
+		this.position = position;
+		this.digest = digest.clone();
+	}
+
+	/**
+	 * Returns the position of the last delivered command, which is also the total
+	 * number of commands delivered
+	 */
+	public synchronized long getPosition() {
+		return position;
+	}
+
+	public synchronized long getFirstRetainedPosition() {
+		return position - messageLog.size() + 1;
+	}
+
+	public synchronized byte[] getDigest() {
+		return digest.clone();
+	}
+
+	public synchronized int getRetainedMessageCount() {
+		return messageLog.size();
+	}
+
+	public synchronized long getRetainedBytes() {
+		return retainedBytes;
+	}
+
+	/**
+	 * Computes H(previous digest || length || command)
+	 */
+	public static byte[] chainDigest(final byte[] previousDigest, final byte[] command) {
+		try {
+			final MessageDigest md = MessageDigest.getInstance(DIGEST_ALGORITHM);
+			md.update(previousDigest);
+			md.update(ByteBuffer.allocate(Integer.BYTES).putInt(command.length).array());
+			md.update(command);
+			return md.digest();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 }
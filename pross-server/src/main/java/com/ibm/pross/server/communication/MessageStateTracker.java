@@ -1,6 +1,11 @@
 package com.ibm.pross.server.communication;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -11,6 +16,7 @@ import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import com.ibm.pross.common.config.CommonConfiguration;
 import com.ibm.pross.server.messages.SignedMessage;
 
 /**
@@ -19,14 +25,27 @@ import com.ibm.pross.server.messages.SignedMessage;
  * if we receive it from them, or if they acknowledge it from us while we
  * stubbornly send a message to them. We can stop stubbornly sending once we
  * know they have seen it.
+ * 
+ * Once every entity is a confirmed witness of a message, the message itself is
+ * no longer held. Only its digest is kept, so that it is still recognized if it
+ * is received again. Digests are kept in two generations of at most
+ * MAX_CONFIRMED_DIGESTS each, when the current generation fills the previous
+ * one is forgotten.
  */
 public class MessageStateTracker implements Serializable {
 
 	private static final long serialVersionUID = -6169815397029123567L;
 
+	// Number of confirmed digests in each generation
+	public static int MAX_CONFIRMED_DIGESTS = 100_000;
+
 	// Map of every seen message to a set of unconfirmed witnesses to that message
 	private final ConcurrentMap<SignedMessage, Set<Integer>> knownMessages = new ConcurrentHashMap<>();
 
+	// Digests of messages which every entity is confirmed to have seen
+	private Set<ByteBuffer> confirmedMessages = ConcurrentHashMap.newKeySet();
+	private Set<ByteBuffer> previouslyConfirmedMessages = ConcurrentHashMap.newKeySet();
+
 	private final int numEntites;
 	private final int myIndex;
 
@@ -75,6 +94,11 @@ public class MessageStateTracker implements Serializable {
 			throw new IllegalArgumentException("Sender ID is in invalid range. Was: " + senderId);
 		}
 		
+		// Messages already seen by everyone have nothing left to track
+		if (!this.knownMessages.containsKey(signedMessage) && isConfirmedByAll(signedMessage)) {
+			return false;
+		}
+
 		// Ensure we know about the message if it is an acknowledgement
 		if (isAcknowledgement && (!this.knownMessages.containsKey(signedMessage)))
 		{
@@ -95,9 +119,41 @@ public class MessageStateTracker implements Serializable {
 		// Remove ourselves from unconfirmed (we just saw the message)
 		setToUse.remove(this.myIndex);
 
+		// Stop holding the message once everyone has seen it
+		if (setToUse.isEmpty()) {
+			if (this.confirmedMessages.size() >= MAX_CONFIRMED_DIGESTS) {
+				this.previouslyConfirmedMessages = this.confirmedMessages;
+				this.confirmedMessages = ConcurrentHashMap.newKeySet();
+			}
+			this.confirmedMessages.add(digest(signedMessage));
+			this.knownMessages.remove(signedMessage);
+		}
+
 		return isNewlySeenMessage;
 	}
 
+	private boolean isConfirmedByAll(final SignedMessage signedMessage) {
+		if (this.confirmedMessages.isEmpty() && this.previouslyConfirmedMessages.isEmpty()) {
+			return false;
+		}
+		final ByteBuffer digest = digest(signedMessage);
+		return this.confirmedMessages.contains(digest) || this.previouslyConfirmedMessages.contains(digest);
+	}
+
+	private static ByteBuffer digest(final SignedMessage signedMessage) {
+		try {
+			final MessageDigest md = MessageDigest.getInstance(CommonConfiguration.HASH_ALGORITHM);
+			final byte[] messageBytes = signedMessage.getSerializedMessage();
+			md.update(ByteBuffer.allocate(4).putInt(messageBytes.length).array());
+			md.update(messageBytes);
+			md.update(signedMessage.getSignature().getAlgorithm().getBytes(StandardCharsets.UTF_8));
+			md.update(signedMessage.getSignature().getSignatureBytes());
+			return ByteBuffer.wrap(md.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	/**
 	 * Returns a map keyed by messages which have not been seen by everyone. Each
 	 * message is mapped to a set of entity ids of those entities who we have not
@@ -127,7 +183,24 @@ public class MessageStateTracker implements Serializable {
 	 * @return
 	 */
 	public synchronized Set<Integer> determineUnconfirmedWitnesses(final SignedMessage signedMessage) {
-		return this.knownMessages.get(signedMessage);
+		final Set<Integer> unconfirmedSet = this.knownMessages.get(signedMessage);
+		return (unconfirmedSet == null) ? Collections.<Integer>emptySet() : unconfirmedSet;
+	}
+
+	/**
+	 * Returns the number of messages held because some entity is not yet a
+	 * confirmed witness
+	 */
+	public int getKnownMessageCount() {
+		return this.knownMessages.size();
+	}
+
+	/**
+	 * Returns the number of messages seen by everyone, for which only a digest is
+	 * held
+	 */
+	public synchronized int getConfirmedMessageCount() {
+		return this.confirmedMessages.size() + this.previouslyConfirmedMessages.size();
 	}
 
 }
@@ -14,7 +14,9 @@ import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
 
 import com.ibm.pross.common.config.KeyLoader;
+import com.ibm.pross.server.app.avpss.channel.ChannelDispatcher;
 import com.ibm.pross.server.app.avpss.channel.FifoAtomicBroadcastChannel;
+import com.ibm.pross.server.app.avpss.channel.MessageSubscriber;
 import com.ibm.pross.server.channel.ChannelListener;
 import com.ibm.pross.server.channel.ChannelSender;
 import com.ibm.pross.server.channel.bft.BftAtomicBroadcastChannel;
@@ -23,7 +25,7 @@ import com.ibm.pross.server.messages.Message;
 import com.ibm.pross.server.messages.Payload;
 import com.ibm.pross.server.messages.SignedMessage;
 import com.ibm.pross.server.messages.payloads.optbft.CertificationPayload;
-import com.ibm.pross.server.util.AtomicFileOperations;
+import com.ibm.pross.server.util.MessageLog;
 import com.ibm.pross.server.util.MessageSerializer;
 
 /**
@@ -31,12 +33,19 @@ import com.ibm.pross.server.util.MessageSerializer;
  */
 public class ChainBuildingMessageHandler implements ChannelListener, MessageHandler, FifoAtomicBroadcastChannel {
 
-	// Two chains which are maintained
-	private final ConcurrentMap<Long, SignedMessage> bftChain = new ConcurrentHashMap<>();
+	// Number of certified messages held in memory behind the contiguous position,
+	// older messages are read back from the certified message log
+	public static int MAX_RETAINED_CHAIN_MESSAGES = 1000;
+
+	// Two chains which are maintained, the BFT chain is only held in its log
+	private long bftChainLength = 0;
 	private final ConcurrentMap<Long, SignedMessage> optChain = new ConcurrentHashMap<>();
 	private final AtomicInteger contiguousOptMessages = new AtomicInteger(0);
 
-	// Maintain track of votes for various positions
+	// Routes certified messages to the shareholder of each channel
+	private final ChannelDispatcher dispatcher = new ChannelDispatcher(this);
+
+	// Maintain track of votes for positions not yet certified
 	private final ConcurrentMap<Long, ConcurrentMap<SignedMessage, Set<Integer>>> votes = new ConcurrentHashMap<>();
 
 	// Other fields
@@ -49,25 +58,24 @@ public class ChainBuildingMessageHandler implements ChannelListener, MessageHand
 
 	private volatile MessageDeliveryManager messageManager;
 
-	private final File bftMessageFolder;
-	private final File certifiedMessageFolder;
+	// Persisted chains
+	private final MessageLog bftMessageLog;
+	private final MessageLog certifiedMessageLog;
 
 	public ChainBuildingMessageHandler(final int myIndex, final int optQuorum, final KeyLoader keyLoader,
-			final File saveLocation) {
+			final File saveLocation) throws IOException {
 		this.myIndex = myIndex;
 		this.optQuorum = optQuorum;
 		this.keyLoader = keyLoader;
 
 		// Create instance of atomic broadcast channel, register to receive messages
-		this.bftChannel = new BftAtomicBroadcastChannel();
+		this.bftChannel = new BftAtomicBroadcastChannel(new File(saveLocation, "bft-commands"));
 		this.sender = this.bftChannel.link(myIndex - 1);
 		this.bftChannel.register(this);
 
-		// Create folders to track persisted chains
-		this.bftMessageFolder = new File(saveLocation, "bft-chain");
-		this.certifiedMessageFolder = new File(saveLocation, "certified-chain");
-		bftMessageFolder.mkdirs();
-		certifiedMessageFolder.mkdirs();
+		// Open logs to track persisted chains
+		this.bftMessageLog = new MessageLog(new File(saveLocation, "bft-chain"), false);
+		this.certifiedMessageLog = new MessageLog(new File(saveLocation, "certified-chain"), false);
 	}
 
 	public boolean isBftReady() {
@@ -111,6 +119,11 @@ public class ChainBuildingMessageHandler implements ChannelListener, MessageHand
 
 	private synchronized void recordVote(final long messagePosition, final SignedMessage bftMessage,
 			final int voterId) {
+		// Ignore late votes for positions which have already been certified
+		if ((messagePosition + 1 <= this.contiguousOptMessages.get()) || this.optChain.containsKey(messagePosition + 1)) {
+			return;
+		}
+
 		// Get the map for this position
 		this.votes.putIfAbsent(messagePosition, new ConcurrentHashMap<SignedMessage, Set<Integer>>());
 		final ConcurrentMap<SignedMessage, Set<Integer>> positionVotes = this.votes.get(messagePosition);
@@ -128,20 +141,27 @@ public class ChainBuildingMessageHandler implements ChannelListener, MessageHand
 
 				System.out.println("Certified message #" + (messagePosition + 1) + " is available.");
 				if (this.optChain.putIfAbsent(messagePosition + 1, bftMessage) == null) {
+					this.votes.remove(messagePosition);
 
-					// Increment contiguousOptMessages if we are contiguous
-					while (this.optChain.containsKey(new Long(contiguousOptMessages.get() + 1))) {
-						contiguousOptMessages.incrementAndGet();
-					}
-
-					final String msgFileName = String.format("%08d", messagePosition + 1) + ".msg";
-					final File messageFile = new File(this.certifiedMessageFolder, msgFileName);
+					// Persist before the message can be pruned from memory
 					try {
-						AtomicFileOperations.atomicWriteSignedMessage(messageFile, bftMessage);
+						this.certifiedMessageLog.append(messagePosition + 1,
+								MessageSerializer.serializeSignedMessage(bftMessage));
 					} catch (IOException e) {
 						e.printStackTrace();
 						System.exit(-1);
 					}
+
+					// Increment contiguousOptMessages if we are contiguous, routing each newly
+					// contiguous message to the subscribers of its channel
+					while (this.optChain.containsKey(new Long(contiguousOptMessages.get() + 1))) {
+						final long contiguousPosition = contiguousOptMessages.incrementAndGet();
+						this.dispatcher.dispatch(contiguousPosition, this.optChain.get(contiguousPosition).getMessage());
+
+						// Drop the oldest message still held, it remains in the log
+						this.optChain.remove(contiguousPosition - MAX_RETAINED_CHAIN_MESSAGES);
+					}
+
 					this.notifyAll();
 				}
 			}
@@ -172,33 +192,29 @@ public class ChainBuildingMessageHandler implements ChannelListener, MessageHand
 		// System.out.println("Received new BFT message"); //: " /*+ bftMessage*/);
 
 		// Add BFT message to the BFT chain
-		synchronized (this.bftChain) {
-			final long messagePosition = this.bftChain.size();
-			this.bftChain.put(messagePosition, bftMessage);
-
-			final String msgFileName = String.format("%08d", messagePosition + 1) + ".msg";
-			final File messageFile = new File(this.bftMessageFolder, msgFileName);
-			try {
-				AtomicFileOperations.atomicWriteSignedMessage(messageFile, bftMessage);
-			} catch (IOException e) {
-				e.printStackTrace();
-				System.exit(-1);
-			}
+		final long messagePosition = this.bftChainLength++;
+
+		try {
+			// Persist the bytes as received, there is no need to serialize again
+			this.bftMessageLog.append(messagePosition + 1, serializedMessage);
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(-1);
+		}
 
-			// Generate a certification message encapsulating this message along with our
-			// view of its position in the chain
-			final CertificationPayload certificationPayload = new CertificationPayload(messagePosition, bftMessage);
-			final Message publicMessage = new Message("certification", this.myIndex, certificationPayload);
+		// Generate a certification message encapsulating this message along with our
+		// view of its position in the chain
+		final CertificationPayload certificationPayload = new CertificationPayload(messagePosition, bftMessage);
+		final Message publicMessage = new Message("certification", this.myIndex, certificationPayload);
 
-			// Broadcast our signature of this message and its position over point-to-point
-			// links
-			this.messageManager.broadcast(publicMessage);
+		// Broadcast our signature of this message and its position over point-to-point
+		// links
+		this.messageManager.broadcast(publicMessage);
 
-			// Fix this: (can simulate skipping the Certification Layer)
-			// Add message straight to the opt chain and signal
-			// this.optChain.putIfAbsent(new Long(this.optChain.size()), bftMessage);
-			// this.notifyAll();
-		}
+		// Fix this: (can simulate skipping the Certification Layer)
+		// Add message straight to the opt chain and signal
+		// this.optChain.putIfAbsent(new Long(this.optChain.size()), bftMessage);
+		// this.notifyAll();
 	}
 
 	@Override
@@ -222,15 +238,43 @@ public class ChainBuildingMessageHandler implements ChannelListener, MessageHand
 		}
 	}
 
-	public synchronized Message getMessage(final long messageId) {
+	public Message getMessage(final long messageId) {
 		synchronized (this.optChain) {
 			// We don't return the signed message we we have already validated its signature
 			final SignedMessage signedMessage = this.optChain.get(messageId);
-			if (signedMessage == null) {
-				return null; // We might have certified messages in different orders
-			} else {
+			if (signedMessage != null) {
 				return signedMessage.getMessage();
+			} else if (messageId > this.contiguousOptMessages.get()) {
+				return null; // We might have certified messages in different orders
+			}
+		}
+
+		// Certified but no longer held in memory, read it back from the log without
+		// holding up delivery
+		return readCertifiedMessage(messageId);
+	}
+
+	private Message readCertifiedMessage(final long messageId) {
+		try {
+			final byte[] serializedMessage = this.certifiedMessageLog.read(messageId);
+			if (serializedMessage == null) {
+				return null;
 			}
+			return MessageSerializer.deserializeSignedMessage(serializedMessage).getMessage();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
 		}
 	}
+
+	@Override
+	public void subscribe(final String channelName, final MessageSubscriber subscriber) {
+		// Replays from the log without holding the locks under which messages are certified
+		this.dispatcher.subscribe(channelName, subscriber);
+	}
+
+	@Override
+	public void unsubscribe(final String channelName, final MessageSubscriber subscriber) {
+		this.dispatcher.unsubscribe(channelName, subscriber);
+	}
 }
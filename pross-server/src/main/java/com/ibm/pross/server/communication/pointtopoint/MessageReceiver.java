@@ -1,18 +1,21 @@
 package com.ibm.pross.server.communication.pointtopoint;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedInputStream;
 import java.io.DataInputStream;
-import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class MessageReceiver {
 
@@ -27,7 +30,9 @@ public class MessageReceiver {
 	private final int localPort;
 	private final AtomicBoolean started = new AtomicBoolean(false);
 	private final BlockingQueue<byte[]> messageQueue = new LinkedBlockingQueue<>(MESSAGE_QUEUE_CAPACITY);
-	
+	private final Set<Socket> openConnections = ConcurrentHashMap.newKeySet();
+	private final AtomicLong messagesReceived = new AtomicLong(0);
+
 	// Variables created upon start
 	private volatile ServerSocket listeningSocket;
 	private volatile ListeningThread listeningThread;
@@ -50,8 +55,8 @@ public class MessageReceiver {
 		// Only start if we were stopped
 		if (this.started.compareAndSet(false, true)) {
 
-			// Setup accept permits
-			this.permits = new Semaphore(NUM_PROCESSING_THREADS * 2);
+			// Setup accept permits, each connection is long lived and occupies a thread
+			this.permits = new Semaphore(NUM_PROCESSING_THREADS);
 			
 			// Start listening
 			this.listeningSocket = new ServerSocket(this.localPort);
@@ -81,6 +86,15 @@ public class MessageReceiver {
 			} catch (InterruptedException e) {
 				// Ignored
 			}
+			// Close connections so their reading tasks finish
+			for (final Socket connectionSocket : this.openConnections) {
+				try {
+					connectionSocket.close();
+				} catch (IOException e) {
+					// Ignored
+				}
+			}
+
 			// Shutdown executor
 			this.threadPool.shutdown();
 		}
@@ -107,13 +121,20 @@ public class MessageReceiver {
 					printDebug("Accepted connection from: " + connectionSocket.toString());
 
 					// Hand off socket to thread pool
+					openConnections.add(connectionSocket);
 					threadPool.submit(new MessageProcessingTask(connectionSocket));
 				} catch (IOException e) {
-					/* Ignored */}
+					// Return the permit held for the failed accept
+					permits.release();
+				}
 			}
 		}
 	}
 
+	/**
+	 * Reads length-prefixed messages from a connection until the sender closes
+	 * it. Senders keep a connection open and reuse it for many messages.
+	 */
 	public class MessageProcessingTask implements Callable<Void> {
 
 		private final Socket connectionSocket;
@@ -126,50 +147,41 @@ public class MessageReceiver {
 		public Void call() throws Exception {
 
 			try {
-				// Setup input and output streams
-				final DataInputStream inFromClient = new DataInputStream(connectionSocket.getInputStream());
-				final DataOutputStream outToClient = new DataOutputStream(connectionSocket.getOutputStream());
-
-				final ByteArrayOutputStream receivedData;
-
-				// Get message from client
-				final int messageSize = inFromClient.readInt();
-				printDebug("Waiting for: " + messageSize + " more bytes");
-				if (messageSize > MAX_MESSAGE_SIZE) {
-					// Send response
-					outToClient.writeBytes("Invalid length. Max is " + MAX_MESSAGE_SIZE + " bytes\n");
-				} else {
-					receivedData = new ByteArrayOutputStream(messageSize);
-					byte[] messageBuffer = new byte[messageSize];
-					int bytesReceived = 0;
+				// Setup input stream
+				final DataInputStream inFromClient = new DataInputStream(
+						new BufferedInputStream(connectionSocket.getInputStream()));
+
+				while (started.get()) {
 
+					// Get next message from client
+					final int messageSize;
 					try {
-						do {
-							final int received = inFromClient.read(messageBuffer);
-							if (received == -1) {
-								break; // EOF
-							}
-							receivedData.write(messageBuffer, 0, received);
-							bytesReceived += received;
-							printDebug("Received " + bytesReceived + " bytes");
-						} while (bytesReceived < messageSize);
-					} catch (IOException e) {
-						printDebug("Exception on socket: " + connectionSocket + " " + e.getMessage());
+						messageSize = inFromClient.readInt();
+					} catch (EOFException e) {
+						break; // Sender closed the connection
 					}
 
-					if (bytesReceived == messageSize) {
-						printDebug("Received complete message: " + new String(receivedData.toByteArray()));
-						messageQueue.put(receivedData.toByteArray());
-					} else {
-						printDebug("Received partial message: " + new String(receivedData.toByteArray()));
+					printDebug("Waiting for: " + messageSize + " more bytes");
+					if ((messageSize < 0) || (messageSize > MAX_MESSAGE_SIZE)) {
+						// Framing can't be recovered, drop the connection
+						printDebug("Invalid length " + messageSize + " from " + connectionSocket);
+						break;
 					}
 
-					outToClient.writeBytes("Message received\n");
-				}
+					final byte[] receivedData = new byte[messageSize];
+					inFromClient.readFully(receivedData);
+					printDebug("Received complete message: " + new String(receivedData));
 
-				outToClient.flush();
-				outToClient.close();
+					// Blocks when the queue is full, pushing back on the sender through TCP
+					messageQueue.put(receivedData);
+					messagesReceived.incrementAndGet();
+				}
+			} catch (IOException e) {
+				printDebug("Exception on socket: " + connectionSocket + " " + e.getMessage());
 			} finally {
+				openConnections.remove(connectionSocket);
+				connectionSocket.close();
+
 				// Allow new connections to be accepted
 				permits.release();
 			}
@@ -179,6 +191,14 @@ public class MessageReceiver {
 		}
 	}
 
+	public long getMessagesReceived() {
+		return this.messagesReceived.get();
+	}
+
+	public int getOpenConnections() {
+		return this.openConnections.size();
+	}
+
 	private void printDebug(final String message) {
 		if (DEBUG_MODE) {
 			System.out.println(message);
@@ -1,65 +1,167 @@
 package com.ibm.pross.server.communication.pointtopoint;
 
+import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketAddress;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Equivalent to a "FairLossLink". Will attempt to deliver a message with a non-zero probability of success over TCP/IP.
+ *
+ * A single long-lived connection is kept to the remote server. Messages are queued and written by a dedicated thread,
+ * which coalesces whatever is queued into a single flush. If the connection fails it is re-established with an
+ * increasing delay. When the queue is full new messages are dropped, which is permitted for a fair-loss link since the
+ * stubborn delivery layer above will resend them.
  */
 public class MessageSender {
 
 	static final int TIMEOUT = 30_000; // 30 seconds;
 
+	// Close idle connections before the receiver's read timeout would
+	static final int IDLE_TIMEOUT = 20_000; // 20 seconds
+
+	static final int MAX_QUEUED_MESSAGES = 10_000;
+	static final int MAX_COALESCED_MESSAGES = 256;
+	static final int MIN_RECONNECT_DELAY = 100; // 100 ms
+	static final int MAX_RECONNECT_DELAY = 5_000; // 5 seconds
+
 	private final String remoteHost;
 	private final int remotePort;
 
-	public static ExecutorService FIXED_THREAD_POOL = Executors.newFixedThreadPool(50);
-	
+	private final BlockingQueue<byte[]> outQueue = new LinkedBlockingQueue<>(MAX_QUEUED_MESSAGES);
+	private final Thread writerThread;
+
+	// Metrics
+	private final AtomicLong messagesSent = new AtomicLong(0);
+	private final AtomicLong messagesDropped = new AtomicLong(0);
+	private final AtomicLong connectionsOpened = new AtomicLong(0);
+
 	public MessageSender(final String remoteHost, final int remotePort) {
 		this.remoteHost = remoteHost;
 		this.remotePort = remotePort;
+
+		this.writerThread = new Thread(new WriterTask(), "Sender-" + remoteHost + ":" + remotePort);
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
 	}
 
 	/**
 	 * Attempt to connect to the server to deliver the message content
-	 * 
+	 *
 	 * @param messageContent
 	 */
 	public void attemptMessageDelivery(final byte[] message) {
+		// Sending is done by the writer thread as it may block or timeout
+		if (!this.outQueue.offer(message)) {
+			this.messagesDropped.incrementAndGet();
+		}
+	}
 
-		// Sending is done in a thread as it may timeout
-		FIXED_THREAD_POOL.execute(new Runnable() {
-			@Override
-			public void run() {
+	public int getQueuedMessages() {
+		return this.outQueue.size();
+	}
+
+	public long getMessagesSent() {
+		return this.messagesSent.get();
+	}
+
+	public long getMessagesDropped() {
+		return this.messagesDropped.get();
+	}
+
+	public long getConnectionsOpened() {
+		return this.connectionsOpened.get();
+	}
+
+	private class WriterTask implements Runnable {
+
+		private Socket clientSocket = null;
+		private DataOutputStream outToServer = null;
+		private long reconnectDelay = MIN_RECONNECT_DELAY;
+
+		@Override
+		public void run() {
+			final List<byte[]> batch = new ArrayList<>(MAX_COALESCED_MESSAGES);
+			while (true) {
 				try {
-					// Connect to server
-					final Socket clientSocket = new Socket();
-					clientSocket.setTcpNoDelay(true);
-					clientSocket.setSoTimeout(TIMEOUT);
+					// Wait for something to send, closing the connection if we stay idle
+					final byte[] first = outQueue.poll(IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+					if (first == null) {
+						disconnect();
+						continue;
+					}
+
+					// Coalesce everything else that is waiting into the same write
+					batch.add(first);
+					outQueue.drainTo(batch, MAX_COALESCED_MESSAGES - 1);
+
+					try {
+						connect();
+						for (final byte[] message : batch) {
+							outToServer.writeInt(message.length);
+							outToServer.write(message);
+						}
+						outToServer.flush();
+						messagesSent.addAndGet(batch.size());
+						reconnectDelay = MIN_RECONNECT_DELAY;
+					} catch (IOException e) {
+						// Messages in this batch are lost, back off before reconnecting
+						messagesDropped.addAndGet(batch.size());
+						disconnect();
+						Thread.sleep(reconnectDelay);
+						reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY);
+					} finally {
+						batch.clear();
+					}
+				} catch (InterruptedException e) {
+					disconnect();
+					return;
+				}
+			}
+		}
 
-					final SocketAddress address = new InetSocketAddress(remoteHost, remotePort);
-					clientSocket.connect(address, TIMEOUT);
+		private void connect() throws IOException {
+			if (this.clientSocket == null) {
+				// Connect to server
+				final Socket socket = new Socket();
+				socket.setTcpNoDelay(true);
+				socket.setSoTimeout(TIMEOUT);
+				socket.setKeepAlive(true);
 
-					// Setup input and output streams
-					final DataOutputStream outToServer = new DataOutputStream(clientSocket.getOutputStream());
+				final SocketAddress address = new InetSocketAddress(remoteHost, remotePort);
+				try {
+					socket.connect(address, TIMEOUT);
+				} catch (IOException e) {
+					socket.close();
+					throw e;
+				}
 
-					// Send message to server
-					outToServer.writeInt(message.length);
-					outToServer.write(message);
-					outToServer.flush();
+				// Setup output stream
+				this.outToServer = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+				this.clientSocket = socket;
+				connectionsOpened.incrementAndGet();
+			}
+		}
 
-					// Disconnect
-					clientSocket.close();
+		private void disconnect() {
+			if (this.clientSocket != null) {
+				try {
+					this.clientSocket.close();
 				} catch (IOException e) {
 					// Ignored
 				}
+				this.clientSocket = null;
+				this.outToServer = null;
 			}
-		});
+		}
 	}
 
 }
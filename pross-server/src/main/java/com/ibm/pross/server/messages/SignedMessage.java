@@ -10,7 +10,9 @@ import java.io.Serializable;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 
+import com.ibm.pross.server.util.MessageSerializer;
 import com.ibm.pross.server.util.MessageSigningUtil;
+import com.ibm.pross.server.util.VerifiedSignatureCache;
 
 /**
  * A signed message is a message object (either public or a private message)
@@ -26,9 +28,15 @@ public class SignedMessage implements Serializable {
 	// Privately sent message to a single recipient with index j
 	// m = (m' = (i, j, ENC_j(m)), SIG_i(m'))
 
-	private final Message message;
+	// The message is carried in the serialized form which was signed, so a
+	// received message keeps the exact bytes its signature is checked against
+	// and is relayed without being serialized again
+	private final byte[] serializedMessage;
 	private final MessageSignature signature;
 
+	// Decoded from the serialized form when first needed
+	private transient volatile Message message;
+
 	/**
 	 * Constructor which takes a message and computes a message signature with
 	 * the sender private key
@@ -37,7 +45,13 @@ public class SignedMessage implements Serializable {
 	 * @param senderSigningKey
 	 */
 	public SignedMessage(final Message message, final PrivateKey senderSigningKey) {
-		this(message, MessageSigningUtil.createSignature(message, senderSigningKey));
+		this(message, MessageSigningUtil.toSerializedBytes(message), senderSigningKey);
+	}
+
+	private SignedMessage(final Message message, final byte[] serializedMessage, final PrivateKey senderSigningKey) {
+		this.message = message;
+		this.serializedMessage = serializedMessage;
+		this.signature = MessageSigningUtil.createSignature(serializedMessage, senderSigningKey);
 	}
 
 	/**
@@ -50,11 +64,17 @@ public class SignedMessage implements Serializable {
 	 */
 	public SignedMessage(final Message message, final MessageSignature signature) {
 		this.message = message;
+		this.serializedMessage = MessageSigningUtil.toSerializedBytes(message);
 		this.signature = signature;
 	}
 
 	public Message getMessage() {
-		return message;
+		Message decoded = this.message;
+		if (decoded == null) {
+			decoded = MessageSerializer.deserializeMessage(this.serializedMessage);
+			this.message = decoded;
+		}
+		return decoded;
 	}
 
 	public MessageSignature getSignature() {
@@ -69,18 +89,29 @@ public class SignedMessage implements Serializable {
 	 * @return
 	 */
 	public boolean isSignatureValid(final PublicKey senderPublicKey) {
-		return MessageSigningUtil.verifySignature((Message) this.message, this.signature, senderPublicKey);
+		return VerifiedSignatureCache.verifySignature(getSerializedMessage(), this.signature, senderPublicKey);
+	}
+
+	/**
+	 * Returns the serialized form of the message which was signed, as it was
+	 * created or received, so it is not rebuilt for each signature check
+	 * 
+	 * @return
+	 */
+	public byte[] getSerializedMessage() {
+		return this.serializedMessage;
 	}
 
 	@Override
 	public String toString() {
-		return "SignedMessage [message=" + message + ", signature=" + signature + "]";
+		return "SignedMessage [message=" + getMessage() + ", signature=" + signature + "]";
 	}
 
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
+		final Message message = getMessage();
 		result = prime * result + ((message == null) ? 0 : message.hashCode());
 		result = prime * result + ((signature == null) ? 0 : signature.hashCode());
 		return result;
@@ -95,10 +126,11 @@ public class SignedMessage implements Serializable {
 		if (getClass() != obj.getClass())
 			return false;
 		SignedMessage other = (SignedMessage) obj;
+		final Message message = getMessage();
 		if (message == null) {
-			if (other.message != null)
+			if (other.getMessage() != null)
 				return false;
-		} else if (!message.equals(other.message))
+		} else if (!message.equals(other.getMessage()))
 			return false;
 		if (signature == null) {
 			if (other.signature != null)
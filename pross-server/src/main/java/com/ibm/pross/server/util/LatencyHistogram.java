@@ -0,0 +1,76 @@
+package com.ibm.pross.server.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies with power-of-two millisecond buckets.
+ * Bucket i counts samples in the range [2^(i-1), 2^i) milliseconds, with
+ * bucket zero counting everything below one millisecond.
+ */
+public class LatencyHistogram {
+
+	// Upper bucket covers everything from ~9 minutes on
+	public static final int NUM_BUCKETS = 20;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+	private final AtomicLong count = new AtomicLong(0);
+	private final AtomicLong totalNanos = new AtomicLong(0);
+	private final AtomicLong maxNanos = new AtomicLong(0);
+
+	public void record(final long latencyNanos) {
+		final long millis = Math.max(0, latencyNanos / 1_000_000);
+		final int bucket = Math.min(NUM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis));
+		this.buckets.incrementAndGet(bucket);
+		this.count.incrementAndGet();
+		this.totalNanos.addAndGet(latencyNanos);
+
+		long currentMax;
+		do {
+			currentMax = this.maxNanos.get();
+		} while ((latencyNanos > currentMax) && !this.maxNanos.compareAndSet(currentMax, latencyNanos));
+	}
+
+	public long getCount() {
+		return this.count.get();
+	}
+
+	public double getAverageMillis() {
+		final long samples = this.count.get();
+		return (samples == 0) ? 0 : (this.totalNanos.get() / (double) samples) / 1_000_000.0;
+	}
+
+	public double getMaxMillis() {
+		return this.maxNanos.get() / 1_000_000.0;
+	}
+
+	/**
+	 * Returns an upper bound (in milliseconds) on the latency of the given
+	 * fraction of samples, for example 0.99 for the 99th percentile
+	 *
+	 * @param percentile
+	 * @return
+	 */
+	public long getPercentileMillis(final double percentile) {
+		final long samples = this.count.get();
+		if (samples == 0) {
+			return 0;
+		}
+		final long threshold = (long) Math.ceil(samples * percentile);
+		long seen = 0;
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			seen += this.buckets.get(i);
+			if (seen >= threshold) {
+				return (1L << i);
+			}
+		}
+		return (1L << (NUM_BUCKETS - 1));
+	}
+
+	@Override
+	public String toString() {
+		return String.format("count=%d avg=%.2fms p50<=%dms p99<=%dms max=%.2fms", getCount(), getAverageMillis(),
+				getPercentileMillis(0.50), getPercentileMillis(0.99), getMaxMillis());
+	}
+
+}
@@ -0,0 +1,532 @@
+package com.ibm.pross.server.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import com.ibm.pross.common.util.concurrent.NamedThreadFactory;
+
+/**
+ * Append-only log of serialized messages stored as a sequence of segment
+ * files, each holding many checksummed records.
+ *
+ * <pre>
+ * record = length (int) || position (long) || crc32(position || data) (int) || data
+ * </pre>
+ *
+ * Each record is stored against its position in a chain. Positions need not
+ * be appended in order, the index maps each position to the segment and
+ * offset of its latest record, so a position written again (such as after a
+ * restart) reads back the new data. Concurrent appends are group committed:
+ * the thread which takes the write lock writes every pending record with a
+ * single write and, depending on SYNC_POLICY, a single force to storage.
+ *
+ * If writing a group fails, every append in that group and every later
+ * append fails with an IOException. A partially written group would leave
+ * the log unreadable past that point, so nothing more is written to it.
+ *
+ * When opened for writing, a torn record at the end of the last segment (from
+ * a crash during a write) is truncated. A read only log tolerates this and
+ * ignores the partial record, so it is safe to inspect the log of a running
+ * server.
+ */
+public class MessageLog implements Closeable {
+
+	public enum SyncPolicy {
+		// Leave flushing to the operating system
+		NONE,
+		// Force to storage every SYNC_INTERVAL_MS
+		INTERVAL,
+		// Force to storage before an append returns
+		ALWAYS
+	}
+
+	public static long SEGMENT_SIZE = 64 * 1024 * 1024; // 64 MB
+	public static SyncPolicy SYNC_POLICY = SyncPolicy.NONE;
+	public static long SYNC_INTERVAL_MS = 1_000;
+
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static final int HEADER_LENGTH = Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+	// Syncs every log opened with the INTERVAL policy
+	private final static ScheduledExecutorService syncScheduler = Executors
+			.newSingleThreadScheduledExecutor(new NamedThreadFactory("message-log-sync"));
+
+	private final File directory;
+	private final boolean readOnly;
+
+	// Segments by sequence number, and the location of each position's record
+	private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+	private final ConcurrentSkipListMap<Long, Location> index = new ConcurrentSkipListMap<>();
+
+	// Records waiting to be written (guarded by pendingLock)
+	private final Object pendingLock = new Object();
+	private List<Record> pendingRecords = new ArrayList<>();
+	private long appendedCount = 0;
+
+	// Segment being appended to (guarded by writeLock)
+	private final Object writeLock = new Object();
+	private Segment activeSegment;
+	private volatile long committedCount = 0;
+	private volatile boolean unsynced = false;
+
+	// The first failed write, and the number of the first append it covered
+	private volatile IOException failure = null;
+	private long failedFrom = Long.MAX_VALUE;
+
+	private final ScheduledFuture<?> scheduledSync;
+
+	/**
+	 * Opens or creates the log held in the given directory
+	 *
+	 * @param directory
+	 * @param readOnly
+	 *            If true, the log may only be read and is never modified
+	 * @throws IOException
+	 *             If a segment before the last one contains a corrupt record
+	 */
+	public MessageLog(final File directory, final boolean readOnly) throws IOException {
+		this.directory = directory;
+		this.readOnly = readOnly;
+
+		if (!readOnly) {
+			directory.mkdirs();
+		}
+
+		// Rebuild index from existing segments
+		final File[] segmentFiles = listSegmentFiles(directory);
+		for (int i = 0; i < segmentFiles.length; i++) {
+			final long sequence = Long.parseLong(segmentFiles[i].getName().replace(SEGMENT_SUFFIX, ""));
+			final Segment segment = new Segment(sequence, segmentFiles[i], readOnly);
+			this.segments.put(sequence, segment);
+			recover(segment, (i == (segmentFiles.length - 1)));
+		}
+
+		if (!readOnly) {
+			this.activeSegment = this.segments.isEmpty() ? openSegment(0) : this.segments.lastEntry().getValue();
+		}
+
+		if (!readOnly && (SYNC_POLICY == SyncPolicy.INTERVAL)) {
+			this.scheduledSync = syncScheduler.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						sync();
+					} catch (IOException e) {
+						System.err.println("Failed to sync message log " + directory + ": " + e.getMessage());
+					}
+				}
+			}, SYNC_INTERVAL_MS, SYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+		} else {
+			this.scheduledSync = null;
+		}
+	}
+
+	/**
+	 * Returns true if the directory contains any log segments
+	 *
+	 * @param directory
+	 * @return
+	 */
+	public static boolean exists(final File directory) {
+		return listSegmentFiles(directory).length > 0;
+	}
+
+	private static File[] listSegmentFiles(final File directory) {
+		final File[] segmentFiles = directory.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(final File file) {
+				return file.isFile() && file.getName().matches("[0-9]{20}\\" + SEGMENT_SUFFIX);
+			}
+		});
+		if (segmentFiles == null) {
+			return new File[0];
+		}
+		Arrays.sort(segmentFiles);
+		return segmentFiles;
+	}
+
+	/**
+	 * Scans the records of a segment adding them to the index
+	 */
+	private void recover(final Segment segment, final boolean isLastSegment) throws IOException {
+		final long size = segment.readChannel.size();
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+
+		long offset = 0;
+		while (offset < size) {
+			header.clear();
+			final boolean complete = readFully(segment.readChannel, header, offset);
+			header.flip();
+
+			Record record = null;
+			if (complete) {
+				final int length = header.getInt();
+				final long position = header.getLong();
+				final int checksum = header.getInt();
+				if ((length >= 0) && (length <= (size - offset - HEADER_LENGTH))) {
+					final ByteBuffer data = ByteBuffer.allocate(length);
+					readFully(segment.readChannel, data, offset + HEADER_LENGTH);
+					final Record candidate = new Record(position, data.array());
+					if (candidate.checksum() == checksum) {
+						record = candidate;
+					}
+				}
+			}
+
+			if (record == null) {
+				if (!isLastSegment) {
+					throw new IOException("Corrupt record in " + segment.file + " at offset " + offset);
+				}
+				if (!this.readOnly) {
+					System.err.println("Truncating partial record in " + segment.file + " at offset " + offset);
+					segment.writeChannel.truncate(offset);
+				}
+				break;
+			}
+
+			// A later record for a position replaces an earlier one
+			this.index.put(record.position, new Location(segment, offset + HEADER_LENGTH, record.data.length));
+			offset += HEADER_LENGTH + record.data.length;
+		}
+		segment.length = offset;
+	}
+
+	private Segment openSegment(final long sequence) throws IOException {
+		final File file = new File(this.directory, String.format("%020d", sequence) + SEGMENT_SUFFIX);
+		final Segment segment = new Segment(sequence, file, false);
+		this.segments.put(sequence, segment);
+		return segment;
+	}
+
+	/**
+	 * Appends the data for a position to the log. Returns once the record has
+	 * been written (and forced to storage if SYNC_POLICY is ALWAYS).
+	 *
+	 * @param position
+	 * @param data
+	 * @throws IOException
+	 *             If the record could not be written, or an earlier write failed
+	 */
+	public void append(final long position, final byte[] data) throws IOException {
+		if (this.readOnly) {
+			throw new IllegalStateException("Message log is read only");
+		}
+
+		checkNotFailed();
+
+		final Record record = new Record(position, data);
+		final long appendNumber;
+		synchronized (this.pendingLock) {
+			this.pendingRecords.add(record);
+			appendNumber = ++this.appendedCount;
+		}
+
+		synchronized (this.writeLock) {
+			// Our record may have been in a group which failed, or come after one
+			if (appendNumber >= this.failedFrom) {
+				checkNotFailed();
+			}
+
+			// Another thread may have already written our record as part of its group
+			if (this.committedCount >= appendNumber) {
+				return;
+			}
+
+			final List<Record> group;
+			final long groupEnd;
+			synchronized (this.pendingLock) {
+				group = this.pendingRecords;
+				groupEnd = this.appendedCount;
+				this.pendingRecords = new ArrayList<>();
+			}
+
+			try {
+				writeGroup(group);
+
+				if (SYNC_POLICY == SyncPolicy.ALWAYS) {
+					this.activeSegment.writeChannel.force(false);
+				} else {
+					this.unsynced = true;
+				}
+			} catch (IOException e) {
+				// Fail every append in this group, the others are waiting for the lock
+				this.failedFrom = this.committedCount + 1;
+				this.failure = e;
+				this.committedCount = groupEnd;
+				throw e;
+			}
+
+			this.committedCount = groupEnd;
+		}
+	}
+
+	private void checkNotFailed() throws IOException {
+		final IOException failure = this.failure;
+		if (failure != null) {
+			throw new IOException("Message log " + this.directory + " failed: " + failure.getMessage(), failure);
+		}
+	}
+
+	/**
+	 * Writes records to the active segment, rolling to a new segment when it
+	 * is full. Must be called while holding the write lock.
+	 */
+	private void writeGroup(final List<Record> group) throws IOException {
+		final List<ByteBuffer> buffers = new ArrayList<>(group.size() * 2);
+		final List<Record> written = new ArrayList<>(group.size());
+		long groupLength = 0;
+
+		for (final Record record : group) {
+			final long recordLength = HEADER_LENGTH + record.data.length;
+			if (!written.isEmpty() && (this.activeSegment.length + groupLength + recordLength > SEGMENT_SIZE)) {
+				flushBuffers(buffers, written, groupLength);
+				buffers.clear();
+				written.clear();
+				groupLength = 0;
+			}
+			if ((this.activeSegment.length > 0) && (this.activeSegment.length + recordLength > SEGMENT_SIZE)) {
+				rollSegment();
+			}
+
+			final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+			header.putInt(record.data.length);
+			header.putLong(record.position);
+			header.putInt(record.checksum());
+			header.flip();
+			buffers.add(header);
+			buffers.add(ByteBuffer.wrap(record.data));
+			written.add(record);
+			groupLength += recordLength;
+		}
+
+		flushBuffers(buffers, written, groupLength);
+	}
+
+	private void flushBuffers(final List<ByteBuffer> buffers, final List<Record> written, final long groupLength)
+			throws IOException {
+		if (written.isEmpty()) {
+			return;
+		}
+
+		final FileChannel channel = this.activeSegment.writeChannel;
+		final ByteBuffer[] bufferArray = buffers.toArray(new ByteBuffer[buffers.size()]);
+		long remaining = groupLength;
+		while (remaining > 0) {
+			remaining -= channel.write(bufferArray);
+		}
+
+		// Records become visible to readers only after they are written
+		long offset = this.activeSegment.length;
+		for (final Record record : written) {
+			this.index.put(record.position,
+					new Location(this.activeSegment, offset + HEADER_LENGTH, record.data.length));
+			offset += HEADER_LENGTH + record.data.length;
+		}
+		this.activeSegment.length = offset;
+	}
+
+	private void rollSegment() throws IOException {
+		// Make the completed segment durable before moving on
+		if (SYNC_POLICY != SyncPolicy.NONE) {
+			this.activeSegment.writeChannel.force(false);
+		}
+		this.activeSegment.writeChannel.close();
+		this.activeSegment = openSegment(this.activeSegment.sequence + 1);
+	}
+
+	/**
+	 * Forces any appended records to storage
+	 *
+	 * @throws IOException
+	 */
+	public void sync() throws IOException {
+		if (!this.readOnly && this.unsynced) {
+			synchronized (this.writeLock) {
+				this.unsynced = false;
+				this.activeSegment.writeChannel.force(false);
+			}
+		}
+	}
+
+	/**
+	 * Returns the data stored for a position, or null if there is none
+	 *
+	 * @param position
+	 * @return
+	 * @throws IOException
+	 */
+	public byte[] read(final long position) throws IOException {
+		final Location location = this.index.get(position);
+		if (location == null) {
+			return null;
+		}
+
+		final ByteBuffer data = ByteBuffer.allocate(location.length);
+		if (!readFully(location.segment.readChannel, data, location.offset)) {
+			throw new IOException("Record for position " + position + " is truncated");
+		}
+		return data.array();
+	}
+
+	/**
+	 * Returns true if data is stored for the position
+	 *
+	 * @param position
+	 * @return
+	 */
+	public boolean contains(final long position) {
+		return this.index.containsKey(position);
+	}
+
+	/**
+	 * Returns the stored positions in ascending order. Each position appears
+	 * once, even if it was appended more than once.
+	 *
+	 * @return
+	 */
+	public NavigableSet<Long> getPositions() {
+		return Collections.unmodifiableNavigableSet(this.index.keySet());
+	}
+
+	/**
+	 * Returns the data of every position in position order. Only the latest
+	 * record for each position is returned, and partial records are ignored.
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	public TreeMap<Long, byte[]> readAll() throws IOException {
+		final TreeMap<Long, byte[]> records = new TreeMap<>();
+		for (final Entry<Long, Location> entry : this.index.entrySet()) {
+			final Location location = entry.getValue();
+			final ByteBuffer data = ByteBuffer.allocate(location.length);
+			if (!readFully(location.segment.readChannel, data, location.offset)) {
+				throw new IOException("Record for position " + entry.getKey() + " is truncated");
+			}
+			records.put(entry.getKey(), data.array());
+		}
+		return records;
+	}
+
+	public int getRecordCount() {
+		return this.index.size();
+	}
+
+	public int getSegmentCount() {
+		return this.segments.size();
+	}
+
+	public File getDirectory() {
+		return this.directory;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.scheduledSync != null) {
+			this.scheduledSync.cancel(false);
+		}
+		synchronized (this.writeLock) {
+			if (!this.readOnly && (this.failure == null) && (SYNC_POLICY != SyncPolicy.NONE)) {
+				this.activeSegment.writeChannel.force(false);
+			}
+			for (final Segment segment : this.segments.values()) {
+				segment.close();
+			}
+		}
+	}
+
+	private static boolean readFully(final FileChannel channel, final ByteBuffer buffer, final long offset)
+			throws IOException {
+		long readPosition = offset;
+		while (buffer.hasRemaining()) {
+			final int read = channel.read(buffer, readPosition);
+			if (read < 0) {
+				return false;
+			}
+			readPosition += read;
+		}
+		return true;
+	}
+
+	private static class Segment {
+
+		private final long sequence;
+		private final File file;
+		private final FileChannel readChannel;
+		private final FileChannel writeChannel;
+
+		// Length of complete records (guarded by the log's write lock)
+		private long length = 0;
+
+		public Segment(final long sequence, final File file, final boolean readOnly) throws IOException {
+			this.sequence = sequence;
+			this.file = file;
+			if (readOnly) {
+				this.writeChannel = null;
+			} else {
+				this.writeChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+						StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+			}
+			this.readChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		}
+
+		public void close() throws IOException {
+			if ((this.writeChannel != null) && this.writeChannel.isOpen()) {
+				this.writeChannel.close();
+			}
+			this.readChannel.close();
+		}
+	}
+
+	private static class Location {
+
+		private final Segment segment;
+		private final long offset;
+		private final int length;
+
+		public Location(final Segment segment, final long offset, final int length) {
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	private static class Record {
+
+		private final long position;
+		private final byte[] data;
+
+		public Record(final long position, final byte[] data) {
+			this.position = position;
+			this.data = data;
+		}
+
+		public int checksum() {
+			final CRC32 crc = new CRC32();
+			final ByteBuffer positionBytes = ByteBuffer.allocate(Long.BYTES);
+			positionBytes.putLong(this.position);
+			crc.update(positionBytes.array());
+			crc.update(this.data);
+			return (int) crc.getValue();
+		}
+	}
+
+}
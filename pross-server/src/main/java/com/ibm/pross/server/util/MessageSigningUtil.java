@@ -37,11 +37,15 @@ public class MessageSigningUtil {
 
 
 	public static MessageSignature createSignature(final Serializable message, final PrivateKey senderSigningKey) {
+		// Serialize message
+		return createSignature(toSerializedBytes(message), senderSigningKey);
+	}
+
+	public static MessageSignature createSignature(final byte[] messageBytes, final PrivateKey senderSigningKey) {
 		// Determine algorithm to sign with
 		final String defaultAlgorithm = SigningUtil.getSigningAlgorithm(senderSigningKey);
 
-		// Serialize message
-		final byte[] messageBytes = toSerializedBytes(message);
+		// Sign the serialized message
 		final byte[] signatureBytes = SigningUtil.sign(messageBytes, senderSigningKey, defaultAlgorithm);
 
 		// Return a Message signature containing the signature and algorithm
@@ -0,0 +1,138 @@
+package com.ibm.pross.server.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ibm.pross.common.config.CommonConfiguration;
+import com.ibm.pross.common.util.SigningUtil;
+import com.ibm.pross.server.messages.MessageSignature;
+
+/**
+ * A bounded cache of signatures which have already been verified.
+ * 
+ * The same signed message is received once from each peer which relays it, and
+ * again when it is delivered by the BFT layer. Each entry records that a
+ * signer's signature over a message was found to be valid, so later copies are
+ * accepted after computing a digest instead of verifying the signature again.
+ * The digest covers the signature bytes as well as the message, so a copy
+ * carrying a different signature is still verified. Only valid signatures are
+ * cached, and the oldest entries are evicted first.
+ */
+public class VerifiedSignatureCache {
+
+	public static int MAX_CACHED_SIGNATURES = 100_000;
+
+	private static final Set<CacheKey> verified = ConcurrentHashMap.newKeySet();
+	private static final Queue<CacheKey> insertionOrder = new ConcurrentLinkedQueue<>();
+
+	// Statistics
+	private static final AtomicLong cacheHits = new AtomicLong(0);
+	private static final AtomicLong verifications = new AtomicLong(0);
+
+	/**
+	 * Returns true if the signature is valid for the given serialized message,
+	 * verifying it only if it has not been verified before
+	 * 
+	 * @param messageBytes
+	 *            The serialized message which was signed
+	 * @param signature
+	 *            The accompanying signature of the message sender
+	 * @param senderPublicKey
+	 *            The public key of the sender
+	 * @return
+	 */
+	public static boolean verifySignature(final byte[] messageBytes, final MessageSignature signature,
+			final PublicKey senderPublicKey) {
+
+		final CacheKey key = new CacheKey(digest(messageBytes, signature), senderPublicKey);
+		if (verified.contains(key)) {
+			cacheHits.incrementAndGet();
+			return true;
+		}
+
+		verifications.incrementAndGet();
+		final boolean isValid = SigningUtil.verify(messageBytes, signature.getSignatureBytes(), senderPublicKey,
+				signature.getAlgorithm());
+		if (isValid && verified.add(key)) {
+			insertionOrder.add(key);
+
+			// Evict the oldest entries once the bound is exceeded
+			while (verified.size() > MAX_CACHED_SIGNATURES) {
+				final CacheKey oldest = insertionOrder.poll();
+				if (oldest == null) {
+					break;
+				}
+				verified.remove(oldest);
+			}
+		}
+		return isValid;
+	}
+
+	public static long getCacheHits() {
+		return cacheHits.get();
+	}
+
+	public static long getVerifications() {
+		return verifications.get();
+	}
+
+	public static int size() {
+		return verified.size();
+	}
+
+	public static void clear() {
+		verified.clear();
+		insertionOrder.clear();
+	}
+
+	private static byte[] digest(final byte[] messageBytes, final MessageSignature signature) {
+		try {
+			final MessageDigest md = MessageDigest.getInstance(CommonConfiguration.HASH_ALGORITHM);
+			md.update(ByteBuffer.allocate(4).putInt(messageBytes.length).array());
+			md.update(messageBytes);
+			md.update(signature.getAlgorithm().getBytes(StandardCharsets.UTF_8));
+			md.update(signature.getSignatureBytes());
+			return md.digest();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Identifies a signature by the digest of what was signed and the signer
+	 */
+	private static class CacheKey {
+
+		private final ByteBuffer digest;
+		private final PublicKey signer;
+
+		public CacheKey(final byte[] digest, final PublicKey signer) {
+			this.digest = ByteBuffer.wrap(digest);
+			this.signer = signer;
+		}
+
+		@Override
+		public int hashCode() {
+			return (31 * digest.hashCode()) + signer.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof CacheKey))
+				return false;
+			final CacheKey other = (CacheKey) obj;
+			return digest.equals(other.digest) && signer.equals(other.signer);
+		}
+	}
+
+}
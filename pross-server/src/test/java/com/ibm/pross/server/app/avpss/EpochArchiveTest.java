@@ -0,0 +1,65 @@
+package com.ibm.pross.server.app.avpss;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.pross.common.config.CommonConfiguration;
+import com.ibm.pross.common.util.crypto.ecc.EcPoint;
+
+public class EpochArchiveTest {
+
+	private File directory;
+
+	@Before
+	public void setup() throws IOException {
+		this.directory = Files.createTempDirectory("epoch-archive").toFile();
+	}
+
+	@After
+	public void cleanup() {
+		final File[] files = this.directory.listFiles();
+		if (files != null) {
+			for (final File file : files) {
+				file.delete();
+			}
+		}
+		this.directory.delete();
+	}
+
+	@Test
+	public void testWriteAndRead() throws IOException {
+		final int n = 4;
+		final int k = 2;
+		final SharingState sharingState = new SharingState(n, k, 7);
+		for (int i = 0; i <= n; i++) {
+			sharingState.getSharePublicKeys()[i] = CommonConfiguration.CURVE.multiply(CommonConfiguration.g,
+					BigInteger.valueOf(i + 1));
+		}
+		sharingState.getFeldmanValues()[0] = CommonConfiguration.g;
+		sharingState.getFeldmanValues()[1] = EcPoint.pointAtInfinity;
+		sharingState.setCreationTime(new Date(1234567890L));
+
+		final EpochArchive archive = new EpochArchive(this.directory);
+		Assert.assertNull(archive.read(7, n, k));
+		archive.write(sharingState);
+		Assert.assertTrue(archive.contains(7));
+		Assert.assertEquals(1, archive.getArchivedEpochCount());
+
+		final SharingState archivedState = archive.read(7, n, k);
+		Assert.assertEquals(7, archivedState.getEpochNumber());
+		Assert.assertEquals(sharingState.getCreationTime(), archivedState.getCreationTime());
+		Assert.assertArrayEquals(sharingState.getSharePublicKeys(), archivedState.getSharePublicKeys());
+		Assert.assertArrayEquals(sharingState.getFeldmanValues(), archivedState.getFeldmanValues());
+		Assert.assertNull(archivedState.getShare1());
+		Assert.assertTrue(archivedState.isTranscriptDiscarded());
+	}
+
+}
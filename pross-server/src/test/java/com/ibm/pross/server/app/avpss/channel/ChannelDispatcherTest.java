@@ -0,0 +1,77 @@
+package com.ibm.pross.server.app.avpss.channel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.pross.server.messages.Message;
+
+public class ChannelDispatcherTest {
+
+	private static class RecordingSubscriber implements MessageSubscriber {
+
+		private final List<Integer> senders = new ArrayList<>();
+
+		@Override
+		public synchronized void messageAvailable(final Message message) {
+			this.senders.add(message.getSenderIndex());
+		}
+	}
+
+	@Test
+	public void testLateSubscriberIsReplayedItsChannel() {
+		final FifoAtomicBroadcastChannelLocalImpl channel = new FifoAtomicBroadcastChannelLocalImpl();
+		channel.send(new Message("a", 1, null));
+		channel.send(new Message("b", 2, null));
+		channel.send(new Message("a", 3, null));
+
+		final RecordingSubscriber subscriber = new RecordingSubscriber();
+		channel.subscribe("a", subscriber);
+		channel.send(new Message("b", 4, null));
+		channel.send(new Message("a", 5, null));
+
+		Assert.assertEquals(3, subscriber.senders.size());
+		Assert.assertEquals(Integer.valueOf(1), subscriber.senders.get(0));
+		Assert.assertEquals(Integer.valueOf(3), subscriber.senders.get(1));
+		Assert.assertEquals(Integer.valueOf(5), subscriber.senders.get(2));
+	}
+
+	@Test
+	public void testMessagesDispatchedDuringReplayFollowIt() {
+		final FifoAtomicBroadcastChannelLocalImpl channel = new FifoAtomicBroadcastChannelLocalImpl();
+		channel.send(new Message("a", 1, null));
+		channel.send(new Message("a", 2, null));
+
+		// Delivers a new message while the first replayed one is being handled
+		final RecordingSubscriber subscriber = new RecordingSubscriber() {
+			@Override
+			public synchronized void messageAvailable(final Message message) {
+				super.messageAvailable(message);
+				if (message.getSenderIndex() == 1) {
+					channel.send(new Message("a", 3, null));
+				}
+			}
+		};
+		channel.subscribe("a", subscriber);
+
+		Assert.assertEquals(3, subscriber.senders.size());
+		for (int i = 0; i < 3; i++) {
+			Assert.assertEquals(Integer.valueOf(i + 1), subscriber.senders.get(i));
+		}
+	}
+
+	@Test
+	public void testUnsubscribedReceivesNothing() {
+		final FifoAtomicBroadcastChannelLocalImpl channel = new FifoAtomicBroadcastChannelLocalImpl();
+		final RecordingSubscriber subscriber = new RecordingSubscriber();
+		channel.subscribe("a", subscriber);
+		channel.send(new Message("a", 1, null));
+		channel.unsubscribe("a", subscriber);
+		channel.send(new Message("a", 2, null));
+
+		Assert.assertEquals(1, subscriber.senders.size());
+	}
+
+}
@@ -0,0 +1,64 @@
+package com.ibm.pross.server.app.http;
+
+import java.util.UUID;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.pross.common.util.crypto.schnorr.NonceCommitment;
+
+public class NonceCommitmentPoolTest {
+
+	@Test
+	public void testCommitmentIsRedeemedOnce() {
+		final NonceCommitmentPool pool = new NonceCommitmentPool(2);
+		final UUID nonceId = UUID.randomUUID();
+
+		final NonceCommitment commitment = pool.assign("secret", nonceId);
+		Assert.assertNotNull(commitment);
+		Assert.assertEquals(2, commitment.getParticipantIndex());
+		Assert.assertNotNull(commitment.getNonceD());
+
+		// Asking again for the same nonce returns the same commitment
+		Assert.assertSame(commitment, pool.assign("secret", nonceId));
+		Assert.assertEquals(1, pool.getOutstandingCount());
+
+		// It is not available for another secret
+		Assert.assertNull(pool.assign("other", nonceId));
+		Assert.assertNull(pool.redeem("other", nonceId));
+
+		Assert.assertSame(commitment, pool.redeem("secret", nonceId));
+		Assert.assertNull(pool.redeem("secret", nonceId));
+		Assert.assertEquals(0, pool.getOutstandingCount());
+		Assert.assertEquals(1, pool.getRedeemedCount());
+	}
+
+	@Test
+	public void testNoncesAreNotReused() {
+		final NonceCommitmentPool pool = new NonceCommitmentPool(1);
+		final NonceCommitment first = pool.assign("secret", UUID.randomUUID());
+		final NonceCommitment second = pool.assign("secret", UUID.randomUUID());
+		Assert.assertFalse(first.getNonceD().equals(second.getNonceD()));
+		Assert.assertFalse(first.getNonceE().equals(second.getNonceE()));
+		Assert.assertEquals(2, pool.getHits() + pool.getMisses());
+	}
+
+	@Test
+	public void testExpiredCommitmentIsEvicted() {
+		final long ttl = NonceCommitmentPool.COMMITMENT_TTL_MS;
+		try {
+			NonceCommitmentPool.COMMITMENT_TTL_MS = -1;
+			final NonceCommitmentPool pool = new NonceCommitmentPool(1);
+			final UUID nonceId = UUID.randomUUID();
+			pool.assign("secret", nonceId);
+
+			pool.evictExpired();
+			Assert.assertEquals(0, pool.getOutstandingCount());
+			Assert.assertEquals(1, pool.getExpiredCount());
+			Assert.assertNull(pool.redeem("secret", nonceId));
+		} finally {
+			NonceCommitmentPool.COMMITMENT_TTL_MS = ttl;
+		}
+	}
+
+}
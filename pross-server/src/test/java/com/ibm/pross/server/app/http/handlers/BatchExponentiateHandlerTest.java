@@ -0,0 +1,203 @@
+package com.ibm.pross.server.app.http.handlers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.net.URI;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.pross.common.config.CommonConfiguration;
+import com.ibm.pross.common.exceptions.http.BadRequestException;
+import com.ibm.pross.common.exceptions.http.HttpStatusCode;
+import com.ibm.pross.common.util.RandomNumberGenerator;
+import com.ibm.pross.common.util.crypto.ecc.EcCurve;
+import com.ibm.pross.common.util.crypto.ecc.EcPoint;
+import com.ibm.pross.common.util.crypto.ecc.EcPointEncoding;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+@SuppressWarnings("restriction")
+public class BatchExponentiateHandlerTest {
+
+	private static final EcCurve curve = CommonConfiguration.CURVE;
+
+	private static final int POINT_LENGTH = EcPointEncoding.getEncodedLength(curve);
+
+	/**
+	 * Records the response instead of sending it
+	 */
+	private static class RecordingExchange extends HttpExchange {
+
+		private final Headers responseHeaders = new Headers();
+		private final ByteArrayOutputStream responseBody = new ByteArrayOutputStream();
+		private int responseCode = -1;
+		private long responseLength = -1;
+
+		@Override
+		public Headers getRequestHeaders() {
+			return new Headers();
+		}
+
+		@Override
+		public Headers getResponseHeaders() {
+			return this.responseHeaders;
+		}
+
+		@Override
+		public URI getRequestURI() {
+			return URI.create("/exponentiate-batch?secretName=secret");
+		}
+
+		@Override
+		public String getRequestMethod() {
+			return "POST";
+		}
+
+		@Override
+		public HttpContext getHttpContext() {
+			return null;
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public InputStream getRequestBody() {
+			return new ByteArrayInputStream(new byte[0]);
+		}
+
+		@Override
+		public OutputStream getResponseBody() {
+			return this.responseBody;
+		}
+
+		@Override
+		public void sendResponseHeaders(final int responseCode, final long responseLength) {
+			this.responseCode = responseCode;
+			this.responseLength = responseLength;
+		}
+
+		@Override
+		public InetSocketAddress getRemoteAddress() {
+			return null;
+		}
+
+		@Override
+		public int getResponseCode() {
+			return this.responseCode;
+		}
+
+		@Override
+		public InetSocketAddress getLocalAddress() {
+			return null;
+		}
+
+		@Override
+		public String getProtocol() {
+			return "HTTP/1.1";
+		}
+
+		@Override
+		public Object getAttribute(final String name) {
+			return null;
+		}
+
+		@Override
+		public void setAttribute(final String name, final Object value) {
+		}
+
+		@Override
+		public void setStreams(final InputStream i, final OutputStream o) {
+		}
+
+		@Override
+		public HttpPrincipal getPrincipal() {
+			return null;
+		}
+	}
+
+	private static EcPoint[] randomPoints(final int count) {
+		final EcPoint[] points = new EcPoint[count];
+		for (int i = 0; i < count; i++) {
+			points[i] = curve.multiply(curve.getG(), RandomNumberGenerator.generateRandomInteger(curve.getR()));
+		}
+		return points;
+	}
+
+	private static byte[] encode(final EcPoint[] points) {
+		final byte[] body = new byte[points.length * POINT_LENGTH];
+		for (int i = 0; i < points.length; i++) {
+			EcPointEncoding.encode(curve, points[i], body, i * POINT_LENGTH);
+		}
+		return body;
+	}
+
+	@Test
+	public void testPointsAreExponentiatedInOrder() throws Exception {
+		// Spans several chunks, the last one partial
+		final EcPoint[] points = randomPoints((2 * BatchExponentiateHandler.CHUNK_SIZE) + 3);
+		final BigInteger exponent = RandomNumberGenerator.generateRandomInteger(curve.getR());
+
+		final RecordingExchange exchange = new RecordingExchange();
+		BatchExponentiateHandler.exponentiateAll(exchange, encode(points), exponent, 3, 7L);
+
+		// A length of zero means the response is chunked
+		Assert.assertEquals(HttpStatusCode.SUCCESS, exchange.getResponseCode());
+		Assert.assertEquals(0, exchange.responseLength);
+		Assert.assertEquals("application/octet-stream", exchange.responseHeaders.getFirst("Content-Type"));
+
+		final byte[] response = exchange.responseBody.toByteArray();
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(response));
+		Assert.assertEquals(3, in.readInt());
+		Assert.assertEquals(7L, in.readLong());
+		Assert.assertEquals(points.length, in.readInt());
+		Assert.assertEquals(16 + (points.length * POINT_LENGTH), response.length);
+
+		for (int i = 0; i < points.length; i++) {
+			final EcPoint result = EcPointEncoding.decode(curve, response, 16 + (i * POINT_LENGTH));
+			Assert.assertEquals(curve.multiply(points[i], exponent), result);
+		}
+	}
+
+	@Test
+	public void testInvalidPointIsRejectedBeforeResponding() throws Exception {
+		final byte[] body = encode(randomPoints(BatchExponentiateHandler.CHUNK_SIZE + 1));
+
+		// Corrupt the prefix of the last point
+		body[body.length - POINT_LENGTH] = 0x05;
+
+		final RecordingExchange exchange = new RecordingExchange();
+		try {
+			BatchExponentiateHandler.exponentiateAll(exchange, body, BigInteger.TEN, 1, 1L);
+			Assert.fail("Expected the batch to be rejected");
+		} catch (BadRequestException expected) {
+		}
+		Assert.assertEquals(-1, exchange.getResponseCode());
+		Assert.assertEquals(0, exchange.responseBody.size());
+	}
+
+	@Test
+	public void testTruncatedBodyIsRejected() throws Exception {
+		final byte[] body = encode(randomPoints(2));
+		final byte[] truncated = new byte[body.length - 1];
+		System.arraycopy(body, 0, truncated, 0, truncated.length);
+
+		for (final byte[] invalid : new byte[][] { new byte[0], truncated }) {
+			try {
+				BatchExponentiateHandler.exponentiateAll(new RecordingExchange(), invalid, BigInteger.TEN, 1, 1L);
+				Assert.fail("Expected the batch to be rejected");
+			} catch (BadRequestException expected) {
+			}
+		}
+	}
+
+}
@@ -0,0 +1,49 @@
+package com.ibm.pross.server.channel.bft;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BftBatchTest {
+
+	@Test
+	public void testPackUnpack() {
+		final List<byte[]> messages = Arrays.asList("first".getBytes(StandardCharsets.UTF_8), new byte[0],
+				"third".getBytes(StandardCharsets.UTF_8));
+
+		final byte[] envelope = BftBatch.pack(messages);
+		Assert.assertTrue(BftBatch.isBatch(envelope));
+
+		final List<byte[]> unpacked = BftBatch.unpack(envelope);
+		Assert.assertEquals(messages.size(), unpacked.size());
+		for (int i = 0; i < messages.size(); i++) {
+			Assert.assertArrayEquals(messages.get(i), unpacked.get(i));
+		}
+	}
+
+	@Test
+	public void testUnpackSingleMessage() {
+		final byte[] message = new byte[] { 0x0A, 0x01, 0x02 };
+		Assert.assertFalse(BftBatch.isBatch(message));
+
+		final List<byte[]> unpacked = BftBatch.unpack(message);
+		Assert.assertEquals(1, unpacked.size());
+		Assert.assertArrayEquals(message, unpacked.get(0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnpackTruncated() {
+		final byte[] envelope = BftBatch.pack(Arrays.asList(new byte[10], new byte[10]));
+		BftBatch.unpack(Arrays.copyOf(envelope, envelope.length - 5));
+	}
+
+	@Test
+	public void testEnvelopeOverhead() {
+		final byte[] envelope = BftBatch.pack(Arrays.asList(new byte[10], new byte[20], new byte[0]));
+		Assert.assertEquals(BftBatch.HEADER_LENGTH + (3 * BftBatch.ENTRY_OVERHEAD) + 30, envelope.length);
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.ibm.pross.server.channel.bft;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.pross.server.channel.bft.BftListenerWrapper.Snapshot;
+
+public class BftListenerWrapperTest {
+
+	private static final int COMMANDS = 10;
+
+	/**
+	 * Takes a snapshot after every four commands, as at each checkpoint, and
+	 * returns the last one
+	 */
+	private static Snapshot takeSnapshot(final byte[][] commands) {
+		final BftLog log = new BftLog();
+		for (int i = 0; i < commands.length; i++) {
+			if ((i % 4) == 0) {
+				log.markCheckpoint();
+			}
+			log.addMessage(commands[i]);
+		}
+		return new Snapshot(log.getPosition(), log.getDigest(), log.getFirstRetainedPosition(), log.getMessageLog());
+	}
+
+	private static byte[][] createCommands() {
+		final byte[][] commands = new byte[COMMANDS][];
+		for (int i = 0; i < COMMANDS; i++) {
+			commands[i] = new byte[] { (byte) i };
+		}
+		return commands;
+	}
+
+	private static byte[][] getHistory(final byte[][] commands, final Snapshot snapshot) {
+		final byte[][] history = new byte[(int) snapshot.firstPosition - 1][];
+		System.arraycopy(commands, 0, history, 0, history.length);
+		return history;
+	}
+
+	@Test
+	public void testCatchUpAcrossSeveralCheckpoints() {
+		final byte[][] commands = createCommands();
+		final Snapshot snapshot = takeSnapshot(commands);
+		Assert.assertEquals(9, snapshot.firstPosition);
+
+		// Two checkpoints behind
+		final BftLog log = new BftLog();
+		log.addMessage(commands[0]);
+
+		final List<byte[]> missing = BftListenerWrapper.getMissingCommands(log, snapshot,
+				getHistory(commands, snapshot));
+		Assert.assertEquals(COMMANDS - 1, missing.size());
+		for (int i = 0; i < missing.size(); i++) {
+			Assert.assertArrayEquals(commands[i + 1], missing.get(i));
+		}
+	}
+
+	@Test
+	public void testUpToDateNeedsNothing() {
+		final byte[][] commands = createCommands();
+		final Snapshot snapshot = takeSnapshot(commands);
+
+		final BftLog log = new BftLog();
+		for (final byte[] command : commands) {
+			log.addMessage(command);
+		}
+		Assert.assertTrue(BftListenerWrapper.getMissingCommands(log, snapshot, null).isEmpty());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testMissingHistoryIsRejected() {
+		final byte[][] commands = createCommands();
+		BftListenerWrapper.getMissingCommands(new BftLog(), takeSnapshot(commands), null);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testAlteredHistoryIsRejected() {
+		final byte[][] commands = createCommands();
+		final Snapshot snapshot = takeSnapshot(commands);
+		final byte[][] history = getHistory(commands, snapshot);
+		history[2] = new byte[] { 42 };
+		BftListenerWrapper.getMissingCommands(new BftLog(), snapshot, history);
+	}
+
+}
@@ -0,0 +1,71 @@
+package com.ibm.pross.server.channel.bft;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BftLogTest {
+
+	@Test
+	public void testCheckpointReleasesCommands() {
+		final BftLog log = new BftLog();
+		log.addMessage("first".getBytes(StandardCharsets.UTF_8));
+		log.addMessage("second".getBytes(StandardCharsets.UTF_8));
+		Assert.assertEquals(2, log.getPosition());
+		Assert.assertEquals(1, log.getFirstRetainedPosition());
+
+		log.markCheckpoint();
+		log.addMessage("third".getBytes(StandardCharsets.UTF_8));
+		Assert.assertEquals(3, log.getPosition());
+		Assert.assertEquals(3, log.getFirstRetainedPosition());
+		Assert.assertEquals(1, log.getMessageLog().size());
+		Assert.assertArrayEquals("third".getBytes(StandardCharsets.UTF_8), log.getMessageLog().get(0));
+	}
+
+	@Test
+	public void testCommandsAreRetainedUntilCheckpoint() {
+		final BftLog log = new BftLog();
+		for (int i = 0; i < 20_000; i++) {
+			log.addMessage(new byte[] { (byte) i });
+		}
+		Assert.assertEquals(20_000, log.getRetainedMessageCount());
+		Assert.assertEquals(1, log.getFirstRetainedPosition());
+
+		log.markCheckpoint();
+		Assert.assertEquals(0, log.getRetainedMessageCount());
+		Assert.assertEquals(0, log.getRetainedBytes());
+	}
+
+	@Test
+	public void testDigestDependsOnEveryCommand() {
+		final BftLog log1 = new BftLog();
+		final BftLog log2 = new BftLog();
+		log1.addMessage(new byte[] { 1 });
+		log2.addMessage(new byte[] { 1 });
+		log1.markCheckpoint();
+		Assert.assertArrayEquals(log1.getDigest(), log2.getDigest());
+
+		log1.addMessage(new byte[] { 2 });
+		log2.addMessage(new byte[] { 3 });
+		Assert.assertFalse(Arrays.equals(log1.getDigest(), log2.getDigest()));
+	}
+
+	@Test
+	public void testReset() {
+		final BftLog source = new BftLog();
+		source.addMessage(new byte[] { 1 });
+		source.addMessage(new byte[] { 2 });
+
+		final BftLog log = new BftLog();
+		log.reset(source.getPosition(), source.getDigest());
+		Assert.assertEquals(0, log.getRetainedMessageCount());
+
+		source.addMessage(new byte[] { 3 });
+		log.addMessage(new byte[] { 3 });
+		Assert.assertEquals(3, log.getPosition());
+		Assert.assertArrayEquals(source.getDigest(), log.getDigest());
+	}
+
+}
@@ -0,0 +1,84 @@
+package com.ibm.pross.server.communication;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.Security;
+import java.security.spec.ECGenParameterSpec;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ibm.pross.common.config.CommonConfiguration;
+import com.ibm.pross.server.messages.Message;
+import com.ibm.pross.server.messages.SignedMessage;
+import com.ibm.pross.server.messages.payloads.apvss.NoOp;
+import com.ibm.pross.server.util.MessageSerializer;
+
+public class MessageStateTrackerTest {
+
+	private static KeyPair keyPair;
+
+	@BeforeClass
+	public static void setupBeforeClass() throws NoSuchAlgorithmException, InvalidAlgorithmParameterException,
+			NoSuchProviderException {
+		Security.addProvider(new BouncyCastleProvider());
+		final KeyPairGenerator keyGen = KeyPairGenerator.getInstance("ECDSA", BouncyCastleProvider.PROVIDER_NAME);
+		keyGen.initialize(new ECGenParameterSpec(CommonConfiguration.CURVE.getName()));
+		keyPair = keyGen.generateKeyPair();
+	}
+
+	@Test
+	public void testMessageConfirmedByAllIsReleased() {
+		final MessageStateTracker tracker = new MessageStateTracker(3, 1);
+		final SignedMessage signedMessage = new SignedMessage(new Message("none", 1, new NoOp()), keyPair.getPrivate());
+
+		Assert.assertTrue(tracker.recordMessage(1, false, signedMessage));
+		Assert.assertEquals(1, tracker.getKnownMessageCount());
+		Assert.assertEquals(1, tracker.determineMessagesNotKnownByAll().size());
+
+		tracker.recordMessage(2, true, signedMessage);
+		Assert.assertEquals(1, tracker.getKnownMessageCount());
+
+		// Once the last witness acknowledges, only the digest is held
+		tracker.recordMessage(3, true, signedMessage);
+		Assert.assertEquals(0, tracker.getKnownMessageCount());
+		Assert.assertEquals(1, tracker.getConfirmedMessageCount());
+		Assert.assertTrue(tracker.determineMessagesNotKnownByAll().isEmpty());
+		Assert.assertTrue(tracker.determineUnconfirmedWitnesses(signedMessage).isEmpty());
+
+		// A relayed copy of the message is still recognized as already seen
+		final SignedMessage copy = MessageSerializer
+				.deserializeSignedMessage(MessageSerializer.serializeSignedMessage(signedMessage));
+		Assert.assertFalse(tracker.recordMessage(2, false, copy));
+		Assert.assertFalse(tracker.recordMessage(3, true, copy));
+		Assert.assertEquals(0, tracker.getKnownMessageCount());
+	}
+
+	@Test
+	public void testConfirmedDigestsAreBounded() {
+		final int maxConfirmedDigests = MessageStateTracker.MAX_CONFIRMED_DIGESTS;
+		MessageStateTracker.MAX_CONFIRMED_DIGESTS = 2;
+		try {
+			final MessageStateTracker tracker = new MessageStateTracker(2, 1);
+			final SignedMessage[] signedMessages = new SignedMessage[6];
+			for (int i = 0; i < signedMessages.length; i++) {
+				signedMessages[i] = new SignedMessage(new Message("channel-" + i, 1, new NoOp()), keyPair.getPrivate());
+				tracker.recordMessage(2, false, signedMessages[i]);
+			}
+
+			// Only the current and previous generations are kept
+			Assert.assertEquals(0, tracker.getKnownMessageCount());
+			Assert.assertEquals(4, tracker.getConfirmedMessageCount());
+			Assert.assertFalse(tracker.recordMessage(2, false, signedMessages[2]));
+			Assert.assertTrue(tracker.recordMessage(2, false, signedMessages[0]));
+		} finally {
+			MessageStateTracker.MAX_CONFIRMED_DIGESTS = maxConfirmedDigests;
+		}
+	}
+
+}
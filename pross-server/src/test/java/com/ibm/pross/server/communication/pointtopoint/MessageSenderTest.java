@@ -0,0 +1,44 @@
+package com.ibm.pross.server.communication.pointtopoint;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MessageSenderTest {
+
+	private static int findFreePort() throws IOException {
+		try (final ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+	@Test
+	public void testMessagesShareOneConnection() throws IOException {
+		final int port = findFreePort();
+		final MessageReceiver receiver = new MessageReceiver(port);
+		receiver.start();
+		try {
+			final MessageSender sender = new MessageSender("localhost", port);
+
+			final int messageCount = 200;
+			for (int i = 0; i < messageCount; i++) {
+				sender.attemptMessageDelivery(("message-" + i).getBytes(StandardCharsets.UTF_8));
+			}
+
+			// Messages on a single connection arrive in the order they were sent
+			for (int i = 0; i < messageCount; i++) {
+				final byte[] received = receiver.awaitNextMessage();
+				Assert.assertEquals("message-" + i, new String(received, StandardCharsets.UTF_8));
+			}
+
+			Assert.assertEquals(1, sender.getConnectionsOpened());
+			Assert.assertEquals(0, sender.getMessagesDropped());
+		} finally {
+			receiver.stop();
+		}
+	}
+
+}
@@ -21,6 +21,7 @@ import org.junit.Test;
 
 import com.ibm.pross.common.config.CommonConfiguration;
 import com.ibm.pross.server.messages.payloads.apvss.NoOp;
+import com.ibm.pross.server.util.MessageSerializer;
 import com.ibm.pross.server.util.MessageSigningUtil;
 
 public class SigningTest {
@@ -57,4 +58,23 @@ public class SigningTest {
 		Assert.assertTrue(MessageSigningUtil.verifySignature(message, signature, keyPair.getPublic()));
 	}
 
+	@Test
+	public void testReceivedMessageKeepsSignedBytes() {
+
+		final KeyPair keyPair = generateKeyPair();
+
+		final SignedMessage signedMessage = new SignedMessage(new Message("none", 2, new NoOp()), keyPair.getPrivate());
+		final byte[] serialized = MessageSerializer.serializeSignedMessage(signedMessage);
+
+		// The received copy holds the bytes which were signed, not a re-serialization
+		final SignedMessage received = MessageSerializer.deserializeSignedMessage(serialized);
+		Assert.assertArrayEquals(signedMessage.getSerializedMessage(), received.getSerializedMessage());
+		Assert.assertTrue(received.isSignatureValid(keyPair.getPublic()));
+		Assert.assertEquals(signedMessage.getMessage(), received.getMessage());
+		Assert.assertEquals(2, received.getMessage().getSenderIndex());
+
+		// Relaying it again produces the same bytes
+		Assert.assertArrayEquals(serialized, MessageSerializer.serializeSignedMessage(received));
+	}
+
 }
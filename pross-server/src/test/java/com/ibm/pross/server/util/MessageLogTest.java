@@ -0,0 +1,141 @@
+package com.ibm.pross.server.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MessageLogTest {
+
+	private File directory;
+
+	@Before
+	public void setup() throws IOException {
+		this.directory = Files.createTempDirectory("message-log").toFile();
+	}
+
+	@After
+	public void cleanup() {
+		final File[] files = this.directory.listFiles();
+		if (files != null) {
+			for (final File file : files) {
+				file.delete();
+			}
+		}
+		this.directory.delete();
+	}
+
+	private static byte[] data(final long position) {
+		return ("message-" + position).getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testAppendAndReopen() throws IOException {
+		try (final MessageLog log = new MessageLog(this.directory, false)) {
+			// Positions may arrive out of order
+			log.append(2, data(2));
+			log.append(1, data(1));
+			log.append(3, data(3));
+			log.append(2, "duplicate".getBytes(StandardCharsets.UTF_8));
+			Assert.assertArrayEquals(data(1), log.read(1));
+			Assert.assertArrayEquals("duplicate".getBytes(StandardCharsets.UTF_8), log.read(2));
+			Assert.assertNull(log.read(4));
+		}
+
+		try (final MessageLog log = new MessageLog(this.directory, true)) {
+			Assert.assertEquals(3, log.getRecordCount());
+			final TreeMap<Long, byte[]> records = log.readAll();
+			Assert.assertEquals(3, records.size());
+			// The latest record for a position is kept
+			Assert.assertArrayEquals(data(1), records.get(1L));
+			Assert.assertArrayEquals("duplicate".getBytes(StandardCharsets.UTF_8), records.get(2L));
+			Assert.assertArrayEquals(data(3), records.get(3L));
+		}
+	}
+
+	@Test
+	public void testSegmentRoll() throws IOException {
+		final long segmentSize = MessageLog.SEGMENT_SIZE;
+		MessageLog.SEGMENT_SIZE = 100;
+		try (final MessageLog log = new MessageLog(this.directory, false)) {
+			for (long position = 1; position <= 20; position++) {
+				log.append(position, data(position));
+			}
+			Assert.assertTrue(log.getSegmentCount() > 1);
+		} finally {
+			MessageLog.SEGMENT_SIZE = segmentSize;
+		}
+
+		try (final MessageLog log = new MessageLog(this.directory, true)) {
+			Assert.assertEquals(20, log.getRecordCount());
+			Assert.assertArrayEquals(data(17), log.read(17));
+		}
+	}
+
+	@Test
+	public void testTornRecordIsTruncated() throws IOException {
+		try (final MessageLog log = new MessageLog(this.directory, false)) {
+			log.append(1, data(1));
+			log.append(2, data(2));
+		}
+
+		// Simulate a crash part way through writing the last record
+		final File segment = this.directory.listFiles()[0];
+		try (final RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+			file.setLength(file.length() - 3);
+		}
+
+		try (final MessageLog log = new MessageLog(this.directory, false)) {
+			Assert.assertEquals(1, log.getRecordCount());
+			Assert.assertNull(log.read(2));
+
+			// New records are appended after the truncated record
+			log.append(2, data(2));
+		}
+
+		try (final MessageLog log = new MessageLog(this.directory, true)) {
+			Assert.assertArrayEquals(data(2), log.read(2));
+		}
+	}
+
+	@Test
+	public void testFailedWriteFailsLaterAppends() throws Exception {
+		try (final MessageLog log = new MessageLog(this.directory, false)) {
+			log.append(1, data(1));
+
+			// Break the active segment so that the next group cannot be written
+			final Field segmentField = MessageLog.class.getDeclaredField("activeSegment");
+			segmentField.setAccessible(true);
+			final Object segment = segmentField.get(log);
+			final Field channelField = segment.getClass().getDeclaredField("writeChannel");
+			channelField.setAccessible(true);
+			((FileChannel) channelField.get(segment)).close();
+
+			try {
+				log.append(2, data(2));
+				Assert.fail("Expected the write to fail");
+			} catch (IOException expected) {
+			}
+
+			// Nothing more is written once a group has failed
+			try {
+				log.append(3, data(3));
+				Assert.fail("Expected the log to stay failed");
+			} catch (IOException expected) {
+				Assert.assertNotNull(expected.getCause());
+			}
+
+			Assert.assertArrayEquals(data(1), log.read(1));
+		}
+	}
+
+}
@@ -0,0 +1,102 @@
+package com.ibm.pross.server.util;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.Security;
+import java.security.spec.ECGenParameterSpec;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ibm.pross.common.config.CommonConfiguration;
+import com.ibm.pross.server.messages.Message;
+import com.ibm.pross.server.messages.MessageSignature;
+import com.ibm.pross.server.messages.SignedMessage;
+import com.ibm.pross.server.messages.payloads.apvss.NoOp;
+
+public class VerifiedSignatureCacheTest {
+
+	private static KeyPair keyPair;
+	private static KeyPair otherKeyPair;
+
+	@BeforeClass
+	public static void setupBeforeClass() {
+		Security.addProvider(new BouncyCastleProvider());
+		keyPair = generateKeyPair();
+		otherKeyPair = generateKeyPair();
+	}
+
+	@Before
+	public void setup() {
+		VerifiedSignatureCache.clear();
+	}
+
+	private static KeyPair generateKeyPair() {
+		try {
+			final KeyPairGenerator keyGen = KeyPairGenerator.getInstance("ECDSA", BouncyCastleProvider.PROVIDER_NAME);
+			keyGen.initialize(new ECGenParameterSpec(CommonConfiguration.CURVE.getName()));
+			return keyGen.generateKeyPair();
+		} catch (NoSuchAlgorithmException | InvalidAlgorithmParameterException | NoSuchProviderException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Test
+	public void testRelayedCopiesAreVerifiedOnce() {
+		final SignedMessage signedMessage = new SignedMessage(new Message("none", 1, new NoOp()), keyPair.getPrivate());
+		final byte[] serialized = MessageSerializer.serializeSignedMessage(signedMessage);
+
+		final long verifications = VerifiedSignatureCache.getVerifications();
+		for (int i = 0; i < 21; i++) {
+			// Each relayed copy arrives as a distinct deserialized object
+			final SignedMessage copy = MessageSerializer.deserializeSignedMessage(serialized);
+			Assert.assertEquals(signedMessage, copy);
+			Assert.assertTrue(copy.isSignatureValid(keyPair.getPublic()));
+		}
+		Assert.assertEquals(verifications + 1, VerifiedSignatureCache.getVerifications());
+		Assert.assertEquals(1, VerifiedSignatureCache.size());
+	}
+
+	@Test
+	public void testInvalidSignaturesAreNotCached() {
+		final Message message = new Message("none", 1, new NoOp());
+		final SignedMessage signedMessage = new SignedMessage(message, keyPair.getPrivate());
+		Assert.assertTrue(signedMessage.isSignatureValid(keyPair.getPublic()));
+
+		// A cached message does not make it valid for another signer
+		Assert.assertFalse(signedMessage.isSignatureValid(otherKeyPair.getPublic()));
+
+		// Nor does it make another signature over the same message valid
+		final byte[] signatureBytes = signedMessage.getSignature().getSignatureBytes().clone();
+		signatureBytes[signatureBytes.length - 1] ^= 1;
+		final SignedMessage forged = new SignedMessage(message,
+				new MessageSignature(signatureBytes, signedMessage.getSignature().getAlgorithm()));
+		Assert.assertFalse(forged.isSignatureValid(keyPair.getPublic()));
+		Assert.assertFalse(forged.isSignatureValid(keyPair.getPublic()));
+
+		Assert.assertEquals(1, VerifiedSignatureCache.size());
+	}
+
+	@Test
+	public void testCacheIsBounded() {
+		final int maxCachedSignatures = VerifiedSignatureCache.MAX_CACHED_SIGNATURES;
+		try {
+			VerifiedSignatureCache.MAX_CACHED_SIGNATURES = 5;
+			for (int i = 0; i < 20; i++) {
+				final SignedMessage signedMessage = new SignedMessage(new Message("channel-" + i, 1, new NoOp()),
+						keyPair.getPrivate());
+				Assert.assertTrue(signedMessage.isSignatureValid(keyPair.getPublic()));
+			}
+			Assert.assertEquals(5, VerifiedSignatureCache.size());
+		} finally {
+			VerifiedSignatureCache.MAX_CACHED_SIGNATURES = maxCachedSignatures;
+		}
+	}
+
+}